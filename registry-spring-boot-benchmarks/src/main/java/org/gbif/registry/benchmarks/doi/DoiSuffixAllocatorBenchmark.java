@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.benchmarks.doi;
+
+import org.gbif.registry.doi.generator.DoiSuffixAllocator;
+import org.gbif.registry.persistence.mapper.DoiMapper;
+import org.gbif.registry.ws.config.MyBatisConfiguration;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.mybatis.spring.annotation.MapperScan;
+import org.mybatis.spring.boot.autoconfigure.MybatisAutoConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * DOI suffix codes allocated concurrently from the database sequence, an allocator per thread like
+ * separate registry instances. A block of 1 costs a round trip per DOI, as the former random codes
+ * did.
+ *
+ * <p>The sequence is read against a PostgreSQL database as in {@code TitleLookupBenchmark}, given
+ * with the {@code spring.datasource.*} system properties and defaulting to {@code
+ * registry_benchmark} on localhost. No DOI is stored, the sequence values are simply used up.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Thread)
+public class DoiSuffixAllocatorBenchmark {
+
+  private static final String PREFIX = "10.21373";
+  private static final List<String> SHOULDERS = ImmutableList.of("", "dl.", "dp.");
+
+  @Param({"1", "1000"})
+  private int blockSize;
+
+  private DoiSuffixAllocator allocator;
+
+  @Setup
+  public void setup(Database database) {
+    allocator =
+        new DoiSuffixAllocator(
+            database.context.getBean(DoiMapper.class), PREFIX, SHOULDERS, blockSize);
+  }
+
+  @Benchmark
+  public String next() {
+    return allocator.next();
+  }
+
+  /** The application context, shared by all threads. */
+  @State(Scope.Benchmark)
+  public static class Database {
+
+    private ConfigurableApplicationContext context;
+
+    @Setup
+    public void setup() {
+      context =
+          new SpringApplicationBuilder(BenchmarkConfiguration.class)
+              .web(WebApplicationType.NONE)
+              .properties(
+                  "spring.datasource.url=jdbc:postgresql://localhost:5432/registry_benchmark",
+                  "spring.liquibase.change-log=classpath:liquibase/master.xml",
+                  "spring.liquibase.default-schema=public")
+              .run();
+    }
+
+    @TearDown
+    public void tearDown() {
+      context.close();
+    }
+  }
+
+  /** The data source, Liquibase and the registry mappers, nothing else of the web services. */
+  @SpringBootConfiguration
+  @ImportAutoConfiguration({
+    DataSourceAutoConfiguration.class,
+    DataSourceTransactionManagerAutoConfiguration.class,
+    LiquibaseAutoConfiguration.class,
+    MybatisAutoConfiguration.class
+  })
+  @Import(MyBatisConfiguration.class)
+  @MapperScan("org.gbif.registry.persistence.mapper")
+  static class BenchmarkConfiguration {}
+}
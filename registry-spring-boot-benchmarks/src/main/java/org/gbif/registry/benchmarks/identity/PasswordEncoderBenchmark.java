@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.benchmarks.identity;
+
+import org.gbif.registry.identity.util.RegistryPasswordEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Verification of a Drupal password hash by the {@link RegistryPasswordEncoder}, against the
+ * rounds of its former implementation which allocated a new digest and two arrays on every round.
+ *
+ * <p>Both compute the same hash, the difference is in the allocation rate reported by the GC
+ * profiler and the time spent collecting it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordEncoderBenchmark {
+
+  private static final String HASH = "$S$DNbBTrkalsPChLsqajHUQS18pBBxzSTQW0310SzivTy7HDQ.zgyG";
+
+  @Param({"adrian"})
+  private String password;
+
+  private RegistryPasswordEncoder encoder;
+
+  @Setup
+  public void setup() {
+    encoder = new RegistryPasswordEncoder();
+  }
+
+  /** The former rounds, returning the raw hash which is encoded the same way afterwards. */
+  @Benchmark
+  public byte[] allocatingRounds() throws NoSuchAlgorithmException {
+    String salt = HASH.substring(4, 12);
+    int count = 1 << 15;
+    byte[] hash = MessageDigest.getInstance("SHA-512").digest(salt.concat(password).getBytes());
+    do {
+      byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+      byte[] combined = new byte[hash.length + passwordBytes.length];
+      System.arraycopy(hash, 0, combined, 0, hash.length);
+      System.arraycopy(passwordBytes, 0, combined, hash.length, passwordBytes.length);
+      hash = MessageDigest.getInstance("SHA-512").digest(combined);
+    } while (--count > 0);
+    return hash;
+  }
+
+  @Benchmark
+  public boolean matches() {
+    return encoder.matches(password, HASH);
+  }
+}
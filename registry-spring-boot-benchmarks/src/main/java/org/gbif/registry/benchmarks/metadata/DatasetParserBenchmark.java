@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.benchmarks.metadata;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.vocabulary.MetadataType;
+import org.gbif.registry.benchmarks.metadata.MetadataFixtures.Size;
+import org.gbif.registry.metadata.parse.DatasetParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Parsing of EML and Dublin Core documents by the {@link DatasetParser}. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatasetParserBenchmark {
+
+  @Param({"SMALL", "MEDIUM", "HUGE"})
+  private Size size;
+
+  private byte[] eml;
+  private byte[] dublinCore;
+
+  @Setup
+  public void setup() {
+    eml = MetadataFixtures.eml(size);
+    dublinCore = MetadataFixtures.dublinCore(size);
+  }
+
+  @Benchmark
+  public MetadataType detectEml() {
+    return DatasetParser.detectParserType(new ByteArrayInputStream(eml));
+  }
+
+  @Benchmark
+  public MetadataType sniffEml() {
+    return DatasetParser.sniffParserType(new ByteArrayInputStream(eml));
+  }
+
+  @Benchmark
+  public Dataset parseEml() throws IOException {
+    return DatasetParser.parse(MetadataType.EML, new ByteArrayInputStream(eml));
+  }
+
+  @Benchmark
+  public Dataset buildEml() throws IOException {
+    return DatasetParser.build(new ByteArrayInputStream(eml));
+  }
+
+  @Benchmark
+  public Dataset parseDublinCore() throws IOException {
+    return DatasetParser.parse(MetadataType.DC, new ByteArrayInputStream(dublinCore));
+  }
+
+  @Benchmark
+  public Dataset buildDublinCore() throws IOException {
+    return DatasetParser.build(new ByteArrayInputStream(dublinCore));
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.benchmarks.metadata;
+
+import org.gbif.registry.benchmarks.metadata.MetadataFixtures.Size;
+import org.gbif.registry.metadata.EMLProfileVersion;
+import org.gbif.registry.metadata.EmlValidator;
+import org.gbif.registry.metadata.InvalidEmlException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+/**
+ * Validation of EML documents against the GBIF metadata profile. The schema is loaded from
+ * rs.gbif.org once per trial, which needs network access.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class EmlValidatorBenchmark {
+
+  @Param({"SMALL", "MEDIUM", "HUGE"})
+  private Size size;
+
+  private byte[] eml;
+  private String emlAsString;
+  // validators are not thread safe, hence the state per thread
+  private EmlValidator validator;
+
+  @Setup
+  public void setup() throws SAXException {
+    eml = MetadataFixtures.eml(size);
+    emlAsString = new String(eml, StandardCharsets.UTF_8);
+    validator = EmlValidator.newValidator(EMLProfileVersion.GBIF_1_1);
+  }
+
+  @Benchmark
+  public void validateString() throws InvalidEmlException {
+    validator.validate(emlAsString);
+  }
+
+  @Benchmark
+  public void validateStream() throws InvalidEmlException {
+    validator.validate(new ByteArrayInputStream(eml));
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.benchmarks.metadata;
+
+import org.gbif.api.model.registry.Contact;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.api.model.registry.eml.KeywordCollection;
+import org.gbif.api.model.registry.eml.TaxonomicCoverage;
+import org.gbif.api.model.registry.eml.TaxonomicCoverages;
+import org.gbif.api.model.registry.eml.geospatial.BoundingBox;
+import org.gbif.api.model.registry.eml.geospatial.GeospatialCoverage;
+import org.gbif.api.vocabulary.ContactType;
+import org.gbif.api.vocabulary.DatasetType;
+import org.gbif.api.vocabulary.Language;
+import org.gbif.api.vocabulary.License;
+import org.gbif.registry.metadata.DublinCoreWriter;
+import org.gbif.registry.metadata.EMLWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Synthetic metadata documents of increasing size, generated from a dataset built in memory so no
+ * external fixture is needed.
+ */
+public final class MetadataFixtures {
+
+  /** Size of the generated documents. */
+  public enum Size {
+    SMALL(1, 5, 10, 1),
+    MEDIUM(10, 100, 500, 10),
+    HUGE(200, 2000, 20000, 100);
+
+    private final int contacts;
+    private final int keywords;
+    private final int taxa;
+    private final int paragraphs;
+
+    Size(int contacts, int keywords, int taxa, int paragraphs) {
+      this.contacts = contacts;
+      this.keywords = keywords;
+      this.taxa = taxa;
+      this.paragraphs = paragraphs;
+    }
+  }
+
+  private static final UUID DATASET_KEY = UUID.fromString("6c3a6e6c-7ed5-4dc9-9ae4-b3e7d2e5f9a1");
+  private static final UUID PUBLISHER_KEY =
+      UUID.fromString("0a16da09-7719-40de-8d4f-56a15ed52fb6");
+
+  private MetadataFixtures() {}
+
+  public static Dataset dataset(Size size) {
+    Dataset dataset = new Dataset();
+    dataset.setKey(DATASET_KEY);
+    dataset.setPublishingOrganizationKey(PUBLISHER_KEY);
+    dataset.setType(DatasetType.OCCURRENCE);
+    dataset.setTitle("Synthetic " + size.name().toLowerCase() + " dataset");
+    dataset.setLanguage(Language.ENGLISH);
+    dataset.setDataLanguage(Language.ENGLISH);
+    dataset.setLicense(License.CC_BY_4_0);
+    dataset.setPubDate(new Date(1_500_000_000_000L));
+    dataset.setCreated(new Date(1_500_000_000_000L));
+    dataset.setModified(new Date(1_500_000_000_000L));
+
+    StringBuilder description = new StringBuilder();
+    for (int i = 0; i < size.paragraphs; i++) {
+      description
+          .append("<p>Paragraph ")
+          .append(i)
+          .append(" describing the sampling of the synthetic dataset in some detail, ")
+          .append("with the methods, the localities and the people involved.</p>");
+    }
+    dataset.setDescription(description.toString());
+
+    for (int i = 0; i < size.contacts; i++) {
+      Contact contact = new Contact();
+      contact.setType(i % 2 == 0 ? ContactType.ORIGINATOR : ContactType.METADATA_AUTHOR);
+      contact.setPrimary(i < 2);
+      contact.setFirstName("First" + i);
+      contact.setLastName("Last" + i);
+      contact.setOrganization("Organization " + i);
+      contact.setPosition(Lists.newArrayList("Curator"));
+      contact.setEmail(Lists.newArrayList("contact" + i + "@example.org"));
+      contact.setCity("Copenhagen");
+      contact.setUserId(Collections.singletonList("https://orcid.org/0000-0000-0000-" + i));
+      dataset.getContacts().add(contact);
+    }
+
+    KeywordCollection keywords = new KeywordCollection();
+    keywords.setThesaurus("Synthetic thesaurus");
+    Set<String> words = new HashSet<>();
+    for (int i = 0; i < size.keywords; i++) {
+      words.add("keyword" + i);
+    }
+    keywords.setKeywords(words);
+    dataset.getKeywordCollections().add(keywords);
+
+    TaxonomicCoverages taxonomicCoverages = new TaxonomicCoverages();
+    taxonomicCoverages.setDescription("All the taxa sampled");
+    for (int i = 0; i < size.taxa; i++) {
+      TaxonomicCoverage taxon = new TaxonomicCoverage();
+      taxon.setScientificName("Genus species" + i);
+      taxon.setCommonName("common name " + i);
+      taxonomicCoverages.addCoverages(taxon);
+    }
+    dataset.getTaxonomicCoverages().add(taxonomicCoverages);
+
+    GeospatialCoverage geospatialCoverage = new GeospatialCoverage();
+    geospatialCoverage.setDescription("Denmark");
+    geospatialCoverage.setBoundingBox(new BoundingBox(54.5, 8, 57.8, 15.2));
+    dataset.setGeographicCoverages(Lists.newArrayList(geospatialCoverage));
+
+    return dataset;
+  }
+
+  public static Organization publisher() {
+    Organization organization = new Organization();
+    organization.setKey(PUBLISHER_KEY);
+    organization.setTitle("Synthetic publisher");
+    return organization;
+  }
+
+  /** @return the dataset written as an EML document of the GBIF profile */
+  public static byte[] eml(Size size) {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      EMLWriter.newInstance().writeTo(dataset(size), out);
+      return out.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** @return the dataset written as a Dublin Core document */
+  public static byte[] dublinCore(Size size) {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      DublinCoreWriter.newInstance()
+          .writeTo(publisher(), dataset(size), Collections.emptyMap(), out);
+      return out.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
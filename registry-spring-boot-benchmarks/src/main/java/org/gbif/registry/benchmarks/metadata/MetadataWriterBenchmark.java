@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.benchmarks.metadata;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.benchmarks.metadata.MetadataFixtures.Size;
+import org.gbif.registry.metadata.DublinCoreWriter;
+import org.gbif.registry.metadata.EMLWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing of EML and Dublin Core documents, both to a {@link StringWriter} as done for the API
+ * responses and straight to a stream.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetadataWriterBenchmark {
+
+  @Param({"SMALL", "MEDIUM", "HUGE"})
+  private Size size;
+
+  private Dataset dataset;
+  private Organization publisher;
+  private EMLWriter emlWriter;
+  private DublinCoreWriter dublinCoreWriter;
+
+  @Setup
+  public void setup() {
+    dataset = MetadataFixtures.dataset(size);
+    publisher = MetadataFixtures.publisher();
+    emlWriter = EMLWriter.newInstance();
+    dublinCoreWriter = DublinCoreWriter.newInstance();
+  }
+
+  @Benchmark
+  public String writeEml() throws IOException {
+    StringWriter writer = new StringWriter();
+    emlWriter.writeTo(dataset, writer);
+    return writer.toString();
+  }
+
+  @Benchmark
+  public int writeEmlToStream() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    emlWriter.writeTo(dataset, out);
+    return out.size();
+  }
+
+  @Benchmark
+  public String writeDublinCore() throws IOException {
+    StringWriter writer = new StringWriter();
+    dublinCoreWriter.writeTo(publisher, dataset, Collections.emptyMap(), writer);
+    return writer.toString();
+  }
+
+  @Benchmark
+  public int writeDublinCoreToStream() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    dublinCoreWriter.writeTo(publisher, dataset, Collections.emptyMap(), out);
+    return out.size();
+  }
+}
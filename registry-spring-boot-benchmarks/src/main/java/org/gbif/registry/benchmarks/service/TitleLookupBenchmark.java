@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.benchmarks.service;
+
+import org.gbif.api.model.registry.Node;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.api.vocabulary.Country;
+import org.gbif.api.vocabulary.Language;
+import org.gbif.api.vocabulary.NodeType;
+import org.gbif.api.vocabulary.ParticipationStatus;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.persistence.mapper.NodeMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.persistence.service.EntityTitleResolver;
+import org.gbif.registry.service.TitleCache;
+import org.gbif.registry.ws.config.MyBatisConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.mybatis.spring.annotation.MapperScan;
+import org.mybatis.spring.boot.autoconfigure.MybatisAutoConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Title lookups of a set of organizations: one query per key, one query for the whole set and the
+ * {@link TitleCache} once warm.
+ *
+ * <p>The lookups run the registry mappers against a PostgreSQL database, nothing is stubbed, so
+ * every query is a real round trip. The schema is created or updated by Liquibase as in the
+ * integration tests. The database is given with the {@code
+ * spring.datasource.*} system properties and defaults to {@code registry_benchmark} on localhost.
+ * The organizations are created before and deleted after each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TitleLookupBenchmark {
+
+  private static final String USER = "benchmark";
+
+  @Param({"10", "100", "1000"})
+  private int keys;
+
+  private ConfigurableApplicationContext context;
+  private UUID nodeKey;
+  private List<UUID> organizationKeys;
+  private OrganizationMapper organizationMapper;
+  private EntityTitleResolver entityTitleResolver;
+  private TitleCache titleCache;
+
+  @Setup
+  public void setup() {
+    context =
+        new SpringApplicationBuilder(BenchmarkConfiguration.class)
+            .web(WebApplicationType.NONE)
+            .properties(
+                "spring.datasource.url=jdbc:postgresql://localhost:5432/registry_benchmark",
+                "spring.liquibase.change-log=classpath:liquibase/master.xml",
+                "spring.liquibase.default-schema=public")
+            .run();
+
+    NodeMapper nodeMapper = context.getBean(NodeMapper.class);
+    organizationMapper = context.getBean(OrganizationMapper.class);
+
+    Node node = new Node();
+    node.setKey(UUID.randomUUID());
+    node.setTitle("Benchmark node");
+    node.setType(NodeType.OTHER);
+    node.setParticipationStatus(ParticipationStatus.OBSERVER);
+    node.setCreatedBy(USER);
+    nodeMapper.create(node);
+    nodeKey = node.getKey();
+
+    organizationKeys = new ArrayList<>(keys);
+    for (int i = 0; i < keys; i++) {
+      Organization organization = new Organization();
+      organization.setKey(UUID.randomUUID());
+      organization.setEndorsingNodeKey(nodeKey);
+      organization.setTitle("Organization " + i);
+      organization.setLanguage(Language.ENGLISH);
+      organization.setCountry(Country.DENMARK);
+      organization.setPassword("password");
+      organization.setCreatedBy(USER);
+      organizationMapper.create(organization);
+      organizationKeys.add(organization.getKey());
+    }
+
+    entityTitleResolver = context.getBean(EntityTitleResolver.class);
+    titleCache = new TitleCache(entityTitleResolver, 100_000, 60, new NoOpEventManager());
+    titleCache.getTitles(Organization.class, organizationKeys);
+  }
+
+  @TearDown
+  public void tearDown() {
+    JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+    jdbcTemplate.update("DELETE FROM organization WHERE endorsing_node_key = ?", nodeKey);
+    jdbcTemplate.update("DELETE FROM node WHERE key = ?", nodeKey);
+    context.close();
+  }
+
+  /** The former implementation of the titles endpoints. */
+  @Benchmark
+  public Map<UUID, String> queryPerKey() {
+    Map<UUID, String> titles = new HashMap<>();
+    for (UUID key : organizationKeys) {
+      titles.put(key, organizationMapper.title(key));
+    }
+    return titles;
+  }
+
+  @Benchmark
+  public Map<UUID, String> singleQuery() {
+    return entityTitleResolver.resolve(Organization.class, organizationKeys);
+  }
+
+  @Benchmark
+  public Map<UUID, String> cached() {
+    return titleCache.getTitles(Organization.class, organizationKeys);
+  }
+
+  /** The data source, Liquibase and the registry mappers, nothing else of the web services. */
+  @SpringBootConfiguration
+  @ImportAutoConfiguration({
+    DataSourceAutoConfiguration.class,
+    DataSourceTransactionManagerAutoConfiguration.class,
+    JdbcTemplateAutoConfiguration.class,
+    LiquibaseAutoConfiguration.class,
+    MybatisAutoConfiguration.class
+  })
+  @Import({MyBatisConfiguration.class, EntityTitleResolver.class})
+  @MapperScan("org.gbif.registry.persistence.mapper")
+  static class BenchmarkConfiguration {}
+
+  /** Nothing changes during the benchmark, the cache never needs to be invalidated. */
+  private static class NoOpEventManager implements EventManager {
+
+    @Override
+    public void post(Object object) {}
+
+    @Override
+    public void register(Object object) {}
+
+    @Override
+    public void unregister(Object object) {}
+  }
+}
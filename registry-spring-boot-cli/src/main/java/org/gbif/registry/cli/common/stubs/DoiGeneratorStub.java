@@ -62,6 +62,12 @@ public class DoiGeneratorStub implements DoiGenerator {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public void registerDownload(DOI doi, String xml, String downloadKey)
+      throws InvalidMetadataException {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public void registerDataPackage(DOI doi, DataCiteMetadata metadata)
       throws InvalidMetadataException {
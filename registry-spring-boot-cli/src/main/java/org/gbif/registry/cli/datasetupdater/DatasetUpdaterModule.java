@@ -21,7 +21,9 @@ import org.gbif.registry.cli.common.stubs.DoiHandlerStrategyStub;
 import org.gbif.registry.cli.common.stubs.EditorAuthorizationServiceStub;
 import org.gbif.registry.cli.common.stubs.EventManagerStub;
 import org.gbif.registry.cli.common.stubs.SearchServiceStub;
+import org.gbif.registry.service.ParsedMetadataCache;
 import org.gbif.registry.service.RegistryDatasetServiceImpl;
+import org.gbif.registry.service.TitleCache;
 import org.gbif.registry.ws.resources.DatasetResource;
 
 import org.springframework.context.ApplicationContext;
@@ -45,7 +47,9 @@ public class DatasetUpdaterModule {
             DoiHandlerStrategyStub.class,
             EditorAuthorizationServiceStub.class,
             EventManagerStub.class,
+            ParsedMetadataCache.class,
             RegistryDatasetServiceImpl.class,
+            TitleCache.class,
             DatasetResource.class)
         .build();
   }
@@ -28,7 +28,9 @@ import org.gbif.api.vocabulary.ContactType;
 import org.gbif.api.vocabulary.Country;
 import org.gbif.api.vocabulary.IdentifierType;
 import org.gbif.registry.persistence.mapper.NodeMapper;
+import org.gbif.registry.persistence.mapper.paging.KeysetCursor;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -209,6 +211,11 @@ public class RegistryNodeMockMapper implements NodeMapper {
     return null;
   }
 
+  @Override
+  public List<Node> listTitles(@Param("keys") Collection<UUID> keys) {
+    return null;
+  }
+
   @Override
   public void create(Node entity) {
     created.add(entity);
@@ -257,6 +264,44 @@ public class RegistryNodeMockMapper implements NodeMapper {
     return null;
   }
 
+  @Override
+  public List<Node> listAfter(
+      @Nullable @Param("after") KeysetCursor after, @Param("limit") int limit) {
+    return null;
+  }
+
+  @Override
+  public KeysetCursor cursorAfter(@Param("key") UUID key) {
+    return null;
+  }
+
+  @Override
+  public List<Node> searchAfter(
+      @Nullable @Param("query") String query,
+      @Nullable @Param("after") KeysetCursor after,
+      @Param("limit") int limit) {
+    return null;
+  }
+
+  @Override
+  public List<Node> listByIdentifierAfter(
+      @Nullable @Param("type") IdentifierType type,
+      @Param("identifier") String identifier,
+      @Nullable @Param("after") KeysetCursor after,
+      @Param("limit") int limit) {
+    return null;
+  }
+
+  @Override
+  public List<Node> listByMachineTagAfter(
+      @Param("namespace") String namespace,
+      @Nullable @Param("name") String name,
+      @Nullable @Param("value") String value,
+      @Nullable @Param("after") KeysetCursor after,
+      @Param("limit") int limit) {
+    return null;
+  }
+
   @Override
   public int addTag(@Param("targetEntityKey") UUID entityKey, @Param("tagKey") int tagKey) {
     return 0;
@@ -37,7 +37,7 @@ import static feign.Util.checkState;
 import static feign.Util.emptyToNull;
 import static org.springframework.core.annotation.AnnotationUtils.synthesizeAnnotation;
 
-class HierarchicalContract extends SpringMvcContract {
+public class HierarchicalContract extends SpringMvcContract {
 
   private ResourceLoader resourceLoader;
 
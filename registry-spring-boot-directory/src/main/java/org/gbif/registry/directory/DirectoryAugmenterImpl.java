@@ -21,9 +21,6 @@ import org.gbif.api.model.directory.ParticipantPerson;
 import org.gbif.api.model.directory.Person;
 import org.gbif.api.model.registry.Contact;
 import org.gbif.api.model.registry.Node;
-import org.gbif.api.service.directory.NodeService;
-import org.gbif.api.service.directory.ParticipantService;
-import org.gbif.api.service.directory.PersonService;
 import org.gbif.api.vocabulary.ContactType;
 import org.gbif.api.vocabulary.Country;
 
@@ -43,20 +40,19 @@ import com.google.common.primitives.Ints;
 
 import static org.gbif.registry.directory.DirectoryRegistryMapping.findParticipantID;
 
+/**
+ * Augments the registry nodes with the Directory information, looked up in the {@link
+ * DirectorySnapshotCache}.
+ */
 @Service
 public class DirectoryAugmenterImpl implements Augmenter {
 
   private static final Logger LOG = LoggerFactory.getLogger(DirectoryAugmenterImpl.class);
 
-  private ParticipantService participantService;
-  private NodeService nodeService;
-  private PersonService personService;
+  private final DirectorySnapshotCache directory;
 
-  public DirectoryAugmenterImpl(
-      ParticipantService participantService, NodeService nodeService, PersonService personService) {
-    this.participantService = participantService;
-    this.nodeService = nodeService;
-    this.personService = personService;
+  public DirectoryAugmenterImpl(DirectorySnapshotCache directory) {
+    this.directory = directory;
   }
 
   @Override
@@ -65,7 +61,7 @@ public class DirectoryAugmenterImpl implements Augmenter {
       try {
         Integer participantID = findParticipantID(registryNode);
         if (participantID != null) {
-          Participant participant = participantService.get(participantID);
+          Participant participant = directory.getParticipant(participantID);
           if (participant != null) {
             List<Contact> contacts = Lists.newArrayList();
             // update node with Directory info if it exists
@@ -115,7 +111,7 @@ public class DirectoryAugmenterImpl implements Augmenter {
     List<org.gbif.api.model.directory.Node> nodes = Lists.newArrayList();
     if (participant.getNodes() != null) {
       for (org.gbif.api.model.directory.Node node : participant.getNodes()) {
-        nodes.add(nodeService.get(node.getId()));
+        nodes.add(directory.getNode(node.getId()));
       }
     }
     return nodes;
@@ -187,7 +183,7 @@ public class DirectoryAugmenterImpl implements Augmenter {
       Contact contact;
       ContactType contactType;
       for (ParticipantPerson participantPerson : participant.getPeople()) {
-        person = personService.get(participantPerson.getPersonId());
+        person = directory.getPerson(participantPerson.getPersonId());
         contactType = null;
         if (participantPerson.getRole() != null) {
           contactType =
@@ -215,7 +211,7 @@ public class DirectoryAugmenterImpl implements Augmenter {
       for (org.gbif.api.model.directory.Node currentNode : directoryNodes) {
         if (currentNode.getPeople() != null && !currentNode.getPeople().isEmpty()) {
           for (NodePerson nodePerson : currentNode.getPeople()) {
-            person = personService.get(nodePerson.getPersonId());
+            person = directory.getPerson(nodePerson.getPersonId());
             contactType = null;
             if (nodePerson.getRole() != null) {
               contactType =
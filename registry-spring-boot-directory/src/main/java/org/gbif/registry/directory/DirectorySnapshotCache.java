@@ -0,0 +1,337 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.directory;
+
+import org.gbif.api.model.common.paging.PagingRequest;
+import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.directory.Node;
+import org.gbif.api.model.directory.Participant;
+import org.gbif.api.model.directory.Person;
+import org.gbif.api.service.directory.NodeService;
+import org.gbif.api.service.directory.ParticipantService;
+import org.gbif.api.service.directory.PersonService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * In memory copy of the participants, nodes and people of the Directory, bulk loaded a page at a
+ * time and refreshed on a schedule, so augmenting a page of nodes doesn't cost several remote calls
+ * per node.
+ *
+ * <p>The current copy is served while a new one is loaded, and kept when loading fails: the
+ * refresh is then retried on the next lookup, at most once per retry interval. Lookups of entities
+ * missing from the copy, or made before a first copy was loaded, go to the Directory.
+ */
+@Component
+public class DirectorySnapshotCache implements MeterBinder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DirectorySnapshotCache.class);
+
+  private final ParticipantService participantService;
+  private final NodeService nodeService;
+  private final PersonService personService;
+  private final long refreshMs;
+  private final long retryMs;
+  private final int pageSize;
+  private final ScheduledExecutorService scheduler;
+
+  private volatile Snapshot snapshot;
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  private final AtomicBoolean revalidating = new AtomicBoolean();
+  private volatile long lastAttempt;
+
+  private final AtomicLong successfulRefreshes = new AtomicLong();
+  private final AtomicLong failedRefreshes = new AtomicLong();
+  private final AtomicLong remoteLookups = new AtomicLong();
+
+  @Autowired
+  public DirectorySnapshotCache(
+      ParticipantService participantService,
+      NodeService nodeService,
+      PersonService personService,
+      @Value("${directory.snapshot.refreshMinutes:60}") long refreshMinutes,
+      @Value("${directory.snapshot.retrySeconds:60}") long retrySeconds,
+      @Value("${directory.snapshot.pageSize:1000}") int pageSize) {
+    this(
+        participantService,
+        nodeService,
+        personService,
+        TimeUnit.MINUTES.toMillis(refreshMinutes),
+        TimeUnit.SECONDS.toMillis(retrySeconds),
+        pageSize,
+        refreshMinutes > 0);
+  }
+
+  /**
+   * @param refreshMs how old a copy gets before it is replaced, 0 to never load a copy and always
+   *     call the Directory
+   * @param retryMs the minimum time between two attempts to load a copy
+   * @param pageSize the number of entities loaded per call
+   * @param scheduled whether copies are loaded in the background, from now on and then every
+   *     {@code refreshMs}, or only when {@link #refresh()} is called
+   */
+  public DirectorySnapshotCache(
+      ParticipantService participantService,
+      NodeService nodeService,
+      PersonService personService,
+      long refreshMs,
+      long retryMs,
+      int pageSize,
+      boolean scheduled) {
+    Preconditions.checkArgument(refreshMs >= 0, "The refresh interval can't be negative");
+    Preconditions.checkArgument(pageSize > 0, "The page size must be positive");
+    this.participantService = participantService;
+    this.nodeService = nodeService;
+    this.personService = personService;
+    this.refreshMs = refreshMs;
+    this.retryMs = retryMs;
+    this.pageSize = pageSize;
+    if (scheduled && refreshMs > 0) {
+      scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder()
+                  .setNameFormat("directory-snapshot")
+                  .setDaemon(true)
+                  .build());
+      scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshMs, TimeUnit.MILLISECONDS);
+    } else {
+      scheduler = null;
+    }
+  }
+
+  public Participant getParticipant(Integer id) {
+    Participant participant = current().participants.get(id);
+    if (participant == null) {
+      remoteLookups.incrementAndGet();
+      participant = participantService.get(id);
+    }
+    return participant;
+  }
+
+  public Node getNode(Integer id) {
+    Node node = current().nodes.get(id);
+    if (node == null) {
+      remoteLookups.incrementAndGet();
+      node = nodeService.get(id);
+    }
+    return node;
+  }
+
+  public Person getPerson(Integer id) {
+    Person person = current().people.get(id);
+    if (person == null) {
+      remoteLookups.incrementAndGet();
+      person = personService.get(id);
+    }
+    return person;
+  }
+
+  /**
+   * Loads a new copy of the Directory, keeping the current one if that fails.
+   *
+   * @return true if a new copy was loaded
+   */
+  public boolean refresh() {
+    if (!refreshing.compareAndSet(false, true)) {
+      return false;
+    }
+    lastAttempt = System.currentTimeMillis();
+    try {
+      Snapshot loaded =
+          new Snapshot(
+              loadAll(participantService::list, Participant::getId),
+              loadAll(nodeService::list, Node::getId),
+              loadAll(personService::list, Person::getId));
+      snapshot = loaded;
+      successfulRefreshes.incrementAndGet();
+      LOG.info(
+          "Loaded {} participants, {} nodes and {} people from the Directory",
+          loaded.participants.size(),
+          loaded.nodes.size(),
+          loaded.people.size());
+      return true;
+    } catch (RuntimeException e) {
+      // never let the scheduler die
+      failedRefreshes.incrementAndGet();
+      LOG.error("Failed to load the Directory, keeping the previous copy", e);
+      return false;
+    } finally {
+      refreshing.set(false);
+    }
+  }
+
+  /** @return the current copy, after asking for a new one in the background if it is stale */
+  private Snapshot current() {
+    Snapshot current = snapshot;
+    long now = System.currentTimeMillis();
+    if (scheduler != null
+        && (current == null || now - current.loaded >= refreshMs)
+        && now - lastAttempt >= retryMs
+        && revalidating.compareAndSet(false, true)) {
+      try {
+        scheduler.execute(
+            () -> {
+              try {
+                refresh();
+              } finally {
+                revalidating.set(false);
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        // closed
+        revalidating.set(false);
+      }
+    }
+    return current != null ? current : Snapshot.EMPTY;
+  }
+
+  private <T> Map<Integer, T> loadAll(
+      BiFunction<String, PagingRequest, PagingResponse<T>> list, Function<T, Integer> id) {
+    Map<Integer, T> entities = new HashMap<>();
+    PagingRequest page = new PagingRequest(0, pageSize);
+    while (true) {
+      PagingResponse<T> response = list.apply(null, page);
+      List<T> results = response.getResults();
+      for (T entity : results) {
+        entities.put(id.apply(entity), entity);
+      }
+      // the Directory may return less than asked for, a short page isn't necessarily the last
+      if (response.isEndOfRecords() || results.isEmpty()) {
+        return ImmutableMap.copyOf(entities);
+      }
+      page.setOffset(page.getOffset() + results.size());
+    }
+  }
+
+  /** Stops the background refreshes. */
+  @PreDestroy
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /** @return the age of the current copy in seconds, NaN if none was loaded yet */
+  public double getAgeSeconds() {
+    Snapshot current = snapshot;
+    return current == null ? Double.NaN : (System.currentTimeMillis() - current.loaded) / 1000d;
+  }
+
+  public long getSuccessfulRefreshes() {
+    return successfulRefreshes.get();
+  }
+
+  public long getFailedRefreshes() {
+    return failedRefreshes.get();
+  }
+
+  /** @return the number of lookups that were not served by the copy */
+  public long getRemoteLookups() {
+    return remoteLookups.get();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("registry.directory.snapshot.age", this, DirectorySnapshotCache::getAgeSeconds)
+        .description("Age of the copy of the Directory serving the node augmentation")
+        .baseUnit("seconds")
+        .register(registry);
+    bindSize(registry, "participant", s -> s.participants.size());
+    bindSize(registry, "node", s -> s.nodes.size());
+    bindSize(registry, "person", s -> s.people.size());
+    bindRefreshes(registry, "success", DirectorySnapshotCache::getSuccessfulRefreshes);
+    bindRefreshes(registry, "failure", DirectorySnapshotCache::getFailedRefreshes);
+    FunctionCounter.builder(
+            "registry.directory.remote.lookups", this, DirectorySnapshotCache::getRemoteLookups)
+        .description("Directory lookups not served by the copy of the Directory")
+        .register(registry);
+  }
+
+  private void bindSize(MeterRegistry registry, String type, ToDoubleFunction<Snapshot> size) {
+    Gauge.builder(
+            "registry.directory.snapshot.entities",
+            this,
+            c -> c.snapshot == null ? 0 : size.applyAsDouble(c.snapshot))
+        .tag("type", type)
+        .description("Entities in the copy of the Directory")
+        .register(registry);
+  }
+
+  private void bindRefreshes(
+      MeterRegistry registry, String result, ToDoubleFunction<DirectorySnapshotCache> count) {
+    FunctionCounter.builder("registry.directory.snapshot.refreshes", this, count)
+        .tag("result", result)
+        .description("Attempts to load a copy of the Directory")
+        .register(registry);
+  }
+
+  private static final class Snapshot {
+
+    private static final Snapshot EMPTY =
+        new Snapshot(ImmutableMap.of(), ImmutableMap.of(), ImmutableMap.of(), 0);
+
+    private final Map<Integer, Participant> participants;
+    private final Map<Integer, Node> nodes;
+    private final Map<Integer, Person> people;
+    private final long loaded;
+
+    private Snapshot(
+        Map<Integer, Participant> participants,
+        Map<Integer, Node> nodes,
+        Map<Integer, Person> people) {
+      this(participants, nodes, people, System.currentTimeMillis());
+    }
+
+    private Snapshot(
+        Map<Integer, Participant> participants,
+        Map<Integer, Node> nodes,
+        Map<Integer, Person> people,
+        long loaded) {
+      this.participants = participants;
+      this.nodes = nodes;
+      this.people = people;
+      this.loaded = loaded;
+    }
+  }
+}
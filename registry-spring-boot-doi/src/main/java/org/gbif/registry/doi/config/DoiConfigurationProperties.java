@@ -30,6 +30,12 @@ public class DoiConfigurationProperties {
 
   private List<UUID> datasetParentExcludeList = Collections.emptyList();
 
+  /** The number of DOI suffixes reserved at once. */
+  private int suffixBlockSize = 100;
+
+  /** The number of constituent datasets listed at most in the DataCite metadata of a download. */
+  private int downloadConstituentsLimit = 10_000;
+
   public String getPrefix() {
     return prefix;
   }
@@ -45,4 +51,20 @@ public class DoiConfigurationProperties {
   public void setDatasetParentExcludeList(List<UUID> datasetParentExcludeList) {
     this.datasetParentExcludeList = datasetParentExcludeList;
   }
+
+  public int getSuffixBlockSize() {
+    return suffixBlockSize;
+  }
+
+  public void setSuffixBlockSize(int suffixBlockSize) {
+    this.suffixBlockSize = suffixBlockSize;
+  }
+
+  public int getDownloadConstituentsLimit() {
+    return downloadConstituentsLimit;
+  }
+
+  public void setDownloadConstituentsLimit(int downloadConstituentsLimit) {
+    this.downloadConstituentsLimit = downloadConstituentsLimit;
+  }
 }
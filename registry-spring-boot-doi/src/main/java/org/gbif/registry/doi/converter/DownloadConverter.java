@@ -73,6 +73,10 @@ import static org.gbif.registry.doi.util.RegistryDoiUtils.getYear;
 
 public final class DownloadConverter {
 
+  private static final String CONSTITUENTS_HEADER_END = "constituent datasets:";
+  private static final String FULL_LIST_OF_CONSTITUENTS =
+      "\nPlease see %s for full list of all constituents.";
+
   private DownloadConverter() {}
 
   /** Convert a download and its dataset usages into a datacite metadata instance. */
@@ -121,10 +125,7 @@ public final class DownloadConverter {
   }
 
   private static void convertRightsList(DataCiteMetadata.Builder<Void> builder, Download download) {
-    License downloadLicense =
-        download.getLicense() != null && download.getLicense().isConcrete()
-            ? download.getLicense()
-            : DEFAULT_DOWNLOAD_LICENSE;
+    License downloadLicense = license(download);
 
     builder.withRightsList(
         RightsList.builder()
@@ -186,14 +187,8 @@ public final class DownloadConverter {
                 Description.builder()
                     .withDescriptionType(DescriptionType.ABSTRACT)
                     .withLang(ENGLISH)
-                    .addContent(
-                        String.format(
-                            "A dataset containing %s species occurrences available in GBIF matching the query:\n%s\n\n",
-                            download.getTotalRecords(), getFilterQuery(download, titleLookup)))
-                    .addContent(
-                        String.format(
-                            "The dataset includes %s records from %s constituent datasets:\n",
-                            download.getTotalRecords(), download.getNumberDatasets()))
+                    .addContent(queryDescription(download, titleLookup))
+                    .addContent(constituentsDescription(download) + "\n")
                     .addContent(getDescriptionDatasetOccurrenceDownloadUsage(usedDatasets))
                     .build())
             .build());
@@ -265,10 +260,9 @@ public final class DownloadConverter {
       final String description =
           Joiner.on("\n").join(dm.getDescriptions().getDescription().get(0).getContent());
       final String truncatedDescriptionContent =
-          StringUtils.substringBefore(description, "constituent datasets:")
-              + String.format(
-                  "constituent datasets:\nPlease see %s for full list of all constituents.",
-                  target);
+          StringUtils.substringBefore(description, CONSTITUENTS_HEADER_END)
+              + CONSTITUENTS_HEADER_END
+              + fullListOfConstituents(target);
 
       final Descriptions truncatedDescription =
           Descriptions.builder()
@@ -309,14 +303,7 @@ public final class DownloadConverter {
 
     if (!usedDatasets.isEmpty()) {
       for (DatasetOccurrenceDownloadUsage du : usedDatasets) {
-        if (!Strings.isNullOrEmpty(du.getDatasetTitle())) {
-          result
-              .append(" ")
-              .append(du.getNumberRecords())
-              .append(" records from ")
-              .append(du.getDatasetTitle())
-              .append(".\n");
-        }
+        appendConstituent(result, du);
       }
       result.append("\n");
       result.append(LICENSE_INFO);
@@ -325,6 +312,44 @@ public final class DownloadConverter {
     return result.toString();
   }
 
+  /** The license of the download, the default one unless it has a concrete license. */
+  static License license(Download download) {
+    return download.getLicense() != null && download.getLicense().isConcrete()
+        ? download.getLicense()
+        : DEFAULT_DOWNLOAD_LICENSE;
+  }
+
+  /** The first part of the download description, with its query. */
+  static String queryDescription(Download download, TitleLookupService titleLookup) {
+    return String.format(
+        "A dataset containing %s species occurrences available in GBIF matching the query:\n%s\n\n",
+        download.getTotalRecords(), getFilterQuery(download, titleLookup));
+  }
+
+  /** The header of the list of constituents of the download description, without a new line. */
+  static String constituentsDescription(Download download) {
+    return String.format(
+        "The dataset includes %s records from %s " + CONSTITUENTS_HEADER_END,
+        download.getTotalRecords(), download.getNumberDatasets());
+  }
+
+  /** What follows the header instead of the list of constituents when it is too long. */
+  static String fullListOfConstituents(URI target) {
+    return String.format(FULL_LIST_OF_CONSTITUENTS, target);
+  }
+
+  /** Appends the line of a constituent to the download description, if it has a title. */
+  static void appendConstituent(StringBuilder description, DatasetOccurrenceDownloadUsage du) {
+    if (!Strings.isNullOrEmpty(du.getDatasetTitle())) {
+      description
+          .append(" ")
+          .append(du.getNumberRecords())
+          .append(" records from ")
+          .append(du.getDatasetTitle())
+          .append(".\n");
+    }
+  }
+
   private static RelatedIdentifiers getRelatedIdentifiersDatasetOccurrenceDownloadUsage(
       List<DatasetOccurrenceDownloadUsage> usedDatasets) {
     final RelatedIdentifiers.Builder relatedIdentifiersBuilder = RelatedIdentifiers.builder();
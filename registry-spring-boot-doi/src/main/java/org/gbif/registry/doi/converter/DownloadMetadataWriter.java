@@ -0,0 +1,258 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.doi.converter;
+
+import org.gbif.api.model.common.GbifUser;
+import org.gbif.api.model.occurrence.Download;
+import org.gbif.api.model.registry.DatasetOccurrenceDownloadUsage;
+import org.gbif.api.vocabulary.IdentifierType;
+import org.gbif.api.vocabulary.License;
+import org.gbif.doi.metadata.datacite.DateType;
+import org.gbif.doi.metadata.datacite.DescriptionType;
+import org.gbif.doi.metadata.datacite.NameType;
+import org.gbif.doi.metadata.datacite.RelatedIdentifierType;
+import org.gbif.doi.metadata.datacite.RelationType;
+import org.gbif.doi.metadata.datacite.ResourceType;
+import org.gbif.occurrence.query.TitleLookupService;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.util.Iterator;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.google.common.base.Preconditions;
+
+import static org.gbif.registry.doi.util.DataCiteConstants.DOWNLOAD_TITLE;
+import static org.gbif.registry.doi.util.DataCiteConstants.DWCA_FORMAT;
+import static org.gbif.registry.doi.util.DataCiteConstants.ENGLISH;
+import static org.gbif.registry.doi.util.DataCiteConstants.GBIF_PUBLISHER;
+import static org.gbif.registry.doi.util.DataCiteConstants.LICENSE_INFO;
+import static org.gbif.registry.doi.util.RegistryDoiUtils.fdate;
+import static org.gbif.registry.doi.util.RegistryDoiUtils.getYear;
+
+/**
+ * Writes the DataCite metadata of a download straight to XML, reading its dataset usages one at a
+ * time.
+ *
+ * <p>The document is the one of {@link DownloadConverter}, except the related identifiers and the
+ * description only list the first {@code maxConstituents} datasets: the description then refers to
+ * the landing page of the download instead, like {@link DownloadConverter#truncateDescription}.
+ * The remaining usages are never read, and neither the usages nor a JAXB tree of the document are
+ * kept in memory.
+ */
+public class DownloadMetadataWriter {
+
+  private static final String DATACITE_NAMESPACE = "http://datacite.org/schema/kernel-4";
+  private static final String SCHEMA_LOCATION =
+      DATACITE_NAMESPACE + " http://schema.datacite.org/meta/kernel-4/metadata.xsd";
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  private final TitleLookupService titleLookup;
+  private final int maxConstituents;
+
+  /** @param maxConstituents the number of dataset usages listed at most */
+  public DownloadMetadataWriter(TitleLookupService titleLookup, int maxConstituents) {
+    Preconditions.checkArgument(maxConstituents >= 0, "maxConstituents can't be negative");
+    this.titleLookup = titleLookup;
+    this.maxConstituents = maxConstituents;
+  }
+
+  /**
+   * @param usages the dataset usages of the download, consumed up to the limit
+   * @param target the landing page of the download, which has the full list of constituents
+   * @return the DataCite XML document of the download
+   */
+  public String toXml(
+      Download download,
+      GbifUser creator,
+      Iterator<DatasetOccurrenceDownloadUsage> usages,
+      URI target)
+      throws XMLStreamException {
+    StringWriter writer = new StringWriter();
+    write(download, creator, usages, target, writer);
+    return writer.toString();
+  }
+
+  /** Writes the DataCite XML document of the download, see {@link #toXml}. */
+  public void write(
+      Download download,
+      GbifUser creator,
+      Iterator<DatasetOccurrenceDownloadUsage> usages,
+      URI target,
+      Writer writer)
+      throws XMLStreamException {
+    Preconditions.checkNotNull(
+        download.getDoi(), "Download DOI required to build valid DOI metadata");
+    Preconditions.checkNotNull(
+        download.getCreated(), "Download created date required to build valid DOI metadata");
+    Preconditions.checkNotNull(creator, "Download creator required to build valid DOI metadata");
+    Preconditions.checkNotNull(
+        download.getRequest(), "Download request required to build valid DOI metadata");
+
+    XMLStreamWriter xml = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+    xml.writeStartDocument("UTF-8", "1.0");
+    xml.setDefaultNamespace(DATACITE_NAMESPACE);
+    xml.writeStartElement(DATACITE_NAMESPACE, "resource");
+    xml.writeDefaultNamespace(DATACITE_NAMESPACE);
+    xml.writeNamespace("xsi", XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+    xml.writeAttribute(
+        "xsi", XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "schemaLocation", SCHEMA_LOCATION);
+
+    // same elements in the same order as the JAXB model
+    element(xml, "identifier", "identifierType", IdentifierType.DOI.name())
+        .writeCharacters(download.getDoi().getDoiName());
+    xml.writeEndElement();
+
+    xml.writeStartElement("creators");
+    xml.writeStartElement("creator");
+    element(xml, "creatorName", "nameType", NameType.ORGANIZATIONAL.value())
+        .writeCharacters(creator.getName());
+    xml.writeEndElement();
+    xml.writeEndElement();
+    xml.writeEndElement();
+
+    xml.writeStartElement("titles");
+    text(xml, "title", DOWNLOAD_TITLE);
+    xml.writeEndElement();
+
+    text(xml, "publisher", GBIF_PUBLISHER);
+    text(xml, "publicationYear", getYear(download.getCreated()));
+    element(xml, "resourceType", "resourceTypeGeneral", ResourceType.DATASET.value());
+    xml.writeEndElement();
+
+    xml.writeStartElement("subjects");
+    for (String subject : new String[] {"GBIF", "biodiversity", "species occurrences"}) {
+      english(xml, "subject").writeCharacters(subject);
+      xml.writeEndElement();
+    }
+    xml.writeEndElement();
+
+    xml.writeStartElement("dates");
+    element(xml, "date", "dateType", DateType.CREATED.value())
+        .writeCharacters(fdate(download.getCreated()));
+    xml.writeEndElement();
+    element(xml, "date", "dateType", DateType.UPDATED.value())
+        .writeCharacters(fdate(download.getModified()));
+    xml.writeEndElement();
+    xml.writeEndElement();
+
+    xml.writeStartElement("alternateIdentifiers");
+    element(xml, "alternateIdentifier", "alternateIdentifierType", "GBIF")
+        .writeCharacters(download.getKey());
+    xml.writeEndElement();
+    xml.writeEndElement();
+
+    // the constituents are listed in the description further down
+    StringBuilder constituents = new StringBuilder();
+    boolean truncated = writeRelatedIdentifiers(xml, usages, constituents);
+
+    xml.writeStartElement("sizes");
+    text(xml, "size", Long.toString(download.getSize()));
+    xml.writeEndElement();
+
+    xml.writeStartElement("formats");
+    text(xml, "format", DWCA_FORMAT);
+    xml.writeEndElement();
+
+    License license = DownloadConverter.license(download);
+    xml.writeStartElement("rightsList");
+    element(xml, "rights", "rightsURI", license.getLicenseUrl())
+        .writeCharacters(license.getLicenseTitle());
+    xml.writeEndElement();
+    xml.writeEndElement();
+
+    xml.writeStartElement("descriptions");
+    element(xml, "description", "descriptionType", DescriptionType.ABSTRACT.value());
+    xml.writeAttribute("xml", XMLConstants.XML_NS_URI, "lang", ENGLISH);
+    xml.writeCharacters(DownloadConverter.queryDescription(download, titleLookup));
+    xml.writeCharacters(DownloadConverter.constituentsDescription(download));
+    if (truncated) {
+      xml.writeCharacters(DownloadConverter.fullListOfConstituents(target));
+    } else {
+      xml.writeCharacters("\n");
+      xml.writeCharacters(constituents.toString());
+    }
+    xml.writeEndElement();
+    xml.writeEndElement();
+
+    xml.writeEndElement();
+    xml.writeEndDocument();
+    xml.flush();
+    xml.close();
+  }
+
+  /**
+   * Writes the related identifiers of the first constituents, and appends their description to the
+   * given builder.
+   *
+   * @return true if there are more constituents than listed
+   */
+  private boolean writeRelatedIdentifiers(
+      XMLStreamWriter xml,
+      Iterator<DatasetOccurrenceDownloadUsage> usages,
+      StringBuilder constituents)
+      throws XMLStreamException {
+    xml.writeStartElement("relatedIdentifiers");
+    int listed = 0;
+    while (listed < maxConstituents && usages.hasNext()) {
+      DatasetOccurrenceDownloadUsage usage = usages.next();
+      if (usage.getDatasetDOI() != null) {
+        xml.writeStartElement("relatedIdentifier");
+        xml.writeAttribute("relatedIdentifierType", RelatedIdentifierType.DOI.value());
+        xml.writeAttribute("relationType", RelationType.REFERENCES.value());
+        xml.writeCharacters(usage.getDatasetDOI().getDoiName());
+        xml.writeEndElement();
+      }
+      DownloadConverter.appendConstituent(constituents, usage);
+      listed++;
+    }
+    xml.writeEndElement();
+
+    if (listed > 0) {
+      constituents.append("\n").append(LICENSE_INFO);
+    }
+    return usages.hasNext();
+  }
+
+  /** Starts an element with an attribute, the caller writes its content and ends it. */
+  private static XMLStreamWriter element(
+      XMLStreamWriter xml, String name, String attribute, String value)
+      throws XMLStreamException {
+    xml.writeStartElement(name);
+    xml.writeAttribute(attribute, value);
+    return xml;
+  }
+
+  /** Starts an element in English, the caller writes its content and ends it. */
+  private static XMLStreamWriter english(XMLStreamWriter xml, String name)
+      throws XMLStreamException {
+    xml.writeStartElement(name);
+    xml.writeAttribute("xml", XMLConstants.XML_NS_URI, "lang", ENGLISH);
+    return xml;
+  }
+
+  private static void text(XMLStreamWriter xml, String name, String value)
+      throws XMLStreamException {
+    xml.writeStartElement(name);
+    xml.writeCharacters(value);
+    xml.writeEndElement();
+  }
+}
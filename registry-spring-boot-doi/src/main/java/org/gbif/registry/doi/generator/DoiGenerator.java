@@ -92,6 +92,15 @@ public interface DoiGenerator {
   void registerDownload(DOI doi, DataCiteMetadata metadata, String downloadKey)
       throws InvalidMetadataException;
 
+  /**
+   * Same as {@link #registerDownload(DOI, DataCiteMetadata, String)} for metadata already written
+   * as a DataCite XML document.
+   *
+   * @param xml the DataCite XML document of the download, validated immediately
+   * @throws InvalidMetadataException in case the document is not valid DataCite metadata
+   */
+  void registerDownload(DOI doi, String xml, String downloadKey) throws InvalidMetadataException;
+
   /**
    * Schedules a DOI metadata update with DataCite and registers the DOI if needed. For subsequent
    * calls with the same DOI only the metadata in DataCite will be updated. If it is called for the
@@ -32,9 +32,6 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.UUID;
 
-import javax.annotation.Nullable;
-
-import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,7 +39,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
-import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -52,15 +49,19 @@ public class DoiGeneratorMQ implements DoiGenerator {
 
   private static final Logger LOG = LoggerFactory.getLogger(DoiGeneratorMQ.class);
 
+  private static final String DATASET_SHOULDER = "";
+  private static final String DOWNLOAD_SHOULDER = "dl.";
+  private static final String DATA_PACKAGE_SHOULDER = "dp.";
+
   private final DoiMapper doiMapper;
   private final MessagePublisher messagePublisher;
 
   private final URI datasetTarget;
   private final URI downloadTarget;
   private final URI dataPackageTarget;
-  private static final int RANDOM_LENGTH = 6;
 
   private final String prefix;
+  private final DoiSuffixAllocator suffixAllocator;
 
   public DoiGeneratorMQ(
       @Value("${portal.url}") URI portal,
@@ -76,47 +77,34 @@ public class DoiGeneratorMQ implements DoiGenerator {
     downloadTarget = portal.resolve("occurrence/download/");
     dataPackageTarget = portal.resolve("data_package/");
     this.messagePublisher = messagePublisher;
+    suffixAllocator =
+        new DoiSuffixAllocator(
+            doiMapper,
+            prefix,
+            ImmutableList.of(DATASET_SHOULDER, DOWNLOAD_SHOULDER, DATA_PACKAGE_SHOULDER),
+            doiConfigProperties.getSuffixBlockSize());
   }
 
   @Override
   public DOI newDatasetDOI() {
-    return newDOI("", DoiType.DATASET);
+    return newDOI(DATASET_SHOULDER, DoiType.DATASET);
   }
 
   @Override
   public DOI newDownloadDOI() {
-    return newDOI("dl.", DoiType.DOWNLOAD);
+    return newDOI(DOWNLOAD_SHOULDER, DoiType.DOWNLOAD);
   }
 
   @Override
   public DOI newDataPackageDOI() {
-    return newDOI("dp.", DoiType.DATA_PACKAGE);
-  }
-
-  private DOI newDOI(final String shoulder, DoiType type) {
-    // only try for hundred times then fail
-    for (int x = 0; x < 100; x++) {
-      DOI doi = random(shoulder);
-      try {
-        doiMapper.create(doi, type);
-        return doi;
-      } catch (Exception e) {
-        // might have hit a unique constraint, try another doi
-        LOG.debug(
-            "Exception: {}. Random {} DOI {} existed. Try another one", type, doi, e.getMessage());
-      }
-    }
-    throw new IllegalStateException("Tried 100 random DOIs and none worked, Giving up");
+    return newDOI(DATA_PACKAGE_SHOULDER, DoiType.DATA_PACKAGE);
   }
 
-  /**
-   * @return a random DOI with the given prefix. It is not guaranteed to be unique and might exist
-   *     already
-   */
-  private DOI random(@Nullable String shoulder) {
-    String suffix =
-        Strings.nullToEmpty(shoulder) + RandomStringUtils.randomAlphanumeric(RANDOM_LENGTH);
-    return new DOI(prefix, suffix);
+  /** Stores a new DOI, its code allocated from a sequence so it never exists already. */
+  private DOI newDOI(String shoulder, DoiType type) {
+    DOI doi = new DOI(prefix, shoulder + suffixAllocator.next());
+    doiMapper.create(doi, type);
+    return doi;
   }
 
   @Override
@@ -157,7 +145,21 @@ public class DoiGeneratorMQ implements DoiGenerator {
     checkNotNull(downloadKey, "Download key required");
     checkNotNull(messagePublisher, "No message publisher configured to send DoiChangeMessage");
 
-    String xml = DataCiteValidator.toXml(doi, metadata);
+    sendDownload(doi, DataCiteValidator.toXml(doi, metadata), downloadKey);
+  }
+
+  @Override
+  public void registerDownload(DOI doi, String xml, String downloadKey)
+      throws InvalidMetadataException {
+    checkNotNull(doi, "DOI required");
+    checkNotNull(downloadKey, "Download key required");
+    checkNotNull(messagePublisher, "No message publisher configured to send DoiChangeMessage");
+
+    DataCiteValidator.validateMetadata(xml);
+    sendDownload(doi, xml, downloadKey);
+  }
+
+  private void sendDownload(DOI doi, String xml, String downloadKey) {
     Message message =
         new ChangeDoiMessage(DoiStatus.REGISTERED, doi, xml, downloadTarget.resolve(downloadKey));
 
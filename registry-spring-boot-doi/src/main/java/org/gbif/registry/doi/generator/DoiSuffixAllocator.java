@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.doi.generator;
+
+import org.gbif.api.model.common.DOI;
+import org.gbif.registry.persistence.mapper.DoiMapper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Allocates unique DOI suffix codes of 6 lower case letters and digits from a database sequence.
+ *
+ * <p>Sequence values are reserved a block at a time, so a burst of new DOIs costs a single round
+ * trip per block. Each value is scrambled by a bijection of the 36^6 codes, so consecutive DOIs
+ * don't look consecutive, and distinct values always give distinct codes. The codes of a block
+ * already used by a DOI of any shoulder, drawn at random before the sequence existed, are skipped
+ * when the block is reserved. Values reserved but not used, like on a restart, are lost.
+ */
+public class DoiSuffixAllocator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DoiSuffixAllocator.class);
+
+  static final int CODE_LENGTH = 6;
+  // 36^6, the number of codes and the size of the gbif_doi_suffix_seq sequence
+  static final long CODES = 2_176_782_336L;
+  // odd and not a multiple of 3, so coprime with 36^6 and multiplying by it is a bijection
+  private static final long MULTIPLIER = 1_345_298_521L;
+  private static final long OFFSET = 918_273_645L;
+
+  private final DoiMapper doiMapper;
+  private final String prefix;
+  private final List<String> shoulders;
+  private final int blockSize;
+  private final Queue<String> codes = new ArrayDeque<>();
+
+  /**
+   * @param prefix the DOI prefix, to check the codes against the existing DOIs
+   * @param shoulders the shoulders the codes are used with
+   * @param blockSize the number of codes reserved per round trip
+   */
+  public DoiSuffixAllocator(
+      DoiMapper doiMapper, String prefix, List<String> shoulders, int blockSize) {
+    Preconditions.checkArgument(blockSize > 0, "The block size must be positive");
+    this.doiMapper = Preconditions.checkNotNull(doiMapper, "DoiMapper can't be null");
+    this.prefix = Preconditions.checkNotNull(prefix, "DOI prefix can't be null");
+    this.shoulders = ImmutableList.copyOf(shoulders);
+    this.blockSize = blockSize;
+  }
+
+  /** @return a code no DOI uses, reserving a new block of codes if needed */
+  public synchronized String next() {
+    while (codes.isEmpty()) {
+      reserve();
+    }
+    return codes.remove();
+  }
+
+  private void reserve() {
+    List<String> reserved = new ArrayList<>(blockSize);
+    List<DOI> candidates = new ArrayList<>(blockSize * shoulders.size());
+    for (Long number : doiMapper.nextSuffixNumbers(blockSize)) {
+      String code = encode(number);
+      reserved.add(code);
+      for (String shoulder : shoulders) {
+        candidates.add(new DOI(prefix, shoulder + code));
+      }
+    }
+
+    Set<String> existing = new HashSet<>(doiMapper.listExisting(candidates));
+    for (String code : reserved) {
+      if (isFree(code, existing)) {
+        codes.add(code);
+      } else {
+        LOG.debug("DOI code {} was drawn at random before, skipping it", code);
+      }
+    }
+  }
+
+  private boolean isFree(String code, Set<String> existing) {
+    for (String shoulder : shoulders) {
+      if (existing.contains(new DOI(prefix, shoulder + code).getDoiName())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** @return the code of a sequence value, between 0 and 36^6 - 1 */
+  public static String encode(long number) {
+    Preconditions.checkArgument(
+        number >= 0 && number < CODES, "No DOI code left for sequence value %s", number);
+    long scrambled = (number * MULTIPLIER + OFFSET) % CODES;
+    return Strings.padStart(Long.toString(scrambled, Character.MAX_RADIX), CODE_LENGTH, '0');
+  }
+}
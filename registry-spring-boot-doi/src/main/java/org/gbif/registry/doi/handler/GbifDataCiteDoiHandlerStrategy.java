@@ -17,12 +17,10 @@ package org.gbif.registry.doi.handler;
 
 import org.gbif.api.model.common.DOI;
 import org.gbif.api.model.common.GbifUser;
-import org.gbif.api.model.common.paging.PagingRequest;
 import org.gbif.api.model.occurrence.Download;
 import org.gbif.api.model.registry.Dataset;
 import org.gbif.api.model.registry.DatasetOccurrenceDownloadUsage;
 import org.gbif.api.model.registry.Organization;
-import org.gbif.api.service.registry.OccurrenceDownloadService;
 import org.gbif.doi.metadata.datacite.DataCiteMetadata;
 import org.gbif.doi.metadata.datacite.RelatedIdentifierType;
 import org.gbif.doi.metadata.datacite.RelationType;
@@ -31,22 +29,30 @@ import org.gbif.occurrence.query.TitleLookupService;
 import org.gbif.registry.doi.config.DoiConfigurationProperties;
 import org.gbif.registry.doi.converter.DatasetConverter;
 import org.gbif.registry.doi.converter.DownloadConverter;
+import org.gbif.registry.doi.converter.DownloadMetadataWriter;
 import org.gbif.registry.doi.generator.DoiGenerator;
+import org.gbif.registry.persistence.mapper.DatasetOccurrenceDownloadMapper;
 import org.gbif.registry.persistence.mapper.OrganizationMapper;
 
+import java.net.URI;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 
 /** GBIF Business logic for DOI handling with DataCite in the Registry. */
@@ -65,23 +71,31 @@ public class GbifDataCiteDoiHandlerStrategy implements DataCiteDoiHandlerStrateg
 
   private final DoiGenerator doiGenerator;
   private final OrganizationMapper organizationMapper;
-  private final OccurrenceDownloadService occurrenceDownloadService;
+  private final DatasetOccurrenceDownloadMapper datasetOccurrenceDownloadMapper;
   private final TitleLookupService titleLookupService;
+  private final DownloadMetadataWriter downloadMetadataWriter;
+  private final URI downloadTarget;
 
   // Used to exclude constituents of selected datasets (e.g. GBIF Backbone Taxonomy)
   private final List<UUID> parentDatasetExcludeList;
 
   public GbifDataCiteDoiHandlerStrategy(
+      @Value("${portal.url}") URI portal,
       DoiGenerator doiGenerator,
       OrganizationMapper organizationMapper,
-      OccurrenceDownloadService occurrenceDownloadService,
+      DatasetOccurrenceDownloadMapper datasetOccurrenceDownloadMapper,
       TitleLookupService titleLookupService,
       DoiConfigurationProperties doiConfigProperties) {
     this.doiGenerator = doiGenerator;
     this.organizationMapper = organizationMapper;
-    this.occurrenceDownloadService = occurrenceDownloadService;
+    this.datasetOccurrenceDownloadMapper = datasetOccurrenceDownloadMapper;
     this.titleLookupService = titleLookupService;
     this.parentDatasetExcludeList = doiConfigProperties.getDatasetParentExcludeList();
+    this.downloadMetadataWriter =
+        new DownloadMetadataWriter(
+            titleLookupService, doiConfigProperties.getDownloadConstituentsLimit());
+    Preconditions.checkNotNull(portal, "portal base URL can't be null");
+    this.downloadTarget = portal.resolve("occurrence/download/");
   }
 
   @Override
@@ -91,22 +105,49 @@ public class GbifDataCiteDoiHandlerStrategy implements DataCiteDoiHandlerStrateg
 
   @Override
   public DataCiteMetadata buildMetadata(Download download, GbifUser user) {
-    List<DatasetOccurrenceDownloadUsage> response = null;
-    List<DatasetOccurrenceDownloadUsage> usages = Lists.newArrayList();
-    PagingRequest pagingRequest = new PagingRequest(0, USAGES_PAGE_SIZE);
-
-    while (response == null || !response.isEmpty()) {
-      response =
-          occurrenceDownloadService
-              .listDatasetUsages(download.getKey(), pagingRequest)
-              .getResults();
-      usages.addAll(response);
-      pagingRequest.nextPage();
-    }
-
+    List<DatasetOccurrenceDownloadUsage> usages =
+        Lists.newArrayList(datasetUsages(download.getKey()));
     return DownloadConverter.convert(download, user, usages, titleLookupService);
   }
 
+  /**
+   * Writes the DataCite metadata of a download without loading all its dataset usages, see {@link
+   * DownloadMetadataWriter}.
+   */
+  public String buildMetadataXml(Download download, GbifUser user) throws XMLStreamException {
+    return downloadMetadataWriter.toXml(
+        download,
+        user,
+        datasetUsages(download.getKey()),
+        downloadTarget.resolve(download.getKey()));
+  }
+
+  /** Reads the dataset usages of a download a page at a time, as they are consumed. */
+  private Iterator<DatasetOccurrenceDownloadUsage> datasetUsages(String downloadKey) {
+    Iterator<List<DatasetOccurrenceDownloadUsage>> pages =
+        new AbstractIterator<List<DatasetOccurrenceDownloadUsage>>() {
+          private UUID after;
+          private boolean last;
+
+          @Override
+          protected List<DatasetOccurrenceDownloadUsage> computeNext() {
+            if (last) {
+              return endOfData();
+            }
+            List<DatasetOccurrenceDownloadUsage> page =
+                datasetOccurrenceDownloadMapper.listByDownloadAfter(
+                    downloadKey, after, USAGES_PAGE_SIZE);
+            last = page.size() < USAGES_PAGE_SIZE;
+            if (page.isEmpty()) {
+              return endOfData();
+            }
+            after = page.get(page.size() - 1).getDatasetKey();
+            return page;
+          }
+        };
+    return Iterators.concat(Iterators.transform(pages, List::iterator));
+  }
+
   @Override
   public DataCiteMetadata buildMetadata(Dataset dataset) {
     return buildMetadata(dataset, null, null);
@@ -183,7 +224,7 @@ public class GbifDataCiteDoiHandlerStrategy implements DataCiteDoiHandlerStrateg
                 && previousDownload.getStatus() != Download.Status.FILE_ERASED))) {
       try {
         doiGenerator.registerDownload(
-            download.getDoi(), buildMetadata(download, user), download.getKey());
+            download.getDoi(), buildMetadataXml(download, user), download.getKey());
       } catch (Exception error) {
         LOG.error(
             DOI_SMTP,
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.doi.converter;
+
+import org.gbif.api.model.common.DOI;
+import org.gbif.api.model.common.GbifUser;
+import org.gbif.api.model.occurrence.Download;
+import org.gbif.api.model.registry.DatasetOccurrenceDownloadUsage;
+import org.gbif.doi.service.datacite.DataCiteValidator;
+import org.gbif.occurrence.query.TitleLookupService;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlunit.matchers.CompareMatcher;
+
+import static org.gbif.registry.doi.converter.DownloadTestDataProvider.prepareDatasetOccurrenceDownloadUsage1;
+import static org.gbif.registry.doi.converter.DownloadTestDataProvider.prepareDatasetOccurrenceDownloadUsage2;
+import static org.gbif.registry.doi.converter.DownloadTestDataProvider.prepareDownload;
+import static org.gbif.registry.doi.converter.DownloadTestDataProvider.prepareUser;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DownloadMetadataWriterTest {
+
+  private static final URI TARGET = URI.create("https://www.gbif.org/occurrence/download/1");
+
+  private TitleLookupService titleLookup;
+  private Download download;
+  private GbifUser user;
+
+  @Before
+  public void setup() {
+    titleLookup = mock(TitleLookupService.class);
+    when(titleLookup.getSpeciesName(anyString())).thenReturn("Abies alba Mill.");
+    download = prepareDownload();
+    user = prepareUser();
+  }
+
+  @Test
+  public void testSameAsConverter() throws Exception {
+    // given
+    List<DatasetOccurrenceDownloadUsage> usages =
+        Arrays.asList(
+            prepareDatasetOccurrenceDownloadUsage1(), prepareDatasetOccurrenceDownloadUsage2());
+
+    // when
+    String xml =
+        new DownloadMetadataWriter(titleLookup, 10)
+            .toXml(download, user, usages.iterator(), TARGET);
+
+    // then
+    DataCiteValidator.validateMetadata(xml);
+    assertThat(xml, isIdenticalTo(converted(usages)));
+  }
+
+  @Test
+  public void testManyConstituentsSameAsConverter() throws Exception {
+    // given usages with and without DOI and title
+    List<DatasetOccurrenceDownloadUsage> usages = usages(5000);
+
+    // when
+    String xml =
+        new DownloadMetadataWriter(titleLookup, 5000)
+            .toXml(download, user, usages.iterator(), TARGET);
+
+    // then
+    DataCiteValidator.validateMetadata(xml);
+    assertThat(xml, isIdenticalTo(converted(usages)));
+  }
+
+  @Test
+  public void testNoConstituentsSameAsConverter() throws Exception {
+    String xml =
+        new DownloadMetadataWriter(titleLookup, 10)
+            .toXml(download, user, Collections.emptyIterator(), TARGET);
+
+    assertThat(xml, isIdenticalTo(converted(Collections.emptyList())));
+  }
+
+  @Test
+  public void testTruncated() throws Exception {
+    // given
+    List<DatasetOccurrenceDownloadUsage> usages = usages(5000);
+    CountingIterator iterator = new CountingIterator(usages.iterator());
+
+    // when
+    String xml =
+        new DownloadMetadataWriter(titleLookup, 100).toXml(download, user, iterator, TARGET);
+
+    // then the first usages are listed, like the converter output truncated afterwards
+    DataCiteValidator.validateMetadata(xml);
+    String truncated =
+        DownloadConverter.truncateDescription(
+            download.getDoi(), converted(usages.subList(0, 100)), TARGET);
+    assertThat(xml, isIdenticalTo(truncated));
+    assertTrue(xml.contains("Please see " + TARGET + " for full list of all constituents."));
+    // and the other usages were not read
+    assertEquals(100, iterator.count);
+  }
+
+  private String converted(List<DatasetOccurrenceDownloadUsage> usages) throws Exception {
+    return DataCiteValidator.toXml(
+        download.getDoi(), DownloadConverter.convert(download, user, usages, titleLookup));
+  }
+
+  private static CompareMatcher isIdenticalTo(String expected) {
+    return CompareMatcher.isIdenticalTo(expected).normalizeWhitespace().ignoreWhitespace();
+  }
+
+  /** Every third usage has no DOI, every seventh no title. */
+  private static List<DatasetOccurrenceDownloadUsage> usages(int count) {
+    List<DatasetOccurrenceDownloadUsage> usages = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      DatasetOccurrenceDownloadUsage usage = new DatasetOccurrenceDownloadUsage();
+      usage.setDatasetKey(UUID.randomUUID());
+      usage.setNumberRecords(i + 1);
+      if (i % 3 != 0) {
+        usage.setDatasetDOI(new DOI("10.1234/ds" + i));
+      }
+      if (i % 7 != 0) {
+        usage.setDatasetTitle("Dataset <" + i + "> & co");
+      }
+      usages.add(usage);
+    }
+    return usages;
+  }
+
+  private static class CountingIterator implements Iterator<DatasetOccurrenceDownloadUsage> {
+
+    private final Iterator<DatasetOccurrenceDownloadUsage> iterator;
+    private int count;
+
+    private CountingIterator(Iterator<DatasetOccurrenceDownloadUsage> iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return iterator.hasNext();
+    }
+
+    @Override
+    public DatasetOccurrenceDownloadUsage next() {
+      count++;
+      return iterator.next();
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.doi.generator;
+
+import org.gbif.api.model.common.DOI;
+import org.gbif.registry.persistence.mapper.DoiMapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DoiSuffixAllocatorTest {
+
+  private static final String PREFIX = "10.21373";
+  private static final List<String> SHOULDERS = ImmutableList.of("", "dl.", "dp.");
+
+  @Mock private DoiMapper doiMapper;
+
+  @Test
+  public void testEncodedCodesAreDistinct() {
+    Set<String> codes = new HashSet<>();
+    for (long number = 0; number < 1_000_000; number++) {
+      String code = DoiSuffixAllocator.encode(number);
+      assertTrue(code, code.matches("[0-9a-z]{6}"));
+      codes.add(code);
+    }
+    assertEquals(1_000_000, codes.size());
+
+    // the last value of the sequence still has a code
+    assertTrue(
+        DoiSuffixAllocator.encode(DoiSuffixAllocator.CODES - 1).matches("[0-9a-z]{6}"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSequenceExhausted() {
+    DoiSuffixAllocator.encode(DoiSuffixAllocator.CODES);
+  }
+
+  @Test
+  public void testBlockReservedPerRoundTrip() {
+    // GIVEN
+    AtomicLong sequence = sequence();
+    when(doiMapper.listExisting(anyCollection())).thenReturn(Collections.emptyList());
+    DoiSuffixAllocator allocator = new DoiSuffixAllocator(doiMapper, PREFIX, SHOULDERS, 10);
+
+    // WHEN
+    Set<String> codes = new HashSet<>();
+    for (int i = 0; i < 25; i++) {
+      codes.add(allocator.next());
+    }
+
+    // THEN
+    assertEquals(25, codes.size());
+    assertEquals(30, sequence.get());
+    verify(doiMapper, times(3)).nextSuffixNumbers(10);
+    verify(doiMapper, times(3)).listExisting(anyCollection());
+  }
+
+  @Test
+  public void testExistingCodesSkipped() {
+    // GIVEN a dataset DOI and a download DOI drawn at random with two of the codes
+    sequence();
+    String first = DoiSuffixAllocator.encode(0);
+    String third = DoiSuffixAllocator.encode(2);
+    when(doiMapper.listExisting(anyCollection()))
+        .thenAnswer(
+            invocation -> {
+              Collection<DOI> dois = invocation.getArgument(0);
+              assertEquals(3 * SHOULDERS.size(), dois.size());
+              return ImmutableList.of(
+                  new DOI(PREFIX, first).getDoiName(),
+                  new DOI(PREFIX, "dl." + third).getDoiName());
+            });
+    DoiSuffixAllocator allocator = new DoiSuffixAllocator(doiMapper, PREFIX, SHOULDERS, 3);
+
+    // WHEN
+    List<String> codes = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      codes.add(allocator.next());
+    }
+
+    // THEN
+    assertEquals(
+        ImmutableList.of(
+            DoiSuffixAllocator.encode(1),
+            DoiSuffixAllocator.encode(3),
+            DoiSuffixAllocator.encode(4),
+            DoiSuffixAllocator.encode(5)),
+        codes);
+  }
+
+  /** Mocks the sequence, starting at 0. */
+  private AtomicLong sequence() {
+    AtomicLong sequence = new AtomicLong();
+    when(doiMapper.nextSuffixNumbers(anyInt()))
+        .thenAnswer(
+            invocation -> {
+              int count = invocation.getArgument(0);
+              List<Long> numbers = new ArrayList<>(count);
+              for (int i = 0; i < count; i++) {
+                numbers.add(sequence.getAndIncrement());
+              }
+              return numbers;
+            });
+    return sequence;
+  }
+}
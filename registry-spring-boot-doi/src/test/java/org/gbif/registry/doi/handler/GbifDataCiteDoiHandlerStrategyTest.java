@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.doi.handler;
+
+import org.gbif.api.model.common.DOI;
+import org.gbif.api.model.common.GbifUser;
+import org.gbif.api.model.occurrence.Download;
+import org.gbif.api.model.occurrence.DownloadFormat;
+import org.gbif.api.model.occurrence.PredicateDownloadRequest;
+import org.gbif.api.model.occurrence.predicate.EqualsPredicate;
+import org.gbif.api.model.occurrence.search.OccurrenceSearchParameter;
+import org.gbif.api.model.registry.DatasetOccurrenceDownloadUsage;
+import org.gbif.occurrence.query.TitleLookupService;
+import org.gbif.registry.doi.config.DoiConfigurationProperties;
+import org.gbif.registry.doi.generator.DoiGenerator;
+import org.gbif.registry.persistence.mapper.DatasetOccurrenceDownloadMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GbifDataCiteDoiHandlerStrategyTest {
+
+  private static final String DOWNLOAD_KEY = "0000001-200101000000000";
+
+  @Mock private DoiGenerator doiGenerator;
+  @Mock private OrganizationMapper organizationMapper;
+  @Mock private DatasetOccurrenceDownloadMapper datasetOccurrenceDownloadMapper;
+  @Mock private TitleLookupService titleLookupService;
+
+  @Before
+  public void setup() {
+    when(titleLookupService.getSpeciesName("3")).thenReturn("Abies alba Mill.");
+  }
+
+  @Test
+  public void testUsagesReadByKeyset() throws Exception {
+    // GIVEN a full page of usages and a last one
+    List<DatasetOccurrenceDownloadUsage> first = usages(400);
+    List<DatasetOccurrenceDownloadUsage> second = usages(50);
+    UUID lastOfFirst = first.get(first.size() - 1).getDatasetKey();
+    when(datasetOccurrenceDownloadMapper.listByDownloadAfter(eq(DOWNLOAD_KEY), isNull(), anyInt()))
+        .thenReturn(first);
+    when(datasetOccurrenceDownloadMapper.listByDownloadAfter(
+            eq(DOWNLOAD_KEY), eq(lastOfFirst), anyInt()))
+        .thenReturn(second);
+
+    // WHEN
+    String xml = registeredXml(strategy(10_000));
+
+    // THEN every usage is listed, after two queries
+    assertEquals(450, count(xml, "<relatedIdentifier "));
+    verify(datasetOccurrenceDownloadMapper, times(2))
+        .listByDownloadAfter(anyString(), any(), anyInt());
+  }
+
+  @Test
+  public void testUsagesReadUpToTheLimit() throws Exception {
+    // GIVEN
+    when(datasetOccurrenceDownloadMapper.listByDownloadAfter(eq(DOWNLOAD_KEY), isNull(), anyInt()))
+        .thenReturn(usages(400));
+
+    // WHEN
+    String xml = registeredXml(strategy(100));
+
+    // THEN the next pages are never read
+    assertEquals(100, count(xml, "<relatedIdentifier "));
+    assertTrue(
+        xml.contains(
+            "Please see https://www.gbif.org/occurrence/download/"
+                + DOWNLOAD_KEY
+                + " for full list of all constituents."));
+    verify(datasetOccurrenceDownloadMapper, times(1))
+        .listByDownloadAfter(anyString(), any(), anyInt());
+  }
+
+  private GbifDataCiteDoiHandlerStrategy strategy(int constituentsLimit) {
+    DoiConfigurationProperties properties = new DoiConfigurationProperties();
+    properties.setPrefix("10.21373");
+    properties.setDownloadConstituentsLimit(constituentsLimit);
+    return new GbifDataCiteDoiHandlerStrategy(
+        URI.create("https://www.gbif.org/"),
+        doiGenerator,
+        organizationMapper,
+        datasetOccurrenceDownloadMapper,
+        titleLookupService,
+        properties);
+  }
+
+  /** @return the metadata registered when the download succeeds */
+  private String registeredXml(GbifDataCiteDoiHandlerStrategy strategy) throws Exception {
+    Download download = download();
+    strategy.downloadChanged(download, null, user());
+
+    ArgumentCaptor<String> xml = ArgumentCaptor.forClass(String.class);
+    verify(doiGenerator).registerDownload(eq(download.getDoi()), xml.capture(), eq(DOWNLOAD_KEY));
+    return xml.getValue();
+  }
+
+  private static int count(String xml, String element) {
+    int count = 0;
+    for (int i = xml.indexOf(element); i >= 0; i = xml.indexOf(element, i + 1)) {
+      count++;
+    }
+    return count;
+  }
+
+  private static List<DatasetOccurrenceDownloadUsage> usages(int count) {
+    List<DatasetOccurrenceDownloadUsage> usages = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      DatasetOccurrenceDownloadUsage usage = new DatasetOccurrenceDownloadUsage();
+      usage.setDownloadKey(DOWNLOAD_KEY);
+      usage.setDatasetKey(UUID.randomUUID());
+      usage.setDatasetTitle("Dataset " + i);
+      usage.setDatasetDOI(new DOI("10.1234/ds" + i));
+      usage.setNumberRecords(i + 1);
+      usages.add(usage);
+    }
+    return usages;
+  }
+
+  private static Download download() {
+    PredicateDownloadRequest request = new PredicateDownloadRequest();
+    request.setCreator("dev@gbif.org");
+    request.setPredicate(new EqualsPredicate(OccurrenceSearchParameter.TAXON_KEY, "3"));
+    request.setFormat(DownloadFormat.DWCA);
+
+    Download download = new Download();
+    download.setKey(DOWNLOAD_KEY);
+    download.setDoi(new DOI("10.21373/dl.abc123"));
+    download.setStatus(Download.Status.SUCCEEDED);
+    download.setCreated(new Date());
+    download.setModified(new Date());
+    download.setRequest(request);
+    download.setNumberDatasets(450L);
+    download.setSize(100);
+    download.setTotalRecords(1000);
+    return download;
+  }
+
+  private static GbifUser user() {
+    GbifUser user = new GbifUser();
+    user.setUserName("occdownload.gbif.org");
+    user.setLastName("GBIF.org");
+    return user;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.domain.indexing;
+
+import java.util.UUID;
+
+/**
+ * The occurrence coverage (country, taxon and decade) of a dataset, as a JSON array, computed from
+ * the occurrences of the given {@link #getVersion() version}.
+ */
+public class OccurrenceCoverageEntry {
+
+  private UUID datasetKey;
+  private String version;
+  private String coverage;
+
+  public UUID getDatasetKey() {
+    return datasetKey;
+  }
+
+  public OccurrenceCoverageEntry setDatasetKey(UUID datasetKey) {
+    this.datasetKey = datasetKey;
+    return this;
+  }
+
+  /** @return the number of occurrences and their latest interpretation date */
+  public String getVersion() {
+    return version;
+  }
+
+  public OccurrenceCoverageEntry setVersion(String version) {
+    this.version = version;
+    return this;
+  }
+
+  /** @return the JSON array of the coverage entries, null when only the version was read */
+  public String getCoverage() {
+    return coverage;
+  }
+
+  public OccurrenceCoverageEntry setCoverage(String coverage) {
+    this.coverage = coverage;
+    return this;
+  }
+}
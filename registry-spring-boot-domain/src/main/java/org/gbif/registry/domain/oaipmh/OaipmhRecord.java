@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.domain.oaipmh;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * The serialized OAI-PMH metadata of a dataset, in both the oai_dc and eml formats, as rendered
+ * from the dataset last modified at {@link #getDatasetModified()}.
+ */
+public class OaipmhRecord {
+
+  private UUID datasetKey;
+  private Date datasetModified;
+  private String oaiDc;
+  private String eml;
+  private Long occurrenceCount;
+  private Date created;
+
+  public UUID getDatasetKey() {
+    return datasetKey;
+  }
+
+  public OaipmhRecord setDatasetKey(UUID datasetKey) {
+    this.datasetKey = datasetKey;
+    return this;
+  }
+
+  public Date getDatasetModified() {
+    return datasetModified;
+  }
+
+  public OaipmhRecord setDatasetModified(Date datasetModified) {
+    this.datasetModified = datasetModified;
+    return this;
+  }
+
+  public String getOaiDc() {
+    return oaiDc;
+  }
+
+  public OaipmhRecord setOaiDc(String oaiDc) {
+    this.oaiDc = oaiDc;
+    return this;
+  }
+
+  public String getEml() {
+    return eml;
+  }
+
+  public OaipmhRecord setEml(String eml) {
+    this.eml = eml;
+    return this;
+  }
+
+  /** @return the number of occurrences of the dataset when rendered, null if unknown */
+  public Long getOccurrenceCount() {
+    return occurrenceCount;
+  }
+
+  public OaipmhRecord setOccurrenceCount(Long occurrenceCount) {
+    this.occurrenceCount = occurrenceCount;
+    return this;
+  }
+
+  /** @return when the record was rendered */
+  public Date getCreated() {
+    return created;
+  }
+
+  public OaipmhRecord setCreated(Date created) {
+    this.created = created;
+    return this;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.domain.ws;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+/**
+ * Page of results fetched with keyset (cursor) paging. Instead of an offset, the next page is
+ * requested with the opaque {@link #getNext()} token, and the total count is only present when it
+ * was asked for.
+ */
+public class KeysetPagingResponse<T> {
+
+  private int limit;
+  private String cursor;
+  private String next;
+  private boolean endOfRecords;
+  private Long count;
+  private List<T> results = new ArrayList<>();
+
+  public KeysetPagingResponse() {}
+
+  public KeysetPagingResponse(
+      int limit,
+      @Nullable String cursor,
+      @Nullable String next,
+      @Nullable Long count,
+      List<T> results) {
+    this.limit = limit;
+    this.cursor = cursor;
+    this.next = next;
+    this.endOfRecords = next == null;
+    this.count = count;
+    this.results = results;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public void setLimit(int limit) {
+    this.limit = limit;
+  }
+
+  /** @return the token this page was requested with, {@code null} for the first page */
+  @Nullable
+  public String getCursor() {
+    return cursor;
+  }
+
+  public void setCursor(@Nullable String cursor) {
+    this.cursor = cursor;
+  }
+
+  /** @return the token to request the next page with, {@code null} if this is the last page */
+  @Nullable
+  public String getNext() {
+    return next;
+  }
+
+  public void setNext(@Nullable String next) {
+    this.next = next;
+  }
+
+  public boolean isEndOfRecords() {
+    return endOfRecords;
+  }
+
+  public void setEndOfRecords(boolean endOfRecords) {
+    this.endOfRecords = endOfRecords;
+  }
+
+  /** @return the total number of records, {@code null} unless the count was requested */
+  @Nullable
+  public Long getCount() {
+    return count;
+  }
+
+  public void setCount(@Nullable Long count) {
+    this.count = count;
+  }
+
+  public List<T> getResults() {
+    return results;
+  }
+
+  public void setResults(List<T> results) {
+    this.results = results;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    KeysetPagingResponse<?> that = (KeysetPagingResponse<?>) o;
+    return limit == that.limit
+        && endOfRecords == that.endOfRecords
+        && Objects.equals(cursor, that.cursor)
+        && Objects.equals(next, that.next)
+        && Objects.equals(count, that.count)
+        && Objects.equals(results, that.results);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(limit, cursor, next, endOfRecords, count, results);
+  }
+}
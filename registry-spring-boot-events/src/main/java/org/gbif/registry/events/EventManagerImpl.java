@@ -15,31 +15,441 @@
  */
 package org.gbif.registry.events;
 
+import org.gbif.api.model.collections.CollectionEntity;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.registry.events.collections.CreateCollectionEntityEvent;
+import org.gbif.registry.events.collections.DeleteCollectionEntityEvent;
+import org.gbif.registry.events.collections.UpdateCollectionEntityEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.google.common.base.Preconditions;
 import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 
+/**
+ * Event manager delivering the events to synchronous and asynchronous listeners.
+ *
+ * <p>Listeners annotated with {@link AsyncEventListener} don't run on the posting thread. Their
+ * events go into one of several bounded lanes, each drained by a single thread. The lane is chosen
+ * by the key of the entity the event is about, so the events of an entity are delivered in the
+ * order they were posted. Events posted within a transaction are only queued once it commits.
+ *
+ * <p>When a lane is full the posting thread waits for room, which throttles the producers, and
+ * warns every time the configured offer timeout elapses. It never delivers the event itself then,
+ * as the earlier events of the entity are still queued. On shutdown the queued events are drained
+ * before the lanes are stopped, events posted afterwards are delivered on the posting thread once
+ * their lane stopped.
+ *
+ * <p>Every listener is given its own {@link EventBus}, so the deliveries are timed per listener,
+ * synchronous or not, and published as metrics together with the depth of the queues. The metrics
+ * of a listener are tagged with its class and instance, and removed when it is unregistered.
+ */
+@SuppressWarnings("UnstableApiUsage")
 @Service
-public class EventManagerImpl implements EventManager {
+public class EventManagerImpl implements EventManager, MeterBinder {
 
-  private EventBus eventBus;
+  private static final Logger LOG = LoggerFactory.getLogger(EventManagerImpl.class);
+  private static final String SYNCHRONOUS = "synchronous";
+  private static final String ASYNCHRONOUS = "asynchronous";
 
-  public EventManagerImpl(EventBus eventBus) {
-    this.eventBus = eventBus;
+  private final List<Dispatcher> synchronousListeners = new CopyOnWriteArrayList<>();
+  private final List<Dispatcher> asyncListeners = new CopyOnWriteArrayList<>();
+  private final ThreadPoolExecutor[] lanes;
+  private final long offerTimeoutMs;
+  private final long drainTimeoutMs;
+  private final AtomicLong callerDeliveries = new AtomicLong();
+  private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+
+  public EventManagerImpl(
+      @Value("${registry.events.async.threads:4}") int threads,
+      @Value("${registry.events.async.queueCapacity:10000}") int queueCapacity,
+      @Value("${registry.events.async.offerTimeoutMs:5000}") long offerTimeoutMs,
+      @Value("${registry.events.async.drainTimeoutMs:30000}") long drainTimeoutMs) {
+    Preconditions.checkArgument(threads > 0, "At least one event dispatching thread is needed");
+    Preconditions.checkArgument(queueCapacity >= threads, "The queue capacity is too small");
+    this.offerTimeoutMs = offerTimeoutMs;
+    this.drainTimeoutMs = drainTimeoutMs;
+
+    this.lanes = new ThreadPoolExecutor[threads];
+    for (int i = 0; i < threads; i++) {
+      lanes[i] =
+          new ThreadPoolExecutor(
+              1,
+              1,
+              0L,
+              TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<>(queueCapacity / threads),
+              new ThreadFactoryBuilder()
+                  .setNameFormat("registry-events-" + i)
+                  .setDaemon(true)
+                  .build(),
+              this::waitForCapacity);
+    }
   }
 
   @Override
   public void post(Object object) {
-    eventBus.post(object);
+    for (Dispatcher dispatcher : synchronousListeners) {
+      dispatcher.dispatch(object);
+    }
+
+    if (asyncListeners.isEmpty()) {
+      return;
+    }
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      // the listeners must not see changes that are not committed yet, or rolled back
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              enqueue(object);
+            }
+          });
+    } else {
+      enqueue(object);
+    }
   }
 
   @Override
   public void register(Object object) {
-    eventBus.register(object);
+    Dispatcher dispatcher = new Dispatcher(object);
+    if (object.getClass().isAnnotationPresent(AsyncEventListener.class)) {
+      LOG.info("Registering asynchronous event listener {}", object.getClass().getSimpleName());
+      asyncListeners.add(dispatcher);
+      for (MeterRegistry registry : registries) {
+        bindListener(registry, dispatcher, ASYNCHRONOUS);
+      }
+    } else {
+      synchronousListeners.add(dispatcher);
+      for (MeterRegistry registry : registries) {
+        bindListener(registry, dispatcher, SYNCHRONOUS);
+      }
+    }
   }
 
   @Override
   public void unregister(Object object) {
-    eventBus.unregister(object);
+    List<Dispatcher> dispatchers =
+        object.getClass().isAnnotationPresent(AsyncEventListener.class)
+            ? asyncListeners
+            : synchronousListeners;
+    for (Dispatcher dispatcher : dispatchers) {
+      if (dispatcher.listener == object && dispatchers.remove(dispatcher)) {
+        dispatcher.removeMeters();
+      }
+    }
+  }
+
+  /**
+   * Stops accepting asynchronous events and waits for the queued ones to be delivered, up to the
+   * configured drain timeout.
+   */
+  @PreDestroy
+  public void close() {
+    LOG.info("Shutting down the event manager, {} events queued", getQueueDepth());
+    for (ThreadPoolExecutor lane : lanes) {
+      lane.shutdown();
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMs);
+    try {
+      for (ThreadPoolExecutor lane : lanes) {
+        long remaining = Math.max(0, deadline - System.nanoTime());
+        if (!lane.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+          LOG.warn("{} events not delivered at shutdown", lane.shutdownNow().size());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      for (ThreadPoolExecutor lane : lanes) {
+        LOG.warn("{} events not delivered at shutdown", lane.shutdownNow().size());
+      }
+    }
+  }
+
+  /** @return the number of events waiting for asynchronous delivery */
+  public int getQueueDepth() {
+    int depth = 0;
+    for (ThreadPoolExecutor lane : lanes) {
+      depth += lane.getQueue().size();
+    }
+    return depth;
+  }
+
+  /**
+   * @return the number of events delivered to asynchronous listeners on the posting thread, because
+   *     the manager shut down
+   */
+  public long getCallerDeliveries() {
+    return callerDeliveries.get();
+  }
+
+  /** @return the delivery statistics of every synchronous listener */
+  public List<ListenerStats> getSynchronousStats() {
+    return stats(synchronousListeners);
+  }
+
+  /** @return the delivery statistics of every asynchronous listener */
+  public List<ListenerStats> getListenerStats() {
+    return stats(asyncListeners);
+  }
+
+  private static List<ListenerStats> stats(List<Dispatcher> dispatchers) {
+    List<ListenerStats> stats = new ArrayList<>();
+    for (Dispatcher dispatcher : dispatchers) {
+      stats.add(dispatcher.stats);
+    }
+    return Collections.unmodifiableList(stats);
+  }
+
+  /**
+   * Publishes the queue depth and the listener timings. Listeners registered later are added to
+   * the bound registries as they come.
+   */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("registry.events.queue.depth", this, EventManagerImpl::getQueueDepth)
+        .description("Events waiting for asynchronous delivery")
+        .register(registry);
+    FunctionCounter.builder(
+            "registry.events.caller.deliveries", this, EventManagerImpl::getCallerDeliveries)
+        .description("Events delivered to asynchronous listeners on the posting thread")
+        .register(registry);
+    registries.add(registry);
+    for (Dispatcher dispatcher : synchronousListeners) {
+      bindListener(registry, dispatcher, SYNCHRONOUS);
+    }
+    for (Dispatcher dispatcher : asyncListeners) {
+      bindListener(registry, dispatcher, ASYNCHRONOUS);
+    }
+  }
+
+  private static void bindListener(MeterRegistry registry, Dispatcher dispatcher, String mode) {
+    ListenerStats stats = dispatcher.stats;
+    // several listeners of the same class don't share their meters
+    Tags tags =
+        Tags.of("listener", stats.getListenerClass().getSimpleName(), "mode", mode)
+            .and("instance", dispatcher.instance);
+    Meter timer =
+        FunctionTimer.builder(
+                "registry.events.listener",
+                stats,
+                ListenerStats::getCount,
+                ListenerStats::getTotalNanos,
+                TimeUnit.NANOSECONDS)
+            .tags(tags)
+            .description("Event deliveries to the listeners")
+            .register(registry);
+    Meter max =
+        TimeGauge.builder(
+                "registry.events.listener.max",
+                stats,
+                TimeUnit.NANOSECONDS,
+                ListenerStats::getMaxNanos)
+            .tags(tags)
+            .description("Longest event delivery to the listeners")
+            .register(registry);
+    dispatcher.addMeters(registry, timer, max);
+  }
+
+  private void enqueue(Object event) {
+    ThreadPoolExecutor lane =
+        lanes[Math.floorMod(Objects.hashCode(routingKey(event)), lanes.length)];
+    try {
+      lane.execute(() -> deliver(event));
+    } catch (RejectedExecutionException e) {
+      // the lane is shutting down, its queued events go first
+      awaitTermination(lane);
+      callerDeliveries.incrementAndGet();
+      LOG.warn(
+          "Event lane shut down, delivering {} on the posting thread",
+          event.getClass().getSimpleName());
+      deliver(event);
+    }
+  }
+
+  /** Waits for the lane to deliver its queued events, up to the configured drain timeout. */
+  private void awaitTermination(ThreadPoolExecutor lane) {
+    try {
+      if (!lane.awaitTermination(drainTimeoutMs, TimeUnit.MILLISECONDS)) {
+        LOG.warn("Event lane still draining after {} ms", drainTimeoutMs);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void deliver(Object event) {
+    for (Dispatcher dispatcher : asyncListeners) {
+      dispatcher.dispatch(event);
+    }
+  }
+
+  /**
+   * Blocks the posting thread until the lane has room again, which throttles the producers. The
+   * wait is not interruptible, as the event could only be delivered out of order or lost otherwise.
+   */
+  private void waitForCapacity(Runnable task, ThreadPoolExecutor lane) {
+    boolean interrupted = false;
+    try {
+      while (!lane.isShutdown()) {
+        try {
+          if (lane.getQueue().offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+            // the lane might have stopped while we were waiting
+            if (!lane.isShutdown() || !lane.getQueue().remove(task)) {
+              return;
+            }
+            break;
+          }
+          LOG.warn("Event lane full for {} ms, the posting thread keeps waiting", offerTimeoutMs);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    throw new RejectedExecutionException("Event lane shut down");
+  }
+
+  /** @return the key of the entity the event is about, events without a key share one lane */
+  @Nullable
+  private static Object routingKey(Object event) {
+    if (event instanceof CreateEvent) {
+      return keyOf(((CreateEvent<?>) event).getNewObject());
+    } else if (event instanceof UpdateEvent) {
+      return keyOf(((UpdateEvent<?>) event).getNewObject());
+    } else if (event instanceof DeleteEvent) {
+      return keyOf(((DeleteEvent<?>) event).getOldObject());
+    } else if (event instanceof ChangedComponentEvent) {
+      return ((ChangedComponentEvent) event).getTargetEntityKey();
+    } else if (event instanceof CreateCollectionEntityEvent) {
+      return keyOf(((CreateCollectionEntityEvent<?>) event).getNewObject());
+    } else if (event instanceof UpdateCollectionEntityEvent) {
+      return keyOf(((UpdateCollectionEntityEvent<?>) event).getNewObject());
+    } else if (event instanceof DeleteCollectionEntityEvent) {
+      return keyOf(((DeleteCollectionEntityEvent<?>) event).getOldObject());
+    }
+    return null;
+  }
+
+  @Nullable
+  private static Object keyOf(@Nullable Object entity) {
+    if (entity instanceof NetworkEntity) {
+      return ((NetworkEntity) entity).getKey();
+    } else if (entity instanceof CollectionEntity) {
+      return ((CollectionEntity) entity).getKey();
+    }
+    return null;
+  }
+
+  /** Delivers the events to a single listener, timing every delivery. */
+  private static final class Dispatcher {
+
+    private final Object listener;
+    private final String instance;
+    private final EventBus eventBus;
+    private final ListenerStats stats;
+    private final Map<MeterRegistry, List<Meter>> meters = new ConcurrentHashMap<>();
+
+    private Dispatcher(Object listener) {
+      this.listener = listener;
+      this.instance =
+          listener.getClass().getSimpleName()
+              + "@"
+              + Integer.toHexString(System.identityHashCode(listener));
+      this.eventBus = new EventBus(listener.getClass().getSimpleName());
+      this.eventBus.register(listener);
+      this.stats = new ListenerStats(listener.getClass());
+    }
+
+    private void addMeters(MeterRegistry registry, Meter... registered) {
+      meters
+          .computeIfAbsent(registry, r -> new CopyOnWriteArrayList<>())
+          .addAll(Arrays.asList(registered));
+    }
+
+    private void removeMeters() {
+      meters.forEach((registry, registered) -> registered.forEach(registry::remove));
+      meters.clear();
+    }
+
+    private void dispatch(Object event) {
+      long start = System.nanoTime();
+      eventBus.post(event);
+      stats.record(System.nanoTime() - start);
+    }
+  }
+
+  /** Delivery statistics of a listener. */
+  public static final class ListenerStats {
+
+    private final Class<?> listenerClass;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    private ListenerStats(Class<?> listenerClass) {
+      this.listenerClass = listenerClass;
+    }
+
+    private void record(long nanos) {
+      count.increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulate(nanos);
+    }
+
+    public Class<?> getListenerClass() {
+      return listenerClass;
+    }
+
+    /** @return the number of events delivered */
+    public long getCount() {
+      return count.sum();
+    }
+
+    public long getTotalNanos() {
+      return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+      return maxNanos.get();
+    }
   }
 }
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.varnish.VarnishPurger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Collects the Varnish purges and bans requested over a time window and sends them in one go.
+ *
+ * <p>Bulk edits trigger the same purges and bans over and over again. Within a window every purge
+ * path is sent once, bans only differing by the keys they match, e.g. {@code
+ * installation/(k1|k2)/dataset}, are merged into a single pattern with the union of the keys, and
+ * the remaining distinct bans are combined into alternations up to a maximum pattern length.
+ *
+ * <p>With a window of 0 everything is sent straight away, as {@link VarnishPurger} does.
+ */
+public class VarnishBanAggregator implements MeterBinder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(VarnishBanAggregator.class);
+
+  private static final String UUID_REGEX =
+      "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}";
+  // a group of keys as created by VarnishPurger#anyKey, e.g. (k1|k2)
+  private static final Pattern KEYS_GROUP =
+      Pattern.compile("\\((" + UUID_REGEX + "(?:\\|" + UUID_REGEX + ")*)\\)");
+  private static final Joiner OR = Joiner.on('|');
+
+  private final VarnishPurger purger;
+  private final int maxBanLength;
+  private final ScheduledExecutorService scheduler;
+
+  private final Object lock = new Object();
+  private Set<String> pendingPurges = new LinkedHashSet<>();
+  private Set<String> pendingBans = new LinkedHashSet<>();
+  private volatile boolean closed;
+
+  private final AtomicLong requestedPurges = new AtomicLong();
+  private final AtomicLong emittedPurges = new AtomicLong();
+  private final AtomicLong requestedBans = new AtomicLong();
+  private final AtomicLong emittedBans = new AtomicLong();
+
+  /**
+   * @param purger used to send the requests to Varnish
+   * @param windowMs how long purges and bans are collected before being sent, 0 to send them
+   *     straight away
+   * @param maxBanLength the maximum length of a combined ban pattern
+   */
+  public VarnishBanAggregator(VarnishPurger purger, long windowMs, int maxBanLength) {
+    Preconditions.checkArgument(windowMs >= 0, "The window can't be negative");
+    this.purger = purger;
+    this.maxBanLength = maxBanLength;
+    if (windowMs > 0) {
+      scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder().setNameFormat("varnish-bans").setDaemon(true).build());
+      scheduler.scheduleWithFixedDelay(this::flush, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    } else {
+      scheduler = null;
+    }
+  }
+
+  /** Purges a single resource, see {@link VarnishPurger#purge(String)}. */
+  public void purge(String path) {
+    requestedPurges.incrementAndGet();
+    if (scheduler == null || closed) {
+      emittedPurges.incrementAndGet();
+      purger.purge(path);
+      return;
+    }
+    synchronized (lock) {
+      pendingPurges.add(path);
+    }
+  }
+
+  /** Bans all the resources matching the pattern, see {@link VarnishPurger#ban(String)}. */
+  public void ban(String regex) {
+    requestedBans.incrementAndGet();
+    if (scheduler == null || closed) {
+      emittedBans.incrementAndGet();
+      purger.ban(regex);
+      return;
+    }
+    synchronized (lock) {
+      pendingBans.add(regex);
+    }
+  }
+
+  public String anyKey(Set<UUID> keys) {
+    return purger.anyKey(keys);
+  }
+
+  /** Sends the purges and bans collected so far. */
+  public synchronized void flush() {
+    Set<String> purges;
+    Set<String> bans;
+    synchronized (lock) {
+      purges = pendingPurges;
+      bans = pendingBans;
+      pendingPurges = new LinkedHashSet<>();
+      pendingBans = new LinkedHashSet<>();
+    }
+    if (purges.isEmpty() && bans.isEmpty()) {
+      return;
+    }
+
+    try {
+      for (String path : purges) {
+        emittedPurges.incrementAndGet();
+        purger.purge(path);
+      }
+      List<String> merged = merge(bans, maxBanLength);
+      for (String ban : merged) {
+        emittedBans.incrementAndGet();
+        purger.ban(ban);
+      }
+      LOG.debug(
+          "Sent {} purges and {} combined bans for {} bans",
+          purges.size(),
+          merged.size(),
+          bans.size());
+    } catch (RuntimeException e) {
+      // never let the scheduler die
+      LOG.error("Failed to send the Varnish purges and bans", e);
+    }
+  }
+
+  /** Sends the pending purges and bans, later requests are sent straight away. */
+  public void close() {
+    closed = true;
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+    flush();
+  }
+
+  public long getRequestedPurges() {
+    return requestedPurges.get();
+  }
+
+  public long getEmittedPurges() {
+    return emittedPurges.get();
+  }
+
+  public long getRequestedBans() {
+    return requestedBans.get();
+  }
+
+  public long getEmittedBans() {
+    return emittedBans.get();
+  }
+
+  /** @return the number of purges and bans that didn't need a request of their own */
+  public long getSuppressed() {
+    return requestedPurges.get()
+        - emittedPurges.get()
+        + requestedBans.get()
+        - emittedBans.get()
+        - getPending();
+  }
+
+  /** Publishes the number of purges and bans requested and actually sent to Varnish. */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    bindCounter(registry, "purge", "requested", VarnishBanAggregator::getRequestedPurges);
+    bindCounter(registry, "purge", "emitted", VarnishBanAggregator::getEmittedPurges);
+    bindCounter(registry, "ban", "requested", VarnishBanAggregator::getRequestedBans);
+    bindCounter(registry, "ban", "emitted", VarnishBanAggregator::getEmittedBans);
+    Gauge.builder("registry.varnish.pending", this, VarnishBanAggregator::getPending)
+        .description("Purges and bans waiting for the end of the window")
+        .register(registry);
+  }
+
+  private void bindCounter(
+      MeterRegistry registry,
+      String type,
+      String state,
+      ToDoubleFunction<VarnishBanAggregator> count) {
+    FunctionCounter.builder("registry.varnish.requests", this, count)
+        .tags("type", type, "state", state)
+        .description("Varnish purges and bans, as requested and as sent after aggregation")
+        .register(registry);
+  }
+
+  private long getPending() {
+    synchronized (lock) {
+      return pendingPurges.size() + pendingBans.size();
+    }
+  }
+
+  /**
+   * Merges the bans matching the same resources for different keys, and combines the others into
+   * alternations no longer than maxLength, unless a single ban is already longer.
+   */
+  static List<String> merge(Set<String> bans, int maxLength) {
+    // prefix and suffix around the keys -> keys
+    Map<List<String>, Set<String>> templates = new LinkedHashMap<>();
+    Set<String> others = new LinkedHashSet<>();
+    for (String ban : bans) {
+      Matcher m = KEYS_GROUP.matcher(ban);
+      if (m.find()) {
+        List<String> template = new ArrayList<>(2);
+        template.add(ban.substring(0, m.start()));
+        template.add(ban.substring(m.end()));
+        Set<String> keys = templates.computeIfAbsent(template, t -> new LinkedHashSet<>());
+        for (String key : m.group(1).split("\\|")) {
+          keys.add(key.toLowerCase());
+        }
+      } else {
+        others.add(ban);
+      }
+    }
+
+    List<String> patterns = new ArrayList<>();
+    for (Map.Entry<List<String>, Set<String>> e : templates.entrySet()) {
+      String prefix = e.getKey().get(0);
+      String suffix = e.getKey().get(1);
+      // split the keys so that the patterns don't exceed the maximum length
+      List<String> chunk = new ArrayList<>();
+      int length = prefix.length() + suffix.length() + 2;
+      for (String key : e.getValue()) {
+        if (!chunk.isEmpty() && length + key.length() + 1 > maxLength) {
+          patterns.add(prefix + "(" + OR.join(chunk) + ")" + suffix);
+          chunk.clear();
+          length = prefix.length() + suffix.length() + 2;
+        }
+        chunk.add(key);
+        length += key.length() + 1;
+      }
+      patterns.add(prefix + "(" + OR.join(chunk) + ")" + suffix);
+    }
+    patterns.addAll(others);
+
+    // combine the distinct patterns into alternations
+    List<String> merged = new ArrayList<>();
+    List<String> group = new ArrayList<>();
+    int length = 2;
+    for (String pattern : patterns) {
+      if (!group.isEmpty() && length + pattern.length() + 1 > maxLength) {
+        merged.add(alternation(group));
+        group.clear();
+        length = 2;
+      }
+      group.add(pattern);
+      length += pattern.length() + 1;
+    }
+    if (!group.isEmpty()) {
+      merged.add(alternation(group));
+    }
+    return merged;
+  }
+
+  private static String alternation(List<String> patterns) {
+    return patterns.size() == 1 ? patterns.get(0) : "(" + OR.join(patterns) + ")";
+  }
+}
@@ -22,6 +22,7 @@ import org.gbif.api.service.registry.DatasetService;
 import org.gbif.api.service.registry.InstallationService;
 import org.gbif.api.service.registry.OrganizationService;
 import org.gbif.utils.HttpUtil;
+import org.gbif.varnish.VarnishPurger;
 
 import java.net.URI;
 
@@ -36,16 +37,34 @@ public class VarnishPurgeConfiguration {
 
   private final URI purgeUrl;
   private final Integer purgingThreads;
+  private final long windowMs;
+  private final int maxBanLength;
 
   public VarnishPurgeConfiguration(
       @Value("${api.cache.purge.url}") String purgeUrl,
-      @Value("${api.cache.purge.threads}") Integer purgingThreads) {
+      @Value("${api.cache.purge.threads}") Integer purgingThreads,
+      @Value("${api.cache.purge.windowMs:1000}") long windowMs,
+      @Value("${api.cache.purge.maxBanLength:4000}") int maxBanLength) {
     this.purgeUrl = URI.create(purgeUrl);
     this.purgingThreads = purgingThreads;
+    this.windowMs = windowMs;
+    this.maxBanLength = maxBanLength;
+  }
+
+  @Bean
+  public VarnishBanAggregator varnishBanAggregator() {
+    return new VarnishBanAggregator(
+        new VarnishPurger(
+            HttpUtil.newMultithreadedClient(
+                DEFAULT_HTTP_TIMEOUT_MSECS, purgingThreads, purgingThreads),
+            purgeUrl),
+        windowMs,
+        maxBanLength);
   }
 
   @Bean
   public VarnishPurgeListener varnishPurgeListener(
+      VarnishBanAggregator varnishBanAggregator,
       EventManager eventManager,
       OrganizationService organizationService,
       InstallationService installationService,
@@ -54,9 +73,9 @@ public class VarnishPurgeConfiguration {
       CollectionService collectionService,
       PersonService personService) {
     return new VarnishPurgeListener(
-        HttpUtil.newMultithreadedClient(DEFAULT_HTTP_TIMEOUT_MSECS, purgingThreads, purgingThreads),
+        varnishBanAggregator,
         eventManager,
-        purgeUrl,
+        windowMs,
         organizationService,
         installationService,
         datasetService,
@@ -32,19 +32,19 @@ import org.gbif.api.service.registry.OrganizationService;
 import org.gbif.registry.events.collections.CreateCollectionEntityEvent;
 import org.gbif.registry.events.collections.DeleteCollectionEntityEvent;
 import org.gbif.registry.events.collections.UpdateCollectionEntityEvent;
-import org.gbif.varnish.VarnishPurger;
 
-import java.net.URI;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.eventbus.Subscribe;
 
 /**
@@ -101,6 +101,7 @@ import com.google.common.eventbus.Subscribe;
  *       <li>/network/{any UUID}/constituents BAN
  *     </ul>
  */
+@AsyncEventListener
 public class VarnishPurgeListener {
 
   private static final Logger LOG = LoggerFactory.getLogger(VarnishPurgeListener.class);
@@ -110,28 +111,47 @@ public class VarnishPurgeListener {
   private final InstitutionService institutionService;
   private final CollectionService collectionService;
   private final PersonService personService;
-  private final VarnishPurger purger;
+  private final VarnishBanAggregator purger;
   private static final Joiner PATH_JOINER = Joiner.on("/").skipNulls();
+  private static final int MAX_CACHED_KEYS = 10_000;
 
+  // organization key -> endorsing node key
+  private final Cache<UUID, UUID> endorsingNodeKeys;
+  // installation key -> hosting organization key
+  private final Cache<UUID, UUID> hostingOrganizationKeys;
+
+  /**
+   * @param keysExpiryMs how long the keys looked up for the cascades are kept, usually the window
+   *     of the aggregator
+   */
   public VarnishPurgeListener(
-      CloseableHttpClient client,
+      VarnishBanAggregator purger,
       EventManager eventManager,
-      URI apiBaseUrl,
+      long keysExpiryMs,
       OrganizationService organizationService,
       InstallationService installationService,
       DatasetService datasetService,
       InstitutionService institutionService,
       CollectionService collectionService,
       PersonService personService) {
+    this.purger = purger;
     this.organizationService = organizationService;
     this.installationService = installationService;
     this.datasetService = datasetService;
     this.institutionService = institutionService;
     this.collectionService = collectionService;
     this.personService = personService;
+    this.endorsingNodeKeys =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_KEYS)
+            .expireAfterWrite(keysExpiryMs, TimeUnit.MILLISECONDS)
+            .build();
+    this.hostingOrganizationKeys =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_KEYS)
+            .expireAfterWrite(keysExpiryMs, TimeUnit.MILLISECONDS)
+            .build();
     eventManager.register(this);
-
-    purger = new VarnishPurger(client, apiBaseUrl);
   }
 
   @Subscribe
@@ -150,6 +170,7 @@ public class VarnishPurgeListener {
   @Subscribe
   public final <T extends NetworkEntity> void updated(UpdateEvent<T> event) {
     purgeEntityAndBanLists(event.getObjectClass(), event.getOldObject().getKey());
+    forgetKeys(event.getObjectClass(), event.getOldObject().getKey());
 
     if (event.getObjectClass().equals(Organization.class)) {
       cascadeOrganizationChange(
@@ -165,6 +186,7 @@ public class VarnishPurgeListener {
   @Subscribe
   public final <T extends NetworkEntity> void deleted(DeleteEvent<T> event) {
     purgeEntityAndBanLists(event.getObjectClass(), event.getOldObject().getKey());
+    forgetKeys(event.getObjectClass(), event.getOldObject().getKey());
 
     if (event.getObjectClass().equals(Organization.class)) {
       cascadeOrganizationChange((Organization) event.getOldObject());
@@ -229,13 +251,11 @@ public class VarnishPurgeListener {
     Set<UUID> parentKeys = new UUIDHashSet();
     for (Dataset d : datasets) {
       if (!orgKeys.contains(d.getPublishingOrganizationKey())) {
-        Organization o = organizationService.get(d.getPublishingOrganizationKey());
-        nodeKeys.add(o.getEndorsingNodeKey());
+        nodeKeys.add(endorsingNodeKey(d.getPublishingOrganizationKey()));
       }
       if (!instKeys.contains(d.getInstallationKey())) {
         instKeys.add(d.getInstallationKey());
-        Installation i = installationService.get(d.getInstallationKey());
-        orgKeys.add(i.getOrganizationKey());
+        orgKeys.add(hostingOrganizationKey(d.getInstallationKey()));
       }
       orgKeys.add(d.getPublishingOrganizationKey());
       if (d.getParentDatasetKey() != null) {
@@ -275,8 +295,7 @@ public class VarnishPurgeListener {
     // /node/{i.organization.endorsingNodeKey}/installation BAN
     Set<UUID> nodekeys = new UUIDHashSet();
     for (UUID orgKey : keys) {
-      Organization o = organizationService.get(orgKey);
-      nodekeys.add(o.getEndorsingNodeKey());
+      nodekeys.add(endorsingNodeKey(orgKey));
     }
     purger.ban(String.format("%node/%s/organization", purger.anyKey(nodekeys)));
   }
@@ -316,6 +335,37 @@ public class VarnishPurgeListener {
     purger.ban(String.format("%s(/search|/suggest)?[^/]*$", cl.getSimpleName().toLowerCase()));
   }
 
+  private UUID endorsingNodeKey(UUID organizationKey) {
+    UUID nodeKey = endorsingNodeKeys.getIfPresent(organizationKey);
+    if (nodeKey == null) {
+      nodeKey = organizationService.get(organizationKey).getEndorsingNodeKey();
+      if (nodeKey != null) {
+        endorsingNodeKeys.put(organizationKey, nodeKey);
+      }
+    }
+    return nodeKey;
+  }
+
+  private UUID hostingOrganizationKey(UUID installationKey) {
+    UUID organizationKey = hostingOrganizationKeys.getIfPresent(installationKey);
+    if (organizationKey == null) {
+      organizationKey = installationService.get(installationKey).getOrganizationKey();
+      if (organizationKey != null) {
+        hostingOrganizationKeys.put(installationKey, organizationKey);
+      }
+    }
+    return organizationKey;
+  }
+
+  /** Forgets the keys looked up for a changed entity, which might not be valid anymore. */
+  private void forgetKeys(Class<?> cl, UUID key) {
+    if (Organization.class.equals(cl)) {
+      endorsingNodeKeys.invalidate(key);
+    } else if (Installation.class.equals(cl)) {
+      hostingOrganizationKeys.invalidate(key);
+    }
+  }
+
   private static String path(Object... parts) {
     return PATH_JOINER.join(parts);
   }
@@ -20,39 +20,28 @@ import org.gbif.api.model.registry.Installation;
 import org.gbif.api.model.registry.NetworkEntity;
 import org.gbif.api.model.registry.Organization;
 import org.gbif.api.model.registry.Tag;
-import org.gbif.api.service.registry.DatasetService;
+import org.gbif.registry.events.AsyncEventListener;
 import org.gbif.registry.events.ChangedComponentEvent;
 import org.gbif.registry.events.CreateEvent;
 import org.gbif.registry.events.DeleteEvent;
 import org.gbif.registry.events.EventManager;
 import org.gbif.registry.events.UpdateEvent;
 import org.gbif.registry.search.dataset.indexing.DatasetRealtimeIndexer;
-import org.gbif.ws.NotFoundException;
 
-import java.util.UUID;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import com.google.common.eventbus.Subscribe;
 
+@AsyncEventListener
 @SuppressWarnings("UnstableApiUsage")
 @Service
 public class DatasetIndexUpdateListener {
 
-  private static final Logger LOG = LoggerFactory.getLogger(DatasetIndexUpdateListener.class);
-
   // Used to build a new index before consuming if required
   private final DatasetRealtimeIndexer indexService;
-  private final DatasetService datasetService;
 
-  public DatasetIndexUpdateListener(
-      DatasetRealtimeIndexer indexService,
-      DatasetService datasetService,
-      EventManager eventManager) {
+  public DatasetIndexUpdateListener(DatasetRealtimeIndexer indexService, EventManager eventManager) {
     this.indexService = indexService;
-    this.datasetService = datasetService;
     eventManager.register(this);
   }
 
@@ -99,13 +88,7 @@ public class DatasetIndexUpdateListener {
     if (event.getTargetClass().equals(Dataset.class)
         && event.getComponentClass().equals(Tag.class)) {
       // we only put tagged datasets onto the queue for this event type!
-      UUID key = event.getTargetEntityKey();
-      try {
-        Dataset d = datasetService.get(key);
-        indexService.index(d);
-      } catch (NotFoundException e) {
-        LOG.error("Cannot update tagged, but missing dataset {}", key);
-      }
+      indexService.indexDataset(event.getTargetEntityKey());
     }
   }
 }
@@ -16,9 +16,11 @@
 package org.gbif.registry.identity.util;
 
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +47,9 @@ import org.springframework.security.crypto.password.PasswordEncoder;
  *
  * Mostly this code is copied from
  * http://stackoverflow.com/questions/11736555/java-autentication-of-drupal-passwords
+ *
+ * <p>The iterations reuse a digest and a buffer per thread, so verifying a password doesn't
+ * allocate a new digest and two arrays for each of the thousands of rounds.
  */
 public class RegistryPasswordEncoder implements PasswordEncoder {
 
@@ -53,6 +58,7 @@ public class RegistryPasswordEncoder implements PasswordEncoder {
   private static final SecureRandom RANDOM = new SecureRandom();
   private static final String PASSWORD_ITOA64 =
       "./0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+  private static final ThreadLocal<Hasher> HASHER = ThreadLocal.withInitial(Hasher::new);
 
   private final int encodedHashLength;
 
@@ -69,20 +75,6 @@ public class RegistryPasswordEncoder implements PasswordEncoder {
     return PASSWORD_ITOA64.indexOf(settings.charAt(3));
   }
 
-  /** Encode using the algorithm. */
-  private static byte[] sha512(String input) {
-    return sha512(input.getBytes());
-  }
-
-  /** Encode using the algorithm. */
-  private static byte[] sha512(byte[] input) {
-    try {
-      return MessageDigest.getInstance(ALGORITHM).digest(input);
-    } catch (NoSuchAlgorithmException e) {
-      throw new IllegalStateException("Missing required message digest algorithm " + ALGORITHM);
-    }
-  }
-
   /**
    * Encodes the password using a random salt.
    *
@@ -119,31 +111,18 @@ public class RegistryPasswordEncoder implements PasswordEncoder {
 
     int count = 1 << countLog2;
 
-    byte[] hash;
+    String hash;
     try {
-      hash = sha512(salt.concat(password));
-
-      do {
-        hash = sha512(joinBytes(hash, password.getBytes(StandardCharsets.UTF_8)));
-      } while (--count > 0);
+      hash = HASHER.get().hash(salt, password, count);
     } catch (Exception e) {
       LOG.error("Unable to encode the password", e);
       return null;
     }
 
-    String output = preEncoded + base64Encode(hash, hash.length);
+    String output = preEncoded + hash;
     return (output.length() > 0) ? output.substring(0, encodedHashLength) : null;
   }
 
-  /** Joins the byte arrays into a new array, sized to fit. */
-  private static byte[] joinBytes(byte[] a, byte[] b) {
-    byte[] combined = new byte[a.length + b.length];
-
-    System.arraycopy(a, 0, combined, 0, a.length);
-    System.arraycopy(b, 0, combined, a.length, b.length);
-    return combined;
-  }
-
   /**
    * Encodes the input using some smarts. Understanding those smarts is an exercise left to the
    * reader.
@@ -153,7 +132,7 @@ public class RegistryPasswordEncoder implements PasswordEncoder {
    */
   private static String base64Encode(byte[] input, int count) {
 
-    StringBuilder output = new StringBuilder();
+    StringBuilder output = new StringBuilder((count * 4 + 2) / 3);
     int i = 0;
     CharSequence itoa64 = PASSWORD_ITOA64;
     do {
@@ -196,4 +175,50 @@ public class RegistryPasswordEncoder implements PasswordEncoder {
     }
     return sb.toString();
   }
+
+  /**
+   * The SHA-512 digest of a thread and the buffer holding the hash of the previous round followed
+   * by the password, which is digested into its own first bytes on every round.
+   */
+  private static final class Hasher {
+
+    private static final int HASH_LENGTH = 64;
+
+    private final MessageDigest digest;
+    private byte[] buffer = new byte[HASH_LENGTH * 2];
+
+    private Hasher() {
+      try {
+        digest = MessageDigest.getInstance(ALGORITHM);
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("Missing required message digest algorithm " + ALGORITHM);
+      }
+    }
+
+    /** @return the encoded hash of the salted password after the given number of rounds */
+    private String hash(String salt, String password, int count) throws DigestException {
+      byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+      int length = HASH_LENGTH + passwordBytes.length;
+      if (buffer.length < length) {
+        buffer = new byte[Math.max(length, buffer.length * 2)];
+      }
+      System.arraycopy(passwordBytes, 0, buffer, HASH_LENGTH, passwordBytes.length);
+
+      try {
+        digest.reset();
+        digest.update(salt.getBytes(StandardCharsets.UTF_8));
+        digest.update(passwordBytes);
+        digest.digest(buffer, 0, HASH_LENGTH);
+        do {
+          digest.update(buffer, 0, length);
+          digest.digest(buffer, 0, HASH_LENGTH);
+        } while (--count > 0);
+        return base64Encode(buffer, HASH_LENGTH);
+      } finally {
+        // no trace of the password is left behind for the next caller of the thread
+        Arrays.fill(buffer, (byte) 0);
+        Arrays.fill(passwordBytes, (byte) 0);
+      }
+    }
+  }
 }
@@ -21,6 +21,8 @@ import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(Parameterized.class)
 public class RegistryPasswordEncoderTest {
@@ -42,10 +44,24 @@ public class RegistryPasswordEncoderTest {
       {"markus", "$S$Dy6/BMI3AoImMSlZGHhEkXgKbUenX7yS2SNgmj7NsrA9JPqH01kW"},
       {"carla", "$S$DN6evrfX6JzGw./kDKHhON8VEUp7tDbF0gyZYhX1Uw4Y3udFN47w"},
       {"pia", "$S$DnuHhGOmUVLBYF.kXnE9ZD6ffqnFz7GPxWaikVFLh1JAymnJkdB3"},
-      {"password1", "$S$D1UoWp.wjyDqA1oxwy/MjuSuQnYWsRtSzJGF4vVzdKAN1eh9sIVd"}
+      {"password1", "$S$D1UoWp.wjyDqA1oxwy/MjuSuQnYWsRtSzJGF4vVzdKAN1eh9sIVd"},
+      // hashed with the former implementation, allocating new arrays on every round
+      {"p\u00e4ssw\u00f6rd \u2603", "$S$DabcdefghgaF.S1kWY.Uqzq9xKbo22D.I0YtEE8yB2vM5dm95e6T"},
+      {"", "$S$DZYXWVUT.Tj74tJ/dEFa0L9xAgp1iZwznqlY5lHXaRKyaU7QYGEL"},
+      {"short", "$S$7a1b2c3d4m3MPydzMO3LIKJUftnDVS5ZjWIOaE6bQEqFmpcJr1ZN"},
+      {longPassword(), "$S$E/0Aa9zZ.VcG2/TqukM6Couvz6wo5gyBF07q9dR5MrVfTMIcnF9h"}
     };
   }
 
+  /** A password longer than the buffer of the hashing rounds, which has to grow. */
+  private static String longPassword() {
+    StringBuilder password = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      password.append((char) ('a' + i % 26));
+    }
+    return password.toString();
+  }
+
   /** Verify that preencoded passwords can be encoded again (e.g. for auth). */
   @Test
   public void testPreEncoded() {
@@ -64,4 +80,18 @@ public class RegistryPasswordEncoderTest {
         encoder.encode(password, encoded1); // encode again reading the salt genarate above
     assertEquals(encoded1, encoded2); // verify they
   }
+
+  @Test
+  public void testMatches() {
+    assertTrue(encoder.matches(password, hash));
+    assertFalse(encoder.matches(password + "x", hash));
+  }
+
+  /** Verify the full hash, not truncated to the length stored by Drupal. */
+  @Test
+  public void testFullLength() {
+    String encoded = new RegistryPasswordEncoder(98).encode(password, hash);
+    assertEquals(98, encoded.length());
+    assertEquals(hash, encoded.substring(0, hash.length()));
+  }
 }
@@ -51,6 +51,11 @@ public class DatabaseInitializer extends ExternalResource {
     initDB();
   }
 
+  /** @return the data source of the test database */
+  public static DataSource getDataSource() {
+    return dataSource;
+  }
+
   /** Runs a script to initiliaze the DB. */
   private void initDB() throws SQLException {
     // run the script
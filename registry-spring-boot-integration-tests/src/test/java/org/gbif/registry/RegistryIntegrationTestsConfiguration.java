@@ -20,8 +20,14 @@ import org.gbif.common.messaging.api.MessagePublisher;
 import org.gbif.registry.mail.EmailSender;
 import org.gbif.registry.mail.InMemoryEmailSender;
 import org.gbif.registry.message.MessagePublisherStub;
+import org.gbif.registry.persistence.WithMyBatis;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.InstallationMapper;
+import org.gbif.registry.persistence.mapper.NodeMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
 import org.gbif.registry.search.DatasetSearchServiceStub;
 import org.gbif.registry.search.dataset.indexing.es.EsConfiguration;
+import org.gbif.registry.utils.RegistryEntities;
 import org.gbif.registry.ws.config.DataSourcesConfiguration;
 
 import java.util.Date;
@@ -60,6 +66,7 @@ import org.springframework.context.annotation.PropertySource;
       "org.gbif.registry.security",
       "org.gbif.registry.ws.surety",
       "org.gbif.registry.persistence",
+      "org.gbif.registry.service",
       "org.gbif.registry.identity",
       "org.gbif.registry.surety",
       "org.gbif.registry.mail",
@@ -105,6 +112,17 @@ public class RegistryIntegrationTestsConfiguration {
     return new DatasetSearchServiceStub();
   }
 
+  @Bean
+  public RegistryEntities registryEntities(
+      WithMyBatis withMyBatis,
+      NodeMapper nodeMapper,
+      OrganizationMapper organizationMapper,
+      InstallationMapper installationMapper,
+      DatasetMapper datasetMapper) {
+    return new RegistryEntities(
+        withMyBatis, nodeMapper, organizationMapper, installationMapper, datasetMapper);
+  }
+
   @Bean
   public BeanUtilsBean beanUtilsBean() {
     DateTimeConverter dateConverter = new DateConverter(null);
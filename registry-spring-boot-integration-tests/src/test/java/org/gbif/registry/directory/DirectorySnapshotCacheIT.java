@@ -0,0 +1,324 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.directory;
+
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.api.model.registry.Node;
+import org.gbif.api.vocabulary.IdentifierType;
+import org.gbif.registry.directory.client.NodeClient;
+import org.gbif.registry.directory.client.ParticipantClient;
+import org.gbif.registry.directory.client.PersonClient;
+import org.gbif.registry.directory.client.config.ClientErrorDecoder;
+import org.gbif.registry.directory.client.config.HierarchicalContract;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import feign.Feign;
+import feign.jackson.JacksonDecoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Augments pages of registry nodes against a local stub of the Directory, counting the remote
+ * calls.
+ */
+public class DirectorySnapshotCacheIT {
+
+  private static final int PARTICIPANTS = 100;
+  private static final int PAGE_SIZE = 40;
+
+  private final DirectoryStub directoryStub = new DirectoryStub();
+  private ParticipantClient participantClient;
+  private NodeClient nodeClient;
+  private PersonClient personClient;
+
+  @Before
+  public void setup() throws IOException {
+    for (int i = 1; i <= PARTICIPANTS; i++) {
+      directoryStub.addParticipant(i);
+    }
+    String url = directoryStub.start();
+
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    participantClient = client(ParticipantClient.class, url, mapper);
+    nodeClient = client(NodeClient.class, url, mapper);
+    personClient = client(PersonClient.class, url, mapper);
+  }
+
+  @After
+  public void tearDown() {
+    directoryStub.stop();
+  }
+
+  @Test
+  public void testPageAugmentedFromSnapshot() {
+    DirectorySnapshotCache cache = cache(60_000);
+    assertTrue(cache.refresh());
+    // pages of 40 of the 100 participants, 100 nodes and 200 people
+    assertEquals(3 + 3 + 5, directoryStub.requests.get());
+
+    directoryStub.requests.set(0);
+    List<Node> page = augment(new DirectoryAugmenterImpl(cache), PARTICIPANTS);
+
+    assertEquals(0, directoryStub.requests.get());
+    assertEquals(0, cache.getRemoteLookups());
+    for (Node node : page) {
+      assertNotNull(node.getParticipantTitle());
+      assertEquals(2, node.getContacts().size());
+    }
+  }
+
+  @Test
+  public void testSnapshotCompleteWhenPagesAreCapped() {
+    // GIVEN a Directory returning fewer results than asked for
+    directoryStub.maxLimit = 25;
+    DirectorySnapshotCache cache = cache(60_000);
+
+    // WHEN
+    assertTrue(cache.refresh());
+
+    // THEN all the entities were read, pages of 25 of the 100 participants, nodes and 200 people
+    assertEquals(4 + 4 + 8, directoryStub.requests.get());
+    directoryStub.requests.set(0);
+    augment(new DirectoryAugmenterImpl(cache), PARTICIPANTS);
+    assertEquals(0, cache.getRemoteLookups());
+  }
+
+  @Test
+  public void testPageAugmentedWithoutSnapshot() {
+    DirectorySnapshotCache cache = cache(0);
+    List<Node> page = augment(new DirectoryAugmenterImpl(cache), PARTICIPANTS);
+
+    // a participant, its node and both their people per registry node
+    assertEquals(4 * PARTICIPANTS, directoryStub.requests.get());
+    assertEquals(4 * PARTICIPANTS, cache.getRemoteLookups());
+    for (Node node : page) {
+      assertEquals(2, node.getContacts().size());
+    }
+  }
+
+  @Test
+  public void testStaleSnapshotServedWhenRefreshFails() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    DirectorySnapshotCache cache = cache(60_000);
+    cache.bindTo(registry);
+    assertTrue(cache.refresh());
+
+    directoryStub.failing = true;
+    assertFalse(cache.refresh());
+    assertEquals(1, cache.getSuccessfulRefreshes());
+    assertEquals(1, cache.getFailedRefreshes());
+    assertEquals(
+        1d,
+        registry
+            .get("registry.directory.snapshot.refreshes")
+            .tag("result", "failure")
+            .functionCounter()
+            .count(),
+        0d);
+
+    directoryStub.requests.set(0);
+    for (Node node : augment(new DirectoryAugmenterImpl(cache), PARTICIPANTS)) {
+      assertEquals(2, node.getContacts().size());
+    }
+    assertEquals(0, directoryStub.requests.get());
+  }
+
+  @Test
+  public void testNewParticipantLookedUpRemotely() {
+    DirectorySnapshotCache cache = cache(60_000);
+    assertTrue(cache.refresh());
+
+    directoryStub.addParticipant(PARTICIPANTS + 1);
+    directoryStub.requests.set(0);
+    Node node = new DirectoryAugmenterImpl(cache).augment(registryNode(PARTICIPANTS + 1));
+
+    assertEquals(4, directoryStub.requests.get());
+    assertEquals(4, cache.getRemoteLookups());
+    assertEquals(2, node.getContacts().size());
+  }
+
+  /** @param refreshMs 0 to always call the Directory */
+  private DirectorySnapshotCache cache(long refreshMs) {
+    return new DirectorySnapshotCache(
+        participantClient, nodeClient, personClient, refreshMs, 0, PAGE_SIZE, false);
+  }
+
+  private static List<Node> augment(Augmenter augmenter, int size) {
+    List<Node> page = new ArrayList<>(size);
+    for (int i = 1; i <= size; i++) {
+      page.add(augmenter.augment(registryNode(i)));
+    }
+    return page;
+  }
+
+  private static Node registryNode(int participantId) {
+    Identifier identifier = new Identifier();
+    identifier.setType(IdentifierType.GBIF_PARTICIPANT);
+    identifier.setIdentifier(String.valueOf(participantId));
+    Node node = new Node();
+    node.setTitle("Node " + participantId);
+    node.setIdentifiers(Lists.newArrayList(identifier));
+    return node;
+  }
+
+  private static <T> T client(Class<T> clientClass, String url, ObjectMapper mapper) {
+    return Feign.builder()
+        .contract(new HierarchicalContract())
+        .decoder(new JacksonDecoder(mapper))
+        .errorDecoder(new ClientErrorDecoder())
+        .target(clientClass, url);
+  }
+
+  /**
+   * Serves the participant, node and person resources of the Directory, each participant having a
+   * node and a person, and the node another person.
+   */
+  private static class DirectoryStub {
+
+    private final Map<String, Map<Integer, String>> entities = new HashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile boolean failing;
+    private volatile int maxLimit = Integer.MAX_VALUE;
+    private HttpServer server;
+
+    private DirectoryStub() {
+      entities.put("participant", new TreeMap<>());
+      entities.put("node", new TreeMap<>());
+      entities.put("person", new TreeMap<>());
+    }
+
+    private synchronized void addParticipant(int id) {
+      int nodeId = 1000 + id;
+      int delegateId = 2000 + id;
+      int managerId = 3000 + id;
+      entities
+          .get("participant")
+          .put(
+              id,
+              String.format(
+                  "{\"id\":%d,\"name\":\"Participant %d\",\"nodes\":[{\"id\":%d}],"
+                      + "\"people\":[{\"personId\":%d,\"role\":\"HEAD_OF_DELEGATION\"}]}",
+                  id, id, nodeId, delegateId));
+      entities
+          .get("node")
+          .put(
+              nodeId,
+              String.format(
+                  "{\"id\":%d,\"name\":\"Node %d\","
+                      + "\"people\":[{\"personId\":%d,\"role\":\"NODE_MANAGER\"}]}",
+                  nodeId, id, managerId));
+      entities.get("person").put(delegateId, person(delegateId));
+      entities.get("person").put(managerId, person(managerId));
+    }
+
+    private static String person(int id) {
+      return String.format(
+          "{\"id\":%d,\"firstName\":\"First%d\",\"surname\":\"Last%d\","
+              + "\"email\":\"person%d@example.org\"}",
+          id, id, id, id);
+    }
+
+    private String start() throws IOException {
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      server.createContext("/", this::handle);
+      server.start();
+      return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void stop() {
+      server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+      requests.incrementAndGet();
+      String[] path = exchange.getRequestURI().getPath().substring(1).split("/");
+      String body;
+      synchronized (this) {
+        Map<Integer, String> resource = entities.get(path[0]);
+        if (failing || resource == null) {
+          body = null;
+        } else if (path.length > 1) {
+          body = resource.get(Integer.valueOf(path[1]));
+        } else {
+          body = page(resource, queryParameters(exchange.getRequestURI().getRawQuery()));
+        }
+      }
+
+      if (body == null) {
+        exchange.sendResponseHeaders(failing ? 500 : 404, -1);
+      } else {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(bytes);
+        }
+      }
+      exchange.close();
+    }
+
+    private String page(Map<Integer, String> resource, Map<String, String> parameters) {
+      int offset = Integer.parseInt(parameters.getOrDefault("offset", "0"));
+      int limit = Math.min(maxLimit, Integer.parseInt(parameters.getOrDefault("limit", "20")));
+      List<String> results = new ArrayList<>(resource.values());
+      int from = Math.min(offset, results.size());
+      List<String> page = results.subList(from, Math.min(offset + limit, results.size()));
+      return String.format(
+          "{\"offset\":%d,\"limit\":%d,\"endOfRecords\":%b,\"count\":%d,\"results\":[%s]}",
+          offset,
+          limit,
+          offset + limit >= results.size(),
+          results.size(),
+          String.join(",", page));
+    }
+
+    private static Map<String, String> queryParameters(String query) {
+      Map<String, String> parameters = new HashMap<>();
+      if (query != null) {
+        for (String parameter : query.split("&")) {
+          String[] nameValue = parameter.split("=", 2);
+          parameters.put(nameValue[0], nameValue.length > 1 ? nameValue[1] : "");
+        }
+      }
+      return parameters;
+    }
+  }
+}
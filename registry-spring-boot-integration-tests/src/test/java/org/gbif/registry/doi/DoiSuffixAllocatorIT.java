@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.doi;
+
+import org.gbif.api.model.common.DOI;
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.doi.generator.DoiGenerator;
+import org.gbif.registry.doi.generator.DoiSuffixAllocator;
+import org.gbif.registry.domain.doi.DoiType;
+import org.gbif.registry.persistence.mapper.DoiMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@SpringBootTest(classes = RegistryIntegrationTestsConfiguration.class)
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class DoiSuffixAllocatorIT {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DoiSuffixAllocatorIT.class);
+
+  private static final String PREFIX = "10.21373";
+  private static final List<String> SHOULDERS = ImmutableList.of("", "dl.", "dp.");
+  private static final int THREADS = 8;
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @Autowired private DoiMapper doiMapper;
+  @Autowired private DoiGenerator doiGenerator;
+
+  @Test
+  public void testConcurrentAllocationsAreUnique() throws Exception {
+    int allocations = 2_000_000;
+
+    // an allocator per thread, like separate registry instances sharing the sequence
+    long start = System.nanoTime();
+    Set<String> codes =
+        allocateConcurrently(
+            () -> new DoiSuffixAllocator(doiMapper, PREFIX, SHOULDERS, 1000)::next, allocations);
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertEquals(allocations, codes.size());
+    long perSecond = allocations * 1000L / Math.max(1, elapsedMs);
+    LOG.info("Allocated {} DOI codes in {} ms, {} per second", allocations, elapsedMs, perSecond);
+  }
+
+  @Test
+  public void testConcurrentNewDoisAreStored() throws Exception {
+    int dois = 5_000;
+    Set<String> names =
+        allocateConcurrently(() -> () -> doiGenerator.newDownloadDOI().getDoiName(), dois);
+
+    assertEquals(dois, names.size());
+    for (String name : names) {
+      assertTrue(name, name.startsWith(PREFIX + "/dl."));
+      assertNotNull(doiMapper.get(new DOI(name)));
+    }
+  }
+
+  @Test
+  public void testRandomDoisSkipped() {
+    // a download DOI drawn at random before the sequence existed, with the code of the next value
+    long next = doiMapper.nextSuffixNumbers(1).get(0) + 1;
+    String taken = DoiSuffixAllocator.encode(next);
+    doiMapper.create(new DOI(PREFIX, "dl." + taken), DoiType.DOWNLOAD);
+
+    DoiSuffixAllocator allocator = new DoiSuffixAllocator(doiMapper, PREFIX, SHOULDERS, 10);
+    for (int i = 0; i < 10; i++) {
+      assertNotEquals(taken, allocator.next());
+    }
+  }
+
+  /** @param allocators gives every thread the allocation it runs */
+  private static Set<String> allocateConcurrently(
+      Supplier<Supplier<String>> allocators, int allocations) throws Exception {
+    Set<String> codes = ConcurrentHashMap.newKeySet(allocations);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<?>> futures = new ArrayList<>(THREADS);
+      for (int t = 0; t < THREADS; t++) {
+        int count = allocations / THREADS + (t < allocations % THREADS ? 1 : 0);
+        Supplier<String> allocation = allocators.get();
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < count; i++) {
+                    codes.add(allocation.get());
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return codes;
+  }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.api.model.registry.Dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.eventbus.Subscribe;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventManagerImplIT {
+
+  private EventManagerImpl eventManager;
+
+  @After
+  public void tearDown() {
+    if (eventManager != null) {
+      eventManager.close();
+    }
+  }
+
+  @Test
+  public void testSyncAndAsyncListeners() throws Exception {
+    eventManager = new EventManagerImpl(2, 100, 1000, 10000);
+    SyncListener sync = new SyncListener();
+    OrderingListener async = new OrderingListener(0);
+    eventManager.register(sync);
+    eventManager.register(async);
+
+    UUID key = UUID.randomUUID();
+    eventManager.post(update(key, 0));
+
+    // the synchronous listener ran before post returned, on the posting thread
+    assertEquals(1, sync.events.get());
+    assertSame(Thread.currentThread(), sync.thread);
+
+    eventManager.close();
+    assertEquals(Collections.singletonList(0), async.received.get(key));
+    assertNotEquals(Thread.currentThread(), async.thread);
+    assertEquals(1, eventManager.getListenerStats().get(0).getCount());
+  }
+
+  @Test
+  public void testOrderingPerEntityKey() throws Exception {
+    eventManager = new EventManagerImpl(4, 1000, 5000, 30000);
+    OrderingListener listener = new OrderingListener(1);
+    eventManager.register(listener);
+
+    int numKeys = 20;
+    int updatesPerKey = 50;
+    List<UUID> keys = new ArrayList<>();
+    for (int i = 0; i < numKeys; i++) {
+      keys.add(UUID.randomUUID());
+    }
+    // the updates of all the keys are interleaved
+    for (int seq = 0; seq < updatesPerKey; seq++) {
+      for (UUID key : keys) {
+        eventManager.post(update(key, seq));
+      }
+    }
+    eventManager.close();
+
+    assertEquals(numKeys, listener.received.size());
+    for (UUID key : keys) {
+      List<Integer> received = listener.received.get(key);
+      assertEquals(updatesPerKey, received.size());
+      for (int seq = 0; seq < updatesPerKey; seq++) {
+        assertEquals("Out of order update for " + key, seq, (int) received.get(seq));
+      }
+    }
+  }
+
+  @Test
+  public void testFullLaneKeepsOrder() throws Exception {
+    // a single lane with room for 2 events, and a short offer timeout
+    eventManager = new EventManagerImpl(1, 2, 5, 30000);
+    GatedListener listener = new GatedListener();
+    eventManager.register(listener);
+
+    UUID key = UUID.randomUUID();
+    eventManager.post(update(key, 0));
+    assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+    // the lane is busy with the first event, the next 2 fill its queue
+    eventManager.post(update(key, 1));
+    eventManager.post(update(key, 2));
+
+    Thread poster = new Thread(() -> eventManager.post(update(key, 3)));
+    poster.start();
+    // the poster waits for room long past the offer timeout, without delivering the event itself
+    poster.join(200);
+    assertTrue(poster.isAlive());
+    assertEquals(0, eventManager.getCallerDeliveries());
+
+    listener.gate.countDown();
+    poster.join(TimeUnit.SECONDS.toMillis(10));
+    eventManager.close();
+
+    assertEquals(Arrays.asList(0, 1, 2, 3), listener.received);
+    assertEquals(0, eventManager.getCallerDeliveries());
+  }
+
+  @Test
+  public void testNothingLostAtShutdown() throws Exception {
+    // a tiny queue and a slow listener, so that producers are throttled and the queue overflows
+    eventManager = new EventManagerImpl(2, 8, 5, 30000);
+    OrderingListener listener = new OrderingListener(1);
+    eventManager.register(listener);
+
+    int producers = 4;
+    int eventsPerProducer = 100;
+    ExecutorService executor = Executors.newFixedThreadPool(producers);
+    CountDownLatch start = new CountDownLatch(1);
+    for (int p = 0; p < producers; p++) {
+      executor.submit(
+          () -> {
+            start.await();
+            UUID key = UUID.randomUUID();
+            for (int seq = 0; seq < eventsPerProducer; seq++) {
+              eventManager.post(update(key, seq));
+            }
+            return null;
+          });
+    }
+    start.countDown();
+
+    // shut down while the producers are still posting
+    Thread.sleep(20);
+    eventManager.close();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    // events posted after the shutdown are delivered as well
+    eventManager.post(update(UUID.randomUUID(), 0));
+
+    assertEquals(producers * eventsPerProducer + 1, listener.count.get());
+    assertEquals(0, eventManager.getQueueDepth());
+    assertTrue(eventManager.getCallerDeliveries() > 0);
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    eventManager = new EventManagerImpl(2, 100, 1000, 10000);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    eventManager.register(new SyncListener());
+    eventManager.bindTo(registry);
+    // registered after binding, it is added to the registry
+    eventManager.register(new OrderingListener(0));
+
+    for (int seq = 0; seq < 3; seq++) {
+      eventManager.post(update(UUID.randomUUID(), seq));
+    }
+    eventManager.close();
+
+    assertEquals(
+        3,
+        registry
+            .get("registry.events.listener")
+            .tag("listener", "SyncListener")
+            .tag("mode", "synchronous")
+            .functionTimer()
+            .count(),
+        0);
+    assertEquals(
+        3,
+        registry
+            .get("registry.events.listener")
+            .tag("listener", "OrderingListener")
+            .tag("mode", "asynchronous")
+            .functionTimer()
+            .count(),
+        0);
+    assertEquals(0, registry.get("registry.events.queue.depth").gauge().value(), 0);
+    assertEquals(0, registry.get("registry.events.caller.deliveries").functionCounter().count(), 0);
+  }
+
+  @Test
+  public void testListenerMetersRemovedOnUnregister() {
+    eventManager = new EventManagerImpl(2, 100, 1000, 10000);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    eventManager.bindTo(registry);
+    SyncListener first = new SyncListener();
+    SyncListener second = new SyncListener();
+    eventManager.register(first);
+    eventManager.register(second);
+    eventManager.post(update(UUID.randomUUID(), 0));
+
+    // listeners of the same class are timed separately
+    assertEquals(
+        2,
+        registry.get("registry.events.listener").tag("listener", "SyncListener").meters().size());
+    assertEquals(
+        1,
+        registry
+            .get("registry.events.listener")
+            .tag("instance", instance(first))
+            .functionTimer()
+            .count(),
+        0);
+
+    eventManager.unregister(first);
+    assertTrue(
+        registry
+            .find("registry.events.listener")
+            .tag("instance", instance(first))
+            .meters()
+            .isEmpty());
+    assertTrue(
+        registry
+            .find("registry.events.listener.max")
+            .tag("instance", instance(first))
+            .meters()
+            .isEmpty());
+    assertEquals(
+        1,
+        registry
+            .get("registry.events.listener")
+            .tag("instance", instance(second))
+            .functionTimer()
+            .count(),
+        0);
+  }
+
+  private static String instance(Object listener) {
+    return listener.getClass().getSimpleName()
+        + "@"
+        + Integer.toHexString(System.identityHashCode(listener));
+  }
+
+  private static UpdateEvent<Dataset> update(UUID key, int seq) {
+    Dataset oldDataset = new Dataset();
+    oldDataset.setKey(key);
+    Dataset newDataset = new Dataset();
+    newDataset.setKey(key);
+    newDataset.setTitle(String.valueOf(seq));
+    return UpdateEvent.newInstance(newDataset, oldDataset, Dataset.class);
+  }
+
+  public static class SyncListener {
+
+    private final AtomicInteger events = new AtomicInteger();
+    private volatile Thread thread;
+
+    @Subscribe
+    public void updated(UpdateEvent<Dataset> event) {
+      thread = Thread.currentThread();
+      events.incrementAndGet();
+    }
+  }
+
+  /** Records the sequence numbers of the updates, once the gate opens. */
+  @AsyncEventListener
+  public static class GatedListener {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+
+    @Subscribe
+    public void updated(UpdateEvent<Dataset> event) throws InterruptedException {
+      started.countDown();
+      gate.await();
+      received.add(Integer.valueOf(event.getNewObject().getTitle()));
+    }
+  }
+
+  /** Records the sequence numbers of the updates received for every key. */
+  @AsyncEventListener
+  public static class OrderingListener {
+
+    private final long delayMs;
+    private final Map<UUID, List<Integer>> received = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private volatile Thread thread;
+
+    OrderingListener(long delayMs) {
+      this.delayMs = delayMs;
+    }
+
+    @Subscribe
+    public void updated(UpdateEvent<Dataset> event) throws InterruptedException {
+      thread = Thread.currentThread();
+      if (delayMs > 0) {
+        Thread.sleep(delayMs);
+      }
+      received
+          .computeIfAbsent(
+              event.getNewObject().getKey(), k -> Collections.synchronizedList(new ArrayList<>()))
+          .add(Integer.valueOf(event.getNewObject().getTitle()));
+      count.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.utils.HttpUtil;
+import org.gbif.varnish.VarnishPurger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VarnishBanAggregatorIT {
+
+  // a long window, the tests flush explicitly
+  private static final long WINDOW_MS = 60_000;
+
+  private HttpServer server;
+  private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+  private final List<String> headers = Collections.synchronizedList(new ArrayList<>());
+  private VarnishPurger purger;
+
+  @Before
+  public void setup() throws IOException {
+    // stub Varnish counting the requests it receives per method
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+    purger =
+        new VarnishPurger(
+            HttpUtil.newMultithreadedClient(2000, 2, 2),
+            URI.create("http://localhost:" + server.getAddress().getPort() + "/v1/"));
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests
+        .computeIfAbsent(exchange.getRequestMethod(), m -> new AtomicInteger())
+        .incrementAndGet();
+    for (List<String> values : exchange.getRequestHeaders().values()) {
+      headers.addAll(values);
+    }
+    exchange.sendResponseHeaders(200, -1);
+    exchange.close();
+  }
+
+  @Test
+  public void testDuplicatesAreSuppressed() {
+    VarnishBanAggregator aggregator = new VarnishBanAggregator(purger, WINDOW_MS, 4000);
+    UUID datasetKey = UUID.randomUUID();
+    for (int i = 0; i < 1000; i++) {
+      aggregator.purge("dataset/" + datasetKey);
+      aggregator.ban("dataset(/search|/suggest)?[^/]*$");
+      aggregator.ban("network/.+/constituents");
+    }
+    // nothing is sent before the window ends
+    assertEquals(0, count("PURGE") + count("BAN"));
+
+    aggregator.flush();
+    assertEquals(1, count("PURGE"));
+    assertEquals(1, count("BAN"));
+    assertEquals(1000, aggregator.getRequestedPurges());
+    assertEquals(1, aggregator.getEmittedPurges());
+    assertEquals(2000, aggregator.getRequestedBans());
+    assertEquals(1, aggregator.getEmittedBans());
+    assertEquals(2998, aggregator.getSuppressed());
+    aggregator.close();
+  }
+
+  @Test
+  public void testKeyBansAreMerged() {
+    VarnishBanAggregator aggregator = new VarnishBanAggregator(purger, WINDOW_MS, 4000);
+    Set<UUID> installationKeys = new LinkedHashSet<>();
+    for (int i = 0; i < 20; i++) {
+      UUID key = UUID.randomUUID();
+      installationKeys.add(key);
+      aggregator.ban(
+          String.format("installation/%s/dataset", aggregator.anyKey(Sets.newHashSet(key))));
+    }
+    aggregator.flush();
+
+    // a single ban matching all the installations
+    assertEquals(1, count("BAN"));
+    String ban = banHeader("installation/");
+    for (UUID key : installationKeys) {
+      assertTrue(ban.contains(key.toString()));
+    }
+    aggregator.close();
+  }
+
+  @Test
+  public void testLongBansAreSplit() {
+    int maxLength = 500;
+    VarnishBanAggregator aggregator = new VarnishBanAggregator(purger, WINDOW_MS, maxLength);
+    for (int i = 0; i < 100; i++) {
+      aggregator.ban(
+          String.format(
+              "node/%s/dataset", aggregator.anyKey(Sets.newHashSet(UUID.randomUUID()))));
+      aggregator.ban("resource" + i + "/.+");
+    }
+    aggregator.flush();
+
+    // 100 keys of 37 characters and 100 patterns of about 13 characters
+    int banRequests = count("BAN");
+    assertTrue(banRequests > 1);
+    assertTrue(banRequests < 20);
+    assertEquals(200 - banRequests, aggregator.getSuppressed());
+    aggregator.close();
+  }
+
+  @Test
+  public void testNoWindowSendsStraightAway() {
+    VarnishBanAggregator aggregator = new VarnishBanAggregator(purger, 0, 4000);
+    aggregator.purge("dataset/" + UUID.randomUUID());
+    aggregator.ban("dataset(/search|/suggest)?[^/]*$");
+    aggregator.ban("dataset(/search|/suggest)?[^/]*$");
+    assertEquals(1, count("PURGE"));
+    assertEquals(2, count("BAN"));
+    assertEquals(0, aggregator.getSuppressed());
+    aggregator.close();
+  }
+
+  @Test
+  public void testCloseFlushes() {
+    VarnishBanAggregator aggregator = new VarnishBanAggregator(purger, WINDOW_MS, 4000);
+    aggregator.purge("organization/" + UUID.randomUUID());
+    aggregator.close();
+    assertEquals(1, count("PURGE"));
+
+    // sent straight away once closed
+    aggregator.purge("organization/" + UUID.randomUUID());
+    assertEquals(2, count("PURGE"));
+  }
+
+  private int count(String method) {
+    AtomicInteger count = requests.get(method);
+    return count == null ? 0 : count.get();
+  }
+
+  private String banHeader(String containing) {
+    synchronized (headers) {
+      for (String header : headers) {
+        if (header.contains(containing)) {
+          return header;
+        }
+      }
+    }
+    throw new AssertionError("No ban received for " + containing);
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.service.registry.DatasetService;
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.occurrenceclient.OccurrenceMetricsClient;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.OaipmhRecordMapper;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Walks full ListRecords harvests, following the resumption tokens, and compares the records with
+ * the ones rendered on the fly by GetRecord.
+ */
+@SpringBootTest(
+    classes = {RegistryIntegrationTestsConfiguration.class, OaipmhHarvestIT.OaipmhContext.class},
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class OaipmhHarvestIT {
+
+  private static final Pattern RECORD =
+      Pattern.compile("<record>.*?</record>", Pattern.DOTALL);
+  private static final Pattern IDENTIFIER = Pattern.compile("<identifier>([^<]+)</identifier>");
+  private static final Pattern TOKEN =
+      Pattern.compile("<resumptionToken[^>]*>([^<]+)</resumptionToken>");
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @TestConfiguration
+  @ComponentScan("org.gbif.registry.oaipmh")
+  static class OaipmhContext {}
+
+  @MockBean private OccurrenceMetricsClient occurrenceMetricsClient;
+
+  @Autowired private WebApplicationContext context;
+  @Autowired private DataSource dataSource;
+  @Autowired private DatasetMapper datasetMapper;
+  @Autowired private OaipmhRecordMapper oaipmhRecordMapper;
+  @Autowired private DatasetService datasetService;
+
+  private MockMvc mvc;
+
+  @Before
+  public void setup() throws Exception {
+    mvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+    when(occurrenceMetricsClient.getCountForDataset(any())).thenReturn(10L);
+    try (Connection connection = dataSource.getConnection()) {
+      ScriptUtils.executeSqlScript(
+          connection, new ClassPathResource("/scripts/oaipmh/oaipmh_list_records_prepare.sql"));
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    try (Connection connection = dataSource.getConnection()) {
+      ScriptUtils.executeSqlScript(
+          connection, new ClassPathResource("/scripts/oaipmh/oaipmh_cleanup.sql"));
+    }
+  }
+
+  @Test
+  public void testFullHarvestMatchesRecords() throws Exception {
+    // same order as the previous offset paging
+    List<String> expectedKeys =
+        datasetMapper.listWithFilter(null, null, null, null, null, null).stream()
+            .map(d -> d.getKey().toString())
+            .collect(Collectors.toList());
+    assertTrue(expectedKeys.size() > OaipmhTestConfiguration.MAX_LIST_RECORDS);
+
+    for (String metadataPrefix : new String[] {"oai_dc", "eml"}) {
+      // twice, rendering the records and then reading them from the store
+      for (int i = 0; i < 2; i++) {
+        List<String> records = harvest(metadataPrefix);
+        assertEquals(expectedKeys, identifiers(records));
+        for (String record : records) {
+          assertEquals(getRecord(identifier(record), metadataPrefix), record);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testStoredRecordsAreInvalidated() throws Exception {
+    List<String> records = harvest("eml");
+    List<UUID> keys =
+        identifiers(records).stream().map(UUID::fromString).collect(Collectors.toList());
+    assertEquals(keys.size(), oaipmhRecordMapper.listByDatasets(keys).size());
+    verify(occurrenceMetricsClient, times(keys.size())).getCountForDataset(any());
+
+    // served from the store
+    assertEquals(records, harvest("eml"));
+    verify(occurrenceMetricsClient, times(keys.size())).getCountForDataset(any());
+
+    // only the changed dataset is rendered again
+    Dataset dataset = datasetService.get(keys.get(0));
+    dataset.setTitle("Harvested after the change");
+    datasetService.update(dataset);
+    assertEquals(keys.size() - 1, oaipmhRecordMapper.listByDatasets(keys).size());
+
+    List<String> harvested = harvest("eml");
+    verify(occurrenceMetricsClient, times(keys.size() + 1)).getCountForDataset(any());
+    assertTrue(harvested.get(0).contains("Harvested after the change"));
+    assertEquals(records.subList(1, records.size()), harvested.subList(1, harvested.size()));
+  }
+
+  /** @return all the records of a ListRecords harvest, following the resumption tokens */
+  private List<String> harvest(String metadataPrefix) throws Exception {
+    List<String> records = new ArrayList<>();
+    String response = perform("verb", "ListRecords", "metadataPrefix", metadataPrefix);
+    while (true) {
+      records.addAll(find(RECORD, response, 0));
+      List<String> token = find(TOKEN, response, 1);
+      if (token.isEmpty()) {
+        return records;
+      }
+      // the next page is read after a keyset cursor
+      assertTrue(token.get(0).contains("."));
+      response = perform("verb", "ListRecords", "resumptionToken", token.get(0));
+    }
+  }
+
+  private String getRecord(String identifier, String metadataPrefix) throws Exception {
+    String response =
+        perform("verb", "GetRecord", "identifier", identifier, "metadataPrefix", metadataPrefix);
+    return find(RECORD, response, 0).get(0);
+  }
+
+  private String perform(String... parameters) throws Exception {
+    MockHttpServletRequestBuilder request = get("/oai-pmh/registry");
+    for (int i = 0; i < parameters.length; i += 2) {
+      request.param(parameters[i], parameters[i + 1]);
+    }
+    return mvc.perform(request)
+        .andExpect(status().isOk())
+        .andReturn()
+        .getResponse()
+        .getContentAsString();
+  }
+
+  private static List<String> identifiers(List<String> records) {
+    return records.stream().map(OaipmhHarvestIT::identifier).collect(Collectors.toList());
+  }
+
+  private static String identifier(String record) {
+    return find(IDENTIFIER, record, 1).get(0);
+  }
+
+  private static List<String> find(Pattern pattern, String text, int group) {
+    List<String> found = new ArrayList<>();
+    Matcher matcher = pattern.matcher(text);
+    while (matcher.find()) {
+      found.add(matcher.group(group));
+    }
+    return found;
+  }
+}
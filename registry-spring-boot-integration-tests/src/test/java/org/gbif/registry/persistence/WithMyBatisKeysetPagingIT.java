@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence;
+
+import org.gbif.api.model.common.paging.PagingRequest;
+import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.MachineTag;
+import org.gbif.api.model.registry.Node;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.api.vocabulary.IdentifierType;
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.domain.ws.KeysetPagingResponse;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.IdentifierMapper;
+import org.gbif.registry.persistence.mapper.MachineTagMapper;
+import org.gbif.registry.utils.RegistryEntities;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@SpringBootTest(classes = RegistryIntegrationTestsConfiguration.class)
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class WithMyBatisKeysetPagingIT {
+
+  private static final int NUM_DATASETS = 25;
+  private static final int LIMIT = 7;
+  private static final String USER = "WS TEST";
+  private static final String IDENTIFIER = "keyset-paging";
+  private static final String NAMESPACE = "keyset.gbif.org";
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @Autowired private WithMyBatis withMyBatis;
+  @Autowired private DatasetMapper datasetMapper;
+  @Autowired private IdentifierMapper identifierMapper;
+  @Autowired private MachineTagMapper machineTagMapper;
+  @Autowired private RegistryEntities registryEntities;
+
+  private static boolean seeded;
+
+  @Before
+  public void setup() {
+    // the datasets are created once for all the tests
+    if (seeded) {
+      return;
+    }
+
+    Node node = registryEntities.createNode();
+    Organization organization = registryEntities.createOrganization(node.getKey());
+    Installation installation = registryEntities.createInstallation(organization.getKey());
+
+    for (int i = 0; i < NUM_DATASETS; i++) {
+      UUID key =
+          registryEntities.createDataset(organization.getKey(), installation.getKey()).getKey();
+
+      // most datasets share an identifier and a machine tag
+      if (i % 5 != 0) {
+        Identifier identifier = new Identifier();
+        identifier.setType(IdentifierType.UNKNOWN);
+        identifier.setIdentifier(IDENTIFIER);
+        identifier.setCreatedBy(USER);
+        withMyBatis.addIdentifier(identifierMapper, datasetMapper, key, identifier);
+
+        MachineTag machineTag = new MachineTag();
+        machineTag.setNamespace(NAMESPACE);
+        machineTag.setName("harvest");
+        machineTag.setValue(String.valueOf(i));
+        machineTag.setCreatedBy(USER);
+        withMyBatis.addMachineTag(machineTagMapper, datasetMapper, key, machineTag);
+      }
+    }
+    seeded = true;
+  }
+
+  @Test
+  public void testListEqualsOffsetPaging() {
+    List<Dataset> expected = allPages(page -> withMyBatis.list(datasetMapper, page));
+    assertTrue(expected.size() >= NUM_DATASETS);
+
+    List<Dataset> actual =
+        allCursorPages(cursor -> withMyBatis.list(datasetMapper, cursor, LIMIT, false));
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testSearchEqualsOffsetPaging() {
+    // without query the search is ordered as the list
+    assertEquals(
+        allPages(page -> withMyBatis.search(datasetMapper, null, page)),
+        allCursorPages(cursor -> withMyBatis.search(datasetMapper, null, cursor, LIMIT, false)));
+
+    // with a query the offset search is ranked by relevance, so only the matches are compared
+    List<Dataset> expected =
+        allPages(page -> withMyBatis.search(datasetMapper, "Pontaurus", page));
+    List<Dataset> actual =
+        allCursorPages(
+            cursor -> withMyBatis.search(datasetMapper, "Pontaurus", cursor, LIMIT, false));
+    assertFalse(expected.isEmpty());
+    assertEquals(expected.size(), actual.size());
+    assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+  }
+
+  @Test
+  public void testListByIdentifierEqualsOffsetPaging() {
+    List<Dataset> expected =
+        allPages(
+            page ->
+                withMyBatis.listByIdentifier(
+                    datasetMapper, IdentifierType.UNKNOWN, IDENTIFIER, page));
+    assertEquals(NUM_DATASETS - NUM_DATASETS / 5, expected.size());
+
+    List<Dataset> actual =
+        allCursorPages(
+            cursor ->
+                withMyBatis.listByIdentifier(
+                    datasetMapper, IdentifierType.UNKNOWN, IDENTIFIER, cursor, LIMIT, false));
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testListByMachineTagEqualsOffsetPaging() {
+    List<Dataset> expected =
+        allPages(
+            page -> withMyBatis.listByMachineTag(datasetMapper, NAMESPACE, null, null, page));
+    assertEquals(NUM_DATASETS - NUM_DATASETS / 5, expected.size());
+
+    List<Dataset> actual =
+        allCursorPages(
+            cursor ->
+                withMyBatis.listByMachineTag(
+                    datasetMapper, NAMESPACE, null, null, cursor, LIMIT, false));
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testCountIsOptional() {
+    KeysetPagingResponse<Dataset> withoutCount =
+        withMyBatis.list(datasetMapper, null, LIMIT, false);
+    assertNull(withoutCount.getCount());
+    assertNotNull(withoutCount.getNext());
+    assertFalse(withoutCount.isEndOfRecords());
+
+    KeysetPagingResponse<Dataset> withCount = withMyBatis.list(datasetMapper, null, LIMIT, true);
+    assertEquals(Long.valueOf(datasetMapper.count()), withCount.getCount());
+    assertEquals(withoutCount.getResults(), withCount.getResults());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCursor() {
+    withMyBatis.list(datasetMapper, "not-a-cursor", LIMIT, false);
+  }
+
+  private static List<Dataset> allPages(Function<PagingRequest, PagingResponse<Dataset>> lister) {
+    List<Dataset> results = new ArrayList<>();
+    PagingRequest page = new PagingRequest(0, LIMIT);
+    PagingResponse<Dataset> response;
+    do {
+      response = lister.apply(page);
+      results.addAll(response.getResults());
+      page.nextPage();
+    } while (!response.getResults().isEmpty());
+    return results;
+  }
+
+  private static List<Dataset> allCursorPages(
+      Function<String, KeysetPagingResponse<Dataset>> lister) {
+    List<Dataset> results = new ArrayList<>();
+    Set<String> cursors = new HashSet<>();
+    String cursor = null;
+    do {
+      KeysetPagingResponse<Dataset> response = lister.apply(cursor);
+      assertTrue(response.getResults().size() <= LIMIT);
+      results.addAll(response.getResults());
+      cursor = response.getNext();
+      // every page moves forward
+      assertTrue(cursor == null || cursors.add(cursor));
+    } while (cursor != null);
+    return results;
+  }
+}
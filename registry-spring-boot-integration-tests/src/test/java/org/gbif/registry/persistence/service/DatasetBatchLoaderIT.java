@@ -0,0 +1,209 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.service;
+
+import org.gbif.api.model.common.paging.PagingRequest;
+import org.gbif.api.model.registry.Comment;
+import org.gbif.api.model.registry.Contact;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Endpoint;
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.MachineTag;
+import org.gbif.api.model.registry.Node;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.api.model.registry.Tag;
+import org.gbif.api.vocabulary.Country;
+import org.gbif.api.vocabulary.DatasetType;
+import org.gbif.api.vocabulary.IdentifierType;
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.persistence.WithMyBatis;
+import org.gbif.registry.persistence.mapper.CommentMapper;
+import org.gbif.registry.persistence.mapper.ContactMapper;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.EndpointMapper;
+import org.gbif.registry.persistence.mapper.IdentifierMapper;
+import org.gbif.registry.persistence.mapper.MachineTagMapper;
+import org.gbif.registry.persistence.mapper.TagMapper;
+import org.gbif.registry.utils.Comments;
+import org.gbif.registry.utils.Contacts;
+import org.gbif.registry.utils.Endpoints;
+import org.gbif.registry.utils.MachineTags;
+import org.gbif.registry.utils.QueryCounter;
+import org.gbif.registry.utils.QueryCounterConfiguration;
+import org.gbif.registry.utils.RegistryEntities;
+import org.gbif.registry.utils.Tags;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.google.common.collect.Lists;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@SpringBootTest(
+    classes = {RegistryIntegrationTestsConfiguration.class, QueryCounterConfiguration.class})
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class DatasetBatchLoaderIT {
+
+  private static final int NUM_DATASETS = 30;
+  private static final String USER = "WS TEST";
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @Autowired private DatasetBatchLoader datasetBatchLoader;
+  @Autowired private DatasetMapper datasetMapper;
+  @Autowired private ContactMapper contactMapper;
+  @Autowired private EndpointMapper endpointMapper;
+  @Autowired private MachineTagMapper machineTagMapper;
+  @Autowired private TagMapper tagMapper;
+  @Autowired private IdentifierMapper identifierMapper;
+  @Autowired private CommentMapper commentMapper;
+  @Autowired private WithMyBatis withMyBatis;
+  @Autowired private QueryCounter queryCounter;
+  @Autowired private RegistryEntities registryEntities;
+
+  private static UUID installationKey;
+
+  @Before
+  public void setup() {
+    // the datasets are created once for all the tests
+    if (installationKey != null) {
+      return;
+    }
+
+    Node node = registryEntities.createNode();
+    Organization organization = registryEntities.createOrganization(node.getKey());
+    Installation installation = registryEntities.createInstallation(organization.getKey());
+    installationKey = installation.getKey();
+
+    UUID parentKey = null;
+    for (int i = 0; i < NUM_DATASETS; i++) {
+      Dataset dataset = registryEntities.newDataset(organization.getKey(), installation.getKey());
+      // a third of the datasets are constituents of the first one
+      if (i % 3 == 0) {
+        dataset.setParentDatasetKey(parentKey);
+      }
+      UUID key = registryEntities.createDataset(dataset).getKey();
+      if (parentKey == null) {
+        parentKey = key;
+      }
+
+      // vary the number of sub resources per dataset, leaving some datasets without any
+      for (int j = 0; j < i % 4; j++) {
+        Contact contact = Contacts.newInstance();
+        contact.setCreatedBy(USER);
+        contact.setModifiedBy(USER);
+        withMyBatis.addContact(contactMapper, datasetMapper, key, contact);
+
+        Endpoint endpoint = Endpoints.newInstance();
+        endpoint.setCreatedBy(USER);
+        endpoint.setModifiedBy(USER);
+        MachineTag endpointTag = MachineTags.newInstance();
+        endpointTag.setCreatedBy(USER);
+        endpoint.setMachineTags(Lists.newArrayList(endpointTag));
+        withMyBatis.addEndpoint(endpointMapper, datasetMapper, key, endpoint, machineTagMapper);
+
+        MachineTag machineTag = MachineTags.newInstance();
+        machineTag.setCreatedBy(USER);
+        withMyBatis.addMachineTag(machineTagMapper, datasetMapper, key, machineTag);
+
+        Tag tag = Tags.newInstance();
+        tag.setCreatedBy(USER);
+        withMyBatis.addTag(tagMapper, datasetMapper, key, tag);
+
+        Identifier identifier = new Identifier();
+        identifier.setType(IdentifierType.GBIF_PORTAL);
+        identifier.setIdentifier(String.valueOf(i * 10 + j));
+        identifier.setCreatedBy(USER);
+        withMyBatis.addIdentifier(identifierMapper, datasetMapper, key, identifier);
+
+        Comment comment = Comments.newInstance();
+        comment.setCreatedBy(USER);
+        comment.setModifiedBy(USER);
+        withMyBatis.addComment(commentMapper, datasetMapper, key, comment);
+      }
+    }
+  }
+
+  @Test
+  public void testListMatchesNestedSelects() {
+    PagingRequest page = new PagingRequest(0, NUM_DATASETS);
+    List<Dataset> expected = datasetMapper.list(page);
+    assertEquals(NUM_DATASETS, expected.size());
+    assertEquals(expected, datasetBatchLoader.list(page));
+
+    // smaller pages too
+    page = new PagingRequest(5, 7);
+    assertEquals(datasetMapper.list(page), datasetBatchLoader.list(page));
+  }
+
+  @Test
+  public void testSearchMatchesNestedSelects() {
+    PagingRequest page = new PagingRequest(0, NUM_DATASETS);
+    assertEquals(datasetMapper.search(null, page), datasetBatchLoader.search(null, page));
+
+    List<Dataset> expected = datasetMapper.search("Pontaurus", page);
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, datasetBatchLoader.search("Pontaurus", page));
+  }
+
+  @Test
+  public void testListWithFilterMatchesNestedSelects() {
+    PagingRequest page = new PagingRequest(0, NUM_DATASETS);
+    List<Dataset> expected =
+        datasetMapper.listWithFilter(
+            Country.GERMANY, DatasetType.OCCURRENCE, installationKey, null, null, page);
+    assertEquals(NUM_DATASETS, expected.size());
+    assertEquals(
+        expected,
+        datasetBatchLoader.listWithFilter(
+            Country.GERMANY, DatasetType.OCCURRENCE, installationKey, null, null, page));
+  }
+
+  @Test
+  public void testQueryCountIsFixedPerPage() {
+    queryCounter.reset();
+    datasetMapper.list(new PagingRequest(0, NUM_DATASETS));
+    int nestedSelectQueries = queryCounter.get();
+
+    queryCounter.reset();
+    datasetBatchLoader.list(new PagingRequest(0, 3));
+    int smallPageQueries = queryCounter.get();
+
+    queryCounter.reset();
+    datasetBatchLoader.list(new PagingRequest(0, NUM_DATASETS));
+    int fullPageQueries = queryCounter.get();
+
+    // 1 page query + 7 sub resource queries + 1 endpoint machine tags query
+    assertTrue(fullPageQueries <= 9);
+    assertEquals(smallPageQueries, fullPageQueries);
+    assertTrue(nestedSelectQueries > NUM_DATASETS * 7);
+  }
+}
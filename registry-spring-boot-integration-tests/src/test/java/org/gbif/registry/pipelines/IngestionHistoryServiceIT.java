@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.pipelines;
+
+import org.gbif.api.model.common.paging.PagingRequest;
+import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.crawler.DatasetProcessStatus;
+import org.gbif.api.model.pipelines.PipelineExecution;
+import org.gbif.api.model.pipelines.PipelineProcess;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.domain.pipelines.IngestionProcess;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.DatasetProcessStatusMapper;
+import org.gbif.registry.persistence.mapper.pipelines.PipelineProcessMapper;
+import org.gbif.registry.utils.QueryCounter;
+import org.gbif.registry.utils.QueryCounterConfiguration;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.google.common.collect.Sets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@SpringBootTest(
+    classes = {RegistryIntegrationTestsConfiguration.class, QueryCounterConfiguration.class})
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class IngestionHistoryServiceIT {
+
+  private static final UUID DATASET_KEY = UUID.fromString("d82273f6-9738-48a5-a639-2086f9c49d18");
+  private static final int NUM_ATTEMPTS = 6;
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @Autowired private IngestionHistoryService ingestionHistoryService;
+  @Autowired private DatasetProcessStatusMapper datasetProcessStatusMapper;
+  @Autowired private DatasetMapper datasetMapper;
+  @Autowired private PipelineProcessMapper pipelineProcessMapper;
+  @Autowired private QueryCounter queryCounter;
+  @Autowired private DataSource ds;
+
+  private Connection connection;
+
+  @Before
+  public void setup() throws Exception {
+    connection = ds.getConnection();
+    ScriptUtils.executeSqlScript(
+        connection, new ClassPathResource("/scripts/pipelines/pipelines_cleanup.sql"));
+    ScriptUtils.executeSqlScript(
+        connection, new ClassPathResource("/scripts/pipelines/pipelines_prepare.sql"));
+    ScriptUtils.executeSqlScript(
+        connection, new ClassPathResource("/scripts/pipelines/ingestion_history_prepare.sql"));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    ScriptUtils.executeSqlScript(
+        connection, new ClassPathResource("/scripts/pipelines/pipelines_cleanup.sql"));
+    connection.close();
+  }
+
+  @Test
+  public void testSameOutputAsPerRowLookups() {
+    PagingRequest page = new PagingRequest(0, 20);
+    PagingResponse<IngestionProcess> history = ingestionHistoryService.ingestionHistory(page);
+    assertEquals(NUM_ATTEMPTS, history.getCount().intValue());
+    assertEquals(perRowLookups(datasetProcessStatusMapper.list(page)), history.getResults());
+
+    PagingResponse<IngestionProcess> datasetHistory =
+        ingestionHistoryService.ingestionHistory(DATASET_KEY, page);
+    assertEquals(
+        perRowLookups(datasetProcessStatusMapper.listByDataset(DATASET_KEY, page)),
+        datasetHistory.getResults());
+
+    // attempt with two executions
+    IngestionProcess ingestion = ingestionHistoryService.getIngestionProcess(DATASET_KEY, 3);
+    assertEquals("Test Dataset Registry", ingestion.getDatasetTitle());
+    assertEquals(
+        Sets.newHashSet(12L, 21L),
+        ingestion.getPipelineExecutions().stream()
+            .map(PipelineExecution::getKey)
+            .collect(Collectors.toSet()));
+    assertEquals(
+        pipelineProcessMapper.getByDatasetAndAttempt(DATASET_KEY, 3).getExecutions(),
+        ingestion.getPipelineExecutions());
+
+    // attempt that never reached pipelines
+    ingestion = ingestionHistoryService.getIngestionProcess(DATASET_KEY, 4);
+    assertNotNull(ingestion.getCrawlInfo());
+    assertNull(ingestion.getPipelineExecutions());
+
+    assertNull(ingestionHistoryService.getIngestionProcess(DATASET_KEY, 5));
+  }
+
+  @Test
+  public void testQueryCountIsFixedPerPage() {
+    queryCounter.reset();
+    ingestionHistoryService.ingestionHistory(new PagingRequest(0, 1));
+    int smallPageQueries = queryCounter.get();
+
+    queryCounter.reset();
+    List<IngestionProcess> fullPage =
+        ingestionHistoryService.ingestionHistory(new PagingRequest(0, NUM_ATTEMPTS)).getResults();
+    int fullPageQueries = queryCounter.get();
+
+    assertEquals(NUM_ATTEMPTS, fullPage.size());
+    // page, titles, pipeline processes and count
+    assertEquals(4, smallPageQueries);
+    assertEquals(smallPageQueries, fullPageQueries);
+  }
+
+  /** The ingestion processes as built before, looking up the dataset and process of each row. */
+  private List<IngestionProcess> perRowLookups(List<DatasetProcessStatus> statuses) {
+    return statuses.stream()
+        .map(
+            status -> {
+              int attempt = status.getCrawlJob().getAttempt();
+              IngestionProcess ingestion =
+                  new IngestionProcess()
+                      .setDatasetKey(status.getDatasetKey())
+                      .setAttempt(attempt)
+                      .setCrawlInfo(status);
+              Dataset dataset = datasetMapper.get(status.getDatasetKey());
+              if (dataset != null) {
+                ingestion.setDatasetTitle(dataset.getTitle());
+              }
+              PipelineProcess process =
+                  pipelineProcessMapper.getByDatasetAndAttempt(status.getDatasetKey(), attempt);
+              if (process != null) {
+                ingestion.setPipelineExecutions(process.getExecutions());
+              }
+              return ingestion;
+            })
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Node;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.search.dataset.indexing.es.EsClient;
+import org.gbif.registry.search.dataset.indexing.es.IndexingConstants;
+import org.gbif.registry.service.RegistryDatasetIndexSource;
+import org.gbif.registry.utils.RegistryEntities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.io.ByteStreams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Rebuilds the dataset index from the test database. There is no Elasticsearch in the integration
+ * tests, the requests sent to it are recorded instead.
+ */
+@SpringBootTest(classes = RegistryIntegrationTestsConfiguration.class)
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class DatasetBulkIndexerIT {
+
+  private static final int NUM_DATASETS = 30;
+  private static final int THREADS = 2;
+  private static final int BATCH_SIZE = 7;
+  private static final int MAX_IN_FLIGHT = 3;
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @Autowired private RegistryDatasetIndexSource datasetIndexSource;
+  @Autowired private DatasetMapper datasetMapper;
+  @Autowired private RegistryEntities registryEntities;
+
+  private static Organization organization;
+  private static UUID lastKey;
+
+  @Before
+  public void setup() {
+    // the datasets are created once for all the tests
+    if (organization != null) {
+      return;
+    }
+
+    Node node = registryEntities.createNode();
+    Organization org = registryEntities.createOrganization(node.getKey());
+    Installation installation = registryEntities.createInstallation(org.getKey());
+
+    for (int i = 0; i < NUM_DATASETS; i++) {
+      lastKey = registryEntities.createDataset(org.getKey(), installation.getKey()).getKey();
+    }
+    organization = org;
+  }
+
+  @Test
+  public void testRebuild() {
+    RecordingEsClient esClient = new RecordingEsClient();
+    DatasetBulkIndexer indexer =
+        new DatasetBulkIndexer(esClient, converter(null), THREADS, BATCH_SIZE, MAX_IN_FLIGHT);
+
+    DatasetBulkIndexer.Result result = indexer.rebuild(datasetIndexSource);
+
+    // every dataset of the database is indexed once
+    int count = datasetMapper.count();
+    assertTrue(count >= NUM_DATASETS);
+    assertEquals(count, result.getIndexed());
+    assertEquals(0, result.getFailed());
+    assertEquals(count, esClient.documents.size());
+    assertEquals(count, esClient.indexed.get());
+    assertTrue(esClient.maxConcurrentBulks.get() <= MAX_IN_FLIGHT);
+
+    // documents are converted with the entities read from the database
+    ObjectNode document = esClient.documents.get(lastKey.toString());
+    assertEquals(organization.getTitle(), document.get("publishingOrganizationTitle").asText());
+    assertTrue(document.get("metadata").asText().contains(document.get("title").asText()));
+
+    // the alias is moved to the new index once complete
+    List<String> expected = new ArrayList<>();
+    expected.add("create " + result.getIndexName());
+    expected.add("settings " + result.getIndexName());
+    expected.add("alias " + IndexingConstants.ALIAS + " " + result.getIndexName());
+    assertEquals(expected, esClient.operations);
+  }
+
+  @Test
+  public void testAliasNotSwappedOnFailures() {
+    RecordingEsClient esClient = new RecordingEsClient();
+    DatasetBulkIndexer indexer =
+        new DatasetBulkIndexer(esClient, converter(lastKey), THREADS, BATCH_SIZE, MAX_IN_FLIGHT);
+
+    DatasetBulkIndexer.Result result = indexer.rebuild(datasetIndexSource);
+
+    assertEquals(1, result.getFailed());
+    assertEquals(datasetMapper.count() - 1, result.getIndexed());
+    assertNull(esClient.documents.get(lastKey.toString()));
+    assertEquals(1, esClient.operations.size());
+    assertEquals("create " + result.getIndexName(), esClient.operations.get(0));
+  }
+
+  /**
+   * Converter producing a minimal document from the dataset and the lookups of the source, failing
+   * for the given dataset.
+   */
+  private static DatasetJsonConverter converter(UUID failOn) {
+    DatasetJsonConverter converter = mock(DatasetJsonConverter.class);
+    when(converter.convert(any(Dataset.class), any(DatasetIndexSource.class)))
+        .thenAnswer(
+            invocation -> {
+              Dataset dataset = invocation.getArgument(0);
+              DatasetIndexSource source = invocation.getArgument(1);
+              if (dataset.getKey().equals(failOn)) {
+                throw new IllegalStateException("Conversion failure");
+              }
+              ObjectNode document = JsonNodeFactory.instance.objectNode();
+              document.put("key", dataset.getKey().toString());
+              document.put("title", dataset.getTitle());
+              document.put(
+                  "publishingOrganizationTitle",
+                  source.getOrganization(dataset.getPublishingOrganizationKey()).getTitle());
+              try (InputStream metadata = source.getMetadataDocument(dataset)) {
+                document.put("metadata", new String(ByteStreams.toByteArray(metadata), StandardCharsets.UTF_8));
+              }
+              return document;
+            });
+    return converter;
+  }
+
+  /** Records the operations and documents instead of sending them to Elasticsearch. */
+  private static class RecordingEsClient extends EsClient {
+
+    private final List<String> operations = new ArrayList<>();
+    private final Map<String, ObjectNode> documents = new ConcurrentHashMap<>();
+    private final AtomicInteger indexed = new AtomicInteger();
+    private final AtomicInteger concurrentBulks = new AtomicInteger();
+    private final AtomicInteger maxConcurrentBulks = new AtomicInteger();
+
+    private RecordingEsClient() {
+      super(null);
+    }
+
+    @Override
+    public void createIndex(
+        String indexName, String recordType, Map<?, ?> settings, String mappingFile) {
+      operations.add("create " + indexName);
+    }
+
+    @Override
+    public void updateSettings(String indexName, Map<?, ?> settings) {
+      operations.add("settings " + indexName);
+    }
+
+    @Override
+    public void swapAlias(String alias, String indexName) {
+      operations.add("alias " + alias + " " + indexName);
+    }
+
+    @Override
+    public BulkResponse bulk(BulkRequest bulkRequest) throws IOException {
+      maxConcurrentBulks.accumulateAndGet(concurrentBulks.incrementAndGet(), Math::max);
+      try {
+        BulkItemResponse[] items = new BulkItemResponse[bulkRequest.numberOfActions()];
+        for (int i = 0; i < items.length; i++) {
+          IndexRequest request = (IndexRequest) bulkRequest.requests().get(i);
+          ObjectNode document = (ObjectNode) MAPPER.readTree(request.source().utf8ToString());
+          documents.put(request.id(), document);
+          items[i] = mock(BulkItemResponse.class);
+          indexed.incrementAndGet();
+        }
+        // leaves time for other bulks to overlap
+        Thread.sleep(10);
+        return new BulkResponse(items, 10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } finally {
+        concurrentBulks.decrementAndGet();
+      }
+    }
+  }
+}
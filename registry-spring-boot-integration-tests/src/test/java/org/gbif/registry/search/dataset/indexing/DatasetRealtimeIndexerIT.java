@@ -0,0 +1,270 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Node;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.search.dataset.indexing.es.EsClient;
+import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
+import org.gbif.registry.service.RegistryDatasetIndexSource;
+import org.gbif.registry.utils.RegistryEntities;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Indexes the changes of datasets, organizations and installations of the test database. There is
+ * no Elasticsearch in the integration tests, the bulk requests sent to it are recorded instead.
+ */
+@SpringBootTest(classes = RegistryIntegrationTestsConfiguration.class)
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class DatasetRealtimeIndexerIT {
+
+  private static final int NUM_DATASETS = 20;
+  private static final int BATCH_SIZE = 7;
+  // long enough for the tests to flush themselves
+  private static final long WINDOW_MS = 3_600_000;
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @Autowired private RegistryDatasetIndexSource datasetIndexSource;
+  @Autowired private DatasetMapper datasetMapper;
+  @Autowired private RegistryEntities registryEntities;
+
+  private RecordingEsClient esClient;
+  private DatasetRealtimeIndexer indexer;
+  private Organization publisher;
+  private Organization host;
+  private Installation installation;
+  private List<Dataset> datasets;
+
+  @Before
+  public void setup() {
+    Node node = registryEntities.createNode();
+    publisher = registryEntities.createOrganization(node.getKey());
+    host = registryEntities.createOrganization(node.getKey());
+
+    installation = registryEntities.createInstallation(host.getKey());
+
+    // datasets of the publisher hosted by an installation of another organization
+    datasets = new ArrayList<>();
+    for (int i = 0; i < NUM_DATASETS; i++) {
+      datasets.add(registryEntities.createDataset(publisher.getKey(), installation.getKey()));
+    }
+
+    esClient = new RecordingEsClient();
+    indexer = newIndexer(WINDOW_MS);
+  }
+
+  @After
+  public void tearDown() {
+    indexer.close();
+  }
+
+  @Test
+  public void testChangesAreIndexedOnceInBoundedBulks() {
+    for (int i = 0; i < 3; i++) {
+      for (Dataset dataset : datasets) {
+        indexer.index(dataset);
+      }
+      indexer.index(publisher);
+      indexer.index(installation);
+    }
+
+    // nothing is sent before the end of the window
+    assertEquals(0, esClient.requests.size());
+    assertTrue(indexer.getPending() > 0);
+
+    indexer.flush();
+    assertEquals(0, indexer.getPending());
+    assertEquals(keys(datasets), esClient.indexed);
+    assertEquals(NUM_DATASETS, esClient.actions);
+    assertEquals((NUM_DATASETS + BATCH_SIZE - 1) / BATCH_SIZE, esClient.requests.size());
+    for (BulkRequest request : esClient.requests) {
+      assertTrue(request.numberOfActions() <= BATCH_SIZE);
+    }
+
+    // nothing left to send
+    indexer.flush();
+    assertEquals((NUM_DATASETS + BATCH_SIZE - 1) / BATCH_SIZE, esClient.requests.size());
+  }
+
+  @Test
+  public void testOrganizationChangeIndexesPublishedAndHostedDatasets() {
+    indexer.index(publisher);
+    indexer.flush();
+    assertEquals(keys(datasets), esClient.indexed);
+
+    esClient.indexed.clear();
+    indexer.index(host);
+    indexer.flush();
+    assertEquals(keys(datasets), esClient.indexed);
+
+    esClient.indexed.clear();
+    indexer.index(installation);
+    indexer.flush();
+    assertEquals(keys(datasets), esClient.indexed);
+  }
+
+  @Test
+  public void testDeletedDatasets() {
+    Dataset deleted = datasets.get(0);
+    datasetMapper.delete(deleted.getKey());
+
+    // the delete wins over the earlier changes, the affected datasets exclude deleted ones
+    indexer.index(deleted);
+    indexer.index(publisher);
+    indexer.delete(deleted);
+    indexer.flush();
+
+    assertEquals(Collections.singleton(deleted.getKey()), esClient.deleted);
+    assertEquals(NUM_DATASETS - 1, esClient.indexed.size());
+    assertFalse(esClient.indexed.contains(deleted.getKey()));
+
+    // a change after the delete isn't indexed either, the dataset isn't found anymore
+    esClient.deleted.clear();
+    esClient.indexed.clear();
+    indexer.delete(deleted);
+    indexer.index(deleted);
+    indexer.flush();
+    assertTrue(esClient.deleted.isEmpty());
+    assertTrue(esClient.indexed.isEmpty());
+  }
+
+  @Test
+  public void testWithoutWindow() {
+    indexer.close();
+    indexer = newIndexer(0);
+
+    indexer.index(datasets.get(0));
+    indexer.index(datasets.get(1));
+    assertEquals(2, esClient.requests.size());
+    assertEquals(0, indexer.getPending());
+  }
+
+  @Test
+  public void testCloseIndexesPendingChanges() {
+    indexer.index(publisher);
+    indexer.close();
+    assertEquals(keys(datasets), esClient.indexed);
+
+    // later changes are indexed straight away
+    indexer.index(datasets.get(0));
+    assertEquals(0, indexer.getPending());
+  }
+
+  private DatasetRealtimeIndexer newIndexer(long windowMs) {
+    return new DatasetRealtimeIndexer(
+        esClient,
+        converter(),
+        mock(GbifWsClient.class),
+        datasetIndexSource,
+        windowMs,
+        BATCH_SIZE);
+  }
+
+  private static Set<UUID> keys(List<Dataset> datasets) {
+    Set<UUID> keys = new HashSet<>();
+    for (Dataset dataset : datasets) {
+      keys.add(dataset.getKey());
+    }
+    return keys;
+  }
+
+  /** Converter producing a minimal document, checking the source resolves the publisher. */
+  private static DatasetJsonConverter converter() {
+    DatasetJsonConverter converter = mock(DatasetJsonConverter.class);
+    when(converter.convert(any(Dataset.class), any(DatasetIndexSource.class)))
+        .thenAnswer(
+            invocation -> {
+              Dataset dataset = invocation.getArgument(0);
+              DatasetIndexSource source = invocation.getArgument(1);
+              ObjectNode document = JsonNodeFactory.instance.objectNode();
+              document.put("key", dataset.getKey().toString());
+              document.put(
+                  "publishingOrganizationTitle",
+                  source.getOrganization(dataset.getPublishingOrganizationKey()).getTitle());
+              return document;
+            });
+    return converter;
+  }
+
+  /** Records the bulk requests instead of sending them to Elasticsearch. */
+  private static class RecordingEsClient extends EsClient {
+
+    private final List<BulkRequest> requests = new ArrayList<>();
+    private final Set<UUID> indexed = new HashSet<>();
+    private final Set<UUID> deleted = new HashSet<>();
+    private int actions;
+
+    private RecordingEsClient() {
+      super(null);
+    }
+
+    @Override
+    public synchronized BulkResponse bulk(BulkRequest bulkRequest) throws IOException {
+      requests.add(bulkRequest);
+      BulkItemResponse[] items = new BulkItemResponse[bulkRequest.numberOfActions()];
+      for (int i = 0; i < items.length; i++) {
+        DocWriteRequest<?> request = bulkRequest.requests().get(i);
+        UUID key = UUID.fromString(request.id());
+        if (request.opType() == DocWriteRequest.OpType.DELETE) {
+          deleted.add(key);
+        } else {
+          indexed.add(key);
+        }
+        items[i] = mock(BulkItemResponse.class);
+        actions++;
+      }
+      return new BulkResponse(items, 10);
+    }
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.persistence.mapper.indexing.OccurrenceCoverageMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@SpringBootTest(classes = RegistryIntegrationTestsConfiguration.class)
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class OccurrenceCoverageStoreIT {
+
+  private static final String INDEX = "occurrence";
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  // every test starts with an empty store
+  @Rule public DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @Autowired private OccurrenceCoverageMapper coverageMapper;
+
+  private HttpServer server;
+  private RestHighLevelClient client;
+
+  // occurrences of the stub index: number of records and last interpretation date per dataset
+  private final Map<UUID, long[]> datasets = new ConcurrentHashMap<>();
+  private final AtomicInteger versionRequests = new AtomicInteger();
+  private final AtomicInteger coverageRequests = new AtomicInteger();
+
+  @Before
+  public void setup() throws IOException {
+    // stub Elasticsearch answering the version and coverage aggregations
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+    client =
+        new RestHighLevelClient(
+            RestClient.builder(new HttpHost("localhost", server.getAddress().getPort(), "http")));
+
+    for (int i = 0; i < 3; i++) {
+      datasets.put(UUID.randomUUID(), new long[] {10 + i, 1_500_000_000_000L});
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    client.close();
+    server.stop(0);
+  }
+
+  @Test
+  public void testUnchangedDatasetsAreNotAggregated() throws IOException {
+    OccurrenceCoverageStore store = newStore();
+    assertEquals(3, store.refresh());
+    assertEquals(3, coverageRequests.get());
+
+    // reads come from the store
+    for (UUID key : datasets.keySet()) {
+      List<JsonNode> coverage = store.getCoverage(key);
+      assertEquals(1, coverage.size());
+      assertEquals("DK", coverage.get(0).get("country").get("value").asText());
+      assertEquals(datasets.get(key)[0], coverage.get(0).get("decade").get("count").asLong());
+    }
+    assertEquals(3, coverageRequests.get());
+
+    // nothing changed, only the versions are read
+    int versions = versionRequests.get();
+    assertEquals(0, store.refresh());
+    assertEquals(3, coverageRequests.get());
+    assertTrue(versionRequests.get() > versions);
+
+    // new occurrences in one dataset
+    UUID changed = datasets.keySet().iterator().next();
+    datasets.get(changed)[0] += 5;
+    assertEquals(1, store.refresh());
+    assertEquals(4, coverageRequests.get());
+    assertEquals(
+        datasets.get(changed)[0],
+        store.getCoverage(changed).get(0).get("decade").get("count").asLong());
+
+    // reinterpreted occurrences
+    datasets.get(changed)[1] += 1000;
+    assertEquals(1, store.refresh());
+    assertEquals(5, coverageRequests.get());
+    store.close();
+  }
+
+  @Test
+  public void testStoreSurvivesRestart() throws IOException {
+    OccurrenceCoverageStore store = newStore();
+    store.refresh();
+    store.close();
+    int computed = coverageRequests.get();
+
+    OccurrenceCoverageStore restarted = newStore();
+    assertEquals(3, restarted.size());
+    for (UUID key : datasets.keySet()) {
+      assertEquals(1, restarted.getCoverage(key).size());
+    }
+    assertEquals(0, restarted.refresh());
+    assertEquals(computed, coverageRequests.get());
+    restarted.close();
+  }
+
+  @Test
+  public void testMissingDatasetsAreComputedOnce() throws IOException {
+    OccurrenceCoverageStore store = newStore();
+    UUID key = datasets.keySet().iterator().next();
+
+    assertEquals(1, store.getCoverage(key).size());
+    assertEquals(1, store.getCoverage(key).size());
+    assertEquals(1, coverageRequests.get());
+
+    // a dataset without occurrences is stored as such
+    UUID withoutOccurrences = UUID.randomUUID();
+    assertTrue(store.getCoverage(withoutOccurrences).isEmpty());
+    assertTrue(store.getCoverage(withoutOccurrences).isEmpty());
+    assertEquals(2, coverageRequests.get());
+
+    // the refresh only computes the datasets not seen yet
+    assertEquals(2, store.refresh());
+    assertEquals(4, coverageRequests.get());
+
+    // datasets gone from the index are emptied without aggregating them
+    datasets.remove(key);
+    assertEquals(1, store.refresh());
+    assertEquals(4, coverageRequests.get());
+    assertTrue(store.getCoverage(key).isEmpty());
+    store.close();
+  }
+
+  private OccurrenceCoverageStore newStore() {
+    return new OccurrenceCoverageStore(client, INDEX, MAPPER, coverageMapper, 0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    JsonNode request = MAPPER.readTree(ByteStreams.toByteArray(exchange.getRequestBody()));
+    String response =
+        request.get("aggregations").has("datasetKey")
+            ? versionsResponse(request.get("aggregations").get("datasetKey"))
+            : coverageResponse(request);
+    byte[] body = response.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  /** All the datasets in a single page, the page after it is empty. */
+  private String versionsResponse(JsonNode aggregation) {
+    versionRequests.incrementAndGet();
+    StringBuilder buckets = new StringBuilder();
+    String afterKey = "";
+    if (!aggregation.get("composite").has("after")) {
+      for (Map.Entry<UUID, long[]> dataset : datasets.entrySet()) {
+        afterKey = String.format("\"after_key\":{\"datasetKey\":\"%s\"},", dataset.getKey());
+        if (buckets.length() > 0) {
+          buckets.append(',');
+        }
+        buckets.append(
+            String.format(
+                "{\"key\":{\"datasetKey\":\"%s\"},\"doc_count\":%d,"
+                    + "\"max#lastInterpreted\":{\"value\":%d.0}}",
+                dataset.getKey(), dataset.getValue()[0], dataset.getValue()[1]));
+      }
+    }
+    return response(0, "\"composite#datasetKey\":{" + afterKey + "\"buckets\":[" + buckets + "]}");
+  }
+
+  /** One country, taxon and decade holding all the occurrences of the dataset. */
+  private String coverageResponse(JsonNode request) {
+    coverageRequests.incrementAndGet();
+    UUID key = UUID.fromString(request.findValue("term").get("datasetKey").get("value").asText());
+    long[] dataset = datasets.get(key);
+    if (dataset == null) {
+      return response(0, "\"max#lastInterpreted\":{\"value\":null}");
+    }
+    return response(
+        dataset[0],
+        String.format(
+            "\"max#lastInterpreted\":{\"value\":%d.0},"
+                + "\"sterms#countryCode\":{\"doc_count_error_upper_bound\":0,"
+                + "\"sum_other_doc_count\":0,\"buckets\":[{\"key\":\"DK\",\"doc_count\":%2$d,"
+                + "\"lterms#taxonKey\":{\"doc_count_error_upper_bound\":0,"
+                + "\"sum_other_doc_count\":0,\"buckets\":[{\"key\":212,\"doc_count\":%2$d,"
+                + "\"date_histogram#eventDateSingle\":{\"buckets\":[{\"key_as_string\":\"2000\","
+                + "\"key\":946684800000,\"doc_count\":%2$d}]}}]}}]}",
+            dataset[1], dataset[0]));
+  }
+
+  private static String response(long total, String aggregations) {
+    return "{\"took\":1,\"timed_out\":false,"
+        + "\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+        + "\"hits\":{\"total\":"
+        + total
+        + ",\"max_score\":0.0,\"hits\":[]},"
+        + "\"aggregations\":{"
+        + aggregations
+        + "}}";
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing.checklistbank;
+
+import org.gbif.registry.DatabaseInitializer;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads the taxon keys of a large checklist from a {@code nub_rel} table created in the test
+ * database and dropped after the tests.
+ */
+public class ChecklistbankPersistenceServiceIT {
+
+  private static final int USAGES = 1_000_000;
+  private static final int DISTINCT_KEYS = 250_000;
+  // usages not matched to the backbone
+  private static final int UNMATCHED = 1_000;
+  private static final int OTHER_KEY = Integer.MAX_VALUE;
+  private static final int FETCH_SIZE = 1_000;
+  // reading a million rows at once takes several times this
+  private static final long MAX_HEAP_GROWTH = 16 * 1024 * 1024;
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  private final DataSource dataSource = DatabaseInitializer.getDataSource();
+  private final UUID datasetKey = UUID.randomUUID();
+  private final UUID otherDatasetKey = UUID.randomUUID();
+
+  @Before
+  public void setup() throws SQLException {
+    try (Connection conn = dataSource.getConnection()) {
+      try (Statement st = conn.createStatement()) {
+        st.execute(
+            "CREATE TABLE IF NOT EXISTS nub_rel "
+                + "(usage_fk integer, nub_fk integer, dataset_key uuid)");
+      }
+      try (PreparedStatement st =
+          conn.prepareStatement(
+              "INSERT INTO nub_rel (usage_fk, nub_fk, dataset_key) "
+                  + "SELECT g, CASE WHEN g > ? THEN NULL ELSE g % ? END, ? "
+                  + "FROM generate_series(1, ?) g")) {
+        st.setInt(1, USAGES - UNMATCHED);
+        st.setInt(2, DISTINCT_KEYS);
+        st.setObject(3, datasetKey);
+        st.setInt(4, USAGES);
+        st.executeUpdate();
+      }
+      try (PreparedStatement st =
+          conn.prepareStatement(
+              "INSERT INTO nub_rel (usage_fk, nub_fk, dataset_key) VALUES (1, ?, ?)")) {
+        st.setInt(1, OTHER_KEY);
+        st.setObject(2, otherDatasetKey);
+        st.executeUpdate();
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws SQLException {
+    try (Connection conn = dataSource.getConnection();
+        PreparedStatement st =
+            conn.prepareStatement("DELETE FROM nub_rel WHERE dataset_key IN (?, ?)")) {
+      st.setObject(1, datasetKey);
+      st.setObject(2, otherDatasetKey);
+      st.executeUpdate();
+    }
+  }
+
+  /** The table isn't part of the registry schema, the other tests must not find it. */
+  @AfterClass
+  public static void dropTable() throws SQLException {
+    try (Connection conn = DatabaseInitializer.getDataSource().getConnection();
+        Statement st = conn.createStatement()) {
+      st.execute("DROP TABLE IF EXISTS nub_rel");
+    }
+  }
+
+  @Test
+  public void testTaxonKeys() {
+    ChecklistbankPersistenceService service =
+        new ChecklistbankPersistenceService(dataSource, FETCH_SIZE);
+
+    int[] keys = service.getTaxonKeys(datasetKey.toString());
+
+    // every key once, in order, without the unmatched usages and the keys of other checklists
+    assertEquals(DISTINCT_KEYS, keys.length);
+    for (int i = 0; i < DISTINCT_KEYS; i++) {
+      assertEquals(i, keys[i]);
+    }
+    assertEquals(0, service.getTaxonKeys(UUID.randomUUID().toString()).length);
+    int[] otherKeys = service.getTaxonKeys(otherDatasetKey.toString());
+    assertEquals(1, otherKeys.length);
+    assertEquals(OTHER_KEY, otherKeys[0]);
+  }
+
+  @Test
+  public void testStreamingMemoryFootprint() {
+    ChecklistbankPersistenceService service =
+        new ChecklistbankPersistenceService(dataSource, FETCH_SIZE);
+    AtomicInteger count = new AtomicInteger();
+    AtomicLong heapGrowth = new AtomicLong();
+
+    long before = usedHeap();
+    service.forEachTaxonKey(
+        datasetKey.toString(),
+        key -> {
+          // half way, only the rows of the current fetch are held
+          if (count.incrementAndGet() == USAGES / 2) {
+            heapGrowth.set(usedHeap() - before);
+          }
+        });
+
+    assertEquals(USAGES - UNMATCHED, count.get());
+    assertTrue("Heap grew by " + heapGrowth.get(), heapGrowth.get() < MAX_HEAP_GROWTH);
+  }
+
+  private static long usedHeap() {
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
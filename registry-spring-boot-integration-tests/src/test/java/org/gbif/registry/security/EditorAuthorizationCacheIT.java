@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.security;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.events.UpdateEvent;
+import org.gbif.registry.persistence.WithMyBatis;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.utils.RegistryEntities;
+
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.google.common.cache.CacheStats;
+
+import static org.gbif.registry.ws.fixtures.TestConstants.TEST_ADMIN;
+import static org.gbif.registry.ws.fixtures.TestConstants.TEST_EDITOR;
+import static org.gbif.registry.ws.fixtures.TestConstants.TEST_PASSWORD;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = RegistryIntegrationTestsConfiguration.class)
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class EditorAuthorizationCacheIT {
+
+  private static final String USER = "WS TEST";
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @Autowired private EditorAuthorizationService editorAuthorizationService;
+  @Autowired private EditorAuthorizationCache editorAuthorizationCache;
+  @Autowired private EventManager eventManager;
+  @Autowired private WebApplicationContext context;
+  @Autowired private WithMyBatis withMyBatis;
+  @Autowired private DatasetMapper datasetMapper;
+  @Autowired private RegistryEntities registryEntities;
+
+  private MockMvc mvc;
+
+  @Before
+  public void setup() {
+    mvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+  }
+
+  @Test
+  public void testRevokedRightTakesEffectImmediately() throws Exception {
+    Dataset dataset = createDataset(createOrganization());
+    UUID organizationKey = dataset.getPublishingOrganizationKey();
+
+    assertFalse(editorAuthorizationService.allowedToModifyDataset(TEST_EDITOR, dataset.getKey()));
+
+    // granting the right replaces the cached denial
+    mvc.perform(
+            post("/admin/user/{username}/editorRight", TEST_EDITOR)
+                .contentType(MediaType.TEXT_PLAIN)
+                .content(organizationKey.toString())
+                .with(httpBasic(TEST_ADMIN, TEST_PASSWORD)))
+        .andExpect(status().isOk());
+    assertTrue(editorAuthorizationService.allowedToModifyDataset(TEST_EDITOR, dataset.getKey()));
+
+    // the second check comes from the cache
+    CacheStats before = editorAuthorizationCache.stats();
+    assertTrue(editorAuthorizationService.allowedToModifyDataset(TEST_EDITOR, dataset.getKey()));
+    assertEquals(before.hitCount() + 1, editorAuthorizationCache.stats().hitCount());
+    assertEquals(before.missCount(), editorAuthorizationCache.stats().missCount());
+
+    // revoking the right
+    mvc.perform(
+            delete("/admin/user/{username}/editorRight/{key}", TEST_EDITOR, organizationKey)
+                .with(httpBasic(TEST_ADMIN, TEST_PASSWORD)))
+        .andExpect(status().isNoContent());
+    assertFalse(editorAuthorizationService.allowedToModifyDataset(TEST_EDITOR, dataset.getKey()));
+    assertFalse(
+        editorAuthorizationService.allowedToModifyOrganization(TEST_EDITOR, organizationKey));
+  }
+
+  @Test
+  public void testChangedPublisherInvalidates() throws Exception {
+    Organization granted = createOrganization();
+    Dataset dataset = createDataset(granted);
+    mvc.perform(
+            post("/admin/user/{username}/editorRight", TEST_EDITOR)
+                .contentType(MediaType.TEXT_PLAIN)
+                .content(granted.getKey().toString())
+                .with(httpBasic(TEST_ADMIN, TEST_PASSWORD)))
+        .andExpect(status().isOk());
+    assertTrue(editorAuthorizationService.allowedToModifyDataset(TEST_EDITOR, dataset.getKey()));
+
+    // the dataset moves to an organization and installation the editor has no rights on
+    Organization other = createOrganization();
+    Installation installation = createInstallation(other);
+    Dataset moved = datasetMapper.get(dataset.getKey());
+    moved.setPublishingOrganizationKey(other.getKey());
+    moved.setInstallationKey(installation.getKey());
+    moved.setModifiedBy(USER);
+    withMyBatis.update(datasetMapper, moved);
+    eventManager.post(UpdateEvent.newInstance(moved, dataset, Dataset.class));
+
+    assertFalse(editorAuthorizationService.allowedToModifyDataset(TEST_EDITOR, dataset.getKey()));
+    assertTrue(
+        editorAuthorizationService.allowedToModifyOrganization(TEST_EDITOR, granted.getKey()));
+
+    mvc.perform(
+            delete("/admin/user/{username}/editorRight/{key}", TEST_EDITOR, granted.getKey())
+                .with(httpBasic(TEST_ADMIN, TEST_PASSWORD)))
+        .andExpect(status().isNoContent());
+  }
+
+  private Organization createOrganization() {
+    return registryEntities.createOrganization(registryEntities.createNode().getKey());
+  }
+
+  private Installation createInstallation(Organization organization) {
+    return registryEntities.createInstallation(organization.getKey());
+  }
+
+  private Dataset createDataset(Organization organization) {
+    Installation installation = createInstallation(organization);
+    return registryEntities.createDataset(organization.getKey(), installation.getKey());
+  }
+}
@@ -39,6 +39,7 @@ import static org.gbif.registry.ws.fixtures.TestConstants.TEST_USER;
 import static org.gbif.ws.util.SecurityConstants.BEARER_SCHEME_PREFIX;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -58,17 +59,36 @@ public class JwtIT {
 
   @Autowired private JwtIssuanceService jwtIssuanceService;
 
+  @Autowired private JwtConfiguration jwtConfiguration;
+
   @Before
   public void setUp() {
     mvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
   }
 
   // Tty to login with valid credentials then extract a token from the response.
-  // Then try with that token. It should be CREATED and the token should be updated.
+  // Then try with that token. It should be CREATED and the token is kept as it is far from expiry.
   @Test
-  public void testWithValidTokenShouldReturnStatusCreatedAndUpdateToken() throws Exception {
+  public void testWithValidTokenShouldReturnStatusCreatedAndKeepToken() throws Exception {
     final String token = login(TEST_ADMIN, TEST_PASSWORD);
 
+    final MvcResult mvcResult =
+        mvc.perform(post("/test").header(HttpHeaders.AUTHORIZATION, BEARER_SCHEME_PREFIX + token))
+            .andExpect(status().isCreated())
+            .andReturn();
+
+    assertNull(mvcResult.getResponse().getHeader("token"));
+  }
+
+  // Try with a token about to expire. It should be CREATED and the token should be updated.
+  @Test
+  public void testWithTokenNearExpiryShouldReturnStatusCreatedAndUpdateToken() throws Exception {
+    final JwtConfiguration shortExpiry = new JwtConfiguration();
+    shortExpiry.setExpiryTimeInMs(jwtConfiguration.getReissueBeforeExpiryMs() / 2);
+    shortExpiry.setIssuer(jwtConfiguration.getIssuer());
+    shortExpiry.setSigningKey(jwtConfiguration.getSigningKey());
+    final String token = new JwtIssuanceServiceImpl(shortExpiry).generateJwt(TEST_ADMIN);
+
     // otherwise the service may issue the same token because of the same time (seconds)
     Thread.sleep(1000);
 
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service;
+
+import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Metadata;
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.events.ChangedComponentEvent;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.utils.RegistryEntities;
+import org.gbif.registry.ws.resources.DatasetResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@SpringBootTest(classes = RegistryIntegrationTestsConfiguration.class)
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class ParsedMetadataCacheIT {
+
+  private static final String EML =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+          + "<eml:eml xmlns:eml=\"eml://ecoinformatics.org/eml-2.1.1\" packageId=\"%1$s\""
+          + " system=\"http://gbif.org\" scope=\"system\" xml:lang=\"en\">"
+          + "<dataset><title>Cached metadata</title>"
+          + "<purpose><para>%2$s</para></purpose>"
+          + "</dataset></eml:eml>";
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @Autowired private RegistryDatasetService registryDatasetService;
+  @Autowired private ParsedMetadataCache parsedMetadataCache;
+  @Autowired private DatasetResource datasetResource;
+  @Autowired private EventManager eventManager;
+  @Autowired private DatasetMapper datasetMapper;
+  @Autowired private RegistryEntities registryEntities;
+
+  @Test
+  public void testNoStaleEntryAfterInsertMetadata() {
+    UUID key = createDataset();
+
+    datasetResource.insertMetadata(key, eml(key, "first"));
+    assertEquals("first", registryDatasetService.get(key).getPurpose());
+
+    // the second read comes from the cache
+    CacheStats before = parsedMetadataCache.stats();
+    assertEquals("first", registryDatasetService.get(key).getPurpose());
+    assertEquals(before.hitCount() + 1, parsedMetadataCache.stats().hitCount());
+    assertEquals(before.missCount(), parsedMetadataCache.stats().missCount());
+
+    // a new document is served straight away, both for single datasets and pages
+    datasetResource.insertMetadata(key, eml(key, "second"));
+    assertEquals("second", registryDatasetService.get(key).getPurpose());
+    PagingResponse<Dataset> page =
+        registryDatasetService.augmentWithMetadata(
+            new PagingResponse<>(0, 1, 1L, Lists.newArrayList(datasetMapper.get(key))));
+    assertEquals("second", page.getResults().get(0).getPurpose());
+
+    // and so is the removal of the document
+    for (Metadata metadata : registryDatasetService.listMetadata(key, null)) {
+      datasetResource.deleteMetadata(metadata.getKey());
+    }
+    assertNull(registryDatasetService.get(key).getPurpose());
+  }
+
+  @Test
+  public void testCachedDatasetsAreNotShared() {
+    UUID key = createDataset();
+    datasetResource.insertMetadata(key, eml(key, "original"));
+
+    Dataset first = registryDatasetService.get(key);
+    first.setPurpose("modified");
+    first.getContacts().clear();
+
+    assertEquals("original", registryDatasetService.get(key).getPurpose());
+  }
+
+  @Test
+  public void testMetadataEventsInvalidate() {
+    UUID key = createDataset();
+    datasetResource.insertMetadata(key, eml(key, "evicted"));
+    registryDatasetService.get(key);
+
+    long size = parsedMetadataCache.size();
+    eventManager.post(ChangedComponentEvent.newInstance(key, Dataset.class, Metadata.class));
+    assertEquals(size - 1, parsedMetadataCache.size());
+
+    // parsed again on the next read
+    CacheStats before = parsedMetadataCache.stats();
+    assertEquals("evicted", registryDatasetService.get(key).getPurpose());
+    assertEquals(before.missCount() + 1, parsedMetadataCache.stats().missCount());
+  }
+
+  /** Creates a dataset locked for auto updates, so documents don't modify the database. */
+  private UUID createDataset() {
+    Dataset dataset = registryEntities.newDataset();
+    dataset.setLockedForAutoUpdate(true);
+    return registryEntities.createDataset(dataset).getKey();
+  }
+
+  private static InputStream eml(UUID key, String purpose) {
+    return new ByteArrayInputStream(
+        String.format(EML, key, purpose).getBytes(StandardCharsets.UTF_8));
+  }
+}
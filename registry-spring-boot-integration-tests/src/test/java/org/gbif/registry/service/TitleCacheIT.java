@@ -0,0 +1,176 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service;
+
+import org.gbif.api.model.registry.Node;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.events.DeleteEvent;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.events.UpdateEvent;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.utils.QueryCounter;
+import org.gbif.registry.utils.QueryCounterConfiguration;
+import org.gbif.registry.utils.RegistryEntities;
+import org.gbif.registry.ws.resources.OrganizationResource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@SpringBootTest(
+    classes = {RegistryIntegrationTestsConfiguration.class, QueryCounterConfiguration.class})
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class TitleCacheIT {
+
+  private static final int NUM_ORGANIZATIONS = 5;
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @Autowired private TitleCache titleCache;
+  @Autowired private OrganizationResource organizationResource;
+  @Autowired private EventManager eventManager;
+  @Autowired private OrganizationMapper organizationMapper;
+  @Autowired private QueryCounter queryCounter;
+  @Autowired private MeterRegistry meterRegistry;
+  @Autowired private RegistryEntities registryEntities;
+
+  private List<UUID> keys;
+
+  @Before
+  public void setup() {
+    Node node = registryEntities.createNode();
+
+    keys = new ArrayList<>();
+    for (int i = 0; i < NUM_ORGANIZATIONS; i++) {
+      Organization organization = registryEntities.newOrganization(node.getKey());
+      organization.setTitle("Organization " + i);
+      keys.add(registryEntities.createOrganization(organization).getKey());
+    }
+  }
+
+  @Test
+  public void testTitlesResolvedWithSingleQuery() {
+    UUID unknown = UUID.randomUUID();
+    List<UUID> requested = Lists.newArrayList(keys);
+    requested.add(unknown);
+    requested.add(keys.get(0));
+
+    queryCounter.reset();
+    Map<UUID, String> titles = titleCache.getTitles(Organization.class, requested);
+    assertEquals(1, queryCounter.get());
+    assertEquals(NUM_ORGANIZATIONS, titles.size());
+    for (int i = 0; i < NUM_ORGANIZATIONS; i++) {
+      assertEquals("Organization " + i, titles.get(keys.get(i)));
+    }
+    assertFalse(titles.containsKey(unknown));
+
+    // the second lookup comes from the cache, only the unknown key is resolved again
+    CacheStats before = titleCache.stats();
+    queryCounter.reset();
+    assertEquals(titles, titleCache.getTitles(Organization.class, requested));
+    assertEquals(1, queryCounter.get());
+    assertEquals(before.hitCount() + NUM_ORGANIZATIONS, titleCache.stats().hitCount());
+
+    queryCounter.reset();
+    assertEquals(titles, titleCache.getTitles(Organization.class, keys));
+    assertEquals(0, queryCounter.get());
+  }
+
+  @Test
+  public void testResourceKeepsUnknownKeys() {
+    UUID unknown = UUID.randomUUID();
+    List<UUID> requested = Lists.newArrayList(keys);
+    requested.add(unknown);
+
+    Map<UUID, String> titles = organizationResource.getTitles(requested);
+    assertEquals(NUM_ORGANIZATIONS + 1, titles.size());
+    assertEquals("Organization 0", titles.get(keys.get(0)));
+    assertTrue(titles.containsKey(unknown));
+    assertNull(titles.get(unknown));
+  }
+
+  @Test
+  public void testEventsInvalidate() {
+    UUID key = keys.get(0);
+    assertEquals("Organization 0", titleCache.getTitle(Organization.class, key));
+
+    Organization old = organizationMapper.get(key);
+    Organization updated = organizationMapper.get(key);
+    updated.setTitle("Renamed");
+    organizationMapper.update(updated);
+    eventManager.post(UpdateEvent.newInstance(updated, old, Organization.class));
+    assertEquals("Renamed", titleCache.getTitle(Organization.class, key));
+
+    // deleted entities keep their title
+    organizationMapper.delete(key);
+    eventManager.post(DeleteEvent.newInstance(updated, Organization.class));
+    queryCounter.reset();
+    assertEquals("Renamed", titleCache.getTitle(Organization.class, key));
+    assertEquals(1, queryCounter.get());
+  }
+
+  @Test
+  public void testMetricsArePublished() {
+    // the keys are new, resolving them runs the query
+    titleCache.getTitles(Organization.class, keys);
+    Timer listTitles =
+        meterRegistry
+            .get("registry.mapper.statement")
+            .tag("statement", "OrganizationMapper.listTitles")
+            .tag("exception", "none")
+            .timer();
+    long queries = listTitles.count();
+    assertTrue(queries > 0);
+    double hits = titleCacheHits();
+
+    titleCache.getTitles(Organization.class, keys);
+    assertEquals(queries, listTitles.count());
+    assertEquals(hits + NUM_ORGANIZATIONS, titleCacheHits(), 0);
+  }
+
+  private double titleCacheHits() {
+    return meterRegistry
+        .get("cache.gets")
+        .tag("cache", "entityTitles")
+        .tag("result", "hit")
+        .functionCounter()
+        .count();
+  }
+}
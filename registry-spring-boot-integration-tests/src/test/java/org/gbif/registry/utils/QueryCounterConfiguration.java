@@ -13,18 +13,17 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.gbif.registry.ws.config;
+package org.gbif.registry.utils;
 
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
 
-import com.google.common.eventbus.EventBus;
-
-@Configuration
-public class EventConfiguration {
+/** Registers a {@link QueryCounter} with MyBatis, for the tests counting their queries. */
+@TestConfiguration
+public class QueryCounterConfiguration {
 
   @Bean
-  public EventBus eventBus() {
-    return new EventBus();
+  public QueryCounter queryCounter() {
+    return new QueryCounter();
   }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.utils;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Node;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.persistence.WithMyBatis;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.InstallationMapper;
+import org.gbif.registry.persistence.mapper.NodeMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+
+import java.util.UUID;
+
+/**
+ * Creates the nodes, organizations, installations and datasets the integration tests need,
+ * directly with the mappers. The entities are the {@link Nodes}, {@link Organizations}, {@link
+ * Installations} and {@link Datasets} instances, created and modified by {@link #USER}.
+ */
+public class RegistryEntities {
+
+  public static final String USER = "WS TEST";
+
+  private final WithMyBatis withMyBatis;
+  private final NodeMapper nodeMapper;
+  private final OrganizationMapper organizationMapper;
+  private final InstallationMapper installationMapper;
+  private final DatasetMapper datasetMapper;
+
+  public RegistryEntities(
+      WithMyBatis withMyBatis,
+      NodeMapper nodeMapper,
+      OrganizationMapper organizationMapper,
+      InstallationMapper installationMapper,
+      DatasetMapper datasetMapper) {
+    this.withMyBatis = withMyBatis;
+    this.nodeMapper = nodeMapper;
+    this.organizationMapper = organizationMapper;
+    this.installationMapper = installationMapper;
+    this.datasetMapper = datasetMapper;
+  }
+
+  public Node createNode() {
+    Node node = Nodes.newInstance();
+    node.setCreatedBy(USER);
+    node.setModifiedBy(USER);
+    withMyBatis.create(nodeMapper, node);
+    return node;
+  }
+
+  /** @return a new organization endorsed by the node, not created yet */
+  public Organization newOrganization(UUID endorsingNodeKey) {
+    Organization organization = Organizations.newInstance(endorsingNodeKey);
+    organization.setCreatedBy(USER);
+    organization.setModifiedBy(USER);
+    return organization;
+  }
+
+  public Organization createOrganization(UUID endorsingNodeKey) {
+    return createOrganization(newOrganization(endorsingNodeKey));
+  }
+
+  public Organization createOrganization(Organization organization) {
+    withMyBatis.create(organizationMapper, organization);
+    return organization;
+  }
+
+  public Installation createInstallation(UUID organizationKey) {
+    Installation installation = Installations.newInstance(organizationKey);
+    installation.setCreatedBy(USER);
+    installation.setModifiedBy(USER);
+    withMyBatis.create(installationMapper, installation);
+    return installation;
+  }
+
+  /** @return a new dataset of the organization and installation, not created yet */
+  public Dataset newDataset(UUID publishingOrganizationKey, UUID installationKey) {
+    Dataset dataset = Datasets.newInstance(publishingOrganizationKey, installationKey);
+    dataset.setCreatedBy(USER);
+    dataset.setModifiedBy(USER);
+    return dataset;
+  }
+
+  public Dataset createDataset(UUID publishingOrganizationKey, UUID installationKey) {
+    return createDataset(newDataset(publishingOrganizationKey, installationKey));
+  }
+
+  public Dataset createDataset(Dataset dataset) {
+    withMyBatis.create(datasetMapper, dataset);
+    return dataset;
+  }
+
+  /** @return a new dataset, not created yet, of a new node, organization and installation */
+  public Dataset newDataset() {
+    Organization organization = createOrganization(createNode().getKey());
+    Installation installation = createInstallation(organization.getKey());
+    return newDataset(organization.getKey(), installation.getKey());
+  }
+
+  /** Creates a dataset together with its node, organization and installation. */
+  public Dataset createDataset() {
+    return createDataset(newDataset());
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.resources;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Metadata;
+import org.gbif.api.vocabulary.MetadataType;
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.events.ChangedComponentEvent;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.metadata.MetadataDigest;
+import org.gbif.registry.persistence.mapper.MetadataMapper;
+import org.gbif.registry.utils.RegistryEntities;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.google.common.eventbus.Subscribe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+@SpringBootTest(classes = RegistryIntegrationTestsConfiguration.class)
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class MetadataDeduplicationIT {
+
+  private static final String USER = "WS TEST";
+  private static final String EML =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<eml:eml xmlns:eml=\"eml://ecoinformatics.org/eml-2.1.1\" packageId=\"%s\"\n"
+          + "  system=\"http://gbif.org\" scope=\"system\" xml:lang=\"en\">\n"
+          + "  <dataset>\n"
+          + "    <title>Republished metadata</title>\n"
+          + "    <purpose><para>%s</para></purpose>\n"
+          + "  </dataset>\n"
+          + "</eml:eml>\n";
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @Autowired private DatasetResource datasetResource;
+  @Autowired private EventManager eventManager;
+  @Autowired private MetadataMapper metadataMapper;
+  @Autowired private RegistryEntities registryEntities;
+
+  private final MetadataEvents events = new MetadataEvents();
+  private UUID key;
+
+  @Before
+  public void setup() {
+    key = createDataset();
+    eventManager.register(events);
+  }
+
+  @After
+  public void tearDown() {
+    eventManager.unregister(events);
+  }
+
+  @Test
+  public void testRepublishingIdenticalDocument() {
+    String eml = eml("original");
+    Metadata first = datasetResource.insertMetadata(key, stream(eml));
+    assertEquals(1, events.count.get());
+
+    for (int i = 0; i < 3; i++) {
+      Metadata again = datasetResource.insertMetadata(key, stream(eml));
+      assertEquals(first.getKey(), again.getKey());
+    }
+    assertEquals(1, events.count.get());
+    assertEquals(1, datasetResource.listMetadata(key, null).size());
+  }
+
+  @Test
+  public void testRepublishingWhitespaceOnlyChanges() {
+    String eml = eml("original");
+    Metadata first = datasetResource.insertMetadata(key, stream(eml));
+
+    String reformatted = "\n" + eml.replace("\n  ", "\n\t\t").replace("\n", "\r\n") + "\n\n";
+    Metadata again = datasetResource.insertMetadata(key, stream(reformatted));
+    assertEquals(first.getKey(), again.getKey());
+    assertEquals(1, events.count.get());
+  }
+
+  @Test
+  public void testChangedDocumentReplaces() {
+    Metadata first = datasetResource.insertMetadata(key, stream(eml("original")));
+    Metadata changed = datasetResource.insertMetadata(key, stream(eml("changed")));
+    assertNotEquals(first.getKey(), changed.getKey());
+    assertEquals(2, events.count.get());
+
+    List<Metadata> stored = datasetResource.listMetadata(key, null);
+    assertEquals(1, stored.size());
+    assertEquals(changed.getKey(), stored.get(0).getKey());
+
+    // going back to the first version stores it again
+    Metadata reverted = datasetResource.insertMetadata(key, stream(eml("original")));
+    assertNotEquals(first.getKey(), reverted.getKey());
+    assertEquals(3, events.count.get());
+  }
+
+  @Test
+  public void testDocumentsStoredWithoutDigest() {
+    String eml = eml("legacy");
+    Metadata legacy = new Metadata();
+    legacy.setDatasetKey(key);
+    legacy.setType(MetadataType.EML);
+    legacy.setCreatedBy(USER);
+    legacy.setModifiedBy(USER);
+    int legacyKey = metadataMapper.create(legacy, eml.getBytes(StandardCharsets.UTF_8), null);
+    assertEquals(1, metadataMapper.listKeysWithoutContentHash(key).size());
+
+    Metadata again = datasetResource.insertMetadata(key, stream(eml));
+    assertEquals(legacyKey, (int) again.getKey());
+    assertEquals(0, events.count.get());
+
+    // the digest was stored on the way
+    assertTrue(metadataMapper.listKeysWithoutContentHash(key).isEmpty());
+    assertEquals(
+        legacyKey,
+        (int)
+            metadataMapper
+                .getByContentHash(key, MetadataDigest.sha256(eml.getBytes(StandardCharsets.UTF_8)))
+                .getKey());
+  }
+
+  /** Creates a dataset locked for auto updates, so documents don't modify the database. */
+  private UUID createDataset() {
+    Dataset dataset = registryEntities.newDataset();
+    dataset.setLockedForAutoUpdate(true);
+    return registryEntities.createDataset(dataset).getKey();
+  }
+
+  private String eml(String purpose) {
+    return String.format(EML, key, purpose);
+  }
+
+  private static ByteArrayInputStream stream(String document) {
+    return new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Counts the metadata changes of the datasets. */
+  public static class MetadataEvents {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Subscribe
+    public void changed(ChangedComponentEvent event) {
+      if (Metadata.class.equals(event.getComponentClass())) {
+        count.incrementAndGet();
+      }
+    }
+  }
+}
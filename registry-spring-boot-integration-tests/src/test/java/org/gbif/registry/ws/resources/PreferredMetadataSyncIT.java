@@ -0,0 +1,326 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.resources;
+
+import org.gbif.api.model.registry.Contact;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.registry.DatabaseInitializer;
+import org.gbif.registry.RegistryIntegrationTestsConfiguration;
+import org.gbif.registry.events.ChangedComponentEvent;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.events.UpdateEvent;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.utils.RegistryEntities;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.google.common.eventbus.Subscribe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@SpringBootTest(
+    classes = {
+      RegistryIntegrationTestsConfiguration.class,
+      PreferredMetadataSyncIT.WriteCounterConfiguration.class
+    })
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class PreferredMetadataSyncIT {
+
+  private static final String USER = "WS TEST";
+  private static final int NUM_CONTACTS = 200;
+
+  @ClassRule public static DatabaseInitializer databaseInitializer = new DatabaseInitializer();
+
+  @Autowired private DatasetResource datasetResource;
+  @Autowired private EventManager eventManager;
+  @Autowired private DatasetMapper datasetMapper;
+  @Autowired private WriteCounter writeCounter;
+  @Autowired private RegistryEntities registryEntities;
+
+  private final DatasetEvents events = new DatasetEvents();
+  private UUID key;
+
+  @Before
+  public void setup() {
+    key = createDataset();
+    eventManager.register(events);
+  }
+
+  @After
+  public void tearDown() {
+    eventManager.unregister(events);
+  }
+
+  @Test
+  public void testUnchangedMetadataWritesNothing() {
+    datasetResource.insertMetadata(key, eml("Original title", NUM_CONTACTS));
+    List<Integer> contactKeys = contactKeys();
+    assertEquals(NUM_CONTACTS, contactKeys.size());
+
+    writeCounter.reset();
+    events.reset();
+    datasetResource.updateFromPreferredMetadata(key, USER);
+    datasetResource.updateFromPreferredMetadata(key, USER);
+
+    assertEquals(Collections.emptyList(), writeCounter.statements());
+    assertEquals(0, events.updates.get());
+    assertEquals(contactKeys, contactKeys());
+  }
+
+  @Test
+  public void testChangedMetadataWritesDifferences() {
+    datasetResource.insertMetadata(key, eml("Original title", NUM_CONTACTS));
+    List<Integer> contactKeys = contactKeys();
+
+    // the title changes and a contact is added, the stored contacts are kept
+    writeCounter.reset();
+    events.reset();
+    datasetResource.insertMetadata(key, eml("Changed title", NUM_CONTACTS + 1));
+
+    List<Integer> updatedKeys = contactKeys();
+    assertEquals(NUM_CONTACTS + 1, updatedKeys.size());
+    assertEquals(contactKeys, updatedKeys.subList(0, NUM_CONTACTS));
+    assertEquals("Changed title", datasetResource.get(key).getTitle());
+    assertEquals(1, events.updates.get());
+    assertEquals(0, events.contactChanges.get());
+    assertEquals(writeCounter.statements().toString(), 1, count("ContactMapper.createContacts"));
+    assertEquals(1, count("DatasetMapper.addContacts"));
+    assertEquals(0, count("ContactMapper.updateContact"));
+    assertEquals(0, count("ContactMapper.deleteContactsByKey"));
+
+    // contacts removed from the end are deleted at once, the others are kept
+    writeCounter.reset();
+    datasetResource.insertMetadata(key, eml("Changed title", NUM_CONTACTS / 2));
+    assertEquals(contactKeys.subList(0, NUM_CONTACTS / 2), contactKeys());
+    assertEquals(1, count("ContactMapper.deleteContactsByKey"));
+    assertEquals(0, count("ContactMapper.createContacts"));
+    assertEquals(0, count("ContactMapper.updateContact"));
+  }
+
+  @Test
+  public void testChangedContactIsUpdatedInPlace() {
+    datasetResource.insertMetadata(key, eml("Original title", NUM_CONTACTS));
+    List<Integer> contactKeys = contactKeys();
+
+    // only the first contact changes, it is the only one written
+    writeCounter.reset();
+    String changed = emlDocument("Original title", NUM_CONTACTS).replace("First0<", "Changed0<");
+    datasetResource.insertMetadata(key, stream(changed));
+
+    List<Contact> contacts = datasetMapper.listContacts(key);
+    assertEquals(NUM_CONTACTS, contacts.size());
+    assertEquals("Changed0", contacts.get(0).getFirstName());
+    assertEquals("First1", contacts.get(1).getFirstName());
+    assertEquals(contactKeys, contactKeys());
+    assertEquals(writeCounter.statements().toString(), 1, count("ContactMapper.updateContact"));
+    assertEquals(0, count("DatasetMapper.updateContact"));
+    assertEquals(0, count("ContactMapper.createContacts"));
+    assertEquals(0, count("ContactMapper.deleteContactsByKey"));
+  }
+
+  @Test
+  public void testFailedUpdateRollsBackContacts() {
+    datasetResource.insertMetadata(key, eml("Original title", NUM_CONTACTS));
+    List<Integer> contactKeys = contactKeys();
+    int documents = datasetResource.listMetadata(key, null).size();
+
+    // the contacts are written before the dataset update, which fails
+    writeCounter.failOn("DatasetMapper.update");
+    String changed =
+        emlDocument("Changed title", NUM_CONTACTS + 10).replace("First0<", "Changed0<");
+    try {
+      datasetResource.insertMetadata(key, stream(changed));
+      fail("The dataset update should have failed");
+    } catch (RuntimeException expected) {
+      // expected
+    } finally {
+      writeCounter.failOn(null);
+    }
+    assertEquals(writeCounter.statements().toString(), 1, count("ContactMapper.updateContact"));
+    assertEquals(1, count("ContactMapper.createContacts"));
+
+    // nothing written by the upload remains
+    assertEquals(contactKeys, contactKeys());
+    assertEquals("First0", datasetMapper.listContacts(key).get(0).getFirstName());
+    assertEquals("Original title", datasetResource.get(key).getTitle());
+    assertEquals(documents, datasetResource.listMetadata(key, null).size());
+  }
+
+  private int count(String statement) {
+    int count = 0;
+    for (String id : writeCounter.statements()) {
+      if (id.endsWith(statement)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private List<Integer> contactKeys() {
+    List<Integer> keys = new ArrayList<>();
+    for (Contact contact : datasetMapper.listContacts(key)) {
+      keys.add(contact.getKey());
+    }
+    return keys;
+  }
+
+  private UUID createDataset() {
+    return registryEntities.createDataset().getKey();
+  }
+
+  private ByteArrayInputStream eml(String title, int contacts) {
+    return stream(emlDocument(title, contacts));
+  }
+
+  private String emlDocument(String title, int contacts) {
+    StringBuilder eml = new StringBuilder();
+    eml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+        .append("<eml:eml xmlns:eml=\"eml://ecoinformatics.org/eml-2.1.1\" packageId=\"")
+        .append(key)
+        .append("\" system=\"http://gbif.org\" scope=\"system\" xml:lang=\"en\">\n")
+        .append("<dataset>\n")
+        .append("<title>")
+        .append(title)
+        .append("</title>\n");
+    for (int i = 0; i < contacts; i++) {
+      eml.append("<associatedParty><individualName><givenName>First")
+          .append(i)
+          .append("</givenName><surName>Last")
+          .append(i)
+          .append("</surName></individualName>")
+          .append("<electronicMailAddress>contact")
+          .append(i)
+          .append("@example.org</electronicMailAddress>")
+          .append("<role>pointOfContact</role></associatedParty>\n");
+    }
+    eml.append("</dataset>\n").append("</eml:eml>\n");
+    return eml.toString();
+  }
+
+  private static ByteArrayInputStream stream(String document) {
+    return new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Counts the dataset updates and the contact changes. */
+  public static class DatasetEvents {
+
+    private final AtomicInteger updates = new AtomicInteger();
+    private final AtomicInteger contactChanges = new AtomicInteger();
+
+    @Subscribe
+    public void updated(UpdateEvent<?> event) {
+      if (Dataset.class.equals(event.getObjectClass())) {
+        updates.incrementAndGet();
+      }
+    }
+
+    @Subscribe
+    public void changed(ChangedComponentEvent event) {
+      if (Contact.class.equals(event.getComponentClass())) {
+        contactChanges.incrementAndGet();
+      }
+    }
+
+    void reset() {
+      updates.set(0);
+      contactChanges.set(0);
+    }
+  }
+
+  /** Records the ids of the inserts, updates and deletes executed by MyBatis. */
+  @Intercepts(
+      @Signature(
+          type = Executor.class,
+          method = "update",
+          args = {MappedStatement.class, Object.class}))
+  public static class WriteCounter implements Interceptor {
+
+    private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+    private volatile String failing;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      String id = ((MappedStatement) invocation.getArgs()[0]).getId();
+      statements.add(id);
+      if (failing != null && id.endsWith(failing)) {
+        throw new IllegalStateException("Statement " + id + " failed on purpose");
+      }
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+      // nothing to configure
+    }
+
+    public void reset() {
+      statements.clear();
+    }
+
+    /** Makes the statements ending with the given id fail, none if null. */
+    public void failOn(String statement) {
+      failing = statement;
+    }
+
+    public List<String> statements() {
+      synchronized (statements) {
+        return new ArrayList<>(statements);
+      }
+    }
+  }
+
+  @TestConfiguration
+  public static class WriteCounterConfiguration {
+
+    @Bean
+    public WriteCounter writeCounter() {
+      return new WriteCounter();
+    }
+  }
+}
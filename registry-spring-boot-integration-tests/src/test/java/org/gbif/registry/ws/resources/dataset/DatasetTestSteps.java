@@ -18,6 +18,7 @@ package org.gbif.registry.ws.resources.dataset;
 import org.gbif.api.model.registry.Dataset;
 import org.gbif.registry.RegistryIntegrationTestsConfiguration;
 import org.gbif.registry.identity.service.IdentityService;
+import org.gbif.registry.security.EditorAuthorizationCache;
 import org.gbif.registry.utils.Datasets;
 import org.gbif.registry.utils.RegistryITUtils;
 import org.gbif.registry.ws.resources.DatasetResource;
@@ -84,6 +85,11 @@ public class DatasetTestSteps {
 
   @Autowired private IdentityService identityService;
 
+  @Autowired private EditorAuthorizationCache editorAuthorizationCache;
+
+  // user given editor rights, removed by the cleanup script
+  private String editor;
+
   @Before("@Dataset")
   public void setUp() throws Exception {
     connection = ds.getConnection();
@@ -101,6 +107,9 @@ public class DatasetTestSteps {
   public void tearDown() throws Exception {
     ScriptUtils.executeSqlScript(
         connection, new ClassPathResource("/scripts/network_entities_cleanup.sql"));
+    if (editor != null) {
+      editorAuthorizationCache.invalidateUser(editor);
+    }
 
     connection.close();
   }
@@ -108,6 +117,8 @@ public class DatasetTestSteps {
   @Given("user {string} with editor rights on organization {string}")
   public void addEditorRights(String username, String orgKey) {
     identityService.addEditorRight(username, UUID.fromString(orgKey));
+    editorAuthorizationCache.invalidateUser(username);
+    editor = username;
   }
 
   @When("create new dataset {string} for installation {string} and organization {string}")
@@ -18,6 +18,7 @@ package org.gbif.registry.ws.resources.installation;
 import org.gbif.api.model.registry.Installation;
 import org.gbif.registry.RegistryIntegrationTestsConfiguration;
 import org.gbif.registry.identity.service.IdentityService;
+import org.gbif.registry.security.EditorAuthorizationCache;
 import org.gbif.registry.utils.Installations;
 import org.gbif.registry.utils.RegistryITUtils;
 import org.gbif.registry.ws.resources.InstallationResource;
@@ -83,6 +84,11 @@ public class InstallationTestSteps {
 
   @Autowired private IdentityService identityService;
 
+  @Autowired private EditorAuthorizationCache editorAuthorizationCache;
+
+  // user given editor rights, removed by the cleanup script
+  private String editor;
+
   @Before("@Installation")
   public void setUp() throws Exception {
     connection = ds.getConnection();
@@ -100,6 +106,9 @@ public class InstallationTestSteps {
   public void tearDown() throws Exception {
     ScriptUtils.executeSqlScript(
         connection, new ClassPathResource("/scripts/network_entities_cleanup.sql"));
+    if (editor != null) {
+      editorAuthorizationCache.invalidateUser(editor);
+    }
 
     connection.close();
   }
@@ -107,6 +116,8 @@ public class InstallationTestSteps {
   @Given("user {string} with editor rights on organization {string}")
   public void addEditorRights(String username, String orgKey) {
     identityService.addEditorRight(username, UUID.fromString(orgKey));
+    editorAuthorizationCache.invalidateUser(username);
+    editor = username;
   }
 
   @When("create new installation {string} for organization {string}")
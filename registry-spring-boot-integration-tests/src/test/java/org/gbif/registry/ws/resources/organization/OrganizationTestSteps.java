@@ -19,6 +19,7 @@ import org.gbif.api.model.registry.Organization;
 import org.gbif.api.vocabulary.Country;
 import org.gbif.registry.RegistryIntegrationTestsConfiguration;
 import org.gbif.registry.identity.service.IdentityService;
+import org.gbif.registry.security.EditorAuthorizationCache;
 import org.gbif.registry.utils.Organizations;
 import org.gbif.registry.utils.RegistryITUtils;
 import org.gbif.registry.ws.resources.OrganizationResource;
@@ -101,6 +102,11 @@ public class OrganizationTestSteps {
 
   @Autowired private IdentityService identityService;
 
+  @Autowired private EditorAuthorizationCache editorAuthorizationCache;
+
+  // user given editor rights, removed by the cleanup script
+  private String editor;
+
   @Before("@Organization")
   public void setUp() throws Exception {
     connection = ds.getConnection();
@@ -123,6 +129,9 @@ public class OrganizationTestSteps {
   public void tearDown() throws Exception {
     ScriptUtils.executeSqlScript(
         connection, new ClassPathResource("/scripts/network_entities_cleanup.sql"));
+    if (editor != null) {
+      editorAuthorizationCache.invalidateUser(editor);
+    }
 
     connection.close();
   }
@@ -140,6 +149,8 @@ public class OrganizationTestSteps {
   @Given("user {string} with editor rights on node {string}")
   public void addEditorRights(String username, String nodeKey) {
     identityService.addEditorRight(username, UUID.fromString(nodeKey));
+    editorAuthorizationCache.invalidateUser(username);
+    editor = username;
   }
 
   @When("^call suggest organizations with query \"([^\"]*)\"$")
@@ -32,6 +32,8 @@ DELETE FROM network_tag;
 DELETE FROM network_comment;
 DELETE FROM machine_tag;
 DELETE FROM metadata;
+DELETE FROM oaipmh_record;
+DELETE FROM dataset_occurrence_coverage;
 DELETE FROM editor_rights;
 DELETE FROM network;
 DELETE FROM dataset;
@@ -1,4 +1,5 @@
 DELETE FROM public.metadata;
+DELETE FROM public.oaipmh_record;
 DELETE FROM public.dataset;
 DELETE FROM public.installation;
 DELETE FROM public.organization;
@@ -0,0 +1,12 @@
+INSERT INTO public.crawl_history (dataset_key, attempt, target_url, endpoint_type, started_crawling, finished_crawling, finish_reason, pages_crawled)
+VALUES ('d82273f6-9738-48a5-a639-2086f9c49d18', 1, 'http://gbif.org/dwca', 'DWC_ARCHIVE', '2019-12-20 09:20:00.000000', '2019-12-20 09:21:00.000000', 'NORMAL', 1);
+INSERT INTO public.crawl_history (dataset_key, attempt, target_url, endpoint_type, started_crawling, finished_crawling, finish_reason, pages_crawled)
+VALUES ('d82273f6-9738-48a5-a639-2086f9c49d18', 2, 'http://gbif.org/dwca', 'DWC_ARCHIVE', '2019-12-20 09:22:00.000000', '2019-12-20 09:23:00.000000', 'NORMAL', 1);
+INSERT INTO public.crawl_history (dataset_key, attempt, target_url, endpoint_type, started_crawling, finished_crawling, finish_reason, pages_crawled)
+VALUES ('d82273f6-9738-48a5-a639-2086f9c49d18', 3, 'http://gbif.org/dwca', 'DWC_ARCHIVE', '2019-12-20 09:24:00.000000', '2019-12-20 09:25:00.000000', 'NORMAL', 1);
+INSERT INTO public.crawl_history (dataset_key, attempt, target_url, endpoint_type, started_crawling, finished_crawling, finish_reason, pages_crawled)
+VALUES ('d82273f6-9738-48a5-a639-2086f9c49d18', 4, 'http://gbif.org/dwca', 'DWC_ARCHIVE', '2019-12-20 09:26:00.000000', null, 'ABORT', 0);
+INSERT INTO public.crawl_history (dataset_key, attempt, target_url, endpoint_type, started_crawling, finished_crawling, finish_reason, pages_crawled)
+VALUES ('7c57400d-1ee7-449b-a152-aefed2f70a2c', 1, 'http://gbif.org/dwca', 'DWC_ARCHIVE', '2019-12-20 09:27:00.000000', '2019-12-20 09:28:00.000000', 'NORMAL', 1);
+INSERT INTO public.crawl_history (dataset_key, attempt, target_url, endpoint_type, started_crawling, finished_crawling, finish_reason, pages_crawled)
+VALUES ('4348adaa-d744-4241-92a0-ebf9d55eb9bb', 1, 'http://gbif.org/dwca', 'DWC_ARCHIVE', '2019-12-20 09:29:00.000000', '2019-12-20 09:30:00.000000', 'NORMAL', 1);
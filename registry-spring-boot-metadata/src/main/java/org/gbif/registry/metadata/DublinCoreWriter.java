@@ -26,8 +26,12 @@ import org.gbif.api.util.formatter.TemporalCoverageFormatterVisitor;
 import org.gbif.api.vocabulary.ContactType;
 import org.gbif.registry.metadata.contact.ContactAdapter;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.ZoneOffset;
 import java.util.Date;
 import java.util.List;
@@ -48,6 +52,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import freemarker.template.Configuration;
+import freemarker.template.Template;
 import freemarker.template.TemplateException;
 
 /** Writer to serialize a Dataset as DublinCore XML document. Currently using a OAI DC profile. */
@@ -56,8 +61,9 @@ public class DublinCoreWriter {
   public static final String ADDITIONAL_PROPERTY_OCC_COUNT = "occurrence_count";
   public static final String ADDITIONAL_PROPERTY_DC_FORMAT = "dublincore_format";
 
-  private static final String DC_TEMPLATE = "oai-dc-profile-template/dc-dataset.ftl";
-  private final Configuration freemarkerConfig;
+  static final String DC_TEMPLATE = "oai-dc-profile-template/dc-dataset.ftl";
+  // the template is parsed once, processing a Template is thread safe
+  private final Template template;
 
   // We should probably use @Named("portal.url") but it would be more appropriate to wait
   // until we turn this class in a non static one.
@@ -72,7 +78,11 @@ public class DublinCoreWriter {
    * @param cfg
    */
   private DublinCoreWriter(Configuration cfg) {
-    freemarkerConfig = cfg;
+    try {
+      template = cfg.getTemplate(DC_TEMPLATE);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to load the DublinCore Freemarker template", e);
+    }
   }
 
   /**
@@ -110,7 +120,7 @@ public class DublinCoreWriter {
     }
     map = ImmutableMap.copyOf(map);
     try {
-      freemarkerConfig.getTemplate(DC_TEMPLATE).process(map, writer);
+      template.process(map, writer);
     } catch (TemplateException e) {
       throw new IOException(
           "Error while processing the DublinCore Freemarker template for dataset "
@@ -119,6 +129,29 @@ public class DublinCoreWriter {
     }
   }
 
+  /**
+   * Write a DublinCore document from a Dataset object straight to a stream, encoded in UTF-8,
+   * without building the whole document in memory first.
+   *
+   * @param organization organization who published this dataset, should not be null but nulls are
+   *     handled.
+   * @param dataset non null dataset object
+   * @param additionalProperties
+   * @param out where the output document will go. The stream is flushed but not closed by this
+   *     method.
+   * @throws IOException if an error occurs while processing the template
+   */
+  public void writeTo(
+      @Nullable Organization organization,
+      @NotNull Dataset dataset,
+      Map<String, Object> additionalProperties,
+      OutputStream out)
+      throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    writeTo(organization, dataset, additionalProperties, writer);
+    writer.flush();
+  }
+
   /** This class requires to be public to be used in the Freemarker template. */
   public static class DcDatasetWrapper {
     private final Dataset dataset;
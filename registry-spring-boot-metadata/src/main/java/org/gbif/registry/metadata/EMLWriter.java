@@ -25,8 +25,12 @@ import org.gbif.api.model.registry.eml.temporal.VerbatimTimePeriodType;
 import org.gbif.api.vocabulary.ContactType;
 import org.gbif.registry.metadata.contact.ContactAdapter;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
@@ -37,6 +41,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
 import freemarker.template.Configuration;
+import freemarker.template.Template;
 import freemarker.template.TemplateException;
 
 /**
@@ -46,10 +51,11 @@ import freemarker.template.TemplateException;
 @ThreadSafe
 public class EMLWriter {
 
-  private static final String TEMPLATE_PATH = "/gbif-eml-profile-template";
-  private static final String EML_TEMPLATE =
+  static final String TEMPLATE_PATH = "/gbif-eml-profile-template";
+  static final String EML_TEMPLATE =
       String.format("eml-dataset-%s.ftl", EMLProfileVersion.GBIF_1_1.getVersion());
-  private final Configuration freemarkerConfig;
+  // the template is parsed once, processing a Template is thread safe
+  private final Template template;
   private final boolean useDoiAsIdentifier;
   private final boolean omitXmlDeclaration;
 
@@ -63,7 +69,11 @@ public class EMLWriter {
    * @param cfg
    */
   private EMLWriter(Configuration cfg, boolean useDoiAsIdentifier, boolean omitXmlDeclaration) {
-    this.freemarkerConfig = cfg;
+    try {
+      this.template = cfg.getTemplate(EML_TEMPLATE);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to load the EML Freemarker template", e);
+    }
     this.useDoiAsIdentifier = useDoiAsIdentifier;
     this.omitXmlDeclaration = omitXmlDeclaration;
   }
@@ -119,6 +129,21 @@ public class EMLWriter {
     innerWrite(dataset, writer);
   }
 
+  /**
+   * Write a document from a Dataset object straight to a stream, encoded in UTF-8, without building
+   * the whole document in memory first.
+   *
+   * @param dataset non null dataset object
+   * @param out where the output document will go. The stream is flushed but not closed by this
+   *     method.
+   * @throws IOException if an error occurs while processing the template
+   */
+  public void writeTo(Dataset dataset, OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    innerWrite(dataset, writer);
+    writer.flush();
+  }
+
   private void innerWrite(Dataset dataset, Writer writer) throws IOException {
     Preconditions.checkNotNull(dataset, "Dataset can't be null");
 
@@ -134,7 +159,7 @@ public class EMLWriter {
             omitXmlDeclaration);
 
     try {
-      freemarkerConfig.getTemplate(EML_TEMPLATE).process(map, writer);
+      template.process(map, writer);
     } catch (TemplateException e) {
       throw new IOException(
           "Error while processing the EML Freemarker template for dataset " + dataset.getKey(), e);
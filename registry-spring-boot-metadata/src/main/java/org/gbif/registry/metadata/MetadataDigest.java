@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.metadata;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * SHA-256 digests of metadata documents, used to recognise a document that is uploaded again.
+ *
+ * <p>The digest is computed over the document with its insignificant whitespace normalized:
+ * whitespace between tags and at both ends is dropped and any other run of whitespace counts as a
+ * single space. Documents only differing in indentation or line endings have the same digest.
+ */
+public final class MetadataDigest {
+
+  private MetadataDigest() {}
+
+  /** @return the lower case hexadecimal SHA-256 digest of the normalized document */
+  public static String sha256(byte[] document) {
+    Preconditions.checkNotNull(document, "Document can't be null");
+    MessageDigest digest = newDigest();
+    byte[] buffer = new byte[8192];
+    int length = 0;
+    boolean started = false;
+    byte last = 0;
+    boolean pendingSpace = false;
+
+    for (byte b : document) {
+      if (isWhitespace(b)) {
+        pendingSpace = true;
+        continue;
+      }
+      if (pendingSpace && started && last != '>' && b != '<') {
+        buffer[length++] = ' ';
+      }
+      pendingSpace = false;
+      buffer[length++] = b;
+      last = b;
+      started = true;
+      // keeps room for a space and a byte
+      if (length >= buffer.length - 1) {
+        digest.update(buffer, 0, length);
+        length = 0;
+      }
+    }
+    digest.update(buffer, 0, length);
+    return BaseEncoding.base16().lowerCase().encode(digest.digest());
+  }
+
+  /**
+   * ASCII whitespace, which never occurs within a multi byte character of a UTF-8 document.
+   * Documents in other encodings are normalized byte by byte too, identical documents still get the
+   * same digest.
+   */
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+}
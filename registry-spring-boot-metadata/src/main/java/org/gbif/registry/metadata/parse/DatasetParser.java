@@ -22,6 +22,9 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import org.apache.commons.beanutils.ConversionException;
 import org.apache.commons.digester3.Digester;
@@ -34,6 +37,7 @@ import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.helpers.XMLReaderFactory;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
@@ -48,20 +52,39 @@ import static org.gbif.api.vocabulary.MetadataType.EML;
  *
  * <p>This parser and its digester rules use the DatasetDelegator class to wrap a dataset and set
  * complex bean components.
+ *
+ * <p>All methods are thread safe. Digesters configured with the rules of a document type are kept
+ * in a pool and reused, as setting up the rules costs about as much as parsing a small document.
+ * Each thread keeps its own XML reader to detect document types.
  */
 public class DatasetParser {
 
   private static final Logger LOG = LoggerFactory.getLogger(DatasetParser.class);
 
+  // maximum number of idle digesters kept per document type
+  private static final int POOL_SIZE = 16;
+
+  private static final Map<MetadataType, BlockingQueue<Digester>> DIGESTERS =
+      ImmutableMap.<MetadataType, BlockingQueue<Digester>>of(
+          EML, new ArrayBlockingQueue<>(POOL_SIZE), DC, new ArrayBlockingQueue<>(POOL_SIZE));
+
+  private static final ThreadLocal<XMLReader> XML_READERS =
+      ThreadLocal.withInitial(DatasetParser::newXmlReader);
+
   private DatasetParser() {
     // empty constructor
   }
 
   private static class ParserDetectionHandler extends DefaultHandler {
     private static final String DC_NAMESPACE = "http://purl.org/dc/terms/";
+    private final boolean stopWhenDetected;
     private MetadataType parserType;
     private LinkedList<String> path = Lists.newLinkedList();
 
+    private ParserDetectionHandler(boolean stopWhenDetected) {
+      this.stopWhenDetected = stopWhenDetected;
+    }
+
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes)
         throws SAXException {
@@ -75,6 +98,10 @@ public class DatasetParser {
         parserType = MetadataType.DC;
       }
 
+      if (parserType != null && stopWhenDetected) {
+        throw new DetectionComplete();
+      }
+
       path.add(localName);
     }
 
@@ -87,14 +114,40 @@ public class DatasetParser {
     }
   }
 
+  /** Stops the SAX parsing once the document type is known. */
+  private static class DetectionComplete extends SAXException {
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+
   /**
+   * Detects the type of a document, reading the whole document to make sure it is well formed.
+   *
    * @return the detected parser type or null
    * @throws java.lang.IllegalArgumentException in case no parser exists for this document
    */
   public static MetadataType detectParserType(InputStream xml) {
+    return detectParserType(xml, false);
+  }
+
+  /**
+   * Detects the type of a document, reading it only until the type is known. The rest of the
+   * document is not checked, use it when the document is parsed afterwards anyway.
+   *
+   * @return the detected parser type
+   * @throws java.lang.IllegalArgumentException in case no parser exists for this document
+   */
+  public static MetadataType sniffParserType(InputStream xml) {
+    return detectParserType(xml, true);
+  }
+
+  private static MetadataType detectParserType(InputStream xml, boolean stopWhenDetected) {
+    ParserDetectionHandler handler = new ParserDetectionHandler(stopWhenDetected);
     try {
-      XMLReader xmlReader = XMLReaderFactory.createXMLReader();
-      ParserDetectionHandler handler = new ParserDetectionHandler();
+      XMLReader xmlReader = XML_READERS.get();
       xmlReader.setContentHandler(handler);
       InputSource inputSource = new InputSource(xml);
       xmlReader.parse(inputSource);
@@ -102,6 +155,8 @@ public class DatasetParser {
         return handler.parserType;
       }
 
+    } catch (DetectionComplete e) {
+      return handler.parserType;
     } catch (SAXException e) {
       LOG.error("Failed to SAX parse a document for parser type detection", e);
     } catch (IOException e) {
@@ -123,22 +178,13 @@ public class DatasetParser {
   public static Dataset build(InputStream xml) throws IOException {
     // buffer entire stream first. We need it several times
     final byte[] data = ByteStreams.toByteArray(xml);
-    // detect the parser type
-    return parse(detectParserType(new ByteArrayInputStream(data)), new ByteArrayInputStream(data));
+    // detect the parser type, the parsing checks the whole document
+    return parse(sniffParserType(new ByteArrayInputStream(data)), new ByteArrayInputStream(data));
   }
 
   public static Dataset parse(MetadataType type, InputStream xml) throws IOException {
-    Digester digester = new Digester();
-    digester.setNamespaceAware(true);
-
-    // add digester rules based on parser type
-    if (type == EML) {
-      LOG.debug("Parsing EML document");
-      digester.addRuleSet(new EMLRuleSet());
-    } else if (type == DC) {
-      LOG.debug("Parsing DC document");
-      digester.addRuleSet(new DublinCoreRuleSet());
-    }
+    Digester digester = borrowDigester(type);
+    boolean reusable = false;
 
     // push the Delegating object onto the stack
     DatasetWrapper delegator = new DatasetWrapper();
@@ -147,6 +193,7 @@ public class DatasetParser {
     // now parse and return the dataset
     try {
       digester.parse(xml);
+      reusable = true;
     } catch (ConversionException e) {
       // swallow
     } catch (SAXException e) {
@@ -158,8 +205,51 @@ public class DatasetParser {
     } finally {
       delegator.postProcess();
       Closeables.closeQuietly(xml);
+      // digesters interrupted in the middle of a document are not reused
+      if (reusable) {
+        returnDigester(type, digester);
+      }
     }
 
     return delegator.getTarget();
   }
+
+  private static Digester borrowDigester(MetadataType type) {
+    BlockingQueue<Digester> pool = type != null ? DIGESTERS.get(type) : null;
+    Digester digester = pool != null ? pool.poll() : null;
+    return digester != null ? digester : newDigester(type);
+  }
+
+  private static void returnDigester(MetadataType type, Digester digester) {
+    BlockingQueue<Digester> pool = type != null ? DIGESTERS.get(type) : null;
+    if (pool != null) {
+      digester.clear();
+      digester.resetRoot();
+      // dropped if the pool is full
+      pool.offer(digester);
+    }
+  }
+
+  private static Digester newDigester(MetadataType type) {
+    Digester digester = new Digester();
+    digester.setNamespaceAware(true);
+
+    // add digester rules based on parser type
+    if (type == EML) {
+      LOG.debug("Creating EML digester");
+      digester.addRuleSet(new EMLRuleSet());
+    } else if (type == DC) {
+      LOG.debug("Creating DC digester");
+      digester.addRuleSet(new DublinCoreRuleSet());
+    }
+    return digester;
+  }
+
+  private static XMLReader newXmlReader() {
+    try {
+      return XMLReaderFactory.createXMLReader();
+    } catch (SAXException e) {
+      throw new IllegalStateException("Unable to create an XML reader", e);
+    }
+  }
 }
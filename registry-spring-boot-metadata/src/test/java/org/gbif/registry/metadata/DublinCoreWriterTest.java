@@ -27,8 +27,10 @@ import org.gbif.api.model.registry.eml.temporal.TemporalCoverage;
 import org.gbif.api.vocabulary.ContactType;
 import org.gbif.api.vocabulary.Language;
 
+import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -42,6 +44,7 @@ import com.google.common.base.CharMatcher;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -150,5 +153,10 @@ public class DublinCoreWriterTest {
     // ensure we have a valid XML file according to the schema
     XMLValidator.assertXMLAgainstXSD(
         writer.toString(), org.gbif.utils.file.FileUtils.classpath2Filepath(OAI_2_0_DC_SCHEMA));
+
+    // the streamed document is byte for byte the same
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DublinCoreWriter.newInstance().writeTo(organization, d, additionalProperties, out);
+    assertArrayEquals(writer.toString().getBytes(StandardCharsets.UTF_8), out.toByteArray());
   }
 }
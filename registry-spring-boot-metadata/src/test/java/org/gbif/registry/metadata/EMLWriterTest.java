@@ -23,7 +23,10 @@ import org.gbif.registry.metadata.parse.DatasetParser;
 import org.gbif.utils.file.FileUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.UUID;
 
 import javax.xml.transform.stream.StreamSource;
@@ -31,6 +34,9 @@ import javax.xml.transform.stream.StreamSource;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -131,4 +137,53 @@ public class EMLWriterTest {
     emlWriterDOI.writeTo(d, writer);
     assertTrue(writer.toString().contains("packageId=\"10.1234/5679\""));
   }
+
+  @Test
+  public void testWriteToStreamMatchesWriter() throws Exception {
+    String[] files = {
+      TEST_EML_FILE,
+      "eml-metadata-profile/sample4-v1.1.xml",
+      "eml-metadata-profile/sample8-v1.1.xml",
+      "eml/ipt_eml.xml",
+      "dc/worms_dc.xml"
+    };
+    for (String file : files) {
+      Dataset d = DatasetParser.build(FileUtils.classpathStream(file));
+      d.setKey(UUID.randomUUID());
+      assertStreamMatchesWriter(emlWriter, d);
+      assertStreamMatchesWriter(emlWriterDOI, d);
+    }
+  }
+
+  @Test
+  public void testWriteToStreamMatchesWriterLargeDocument() throws Exception {
+    Dataset d = DatasetParser.build(FileUtils.classpathStream(TEST_EML_FILE));
+    d.setKey(UUID.randomUUID());
+    // multi-byte characters spread over many buffer boundaries
+    d.setTitle("Données sur les claviers \uD835\uDD18 \u4E2D\u6587");
+    List<Contact> contacts = Lists.newArrayList();
+    for (int i = 0; i < 2000; i++) {
+      for (Contact c : d.getContacts()) {
+        Contact copy = new Contact();
+        copy.setType(c.getType());
+        copy.setFirstName(c.getFirstName());
+        copy.setLastName("Pérez \uD83E\uDD8E " + i);
+        copy.setOrganization(c.getOrganization());
+        contacts.add(copy);
+      }
+    }
+    d.setContacts(contacts);
+    assertStreamMatchesWriter(emlWriter, d);
+  }
+
+  /** The document streamed must be byte for byte the one rendered with a Writer. */
+  private static void assertStreamMatchesWriter(EMLWriter writer, Dataset d) throws Exception {
+    StringWriter expected = new StringWriter();
+    writer.writeTo(d, expected);
+
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    writer.writeTo(d, actual);
+
+    assertArrayEquals(expected.toString().getBytes(StandardCharsets.UTF_8), actual.toByteArray());
+  }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.metadata;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class MetadataDigestTest {
+
+  private static final String EML =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<eml:eml packageId=\"1\">\n"
+          + "  <dataset>\n"
+          + "    <title>Fishes of the Øresund</title>\n"
+          + "    <abstract><para>Sampled  along the coast</para></abstract>\n"
+          + "  </dataset>\n"
+          + "</eml:eml>\n";
+
+  @Test
+  public void testSameDocument() {
+    assertEquals(digest(EML), digest(EML));
+    assertEquals(64, digest(EML).length());
+    assertEquals(
+        "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", digest(" \n "));
+  }
+
+  @Test
+  public void testWhitespaceOnlyChanges() {
+    // indentation, line endings and whitespace at both ends
+    assertEquals(digest(EML), digest(EML.replace("\n  ", "\n\t").replace("\n", "\r\n")));
+    assertEquals(digest(EML), digest("\n\n" + EML.replace("\n", "") + "   "));
+    // runs of whitespace within text count as one space
+    assertEquals(digest(EML), digest(EML.replace("Sampled  along", "Sampled \n along")));
+    assertEquals(digest(EML), digest(EML.replace("Sampled  along", "Sampled along")));
+  }
+
+  @Test
+  public void testContentChanges() {
+    assertNotEquals(digest(EML), digest(EML.replace("coast", "coasts")));
+    // whitespace can't be removed within text
+    assertNotEquals(digest(EML), digest(EML.replace("Sampled  along", "Sampledalong")));
+    assertNotEquals(digest(EML), digest(EML.replace("eml:eml packageId", "eml:emlpackageId")));
+  }
+
+  @Test
+  public void testLargeDocument() {
+    StringBuilder large = new StringBuilder("<eml>");
+    StringBuilder indented = new StringBuilder("<eml>");
+    for (int i = 0; i < 10000; i++) {
+      large.append("<keyword>keyword ").append(i).append("</keyword>");
+      indented.append("\n    <keyword>keyword  ").append(i).append("</keyword>");
+    }
+    large.append("</eml>");
+    indented.append("\n</eml>\n");
+    assertEquals(digest(large.toString()), digest(indented.toString()));
+  }
+
+  private static String digest(String document) {
+    return MetadataDigest.sha256(document.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -40,6 +40,7 @@ import org.gbif.registry.metadata.EMLWriter;
 import org.gbif.registry.metadata.EmlValidator;
 import org.gbif.utils.file.FileUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
@@ -50,14 +51,21 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.input.ReaderInputStream;
 import org.junit.Test;
 
+import com.google.common.io.ByteStreams;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -100,6 +108,39 @@ public class DatasetParserTest {
     assertIllegalArg("dc/dc_broken.xml");
   }
 
+  @Test
+  public void testSniffParserType() throws Exception {
+    String[] documents = {
+      "dc/worms_dc.xml",
+      "eml/ipt_eml.xml",
+      "eml/clb_eml.xml",
+      "eml-metadata-profile/sample2-v1.0.1.xml",
+      "eml-metadata-profile/sample4-v1.1.xml",
+      "eml/eml_utf8_bom.xml",
+      "eml/sample-breaking.xml"
+    };
+    for (String document : documents) {
+      assertEquals(
+          document,
+          DatasetParser.detectParserType(FileUtils.classpathStream(document)),
+          DatasetParser.sniffParserType(FileUtils.classpathStream(document)));
+    }
+
+    // only the beginning of the document is read
+    assertEquals(
+        MetadataType.DC,
+        DatasetParser.sniffParserType(FileUtils.classpathStream("dc/dc_broken.xml")));
+
+    for (String document : new String[] {"eml/eml-protocol.xml", "logback-test.xml"}) {
+      try {
+        DatasetParser.sniffParserType(FileUtils.classpathStream(document));
+        fail("IllegalArgumentException expected for file " + document);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
   private void assertIllegalArg(String classpathFile) throws IOException {
     try {
       MetadataType type = DatasetParser.detectParserType(FileUtils.classpathStream(classpathFile));
@@ -1016,4 +1057,66 @@ public class DatasetParserTest {
             FileUtils.classpathStream("eml/3920856d-4923-4276-ae0b-e8b3478df276.xml"));
     assertEquals(License.CC0_1_0, dataset.getLicense());
   }
+
+  /** Reused digesters give the same results as new ones, also after failed documents. */
+  @Test
+  public void testRepeatedParsing() throws IOException {
+    Dataset eml = DatasetParser.build(FileUtils.classpathStream("eml/ipt_eml.xml"));
+    Dataset dc = DatasetParser.build(FileUtils.classpathStream("dc/worms_dc.xml"));
+    for (int i = 0; i < 3; i++) {
+      try {
+        DatasetParser.build(FileUtils.classpathStream("eml/eml-protocol.xml"));
+        fail("IllegalArgumentException expected");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      DatasetParser.parse(MetadataType.EML, FileUtils.classpathStream("eml/sample-breaking.xml"));
+      assertEquals(eml, DatasetParser.build(FileUtils.classpathStream("eml/ipt_eml.xml")));
+      assertEquals(dc, DatasetParser.build(FileUtils.classpathStream("dc/worms_dc.xml")));
+    }
+  }
+
+  @Test
+  public void testConcurrentParsing() throws Exception {
+    String[] documents = {
+      "eml/ipt_eml.xml",
+      "dc/worms_dc.xml",
+      "eml-metadata-profile/sample4-v1.1.xml",
+      "eml/sample-breaking.xml",
+      "eml/eml-protocol.xml"
+    };
+    List<byte[]> data = new ArrayList<>();
+    List<Object> expected = new ArrayList<>();
+    for (String document : documents) {
+      byte[] bytes = ByteStreams.toByteArray(FileUtils.classpathStream(document));
+      data.add(bytes);
+      expected.add(buildOrError(bytes));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Object>> results = new ArrayList<>();
+      for (int i = 0; i < 500; i++) {
+        byte[] bytes = data.get(i % documents.length);
+        results.add(executor.submit(() -> buildOrError(bytes)));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals(
+            documents[i % documents.length],
+            expected.get(i % documents.length),
+            results.get(i).get(1, TimeUnit.MINUTES));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** @return the parsed dataset or the class of the exception thrown */
+  private static Object buildOrError(byte[] data) {
+    try {
+      return DatasetParser.build(new ByteArrayInputStream(data));
+    } catch (Exception e) {
+      return e.getClass();
+    }
+  }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import org.gbif.registry.persistence.mapper.paging.KeysetCursor;
+
+import javax.annotation.Nullable;
+
+import org.dspace.xoai.dataprovider.exceptions.BadResumptionToken;
+import org.dspace.xoai.model.oaipmh.ResumptionToken;
+import org.dspace.xoai.services.impl.SimpleResumptionTokenFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resumption tokens carrying the position of the next page as a {@link KeysetCursor}, so the
+ * next page is read right after the last dataset returned instead of skipping all the previous
+ * ones.
+ *
+ * <p>XOAI only gives the offset to the {@link OaipmhItemRepository}, so the cursors are exchanged
+ * with the repository through the request thread: the cursor parsed from the request token is
+ * available with {@link #cursorAt(long)} and the repository sets the cursor of the next page with
+ * {@link #nextPageAt(long, KeysetCursor)} before the response token is formatted. Each is only
+ * used for the offset it was given for. Tokens without cursor, like the ones issued before, are
+ * still valid and paged by offset.
+ *
+ * <p>{@link #clear()} must be called once the request is handled.
+ */
+public class KeysetResumptionTokenFormat extends SimpleResumptionTokenFormat {
+
+  private static final Logger LOG = LoggerFactory.getLogger(KeysetResumptionTokenFormat.class);
+
+  // not part of the base64 alphabet of the parent format
+  private static final char CURSOR_SEPARATOR = '.';
+
+  private final ThreadLocal<Position> requested = new ThreadLocal<>();
+  private final ThreadLocal<Position> next = new ThreadLocal<>();
+
+  @Override
+  public ResumptionToken.Value parse(String resumptionToken) throws BadResumptionToken {
+    int separator = resumptionToken != null ? resumptionToken.lastIndexOf(CURSOR_SEPARATOR) : -1;
+    if (separator < 0) {
+      return super.parse(resumptionToken);
+    }
+
+    ResumptionToken.Value value = super.parse(resumptionToken.substring(0, separator));
+    try {
+      KeysetCursor cursor = KeysetCursor.fromToken(resumptionToken.substring(separator + 1));
+      requested.set(new Position(value.getOffset(), cursor));
+    } catch (IllegalArgumentException e) {
+      LOG.debug("Ignoring the cursor of resumption token {}", resumptionToken, e);
+    }
+    return value;
+  }
+
+  @Override
+  public String format(ResumptionToken.Value resumptionToken) {
+    String token = super.format(resumptionToken);
+    Position position = next.get();
+    if (position != null && position.offset == resumptionToken.getOffset()) {
+      token += CURSOR_SEPARATOR + position.cursor.toToken();
+    }
+    return token;
+  }
+
+  /** @return the cursor of the requested page if it starts at the given offset, null otherwise */
+  @Nullable
+  public KeysetCursor cursorAt(long offset) {
+    Position position = requested.get();
+    return position != null && position.offset == offset ? position.cursor : null;
+  }
+
+  /** Sets the cursor of the page starting at the given offset, to add to the response token. */
+  public void nextPageAt(long offset, KeysetCursor cursor) {
+    next.set(new Position(offset, cursor));
+  }
+
+  /** Forgets the cursors of the current request. */
+  public void clear() {
+    requested.remove();
+    next.remove();
+  }
+
+  private static final class Position {
+
+    private final long offset;
+    private final KeysetCursor cursor;
+
+    private Position(long offset, KeysetCursor cursor) {
+      this.offset = offset;
+      this.cursor = cursor;
+    }
+  }
+}
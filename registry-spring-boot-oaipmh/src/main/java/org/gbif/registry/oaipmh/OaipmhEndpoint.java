@@ -42,10 +42,15 @@ public class OaipmhEndpoint {
 
   private final DateProvider dateProvider;
   private final DataProvider dataProvider;
+  private final KeysetResumptionTokenFormat resumptionTokenFormat;
 
-  public OaipmhEndpoint(DateProvider dateProvider, DataProvider dataProvider) {
+  public OaipmhEndpoint(
+      DateProvider dateProvider,
+      DataProvider dataProvider,
+      KeysetResumptionTokenFormat resumptionTokenFormat) {
     this.dateProvider = dateProvider;
     this.dataProvider = dataProvider;
+    this.resumptionTokenFormat = resumptionTokenFormat;
   }
 
   /**
@@ -84,6 +89,8 @@ public class OaipmhEndpoint {
       return OaipmhUtils.write(oaipmh).getBytes(StandardCharsets.UTF_8);
     } catch (Exception e) {
       throw new ServiceUnavailableException("OAI Failed to serialize dataset", e);
+    } finally {
+      resumptionTokenFormat.clear();
     }
   }
 }
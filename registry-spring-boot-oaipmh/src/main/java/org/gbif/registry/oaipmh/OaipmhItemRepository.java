@@ -17,26 +17,19 @@ package org.gbif.registry.oaipmh;
 
 import org.gbif.api.exception.ServiceUnavailableException;
 import org.gbif.api.model.common.paging.PagingRequest;
-import org.gbif.api.model.common.paging.PagingResponse;
-import org.gbif.api.model.metrics.cube.OccurrenceCube;
-import org.gbif.api.model.metrics.cube.ReadBuilder;
 import org.gbif.api.model.registry.Dataset;
 import org.gbif.api.model.registry.Organization;
 import org.gbif.api.vocabulary.Country;
 import org.gbif.api.vocabulary.DatasetType;
-import org.gbif.registry.metadata.DublinCoreWriter;
-import org.gbif.registry.metadata.EMLWriter;
+import org.gbif.registry.domain.oaipmh.OaipmhRecord;
 import org.gbif.registry.oaipmh.OaipmhSetRepository.SetIdentification;
-import org.gbif.registry.occurrenceclient.OccurrenceMetricsClient;
 import org.gbif.registry.persistence.mapper.DatasetMapper;
 import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.persistence.mapper.paging.KeysetCursor;
 import org.gbif.registry.service.RegistryDatasetService;
-import org.gbif.ws.util.ExtraMediaTypes;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -62,12 +55,22 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
 import static org.gbif.registry.oaipmh.OaipmhSetRepository.SetType.COUNTRY;
 import static org.gbif.registry.oaipmh.OaipmhSetRepository.SetType.DATASET_TYPE;
 import static org.gbif.registry.oaipmh.OaipmhSetRepository.SetType.INSTALLATION;
 
-/** Implementation of a XOAI ItemRepository for {@link Dataset}. */
-public class OaipmhItemRepository implements ItemRepository {
+/**
+ * Implementation of a XOAI ItemRepository for {@link Dataset}.
+ *
+ * <p>Pages of datasets are read with the keyset cursor of the resumption token when present, see
+ * {@link KeysetResumptionTokenFormat}, and the records of ListRecords come from the {@link
+ * OaipmhRecordStore}. Single records are always rendered from the current dataset.
+ */
+public class OaipmhItemRepository implements ItemRepository, MeterBinder {
 
   private static final Logger LOG = LoggerFactory.getLogger(OaipmhItemRepository.class);
 
@@ -75,29 +78,29 @@ public class OaipmhItemRepository implements ItemRepository {
       CacheBuilder.newBuilder()
           .maximumSize(1000)
           .expireAfterAccess(1, TimeUnit.MINUTES)
+          .recordStats()
           .build(buildOrganizationCacheLoader());
 
   private final RegistryDatasetService datasetService;
   private final OrganizationMapper organizationMapper;
   private final DatasetMapper datasetMapper;
-  private final OccurrenceMetricsClient occurrenceMetricsClient;
-
-  private final EMLWriter emlWriter;
-  private final DublinCoreWriter dublinCoreWriter;
+  private final OaipmhRecordWriter recordWriter;
+  private final OaipmhRecordStore recordStore;
+  private final KeysetResumptionTokenFormat resumptionTokenFormat;
 
   public OaipmhItemRepository(
       RegistryDatasetService datasetService,
       DatasetMapper datasetMapper,
       OrganizationMapper organizationMapper,
-      OccurrenceMetricsClient occurrenceMetricsClient) {
+      OaipmhRecordWriter recordWriter,
+      OaipmhRecordStore recordStore,
+      KeysetResumptionTokenFormat resumptionTokenFormat) {
     this.datasetService = datasetService;
     this.datasetMapper = datasetMapper;
     this.organizationMapper = organizationMapper;
-    this.occurrenceMetricsClient = occurrenceMetricsClient;
-
-    // should eventually be injected
-    emlWriter = EMLWriter.newInstance(false, true);
-    dublinCoreWriter = DublinCoreWriter.newInstance();
+    this.recordWriter = recordWriter;
+    this.recordStore = recordStore;
+    this.resumptionTokenFormat = resumptionTokenFormat;
   }
 
   /** Build a CacheLoader<UUID, Organization> around the organizationMapper instance. */
@@ -110,6 +113,12 @@ public class OaipmhItemRepository implements ItemRepository {
     };
   }
 
+  /** Publishes the statistics of the organization cache. */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    GuavaCacheMetrics.monitor(registry, ORGANIZATION_CACHE, "oaipmhOrganizations");
+  }
+
   @Override
   public Item getItem(String s) throws IdDoesNotExistException {
 
@@ -178,21 +187,14 @@ public class OaipmhItemRepository implements ItemRepository {
   @Override
   public ListItemIdentifiersResult getItemIdentifiers(
       List<ScopedFilter> list, int offset, int length, String set, Date from, Date until) {
-    // ask for length+1 to determine if there are more results
-    List<Dataset> datasetList = getDatasetListFromFilters(offset, length + 1, set, from, until);
-    List<ItemIdentifier> results = Lists.newArrayListWithCapacity(datasetList.size());
-
-    boolean hasMoreResults = (datasetList.size() == length + 1);
-    // remove last element, it was only retrieve to determine hasMoreResults
-    if (hasMoreResults) {
-      datasetList.remove(datasetList.size() - 1);
-    }
+    DatasetPage page = getDatasetPage(offset, length, set, from, until);
+    List<ItemIdentifier> results = Lists.newArrayListWithCapacity(page.datasets.size());
 
-    for (Dataset dataset : datasetList) {
+    for (Dataset dataset : page.datasets) {
       results.add(toOaipmhItemIdentifier(dataset));
     }
 
-    return new ListItemIdentifiersResult(hasMoreResults, results);
+    return new ListItemIdentifiersResult(page.hasMore, results);
   }
 
   /** See {@link #getItems(List, int, int, String, Date, Date) getItems} */
@@ -245,95 +247,49 @@ public class OaipmhItemRepository implements ItemRepository {
   @Override
   public ListItemsResults getItems(
       List<ScopedFilter> list, int offset, int length, String set, Date from, Date until) {
-
-    // ask for length+1 to determine if there are more results
-    List<Dataset> datasetList = getDatasetListFromFilters(offset, length + 1, set, from, until);
-    List<Item> results = Lists.newArrayListWithCapacity(datasetList.size());
-
-    boolean hasMoreResults = (datasetList.size() == length + 1);
-    // remove last element, it was only retrieve to determine hasMoreResults
-    if (hasMoreResults) {
-      datasetList.remove(datasetList.size() - 1);
-    }
-
-    PagingResponse<Dataset> pagingResponse = new PagingResponse<>();
-    pagingResponse.setResults(datasetList);
-    pagingResponse = datasetService.augmentWithMetadata(pagingResponse);
+    DatasetPage page = getDatasetPage(offset, length, set, from, until);
+    List<Item> results = Lists.newArrayListWithCapacity(page.datasets.size());
 
     try {
-      for (Dataset dataset : pagingResponse.getResults()) {
-        results.add(toOaipmhItem(dataset));
+      Map<UUID, OaipmhRecord> records =
+          recordStore.getRecords(page.datasets, this::getOrganization);
+      for (Dataset dataset : page.datasets) {
+        results.add(
+            new OaipmhItem(
+                dataset,
+                OaipmhRecordWriter.toXml(records.get(dataset.getKey())),
+                getSets(getOrganization(dataset.getPublishingOrganizationKey()), dataset)));
       }
     } catch (IOException e) {
       // caused by https://github.com/DSpace/xoai/issues/31
       LOG.error("Failed to serialize datasets to DC/EML", e);
     }
-    return new ListItemsResults(hasMoreResults, results);
+    return new ListItemsResults(page.hasMore, results);
   }
 
   /**
    * Build a {@link OaipmhItem} instance from a {@link Dataset} and the {@link Set} it belongs to.
    */
   private OaipmhItem toOaipmhItem(Dataset dataset) throws IOException {
-    Organization organization = null;
-    try {
-      organization = ORGANIZATION_CACHE.get(dataset.getPublishingOrganizationKey());
-    } catch (ExecutionException e) {
-      LOG.error("Error while loading Organization from cache fro dataset {}", dataset, e);
-    }
-    List<Set> sets = getSets(organization, dataset);
-    Map<String, Object> additionalProperties = new HashMap<>();
-    additionalProperties.put(
-        DublinCoreWriter.ADDITIONAL_PROPERTY_DC_FORMAT, ExtraMediaTypes.APPLICATION_DWCA);
-
-    // get the occurrence counts for this dataset, only used in DublinCore
-    // This is designed to fail fast (short http timeout) and on failures which are expected to be
-    // exceptional
-    // events, it is simply omitted.  See the Guice RegistryWsSevletListener for the configuration
-    // of the timeout.
-    ReadBuilder readBuilder = new ReadBuilder();
-    readBuilder.at(OccurrenceCube.DATASET_KEY, dataset.getKey());
-    try {
-      Long occurrenceCount = occurrenceMetricsClient.getCountForDataset(dataset.getKey());
-      if (occurrenceCount > 0) {
-        additionalProperties.put(DublinCoreWriter.ADDITIONAL_PROPERTY_OCC_COUNT, occurrenceCount);
-      }
-    } catch (Exception ex) {
-      LOG.warn(
-          "Unable to get occurrence count from cubeService for dataset {}. Omitting count.",
-          dataset.getKey(),
-          ex);
-    }
-
-    /*
-     * The XOAI library doesn't provide us with the metadata type (EML / OAI DC), so both must be
-     * produced. An XSLT transform pulls out the one that's required. This is ugly, so see
-     * https://github.com/DSpace/xoai/issues/31
-     */
-    StringWriter xml = new StringWriter();
-
-    xml.write("<root>");
-
-    xml.write("<oaidc>\n");
-    dublinCoreWriter.writeTo(organization, dataset, additionalProperties, xml);
-    xml.write("</oaidc>\n");
-
-    xml.write("<eml>\n");
-    emlWriter.writeTo(dataset, xml);
-    xml.write("</eml>\n");
-
-    xml.write("</root>\n");
-    return new OaipmhItem(dataset, xml.toString(), sets);
+    Organization organization = getOrganization(dataset.getPublishingOrganizationKey());
+    OaipmhRecord record = recordWriter.write(dataset, organization);
+    return new OaipmhItem(
+        dataset, OaipmhRecordWriter.toXml(record), getSets(organization, dataset));
   }
 
   private OaipmhItem toOaipmhItemIdentifier(Dataset dataset) {
-    Organization organization = null;
+    Organization organization = getOrganization(dataset.getPublishingOrganizationKey());
+    return new OaipmhItem(dataset, getSets(organization, dataset));
+  }
+
+  /** @return the organization from the cache, or null if it couldn't be loaded */
+  private Organization getOrganization(UUID organizationKey) {
     try {
-      organization = ORGANIZATION_CACHE.get(dataset.getPublishingOrganizationKey());
-    } catch (ExecutionException e) {
-      LOG.error("Error while loading Organization from cache fro dataset {}", dataset, e);
+      return ORGANIZATION_CACHE.get(organizationKey);
+    } catch (ExecutionException | CacheLoader.InvalidCacheLoadException e) {
+      LOG.error("Error while loading Organization {} from cache", organizationKey, e);
+      return null;
     }
-    return new OaipmhItem(dataset, getSets(organization, dataset));
   }
 
   /**
@@ -361,24 +317,24 @@ public class OaipmhItemRepository implements ItemRepository {
   }
 
   /**
-   * Get a list of {@link Dataset} based on filter(s).
+   * Get a page of {@link Dataset} based on filter(s), without their sub resources.
+   *
+   * <p>The page is read after the keyset cursor of the resumption token if it has one for this
+   * offset, and the cursor of the next page is handed back for the response token.
    *
    * @param set set name in the form of set:subset {@see
    *     http://www.openarchives.org/OAI/openarchivesprotocol.html#Set} XOAI library validates the
    *     set before calling the ItemRepository so we do not validate it again here.
-   * @return list of matching {@link Dataset}. Never null.
+   * @return page of matching {@link Dataset}. Never null.
    */
-  private List<Dataset> getDatasetListFromFilters(
-      int offset, int length, String set, Date from, Date until) {
+  private DatasetPage getDatasetPage(int offset, int length, String set, Date from, Date until) {
 
     Optional<SetIdentification> setIdentification = OaipmhSetRepository.parseSetName(set);
 
-    List<Dataset> datasetList;
+    Country country = null;
+    UUID installationKey = null;
+    DatasetType datasetType = null;
     if (setIdentification.isPresent()) {
-      Country country = null;
-      UUID installationKey = null;
-      DatasetType datasetType = null;
-
       String subSet = setIdentification.get().getSubSet();
       switch (setIdentification.get().getSetType()) {
         case COUNTRY:
@@ -391,21 +347,46 @@ public class OaipmhItemRepository implements ItemRepository {
           datasetType = DatasetType.fromString(subSet);
           break;
       }
+    }
 
+    // ask for length+1 to determine if there are more results
+    List<Dataset> datasetList;
+    KeysetCursor after = resumptionTokenFormat.cursorAt(offset);
+    if (offset == 0 || after != null) {
       datasetList =
-          datasetMapper.listWithFilter(
+          datasetMapper.listWithFilterShallowAfter(
+              country, datasetType, installationKey, from, until, after, length + 1);
+    } else {
+      // tokens without cursor
+      datasetList =
+          datasetMapper.listWithFilterShallow(
               country,
               datasetType,
               installationKey,
               from,
               until,
-              new PagingRequest(offset, length));
-    } else {
-      datasetList =
-          datasetMapper.listWithFilter(
-              null, null, null, from, until, new PagingRequest(offset, length));
+              new PagingRequest(offset, length + 1));
+    }
+
+    boolean hasMoreResults = (datasetList.size() == length + 1);
+    // remove last element, it was only retrieve to determine hasMoreResults
+    if (hasMoreResults) {
+      datasetList.remove(datasetList.size() - 1);
+      resumptionTokenFormat.nextPageAt(
+          offset + length,
+          KeysetCursor.after(datasetMapper, datasetList.get(datasetList.size() - 1)));
     }
+    return new DatasetPage(datasetList, hasMoreResults);
+  }
 
-    return datasetList;
+  private static final class DatasetPage {
+
+    private final List<Dataset> datasets;
+    private final boolean hasMore;
+
+    private DatasetPage(List<Dataset> datasets, boolean hasMore) {
+      this.datasets = datasets;
+      this.hasMore = hasMore;
+    }
   }
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.domain.oaipmh.OaipmhRecord;
+import org.gbif.registry.events.AsyncEventListener;
+import org.gbif.registry.events.ChangedComponentEvent;
+import org.gbif.registry.events.DeleteEvent;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.events.UpdateEvent;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.OaipmhRecordMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.persistence.service.DatasetBatchLoader;
+import org.gbif.registry.service.RegistryDatasetService;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Store of the rendered OAI-PMH records, so harvesting a page of records doesn't parse, complete
+ * and serialize every dataset again.
+ *
+ * <p>Records are only written in the background: a refresh renders the records that are missing,
+ * rendered from an older version of the dataset or older than the maximum age, which bounds how
+ * outdated the occurrence count can be. Records are removed when the dataset, its components or
+ * its publishing organization change, as those changes don't always touch the modified date of the
+ * dataset, and rendered again by the next refresh. The removals run on the refresh thread, so a
+ * refresh in progress can't store a record again from the data read before the change.
+ *
+ * <p>Reading never writes: a record missing from the store is rendered for the response only.
+ */
+@AsyncEventListener
+public class OaipmhRecordStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OaipmhRecordStore.class);
+  private static final int BATCH_SIZE = 100;
+
+  private final OaipmhRecordMapper recordMapper;
+  private final DatasetMapper datasetMapper;
+  private final OrganizationMapper organizationMapper;
+  private final DatasetBatchLoader datasetBatchLoader;
+  private final RegistryDatasetService datasetService;
+  private final OaipmhRecordWriter recordWriter;
+  private final long maxAgeMs;
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * @param maxAgeMs age after which a record is rendered again
+   * @param refreshMs interval between two refreshes of the store, 0 to never store records
+   */
+  public OaipmhRecordStore(
+      OaipmhRecordMapper recordMapper,
+      DatasetMapper datasetMapper,
+      OrganizationMapper organizationMapper,
+      DatasetBatchLoader datasetBatchLoader,
+      RegistryDatasetService datasetService,
+      OaipmhRecordWriter recordWriter,
+      EventManager eventManager,
+      long maxAgeMs,
+      long refreshMs) {
+    checkArgument(maxAgeMs > 0, "The maximum age of the records must be positive");
+    checkArgument(refreshMs >= 0, "The refresh interval can't be negative");
+    this.recordMapper = recordMapper;
+    this.datasetMapper = datasetMapper;
+    this.organizationMapper = organizationMapper;
+    this.datasetBatchLoader = datasetBatchLoader;
+    this.datasetService = datasetService;
+    this.recordWriter = recordWriter;
+    this.maxAgeMs = maxAgeMs;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("oaipmh-records").setDaemon(true).build());
+    if (refreshMs > 0) {
+      scheduler.scheduleWithFixedDelay(this::refresh, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+    }
+    eventManager.register(this);
+  }
+
+  /**
+   * Gets the records of a page of datasets. The records missing from the store are rendered but
+   * not stored.
+   *
+   * @param datasets datasets as listed, the sub resources are only loaded for the datasets to
+   *     render
+   * @param organizations lookup of the publishing organizations
+   * @return the records by dataset key, one per dataset
+   */
+  public Map<UUID, OaipmhRecord> getRecords(
+      List<Dataset> datasets, Function<UUID, Organization> organizations) throws IOException {
+    if (datasets.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Map<UUID, OaipmhRecord> stored =
+        recordMapper.listByDatasets(
+                datasets.stream().map(Dataset::getKey).collect(Collectors.toList()))
+            .stream()
+            .collect(Collectors.toMap(OaipmhRecord::getDatasetKey, Function.identity()));
+
+    Map<UUID, OaipmhRecord> records = new HashMap<>();
+    List<Dataset> toRender = Lists.newArrayList();
+    long notBefore = System.currentTimeMillis() - maxAgeMs;
+    for (Dataset dataset : datasets) {
+      OaipmhRecord record = stored.get(dataset.getKey());
+      if (record != null && isCurrent(record, dataset, notBefore)) {
+        records.put(dataset.getKey(), record);
+      } else {
+        toRender.add(dataset);
+      }
+    }
+
+    if (!toRender.isEmpty()) {
+      LOG.debug("Rendering {} of {} OAI-PMH records", toRender.size(), datasets.size());
+      for (Dataset dataset : complete(toRender)) {
+        Organization organization = organizations.apply(dataset.getPublishingOrganizationKey());
+        records.put(dataset.getKey(), recordWriter.write(dataset, organization));
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Renders and stores the records that are missing or outdated. Records without occurrence count
+   * are not stored, so they are tried again on the next refresh.
+   */
+  private void refresh() {
+    int refreshed = 0;
+    try {
+      List<UUID> outdated =
+          recordMapper.listOutdated(new Date(System.currentTimeMillis() - maxAgeMs));
+      LOG.info("Refreshing {} OAI-PMH records", outdated.size());
+      for (List<UUID> keys : Lists.partition(outdated, BATCH_SIZE)) {
+        refreshed += render(keys);
+      }
+      LOG.info("Refreshed {} of {} OAI-PMH records", refreshed, outdated.size());
+    } catch (RuntimeException e) {
+      // never let the scheduler die
+      LOG.error("Failed to refresh the OAI-PMH records after {} records", refreshed, e);
+    }
+  }
+
+  /** Removes the record of the dataset from the store, it is rendered again by the next refresh. */
+  public void invalidate(UUID datasetKey) {
+    scheduler.execute(() -> recordMapper.delete(datasetKey));
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void updated(UpdateEvent<T> event) {
+    if (event.getObjectClass().equals(Dataset.class)) {
+      invalidate(event.getNewObject().getKey());
+    } else if (event.getObjectClass().equals(Organization.class)) {
+      invalidateOrganization(event.getNewObject().getKey());
+    }
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void deleted(DeleteEvent<T> event) {
+    if (event.getObjectClass().equals(Dataset.class)) {
+      invalidate(event.getOldObject().getKey());
+    }
+  }
+
+  @Subscribe
+  public final void updatedComponent(ChangedComponentEvent event) {
+    if (event.getTargetClass().equals(Dataset.class)) {
+      invalidate(event.getTargetEntityKey());
+    } else if (event.getTargetClass().equals(Organization.class)) {
+      invalidateOrganization(event.getTargetEntityKey());
+    }
+  }
+
+  @PreDestroy
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  private void invalidateOrganization(UUID organizationKey) {
+    scheduler.execute(() -> recordMapper.deleteByOrganization(organizationKey));
+  }
+
+  /**
+   * Renders and stores the records of the datasets, with the publishing organizations read from
+   * the database rather than from a cache, as the records outlive any cache entry.
+   */
+  private int render(List<UUID> datasetKeys) {
+    int stored = 0;
+    Map<UUID, Organization> organizations = new HashMap<>();
+    for (Dataset dataset : complete(datasetMapper.listShallowByKeys(datasetKeys))) {
+      try {
+        Organization organization =
+            organizations.computeIfAbsent(
+                dataset.getPublishingOrganizationKey(), organizationMapper::get);
+        OaipmhRecord record = recordWriter.write(dataset, organization);
+        if (record.getOccurrenceCount() != null) {
+          recordMapper.upsert(record);
+          stored++;
+        }
+      } catch (IOException | RuntimeException e) {
+        LOG.warn("Failed to render the OAI-PMH record of dataset {}", dataset.getKey(), e);
+      }
+    }
+    return stored;
+  }
+
+  private static boolean isCurrent(OaipmhRecord record, Dataset dataset, long notBefore) {
+    return record.getCreated().getTime() >= notBefore
+        && dataset.getModified() != null
+        && record.getDatasetModified().getTime() == dataset.getModified().getTime();
+  }
+
+  /** Loads the sub resources and merges the preferred metadata document into the datasets. */
+  private List<Dataset> complete(List<Dataset> datasets) {
+    if (datasets.isEmpty()) {
+      return datasets;
+    }
+    datasetBatchLoader.loadSubResources(datasets);
+    return datasetService
+        .augmentWithMetadata(new PagingResponse<>(0L, datasets.size(), null, datasets))
+        .getResults();
+  }
+}
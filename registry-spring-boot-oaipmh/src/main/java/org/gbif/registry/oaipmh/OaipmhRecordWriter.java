@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.domain.oaipmh.OaipmhRecord;
+import org.gbif.registry.metadata.DublinCoreWriter;
+import org.gbif.registry.metadata.EMLWriter;
+import org.gbif.registry.occurrenceclient.OccurrenceMetricsClient;
+import org.gbif.ws.util.ExtraMediaTypes;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Renders the oai_dc and eml serializations of a {@link Dataset}. */
+public class OaipmhRecordWriter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OaipmhRecordWriter.class);
+
+  private final OccurrenceMetricsClient occurrenceMetricsClient;
+  private final EMLWriter emlWriter;
+  private final DublinCoreWriter dublinCoreWriter;
+
+  public OaipmhRecordWriter(OccurrenceMetricsClient occurrenceMetricsClient) {
+    this.occurrenceMetricsClient = occurrenceMetricsClient;
+
+    // should eventually be injected
+    emlWriter = EMLWriter.newInstance(false, true);
+    dublinCoreWriter = DublinCoreWriter.newInstance();
+  }
+
+  /**
+   * Renders the record of a dataset.
+   *
+   * @param dataset complete dataset, with its sub resources and preferred metadata
+   * @param organization publishing organization of the dataset, can be null
+   * @return the record, with a null occurrence count if the count couldn't be obtained
+   */
+  public OaipmhRecord write(Dataset dataset, @Nullable Organization organization)
+      throws IOException {
+    Map<String, Object> additionalProperties = new HashMap<>();
+    additionalProperties.put(
+        DublinCoreWriter.ADDITIONAL_PROPERTY_DC_FORMAT, ExtraMediaTypes.APPLICATION_DWCA);
+
+    // get the occurrence counts for this dataset, only used in DublinCore
+    // This is designed to fail fast (short http timeout) and on failures which are expected to be
+    // exceptional events, it is simply omitted.
+    Long occurrenceCount = null;
+    try {
+      occurrenceCount = occurrenceMetricsClient.getCountForDataset(dataset.getKey());
+      if (occurrenceCount > 0) {
+        additionalProperties.put(DublinCoreWriter.ADDITIONAL_PROPERTY_OCC_COUNT, occurrenceCount);
+      }
+    } catch (Exception ex) {
+      LOG.warn(
+          "Unable to get occurrence count from cubeService for dataset {}. Omitting count.",
+          dataset.getKey(),
+          ex);
+    }
+
+    StringWriter dc = new StringWriter();
+    dublinCoreWriter.writeTo(organization, dataset, additionalProperties, dc);
+
+    StringWriter eml = new StringWriter();
+    emlWriter.writeTo(dataset, eml);
+
+    return new OaipmhRecord()
+        .setDatasetKey(dataset.getKey())
+        .setDatasetModified(dataset.getModified())
+        .setOaiDc(dc.toString())
+        .setEml(eml.toString())
+        .setOccurrenceCount(occurrenceCount)
+        .setCreated(new Date());
+  }
+
+  /**
+   * The XOAI library doesn't provide us with the metadata type (EML / OAI DC), so both must be
+   * produced. An XSLT transform pulls out the one that's required. This is ugly, so see
+   * https://github.com/DSpace/xoai/issues/31
+   *
+   * @return the document holding both serializations of the record
+   */
+  public static String toXml(OaipmhRecord record) {
+    StringBuilder xml =
+        new StringBuilder(record.getOaiDc().length() + record.getEml().length() + 64);
+
+    xml.append("<root>");
+
+    xml.append("<oaidc>\n");
+    xml.append(record.getOaiDc());
+    xml.append("</oaidc>\n");
+
+    xml.append("<eml>\n");
+    xml.append(record.getEml());
+    xml.append("</eml>\n");
+
+    xml.append("</root>\n");
+    return xml.toString();
+  }
+}
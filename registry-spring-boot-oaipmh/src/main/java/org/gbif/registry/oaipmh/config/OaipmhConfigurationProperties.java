@@ -26,6 +26,12 @@ public class OaipmhConfigurationProperties {
 
   private String adminEmail;
 
+  // hours a rendered record is served for, bounding how outdated its occurrence count can be
+  private int recordMaxAgeHours = 24;
+
+  // minutes between two renderings of the missing and outdated records, 0 to never store records
+  private int recordRefreshMinutes = 10;
+
   public String getBaseUrl() {
     return baseUrl;
   }
@@ -41,4 +47,20 @@ public class OaipmhConfigurationProperties {
   public void setAdminEmail(String adminEmail) {
     this.adminEmail = adminEmail;
   }
+
+  public int getRecordMaxAgeHours() {
+    return recordMaxAgeHours;
+  }
+
+  public void setRecordMaxAgeHours(int recordMaxAgeHours) {
+    this.recordMaxAgeHours = recordMaxAgeHours;
+  }
+
+  public int getRecordRefreshMinutes() {
+    return recordRefreshMinutes;
+  }
+
+  public void setRecordRefreshMinutes(int recordRefreshMinutes) {
+    this.recordRefreshMinutes = recordRefreshMinutes;
+  }
 }
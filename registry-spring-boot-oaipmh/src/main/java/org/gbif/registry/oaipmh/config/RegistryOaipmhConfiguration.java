@@ -15,17 +15,24 @@
  */
 package org.gbif.registry.oaipmh.config;
 
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.oaipmh.KeysetResumptionTokenFormat;
 import org.gbif.registry.oaipmh.OaipmhItemRepository;
+import org.gbif.registry.oaipmh.OaipmhRecordStore;
+import org.gbif.registry.oaipmh.OaipmhRecordWriter;
 import org.gbif.registry.oaipmh.OaipmhSetRepository;
 import org.gbif.registry.occurrenceclient.OccurrenceMetricsClient;
 import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.OaipmhRecordMapper;
 import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.persistence.service.DatasetBatchLoader;
 import org.gbif.registry.service.RegistryDatasetService;
 
 import java.io.InputStream;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
@@ -43,7 +50,6 @@ import org.dspace.xoai.dataprovider.repository.SetRepository;
 import org.dspace.xoai.model.oaipmh.DeletedRecord;
 import org.dspace.xoai.model.oaipmh.Granularity;
 import org.dspace.xoai.services.api.DateProvider;
-import org.dspace.xoai.services.impl.SimpleResumptionTokenFormat;
 import org.dspace.xoai.services.impl.UTCDateProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -67,11 +73,12 @@ public class RegistryOaipmhConfiguration {
   public Repository repository(
       ItemRepository itemRepository,
       SetRepository setRepository,
-      RepositoryConfiguration repositoryConfiguration) {
+      RepositoryConfiguration repositoryConfiguration,
+      KeysetResumptionTokenFormat resumptionTokenFormat) {
     return new Repository()
         .withItemRepository(itemRepository)
         .withSetRepository(setRepository)
-        .withResumptionTokenFormatter(new SimpleResumptionTokenFormat())
+        .withResumptionTokenFormatter(resumptionTokenFormat)
         .withConfiguration(repositoryConfiguration);
   }
 
@@ -150,13 +157,52 @@ public class RegistryOaipmhConfiguration {
   }
 
   @Bean
-  public ItemRepository itemRepository(
+  public KeysetResumptionTokenFormat resumptionTokenFormat() {
+    return new KeysetResumptionTokenFormat();
+  }
+
+  @Bean
+  public OaipmhRecordWriter oaipmhRecordWriter(OccurrenceMetricsClient occurrenceMetricsClient) {
+    return new OaipmhRecordWriter(occurrenceMetricsClient);
+  }
+
+  @Bean
+  public OaipmhRecordStore oaipmhRecordStore(
+      OaipmhRecordMapper recordMapper,
+      DatasetMapper datasetMapper,
+      OrganizationMapper organizationMapper,
+      DatasetBatchLoader datasetBatchLoader,
+      RegistryDatasetService datasetService,
+      OaipmhRecordWriter recordWriter,
+      EventManager eventManager,
+      OaipmhConfigurationProperties oaipmhConfigProperties) {
+    return new OaipmhRecordStore(
+        recordMapper,
+        datasetMapper,
+        organizationMapper,
+        datasetBatchLoader,
+        datasetService,
+        recordWriter,
+        eventManager,
+        TimeUnit.HOURS.toMillis(oaipmhConfigProperties.getRecordMaxAgeHours()),
+        TimeUnit.MINUTES.toMillis(oaipmhConfigProperties.getRecordRefreshMinutes()));
+  }
+
+  @Bean
+  public OaipmhItemRepository itemRepository(
       RegistryDatasetService datasetService,
       DatasetMapper datasetMapper,
       OrganizationMapper organizationMapper,
-      OccurrenceMetricsClient occurrenceMetricsClient) {
+      OaipmhRecordWriter recordWriter,
+      OaipmhRecordStore recordStore,
+      KeysetResumptionTokenFormat resumptionTokenFormat) {
     return new OaipmhItemRepository(
-        datasetService, datasetMapper, organizationMapper, occurrenceMetricsClient);
+        datasetService,
+        datasetMapper,
+        organizationMapper,
+        recordWriter,
+        recordStore,
+        resumptionTokenFormat);
   }
 
   @Bean
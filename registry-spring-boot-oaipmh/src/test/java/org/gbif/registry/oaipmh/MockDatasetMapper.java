@@ -29,7 +29,9 @@ import org.gbif.api.vocabulary.Country;
 import org.gbif.api.vocabulary.DatasetType;
 import org.gbif.api.vocabulary.IdentifierType;
 import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.paging.KeysetCursor;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +41,7 @@ import java.util.UUID;
 import javax.annotation.Nullable;
 
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -133,6 +136,80 @@ public class MockDatasetMapper implements DatasetMapper {
     return null;
   }
 
+  @Override
+  public List<Dataset> listShallow(@Nullable @Param("page") Pageable page) {
+    return null;
+  }
+
+  @Override
+  public Cursor<Dataset> cursorShallow() {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> searchShallow(
+      @Nullable @Param("query") String query, @Nullable @Param("page") Pageable page) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listWithFilterShallow(
+      @Nullable @Param("country") Country country,
+      @Nullable @Param("type") DatasetType type,
+      @Nullable @Param("installationKey") UUID installationKey,
+      @Nullable @Param("dateFrom") Date from,
+      @Nullable @Param("dateTo") Date to,
+      @Nullable @Param("page") Pageable page) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listWithFilterShallowAfter(
+      @Nullable @Param("country") Country country,
+      @Nullable @Param("type") DatasetType type,
+      @Nullable @Param("installationKey") UUID installationKey,
+      @Nullable @Param("dateFrom") Date from,
+      @Nullable @Param("dateTo") Date to,
+      @Nullable @Param("after") KeysetCursor after,
+      @Param("limit") int limit) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> countConstituentsByDatasets(@Param("keys") Collection<UUID> datasetKeys) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listContactsByDatasets(@Param("keys") Collection<UUID> datasetKeys) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listEndpointsByDatasets(@Param("keys") Collection<UUID> datasetKeys) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listMachineTagsByDatasets(@Param("keys") Collection<UUID> datasetKeys) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listTagsByDatasets(@Param("keys") Collection<UUID> datasetKeys) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listIdentifiersByDatasets(@Param("keys") Collection<UUID> datasetKeys) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listCommentsByDatasets(@Param("keys") Collection<UUID> datasetKeys) {
+    return null;
+  }
+
   @Override
   public List<Dataset> listByDOI(@Param("doi") String doi, @Nullable @Param("page") Pageable page) {
     return null;
@@ -380,6 +457,11 @@ public class MockDatasetMapper implements DatasetMapper {
     return null;
   }
 
+  @Override
+  public List<Dataset> listTitles(@Param("keys") Collection<UUID> keys) {
+    return null;
+  }
+
   @Override
   public void create(Dataset entity) {}
 
@@ -424,6 +506,44 @@ public class MockDatasetMapper implements DatasetMapper {
     return null;
   }
 
+  @Override
+  public List<Dataset> listAfter(
+      @Nullable @Param("after") KeysetCursor after, @Param("limit") int limit) {
+    return null;
+  }
+
+  @Override
+  public KeysetCursor cursorAfter(@Param("key") UUID key) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> searchAfter(
+      @Nullable @Param("query") String query,
+      @Nullable @Param("after") KeysetCursor after,
+      @Param("limit") int limit) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listByIdentifierAfter(
+      @Nullable @Param("type") IdentifierType type,
+      @Param("identifier") String identifier,
+      @Nullable @Param("after") KeysetCursor after,
+      @Param("limit") int limit) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listByMachineTagAfter(
+      @Param("namespace") String namespace,
+      @Nullable @Param("name") String name,
+      @Nullable @Param("value") String value,
+      @Nullable @Param("after") KeysetCursor after,
+      @Param("limit") int limit) {
+    return null;
+  }
+
   @Override
   public int addTag(@Param("targetEntityKey") UUID entityKey, @Param("tagKey") int tagKey) {
     return 0;
@@ -17,6 +17,10 @@ package org.gbif.registry.persistence.mapper;
 
 import org.gbif.api.model.registry.Contact;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -24,5 +28,15 @@ public interface ContactMapper {
 
   int createContact(Contact contact);
 
+  /** Creates the given contacts in a single statement, setting their generated keys. */
+  int createContacts(List<Contact> contacts);
+
   void updateContact(Contact contact);
+
+  /**
+   * Deletes the given contacts in a single statement, together with their links to the entities.
+   *
+   * @return the number of deleted contacts
+   */
+  int deleteContactsByKey(@Param("keys") Collection<Integer> contactKeys);
 }
@@ -16,11 +16,14 @@
 package org.gbif.registry.persistence.mapper;
 
 import org.gbif.api.model.common.paging.Pageable;
+import org.gbif.api.model.registry.Contact;
 import org.gbif.api.model.registry.Dataset;
 import org.gbif.api.model.registry.Installation;
 import org.gbif.api.vocabulary.Country;
 import org.gbif.api.vocabulary.DatasetType;
+import org.gbif.registry.persistence.mapper.paging.KeysetCursor;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
@@ -28,6 +31,7 @@ import java.util.UUID;
 import javax.annotation.Nullable;
 
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -79,6 +83,92 @@ public interface DatasetMapper extends BaseNetworkEntityMapper<Dataset> {
       @Nullable @Param("dateTo") Date to,
       @Nullable @Param("page") Pageable page);
 
+  /**
+   * Keyset paging equivalent of {@link #listWithFilterShallow(Country, DatasetType, UUID, Date,
+   * Date, Pageable)}, returning the datasets right after the cursor in the same order.
+   *
+   * @param after cursor of the last dataset of the previous page, null for the first page
+   */
+  List<Dataset> listWithFilterShallowAfter(
+      @Nullable @Param("country") Country country,
+      @Nullable @Param("type") DatasetType type,
+      @Nullable @Param("installationKey") UUID installationKey,
+      @Nullable @Param("dateFrom") Date from,
+      @Nullable @Param("dateTo") Date to,
+      @Nullable @Param("after") KeysetCursor after,
+      @Param("limit") int limit);
+
+  /**
+   * Same as {@link #list(Pageable)} but the sub resources (contacts, endpoints, etc.) are not
+   * loaded.
+   */
+  List<Dataset> listShallow(@Nullable @Param("page") Pageable page);
+
+  /**
+   * All the datasets, not deleted and without sub resources, read through a server side cursor.
+   * The cursor must be consumed within a transaction, otherwise the whole result is fetched.
+   */
+  Cursor<Dataset> cursorShallow();
+
+  /** The datasets with the given keys, not deleted and without sub resources. */
+  List<Dataset> listShallowByKeys(@Param("keys") Collection<UUID> datasetKeys);
+
+  /**
+   * Keys of the datasets published by the organization or hosted by one of its installations,
+   * deleted datasets excluded.
+   */
+  List<UUID> listKeysByOrganization(@Param("organizationKey") UUID organizationKey);
+
+  /** Keys of the datasets hosted by the installation, deleted datasets excluded. */
+  List<UUID> listKeysByInstallation(@Param("installationKey") UUID installationKey);
+
+  /**
+   * Same as {@link #search(String, Pageable)} but the sub resources (contacts, endpoints, etc.) are
+   * not loaded.
+   */
+  List<Dataset> searchShallow(
+      @Nullable @Param("query") String query, @Nullable @Param("page") Pageable page);
+
+  /**
+   * Same as {@link #listWithFilter(Country, DatasetType, UUID, Date, Date, Pageable)} but the sub
+   * resources (contacts, endpoints, etc.) are not loaded.
+   */
+  List<Dataset> listWithFilterShallow(
+      @Nullable @Param("country") Country country,
+      @Nullable @Param("type") DatasetType type,
+      @Nullable @Param("installationKey") UUID installationKey,
+      @Nullable @Param("dateFrom") Date from,
+      @Nullable @Param("dateTo") Date to,
+      @Nullable @Param("page") Pageable page);
+
+  /*
+   * Batch loading of sub resources. Each method returns one dataset stub per given key having at
+   * least one sub resource of the requested kind, populated with the key and that sub resource
+   * only.
+   */
+
+  List<Dataset> countConstituentsByDatasets(@Param("keys") Collection<UUID> datasetKeys);
+
+  List<Dataset> listContactsByDatasets(@Param("keys") Collection<UUID> datasetKeys);
+
+  List<Dataset> listEndpointsByDatasets(@Param("keys") Collection<UUID> datasetKeys);
+
+  List<Dataset> listMachineTagsByDatasets(@Param("keys") Collection<UUID> datasetKeys);
+
+  List<Dataset> listTagsByDatasets(@Param("keys") Collection<UUID> datasetKeys);
+
+  List<Dataset> listIdentifiersByDatasets(@Param("keys") Collection<UUID> datasetKeys);
+
+  List<Dataset> listCommentsByDatasets(@Param("keys") Collection<UUID> datasetKeys);
+
+  /**
+   * Links the given contacts, already created, to the dataset in a single statement. Unlike {@link
+   * #addContact} the primary contacts of the dataset are left as they are, so the caller makes sure
+   * there is a single primary contact per type.
+   */
+  void addContacts(
+      @Param("targetEntityKey") UUID datasetKey, @Param("contacts") List<Contact> contacts);
+
   /** Counts all datasets from a DOI. This counts for dataset.doi and alternate identifiers. */
   long countByDOI(@Param("doi") String doi);
 
@@ -43,6 +43,18 @@ public interface DatasetOccurrenceDownloadMapper {
   List<DatasetOccurrenceDownloadUsage> listByDownload(
       @Param("downloadKey") String downloadKey, @Nullable @Param("page") Pageable page);
 
+  /**
+   * Keyset paging variant of {@link #listByDownload(String, Pageable)}, returning the usages in
+   * dataset key order, right after the given dataset. Reads the primary key index, so a page costs
+   * the same at any depth.
+   *
+   * @param after dataset key of the last usage of the previous page, null for the first page
+   */
+  List<DatasetOccurrenceDownloadUsage> listByDownloadAfter(
+      @Param("downloadKey") String downloadKey,
+      @Nullable @Param("after") UUID after,
+      @Param("limit") int limit);
+
   void createUsages(
       @Param("downloadKey") String downloadKey,
       @Param("citationMap") Map<UUID, Long> downloadDataset);
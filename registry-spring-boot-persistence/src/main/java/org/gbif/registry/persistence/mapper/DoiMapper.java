@@ -21,6 +21,7 @@ import org.gbif.api.model.common.DoiStatus;
 import org.gbif.api.model.common.paging.Pageable;
 import org.gbif.registry.domain.doi.DoiType;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -46,6 +47,12 @@ public interface DoiMapper {
 
   void create(@Param("doi") DOI doi, @Param("type") DoiType type);
 
+  /** @return the given number of values of the DOI suffix sequence, in a single round trip */
+  List<Long> nextSuffixNumbers(@Param("count") int count);
+
+  /** @return the names of the given DOIs that exist already */
+  List<String> listExisting(@Param("dois") Collection<DOI> dois);
+
   void update(@Param("doi") DOI doi, @Param("status") DoiData status, @Param("xml") String xml);
 
   void delete(@Param("doi") DOI doi);
@@ -17,6 +17,9 @@ package org.gbif.registry.persistence.mapper;
 
 import org.gbif.api.model.registry.Endpoint;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.apache.ibatis.annotations.Param;
 import org.springframework.stereotype.Repository;
 
@@ -27,4 +30,12 @@ public interface EndpointMapper {
 
   void addMachineTag(
       @Param("endpointKey") int endpointKey, @Param("machineTagKey") int machineTagKey);
+
+  /**
+   * Loads the machine tags of all the given endpoints in a single query.
+   *
+   * @return one endpoint stub per endpoint having machine tags, populated with the key and the
+   *     machine tags only
+   */
+  List<Endpoint> listMachineTagsByEndpoints(@Param("keys") Collection<Integer> endpointKeys);
 }
@@ -58,4 +58,12 @@ public interface InstallationMapper extends BaseNetworkEntityMapper<Installation
   /** Obtains a list of all installations filtered optionally by a type. */
   List<Installation> listWithFilter(
       @Nullable @Param("type") InstallationType type, @Nullable @Param("page") Pageable page);
+
+  /**
+   * Gets the installation populated with its key and password only, to verify the credentials of
+   * legacy web service requests. Note that this does return deleted items.
+   *
+   * @return the installation or {@code null} if it couldn't be found
+   */
+  Installation getCredentials(@Param("key") UUID key);
 }
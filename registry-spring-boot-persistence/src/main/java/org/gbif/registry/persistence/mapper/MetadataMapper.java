@@ -45,8 +45,28 @@ public interface MetadataMapper {
    */
   ByteArrayWrapper getDocument(@Param("key") int key);
 
-  /** Stores a new metadata document with its source document as a byte array exactly as it was. */
-  int create(@Param("meta") Metadata metadata, @Param("data") byte[] content);
+  /**
+   * Stores a new metadata document with its source document as a byte array exactly as it was.
+   *
+   * @param contentHash digest of the document, see {@code MetadataDigest}
+   */
+  int create(
+      @Param("meta") Metadata metadata,
+      @Param("data") byte[] content,
+      @Param("contentHash") String contentHash);
+
+  /**
+   * Gets the metadata document of a dataset with the given content digest.
+   *
+   * @return the most recent document with that digest or {@code null} if there is none
+   */
+  Metadata getByContentHash(
+      @Param("datasetKey") UUID datasetKey, @Param("contentHash") String contentHash);
+
+  /** @return keys of the documents of a dataset stored before content digests were kept */
+  List<Integer> listKeysWithoutContentHash(@Param("datasetKey") UUID datasetKey);
+
+  void updateContentHash(@Param("key") int key, @Param("contentHash") String contentHash);
 
   void delete(@Param("key") int key);
 
@@ -18,7 +18,9 @@ package org.gbif.registry.persistence.mapper;
 import org.gbif.api.model.common.paging.Pageable;
 import org.gbif.api.model.registry.NetworkEntity;
 import org.gbif.api.vocabulary.IdentifierType;
+import org.gbif.registry.persistence.mapper.paging.KeysetCursor;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -39,6 +41,15 @@ public interface NetworkEntityMapper<T extends NetworkEntity> {
 
   String title(@Param("key") UUID key);
 
+  /**
+   * Lists the given entities populated with their key and title only, using a single query. Note
+   * that this does return deleted items, entities that don't exist are left out.
+   *
+   * @param keys keys of the network entities to fetch the title of
+   * @return the entities found, in no particular order
+   */
+  List<T> listTitles(@Param("keys") Collection<UUID> keys);
+
   void create(T entity);
 
   void delete(@Param("key") UUID key);
@@ -60,4 +71,51 @@ public interface NetworkEntityMapper<T extends NetworkEntity> {
       @Nullable @Param("type") IdentifierType type,
       @Param("identifier") String identifier,
       @Param("page") Pageable page);
+
+  /**
+   * Keyset paging variant of {@link #list(Pageable)}, returning the entities that come after the
+   * given cursor in the same {@code created DESC, key} order.
+   *
+   * @param after cursor of the last entity of the previous page, {@code null} for the first page
+   * @param limit maximum number of entities to return
+   */
+  List<T> listAfter(@Nullable @Param("after") KeysetCursor after, @Param("limit") int limit);
+
+  /**
+   * The cursor pointing right after the given entity, with the full precision of its created date.
+   *
+   * @return the cursor or {@code null} if the entity doesn't exist
+   */
+  @Nullable
+  KeysetCursor cursorAfter(@Param("key") UUID key);
+
+  /**
+   * Keyset paging variant of {@link #search(String, Pageable)}. Results can't be ranked by
+   * relevance with a cursor, so they are always ordered by {@code created DESC, key}.
+   */
+  List<T> searchAfter(
+      @Nullable @Param("query") String query,
+      @Nullable @Param("after") KeysetCursor after,
+      @Param("limit") int limit);
+
+  /**
+   * Keyset paging variant of {@link #listByIdentifier(IdentifierType, String, Pageable)}, ordered
+   * by key.
+   */
+  List<T> listByIdentifierAfter(
+      @Nullable @Param("type") IdentifierType type,
+      @Param("identifier") String identifier,
+      @Nullable @Param("after") KeysetCursor after,
+      @Param("limit") int limit);
+
+  /**
+   * Keyset paging variant of {@link MachineTaggableMapper#listByMachineTag(String, String, String,
+   * Pageable)}, ordered by key.
+   */
+  List<T> listByMachineTagAfter(
+      @Param("namespace") String namespace,
+      @Nullable @Param("name") String name,
+      @Nullable @Param("value") String value,
+      @Nullable @Param("after") KeysetCursor after,
+      @Param("limit") int limit);
 }
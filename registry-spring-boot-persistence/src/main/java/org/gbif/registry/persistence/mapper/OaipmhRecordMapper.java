@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper;
+
+import org.gbif.registry.domain.oaipmh.OaipmhRecord;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+
+/** Mapper for the stored {@link OaipmhRecord} of the datasets. */
+@Repository
+public interface OaipmhRecordMapper {
+
+  /** @return the stored records of the given datasets, datasets without a record are omitted */
+  List<OaipmhRecord> listByDatasets(@Param("keys") Collection<UUID> datasetKeys);
+
+  /**
+   * @return the keys of the datasets, deleted ones excluded, without a record, with a record
+   *     rendered from another version of the dataset or created before the given date
+   */
+  List<UUID> listOutdated(@Param("notBefore") Date notBefore);
+
+  /** Stores the record, replacing the existing record of the dataset if any. */
+  void upsert(OaipmhRecord record);
+
+  /** Removes the record of the dataset. */
+  int delete(@Param("datasetKey") UUID datasetKey);
+
+  /** Removes the records of all the datasets published by the organization. */
+  int deleteByOrganization(@Param("organizationKey") UUID organizationKey);
+}
@@ -111,4 +111,12 @@ public interface OrganizationMapper
       @Nullable @Param("query") String query,
       @Param("country") Country country,
       @Param("isEndorsed") Boolean isEndorsed);
+
+  /**
+   * Gets the organization populated with its key and password only, to verify the credentials of
+   * legacy web service requests. Note that this does return deleted items.
+   *
+   * @return the organization or {@code null} if it couldn't be found
+   */
+  Organization getCredentials(@Param("key") UUID key);
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.handler;
+
+import java.sql.Array;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * {@link org.apache.ibatis.type.TypeHandler} for arrays of {@link UUID}, to pass a collection of
+ * keys as a single parameter, e.g. {@code WHERE key = ANY(#{keys})}.
+ */
+public class UuidArrayTypeHandler extends BaseTypeHandler<Collection<UUID>> {
+
+  @Override
+  public void setNonNullParameter(
+      PreparedStatement ps, int i, Collection<UUID> parameter, JdbcType jdbcType)
+      throws SQLException {
+    Array array =
+        ps.getConnection()
+            .createArrayOf(
+                "uuid", parameter.stream().filter(Objects::nonNull).toArray(UUID[]::new));
+    ps.setArray(i, array);
+  }
+
+  @Override
+  public Collection<UUID> getNullableResult(ResultSet rs, String columnName)
+      throws SQLException {
+    return toList(rs.getArray(columnName));
+  }
+
+  @Override
+  public Collection<UUID> getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+    return toList(rs.getArray(columnIndex));
+  }
+
+  @Override
+  public Collection<UUID> getNullableResult(CallableStatement cs, int columnIndex)
+      throws SQLException {
+    return toList(cs.getArray(columnIndex));
+  }
+
+  private Collection<UUID> toList(Array pgArray) throws SQLException {
+    if (pgArray == null) {
+      return new ArrayList<>();
+    }
+    UUID[] uuids = (UUID[]) pgArray.getArray();
+    return Arrays.stream(uuids).filter(Objects::nonNull).collect(Collectors.toList());
+  }
+}
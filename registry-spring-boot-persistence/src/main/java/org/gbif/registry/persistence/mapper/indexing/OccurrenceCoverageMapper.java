@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.indexing;
+
+import org.gbif.registry.domain.indexing.OccurrenceCoverageEntry;
+
+import java.util.Collection;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.stereotype.Repository;
+
+/** Mapper for the stored {@link OccurrenceCoverageEntry} of the datasets. */
+@Repository
+public interface OccurrenceCoverageMapper {
+
+  /** @return the JSON coverage of the dataset, null if the dataset is not stored */
+  @Nullable
+  String getCoverage(@Param("datasetKey") UUID datasetKey);
+
+  /**
+   * Streams the stored entries to the handler, with their version but without their coverage.
+   */
+  void listVersions(ResultHandler<OccurrenceCoverageEntry> handler);
+
+  /** @return the number of datasets stored */
+  int count();
+
+  /** Stores the entries in a single statement, replacing the existing entries of the datasets. */
+  void upsert(@Param("entries") Collection<OccurrenceCoverageEntry> entries);
+}
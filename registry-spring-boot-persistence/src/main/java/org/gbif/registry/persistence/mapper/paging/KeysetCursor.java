@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.paging;
+
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.registry.persistence.mapper.NetworkEntityMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.UUID;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Position of the last row of a page for keyset (seek) paging, i.e. the {@code (created, key)} of
+ * the last entity returned. The next page starts right after that row, so fetching a page costs
+ * the same at any depth, unlike {@code LIMIT ... OFFSET} which reads and discards all the previous
+ * rows.
+ *
+ * <p>The created date keeps the microseconds of the column, which the API model drops, so the seek
+ * condition can compare it directly. Cursors are therefore read from the database, see {@link
+ * #after(NetworkEntityMapper, NetworkEntity)}, rather than built from a returned entity.
+ *
+ * <p>Callers only ever see the cursor as an opaque token, see {@link #toToken()} and {@link
+ * #fromToken(String)}.
+ */
+public class KeysetCursor {
+
+  private static final char SEPARATOR = ':';
+  private static final long MICROS_PER_SECOND = 1_000_000L;
+
+  private final Timestamp created;
+  private final UUID key;
+
+  public KeysetCursor(Timestamp created, UUID key) {
+    this.created = checkNotNull(created, "The cursor requires the created date");
+    this.key = checkNotNull(key, "The cursor requires the key");
+  }
+
+  /**
+   * Cursor pointing right after the given entity, read from the mapper to keep the full precision
+   * of the created date. Falls back to the milliseconds of the entity if it has been removed since.
+   */
+  public static KeysetCursor after(NetworkEntityMapper<?> mapper, NetworkEntity entity) {
+    KeysetCursor cursor = mapper.cursorAfter(entity.getKey());
+    return cursor != null
+        ? cursor
+        : new KeysetCursor(new Timestamp(entity.getCreated().getTime()), entity.getKey());
+  }
+
+  /**
+   * Parses a token created by {@link #toToken()}.
+   *
+   * @throws IllegalArgumentException if the token is not a valid cursor
+   */
+  public static KeysetCursor fromToken(String token) {
+    checkNotNull(token, "The cursor token can't be null");
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      int separator = decoded.indexOf(SEPARATOR);
+      return new KeysetCursor(
+          fromMicros(Long.parseLong(decoded.substring(0, separator))),
+          UUID.fromString(decoded.substring(separator + 1)));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + token, e);
+    }
+  }
+
+  public String toToken() {
+    String raw = String.valueOf(toMicros(created)) + SEPARATOR + key;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public Timestamp getCreated() {
+    return created;
+  }
+
+  public UUID getKey() {
+    return key;
+  }
+
+  private static long toMicros(Timestamp timestamp) {
+    return Math.floorDiv(timestamp.getTime(), 1000L) * MICROS_PER_SECOND
+        + timestamp.getNanos() / 1000;
+  }
+
+  private static Timestamp fromMicros(long micros) {
+    Timestamp timestamp = new Timestamp(Math.floorDiv(micros, MICROS_PER_SECOND) * 1000L);
+    timestamp.setNanos((int) Math.floorMod(micros, MICROS_PER_SECOND) * 1000);
+    return timestamp;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    KeysetCursor that = (KeysetCursor) o;
+    return Objects.equals(created, that.created) && Objects.equals(key, that.key);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(created, key);
+  }
+
+  @Override
+  public String toString() {
+    return "KeysetCursor{created=" + created + ", key=" + key + '}';
+  }
+}
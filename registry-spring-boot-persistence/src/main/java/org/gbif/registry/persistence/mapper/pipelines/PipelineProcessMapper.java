@@ -16,10 +16,12 @@
 package org.gbif.registry.persistence.mapper.pipelines;
 
 import org.gbif.api.model.common.paging.Pageable;
+import org.gbif.api.model.crawler.DatasetProcessStatus;
 import org.gbif.api.model.pipelines.PipelineExecution;
 import org.gbif.api.model.pipelines.PipelineProcess;
 import org.gbif.api.model.pipelines.PipelineStep;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -53,6 +55,16 @@ public interface PipelineProcessMapper {
   PipelineProcess getByDatasetAndAttempt(
       @Param("datasetKey") UUID datasetKey, @Param("attempt") int attempt);
 
+  /**
+   * Retrieves the {@link PipelineProcess} of each of the given crawl attempts, together with their
+   * executions and steps, in a single query. Attempts that never reached pipelines are left out.
+   *
+   * @param statuses crawl attempts, identified by their dataset key and attempt
+   * @return list of {@link PipelineProcess}
+   */
+  List<PipelineProcess> listByDatasetAndAttempts(
+      @Param("statuses") Collection<DatasetProcessStatus> statuses);
+
   /**
    * Retrieves a {@link PipelineProcess} by key.
    *
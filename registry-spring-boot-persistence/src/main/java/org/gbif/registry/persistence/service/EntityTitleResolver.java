@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.service;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Network;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.api.model.registry.Node;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.InstallationMapper;
+import org.gbif.registry.persistence.mapper.NetworkEntityMapper;
+import org.gbif.registry.persistence.mapper.NetworkMapper;
+import org.gbif.registry.persistence.mapper.NodeMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.ImmutableMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Resolves the titles of network entities, a whole set of keys at a time with a single query per
+ * entity type instead of one query per key.
+ */
+@Service
+public class EntityTitleResolver {
+
+  private final Map<Class<? extends NetworkEntity>, NetworkEntityMapper<?>> mappers;
+
+  public EntityTitleResolver(
+      DatasetMapper datasetMapper,
+      InstallationMapper installationMapper,
+      NetworkMapper networkMapper,
+      NodeMapper nodeMapper,
+      OrganizationMapper organizationMapper) {
+    this.mappers =
+        ImmutableMap.<Class<? extends NetworkEntity>, NetworkEntityMapper<?>>builder()
+            .put(Dataset.class, datasetMapper)
+            .put(Installation.class, installationMapper)
+            .put(Network.class, networkMapper)
+            .put(Node.class, nodeMapper)
+            .put(Organization.class, organizationMapper)
+            .build();
+  }
+
+  /**
+   * Resolves the titles of the given entities, deleted entities included.
+   *
+   * @param type type of the entities
+   * @param keys keys of the entities, null keys are ignored
+   * @return the titles by key, entities that don't exist are left out
+   */
+  public Map<UUID, String> resolve(Class<? extends NetworkEntity> type, Collection<UUID> keys) {
+    NetworkEntityMapper<?> mapper = mappers.get(type);
+    checkArgument(mapper != null, "Titles of %s can't be resolved", type);
+
+    Set<UUID> distinctKeys = new LinkedHashSet<>(keys);
+    distinctKeys.remove(null);
+    Map<UUID, String> titles = new HashMap<>();
+    if (distinctKeys.isEmpty()) {
+      return titles;
+    }
+
+    for (NetworkEntity entity : mapper.listTitles(distinctKeys)) {
+      titles.put(entity.getKey(), entity.getTitle());
+    }
+    return titles;
+  }
+
+  /** @return true if titles of the given type can be resolved */
+  public boolean supports(Class<?> type) {
+    return mappers.containsKey(type);
+  }
+}
@@ -18,42 +18,36 @@ package org.gbif.registry.pipelines;
 import org.gbif.api.model.common.paging.Pageable;
 import org.gbif.api.model.common.paging.PagingResponse;
 import org.gbif.api.model.crawler.DatasetProcessStatus;
-import org.gbif.api.model.pipelines.PipelineProcess;
-import org.gbif.api.model.registry.Dataset;
 import org.gbif.registry.domain.pipelines.IngestionProcess;
-import org.gbif.registry.persistence.mapper.DatasetMapper;
 import org.gbif.registry.persistence.mapper.DatasetProcessStatusMapper;
-import org.gbif.registry.persistence.mapper.pipelines.PipelineProcessMapper;
 
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 
+/**
+ * Ingestion history read from the crawl history, enriched with the dataset titles and pipeline
+ * executions by the {@link IngestionProcessEnricher}.
+ */
 @Service
 public class DefaultIngestionHistoryService implements IngestionHistoryService {
 
   private final DatasetProcessStatusMapper datasetProcessStatusMapper;
-  private final PipelineProcessMapper pipelineProcessMapper;
-  private final DatasetMapper datasetMapper;
+  private final IngestionProcessEnricher ingestionProcessEnricher;
 
   public DefaultIngestionHistoryService(
       DatasetProcessStatusMapper datasetProcessStatusMapper,
-      PipelineProcessMapper pipelineProcessMapper,
-      DatasetMapper datasetMapper) {
+      IngestionProcessEnricher ingestionProcessEnricher) {
     this.datasetProcessStatusMapper = datasetProcessStatusMapper;
-    this.pipelineProcessMapper = pipelineProcessMapper;
-    this.datasetMapper = datasetMapper;
+    this.ingestionProcessEnricher = ingestionProcessEnricher;
   }
 
   @Override
   public PagingResponse<IngestionProcess> ingestionHistory(Pageable pageable) {
     List<IngestionProcess> ingestions =
-        datasetProcessStatusMapper.list(pageable).stream()
-            .map(this::toIngestionProcess)
-            .collect(Collectors.toList());
+        ingestionProcessEnricher.enrich(datasetProcessStatusMapper.list(pageable));
 
     long count = datasetProcessStatusMapper.count();
 
@@ -63,9 +57,8 @@ public class DefaultIngestionHistoryService implements IngestionHistoryService {
   @Override
   public PagingResponse<IngestionProcess> ingestionHistory(UUID datasetKey, Pageable pageable) {
     List<IngestionProcess> ingestions =
-        datasetProcessStatusMapper.listByDataset(datasetKey, pageable).stream()
-            .map(this::toIngestionProcess)
-            .collect(Collectors.toList());
+        ingestionProcessEnricher.enrich(
+            datasetProcessStatusMapper.listByDataset(datasetKey, pageable));
 
     long count = datasetProcessStatusMapper.countByDataset(datasetKey);
 
@@ -74,35 +67,10 @@ public class DefaultIngestionHistoryService implements IngestionHistoryService {
 
   @Override
   public IngestionProcess getIngestionProcess(UUID datasetKey, int attempt) {
-    return Optional.ofNullable(datasetProcessStatusMapper.get(datasetKey, attempt))
-        .map(this::toIngestionProcess)
-        .orElse(null);
-  }
-
-  private IngestionProcess toIngestionProcess(DatasetProcessStatus datasetProcessStatus) {
-    UUID datasetKey = datasetProcessStatus.getDatasetKey();
-    int attempt = datasetProcessStatus.getCrawlJob().getAttempt();
-
-    IngestionProcess ingestionProcess =
-        new IngestionProcess()
-            .setDatasetKey(datasetKey)
-            .setAttempt(attempt)
-            .setCrawlInfo(datasetProcessStatus);
-
-    Dataset dataset = datasetMapper.get(datasetKey);
-    if (dataset != null) {
-      ingestionProcess.setDatasetTitle(dataset.getTitle());
-    }
-
-    // add pipeline info
-    PipelineProcess pipelineProcess =
-        pipelineProcessMapper.getByDatasetAndAttempt(datasetKey, attempt);
-    // the process may not exist if that attempt never reached pipelines (e.g.: it was aborted
-    // before)
-    if (pipelineProcess != null) {
-      ingestionProcess.setPipelineExecutions(pipelineProcess.getExecutions());
+    DatasetProcessStatus datasetProcessStatus = datasetProcessStatusMapper.get(datasetKey, attempt);
+    if (datasetProcessStatus == null) {
+      return null;
     }
-
-    return ingestionProcess;
+    return ingestionProcessEnricher.enrich(Collections.singletonList(datasetProcessStatus)).get(0);
   }
 }
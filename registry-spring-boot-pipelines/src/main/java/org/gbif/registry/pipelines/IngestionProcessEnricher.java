@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.pipelines;
+
+import org.gbif.api.model.crawler.DatasetProcessStatus;
+import org.gbif.api.model.pipelines.PipelineProcess;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.registry.domain.pipelines.IngestionProcess;
+import org.gbif.registry.persistence.mapper.pipelines.PipelineProcessMapper;
+import org.gbif.registry.persistence.service.EntityTitleResolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Turns pages of {@link DatasetProcessStatus} into {@link IngestionProcess} with a fixed number of
+ * queries.
+ *
+ * <p>The dataset titles of the whole page are read with one query selecting the titles only, and
+ * the pipeline processes of all the attempts, with their executions and steps, with one joined
+ * query. The results are stitched to the crawl attempts in memory.
+ */
+@Component
+public class IngestionProcessEnricher {
+
+  private final EntityTitleResolver entityTitleResolver;
+  private final PipelineProcessMapper pipelineProcessMapper;
+
+  public IngestionProcessEnricher(
+      EntityTitleResolver entityTitleResolver, PipelineProcessMapper pipelineProcessMapper) {
+    this.entityTitleResolver = entityTitleResolver;
+    this.pipelineProcessMapper = pipelineProcessMapper;
+  }
+
+  /**
+   * Creates the ingestion processes of the given crawl attempts, in the same order.
+   *
+   * @param statuses page of crawl attempts
+   * @return the crawl attempts with their dataset title and pipeline executions
+   */
+  @Transactional(readOnly = true)
+  public List<IngestionProcess> enrich(List<DatasetProcessStatus> statuses) {
+    List<IngestionProcess> ingestions = new ArrayList<>(statuses.size());
+    if (statuses.isEmpty()) {
+      return ingestions;
+    }
+
+    Set<UUID> datasetKeys = new LinkedHashSet<>();
+    for (DatasetProcessStatus status : statuses) {
+      datasetKeys.add(status.getDatasetKey());
+    }
+
+    Map<UUID, String> titles = entityTitleResolver.resolve(Dataset.class, datasetKeys);
+
+    Map<AttemptKey, PipelineProcess> processes = new HashMap<>();
+    for (PipelineProcess process : pipelineProcessMapper.listByDatasetAndAttempts(statuses)) {
+      processes.put(new AttemptKey(process.getDatasetKey(), process.getAttempt()), process);
+    }
+
+    for (DatasetProcessStatus status : statuses) {
+      UUID datasetKey = status.getDatasetKey();
+      int attempt = status.getCrawlJob().getAttempt();
+
+      IngestionProcess ingestionProcess =
+          new IngestionProcess()
+              .setDatasetKey(datasetKey)
+              .setAttempt(attempt)
+              .setCrawlInfo(status)
+              .setDatasetTitle(titles.get(datasetKey));
+
+      // the process may not exist if that attempt never reached pipelines (e.g.: it was aborted
+      // before)
+      PipelineProcess process = processes.get(new AttemptKey(datasetKey, attempt));
+      if (process != null) {
+        ingestionProcess.setPipelineExecutions(process.getExecutions());
+      }
+      ingestions.add(ingestionProcess);
+    }
+
+    return ingestions;
+  }
+
+  private static final class AttemptKey {
+
+    private final UUID datasetKey;
+    private final int attempt;
+
+    private AttemptKey(UUID datasetKey, int attempt) {
+      this.datasetKey = datasetKey;
+      this.attempt = attempt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      AttemptKey that = (AttemptKey) o;
+      return attempt == that.attempt && Objects.equals(datasetKey, that.datasetKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(datasetKey, attempt);
+    }
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.registry.search.dataset.indexing.es.EsClient;
+import org.gbif.registry.search.dataset.indexing.es.IndexingConstants;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Builds a new dataset index from a {@link DatasetIndexSource} and points the alias to it.
+ *
+ * <p>The source is read in the calling thread while the batches are converted and sent as bulk
+ * requests by a pool of worker threads. At most {@code maxBulksInFlight} batches are converted or
+ * sent at any time, reading the source waits for a batch to complete when that limit is reached.
+ */
+@Slf4j
+@Component
+public class DatasetBulkIndexer {
+
+  private final EsClient esClient;
+  private final DatasetJsonConverter datasetJsonConverter;
+  private final int threads;
+  private final int batchSize;
+  private final int maxBulksInFlight;
+
+  public DatasetBulkIndexer(
+      EsClient esClient,
+      @Lazy DatasetJsonConverter datasetJsonConverter,
+      @Value("${indexing.bulk.threads:4}") int threads,
+      @Value("${indexing.bulk.batchSize:500}") int batchSize,
+      @Value("${indexing.bulk.maxInFlight:8}") int maxBulksInFlight) {
+    checkArgument(threads > 0, "At least one indexing thread is required");
+    checkArgument(batchSize > 0, "The batch size must be positive");
+    checkArgument(maxBulksInFlight >= threads, "maxInFlight can't be lower than threads");
+    this.esClient = esClient;
+    this.datasetJsonConverter = datasetJsonConverter;
+    this.threads = threads;
+    this.batchSize = batchSize;
+    this.maxBulksInFlight = maxBulksInFlight;
+  }
+
+  /**
+   * Indexes all the datasets of the source into a new index. The alias is only swapped to the new
+   * index if all the datasets were indexed, otherwise the new index is left aside for inspection.
+   *
+   * @return the outcome of the indexing
+   */
+  public Result rebuild(DatasetIndexSource source) {
+    String indexName = IndexingConstants.ALIAS + "_" + System.currentTimeMillis();
+    log.info("Building a new Dataset index {}", indexName);
+    esClient.createIndex(
+        indexName,
+        IndexingConstants.DATASET_RECORD_TYPE,
+        IndexingConstants.DEFAULT_INDEXING_SETTINGS,
+        IndexingConstants.MAPPING_FILE);
+
+    Result result = index(source, indexName);
+
+    if (result.getFailed() > 0) {
+      log.error(
+          "{} datasets failed to index, the alias {} is not moved to {}",
+          result.getFailed(),
+          IndexingConstants.ALIAS,
+          indexName);
+      return result;
+    }
+    esClient.updateSettings(indexName, IndexingConstants.DEFAULT_SEARCH_SETTINGS);
+    esClient.swapAlias(IndexingConstants.ALIAS, indexName);
+    log.info(
+        "Finished building Dataset index {} with {} datasets in {} secs ({} datasets/s)",
+        indexName,
+        result.getIndexed(),
+        TimeUnit.MILLISECONDS.toSeconds(result.getElapsedMs()),
+        result.getDatasetsPerSecond());
+    return result;
+  }
+
+  /** Indexes all the datasets of the source into the existing index. */
+  Result index(DatasetIndexSource source, String indexName) {
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads, new ThreadFactoryBuilder().setNameFormat("dataset-indexer-%d").build());
+    Semaphore inFlight = new Semaphore(maxBulksInFlight);
+    Progress progress = new Progress();
+    try {
+      source.forEachBatch(
+          batchSize,
+          batch -> {
+            inFlight.acquireUninterruptibly();
+            try {
+              executor.execute(
+                  () -> {
+                    try {
+                      indexBatch(batch, source, indexName, progress);
+                    } finally {
+                      inFlight.release();
+                    }
+                  });
+            } catch (RejectedExecutionException e) {
+              inFlight.release();
+              throw e;
+            }
+          });
+    } finally {
+      // waits for the batches still being indexed
+      inFlight.acquireUninterruptibly(maxBulksInFlight);
+      executor.shutdown();
+    }
+    return progress.toResult(indexName);
+  }
+
+  private void indexBatch(
+      List<Dataset> batch, DatasetIndexSource source, String indexName, Progress progress) {
+    BulkRequest bulkRequest = new BulkRequest();
+    long failed = 0;
+    for (Dataset dataset : batch) {
+      try {
+        bulkRequest.add(
+            new IndexRequest()
+                .index(indexName)
+                .source(
+                    datasetJsonConverter.convert(dataset, source).toString(), XContentType.JSON)
+                .opType(DocWriteRequest.OpType.INDEX)
+                .id(dataset.getKey().toString())
+                .type(IndexingConstants.DATASET_RECORD_TYPE));
+      } catch (Exception ex) {
+        log.error("Error converting dataset {}", dataset.getKey(), ex);
+        failed++;
+      }
+    }
+
+    long indexed = 0;
+    if (bulkRequest.numberOfActions() > 0) {
+      try {
+        BulkResponse bulkResponse = esClient.bulk(bulkRequest);
+        for (BulkItemResponse item : bulkResponse.getItems()) {
+          if (item.isFailed()) {
+            log.error("Error indexing dataset {}: {}", item.getId(), item.getFailureMessage());
+            failed++;
+          } else {
+            indexed++;
+          }
+        }
+      } catch (IOException | RuntimeException ex) {
+        log.error("Error indexing a batch of {} datasets", bulkRequest.numberOfActions(), ex);
+        failed += bulkRequest.numberOfActions();
+      }
+    }
+    progress.add(indexed, failed);
+  }
+
+  /** Counters shared by the indexing threads, logging the throughput as batches complete. */
+  private static class Progress {
+
+    private final Stopwatch stopwatch = Stopwatch.createStarted();
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    void add(long indexedInBatch, long failedInBatch) {
+      long totalIndexed = indexed.addAndGet(indexedInBatch);
+      long totalFailed = failed.addAndGet(failedInBatch);
+      long elapsedMs = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+      log.info(
+          "Indexed {} datasets, {} failed, {} datasets/s",
+          totalIndexed,
+          totalFailed,
+          perSecond(totalIndexed, elapsedMs));
+    }
+
+    Result toResult(String indexName) {
+      return new Result(
+          indexName, indexed.get(), failed.get(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    }
+  }
+
+  private static long perSecond(long count, long elapsedMs) {
+    return elapsedMs > 0 ? count * 1000 / elapsedMs : count;
+  }
+
+  /** Outcome of an indexing run. */
+  public static class Result {
+
+    private final String indexName;
+    private final long indexed;
+    private final long failed;
+    private final long elapsedMs;
+
+    Result(String indexName, long indexed, long failed, long elapsedMs) {
+      this.indexName = indexName;
+      this.indexed = indexed;
+      this.failed = failed;
+      this.elapsedMs = elapsedMs;
+    }
+
+    public String getIndexName() {
+      return indexName;
+    }
+
+    /** @return number of datasets indexed successfully */
+    public long getIndexed() {
+      return indexed;
+    }
+
+    /** @return number of datasets that couldn't be converted or indexed */
+    public long getFailed() {
+      return failed;
+    }
+
+    public long getElapsedMs() {
+      return elapsedMs;
+    }
+
+    public long getDatasetsPerSecond() {
+      return perSecond(indexed, elapsedMs);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Organization;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Source of the datasets to index and of the entities needed to convert them into index documents.
+ *
+ * <p>Lookups can be called concurrently from several indexing threads.
+ */
+public interface DatasetIndexSource {
+
+  /**
+   * Reads all the datasets to index and hands them over in batches, in the calling thread. The
+   * consumer may block, which in turn holds back the reading of the source.
+   *
+   * @param batchSize maximum number of datasets per batch
+   * @param batchConsumer receives each batch of datasets
+   */
+  void forEachBatch(int batchSize, Consumer<List<Dataset>> batchConsumer);
+
+  /** @return the metadata document of the dataset, or null if there is none */
+  @Nullable
+  InputStream getMetadataDocument(Dataset dataset);
+
+  @Nullable
+  Installation getInstallation(UUID installationKey);
+
+  @Nullable
+  Organization getOrganization(UUID organizationKey);
+}
@@ -30,23 +30,22 @@ import org.gbif.api.model.registry.eml.KeywordCollection;
 import org.gbif.api.vocabulary.Country;
 import org.gbif.api.vocabulary.DatasetType;
 import org.gbif.api.vocabulary.License;
+import org.gbif.registry.persistence.mapper.indexing.OccurrenceCoverageMapper;
 import org.gbif.registry.search.dataset.indexing.checklistbank.ChecklistbankPersistenceService;
 import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
+import org.gbif.registry.search.dataset.indexing.ws.GbifWsDatasetIndexSource;
 import org.gbif.registry.search.dataset.indexing.ws.JacksonObjectMapper;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.UUID;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -55,20 +54,9 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
-import org.elasticsearch.action.search.SearchRequest;
-import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
-import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.search.aggregations.AggregationBuilders;
-import org.elasticsearch.search.aggregations.Aggregations;
-import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
-import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
-import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
-import org.elasticsearch.search.aggregations.bucket.terms.Terms;
-import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 import org.xml.sax.SAXException;
@@ -110,30 +98,27 @@ public class DatasetJsonConverter {
 
   private final GbifWsClient gbifWsClient;
 
+  private final DatasetIndexSource gbifWsSource;
+
   private final Long occurrenceCount;
 
   private final Long nameUsagesCount;
 
   private final ObjectMapper mapper;
 
-  private final RestHighLevelClient occurrenceEsClient;
-
-  private final String occurrenceIndex;
+  private final OccurrenceCoverageStore occurrenceCoverageStore;
 
   @Autowired
   private DatasetJsonConverter(
       GbifWsClient gbifWsClient,
       ChecklistbankPersistenceService checklistbankPersistenceService,
       @Qualifier("apiMapper") ObjectMapper mapper,
-      @Qualifier("occurrenceEsClient") RestHighLevelClient occurrenceEsClient,
-      @Value("${elasticsearch.occurrence.index}") String occurrenceIndex) {
+      OccurrenceCoverageStore occurrenceCoverageStore) {
     this.gbifWsClient = gbifWsClient;
+    this.gbifWsSource = new GbifWsDatasetIndexSource(gbifWsClient);
     this.checklistbankPersistenceService = checklistbankPersistenceService;
     this.mapper = mapper;
-    this.occurrenceEsClient = occurrenceEsClient;
-    this.occurrenceIndex = occurrenceIndex;
-    consumers.add(this::metadataConsumer);
-    consumers.add(this::addTitles);
+    this.occurrenceCoverageStore = occurrenceCoverageStore;
     consumers.add(this::enumTransforms);
     // consumers.add(this::addFacetsData);
     occurrenceCount = gbifWsClient.getOccurrenceRecordCount();
@@ -144,17 +129,32 @@ public class DatasetJsonConverter {
       GbifWsClient gbifWsClient,
       ChecklistbankPersistenceService checklistbankPersistenceService,
       RestHighLevelClient occurrenceEsClient,
-      String occurrenceIndex) {
+      String occurrenceIndex,
+      OccurrenceCoverageMapper coverageMapper) {
     return new DatasetJsonConverter(
         gbifWsClient,
         checklistbankPersistenceService,
         JacksonObjectMapper.get(),
-        occurrenceEsClient,
-        occurrenceIndex);
+        new OccurrenceCoverageStore(
+            occurrenceEsClient,
+            occurrenceIndex,
+            JacksonObjectMapper.get(),
+            coverageMapper,
+            0));
   }
 
   public ObjectNode convert(Dataset dataset) {
+    return convert(dataset, gbifWsSource);
+  }
+
+  /**
+   * Converts the dataset into its index document, looking up the metadata document, installation
+   * and organizations in the given source instead of the GBIF API.
+   */
+  public ObjectNode convert(Dataset dataset, DatasetIndexSource source) {
     ObjectNode datasetAsJson = mapper.valueToTree(dataset);
+    addMetadata(dataset, datasetAsJson, source);
+    addTitles(dataset, datasetAsJson, source);
     consumers.forEach(c -> c.accept(datasetAsJson));
     addDecades(dataset, datasetAsJson);
     addKeyword(dataset, datasetAsJson);
@@ -170,51 +170,48 @@ public class DatasetJsonConverter {
     return mapper.writeValueAsString(convert(dataset));
   }
 
-  private void metadataConsumer(ObjectNode dataset) {
-    try (InputStream stream =
-        gbifWsClient.getMetadataDocument(UUID.fromString(dataset.get("key").asText()))) {
+  private void addMetadata(
+      Dataset dataset, ObjectNode datasetJsonNode, DatasetIndexSource source) {
+    try (InputStream stream = source.getMetadataDocument(dataset)) {
       if (stream != null) {
         FullTextSaxHandler handler = new FullTextSaxHandler();
         SAXParser p = saxFactory.newSAXParser();
         // parse does close the stream
         p.parse(stream, handler);
-        dataset.put("metadata", handler.getFullText());
+        datasetJsonNode.put("metadata", handler.getFullText());
       }
     } catch (ParserConfigurationException e) {
       throw new IllegalStateException("XML Parser not working on this system", e);
     } catch (SAXException e) {
-      log.warn("Cannot parse original metadata xml for dataset {}", dataset);
+      log.warn("Cannot parse original metadata xml for dataset {}", datasetJsonNode);
     } catch (Exception e) {
-      log.error("Unable to index metadata document for dataset {}", dataset, e);
+      log.error("Unable to index metadata document for dataset {}", datasetJsonNode, e);
     }
   }
 
-  private void addTitles(ObjectNode dataset) {
-    if (dataset.has("installationKey")) {
-      Installation installation =
-          gbifWsClient.getInstallation(dataset.get("installationKey").asText());
+  private void addTitles(Dataset dataset, ObjectNode datasetJsonNode, DatasetIndexSource source) {
+    if (Objects.nonNull(dataset.getInstallationKey())) {
+      Installation installation = source.getInstallation(dataset.getInstallationKey());
       if (Objects.nonNull(installation)) {
-        dataset.put("installationTitle", installation.getTitle());
+        datasetJsonNode.put("installationTitle", installation.getTitle());
         if (Objects.nonNull(installation.getOrganizationKey())) {
-          Organization hostingOrg =
-              gbifWsClient.getOrganization(installation.getOrganizationKey().toString());
+          Organization hostingOrg = source.getOrganization(installation.getOrganizationKey());
           if (Objects.nonNull(hostingOrg)) {
-            dataset.put("hostingOrganizationKey", hostingOrg.getKey().toString());
-            dataset.put("hostingOrganizationTitle", hostingOrg.getTitle());
+            datasetJsonNode.put("hostingOrganizationKey", hostingOrg.getKey().toString());
+            datasetJsonNode.put("hostingOrganizationTitle", hostingOrg.getTitle());
           }
         }
       }
     }
-    if (dataset.has("publishingOrganizationKey")) {
-      Organization publisher =
-          gbifWsClient.getOrganization(dataset.get("publishingOrganizationKey").asText());
+    if (Objects.nonNull(dataset.getPublishingOrganizationKey())) {
+      Organization publisher = source.getOrganization(dataset.getPublishingOrganizationKey());
       if (Objects.nonNull(publisher)) {
-        dataset.put("publishingOrganizationTitle", publisher.getTitle());
+        datasetJsonNode.put("publishingOrganizationTitle", publisher.getTitle());
         if (Objects.nonNull(publisher.getCountry())) {
-          dataset.put("publishingCountry", publisher.getCountry().getIso2LetterCode());
+          datasetJsonNode.put("publishingCountry", publisher.getCountry().getIso2LetterCode());
         }
       } else {
-        dataset.put("publishingCountry", Country.UNKNOWN.getIso2LetterCode());
+        datasetJsonNode.put("publishingCountry", Country.UNKNOWN.getIso2LetterCode());
       }
     }
   }
@@ -329,9 +326,9 @@ public class DatasetJsonConverter {
           datasetObjectNode.has("taxonKey")
               ? (ArrayNode) datasetObjectNode.get("taxonKey")
               : datasetObjectNode.putArray("taxonKey");
-      for (Integer taxonKey :
+      for (int taxonKey :
           checklistbankPersistenceService.getTaxonKeys(dataset.getKey().toString())) {
-        taxonKeyNode.add(new IntNode(taxonKey));
+        taxonKeyNode.add(taxonKey);
       }
     }
   }
@@ -376,95 +373,8 @@ public class DatasetJsonConverter {
   }
 
   private void addOccurrenceCoverage(Dataset dataset, ObjectNode datasetObjectNode) {
-    try {
-      SearchSourceBuilder searchSourceBuilder =
-          new SearchSourceBuilder()
-              .size(0)
-              .query(
-                  QueryBuilders.boolQuery()
-                      .filter(QueryBuilders.termQuery("datasetKey", dataset.getKey().toString())))
-              .aggregation(
-                  AggregationBuilders.terms("countryCode")
-                      .field("countryCode")
-                      .size(200)
-                      .shardSize(200)
-                      .subAggregation(
-                          AggregationBuilders.terms("taxonKey")
-                              .size(120_000)
-                              .shardSize(120_000)
-                              .field("gbifClassification.taxonKey")
-                              .subAggregation(
-                                  AggregationBuilders.dateHistogram("eventDateSingle")
-                                      .field("eventDateSingle")
-                                      .dateHistogramInterval(new DateHistogramInterval("3650d")))));
-
-      org.elasticsearch.action.search.SearchResponse searchResponse =
-          occurrenceEsClient.search(
-              new SearchRequest().source(searchSourceBuilder).indices(occurrenceIndex),
-              RequestOptions.DEFAULT);
-
-      List<JsonNode> coverages = new ArrayList<>();
-
-      List<? extends Terms.Bucket> countryBuckets =
-          getTermsBuckets(searchResponse.getAggregations(), "countryCode");
-      if (!countryBuckets.isEmpty()) {
-        countryBuckets.forEach(
-            countryBucket -> {
-              List<? extends Terms.Bucket> taxonBuckets =
-                  getTermsBuckets(countryBucket.getAggregations(), "taxonKey");
-              if (!taxonBuckets.isEmpty()) {
-                taxonBuckets.forEach(
-                    taxonKeyBucket -> {
-                      List<? extends Histogram.Bucket> decadesBuckets =
-                          getHistogramBuckets(taxonKeyBucket.getAggregations(), "eventDateSingle");
-                      if (!decadesBuckets.isEmpty()) {
-                        decadesBuckets.forEach(
-                            decadeBucket -> {
-                              ObjectNode atDecadeCoverage = mapper.createObjectNode();
-                              atDecadeCoverage.set("country", toJson(countryBucket));
-                              atDecadeCoverage.set("taxonKey", toJson(taxonKeyBucket));
-                              atDecadeCoverage.set("decade", toJson(decadeBucket));
-                              coverages.add(atDecadeCoverage);
-                            });
-                      } else {
-                        ObjectNode atTaxonKeyCoverage = mapper.createObjectNode();
-                        atTaxonKeyCoverage.set("country", toJson(countryBucket));
-                        atTaxonKeyCoverage.set("taxonKey", toJson(taxonKeyBucket));
-                        coverages.add(atTaxonKeyCoverage);
-                      }
-                    });
-              } else {
-                ObjectNode atCountryCoverage = mapper.createObjectNode();
-                atCountryCoverage.set("country", toJson(countryBucket));
-                coverages.add(atCountryCoverage);
-              }
-            });
-      }
-      datasetObjectNode.putArray("occurrenceCoverage").addAll(coverages);
-
-    } catch (IOException ex) {
-      log.error("Error retrieving occurrence coverage data", ex);
-    }
-  }
-
-  private ObjectNode toJson(MultiBucketsAggregation.Bucket bucket) {
-    return mapper
-        .createObjectNode()
-        .put("value", bucket.getKeyAsString())
-        .put("count", bucket.getDocCount());
-  }
-
-  private List<? extends Terms.Bucket> getTermsBuckets(Aggregations aggs, String aggName) {
-    return Optional.ofNullable(aggs)
-        .map(aggregations -> aggregations.getAsMap().get(aggName))
-        .map(agg -> ((Terms) agg).getBuckets())
-        .orElse(Collections.emptyList());
-  }
-
-  private List<? extends Histogram.Bucket> getHistogramBuckets(Aggregations aggs, String aggName) {
-    return Optional.ofNullable(aggs)
-        .map(aggregations -> aggregations.getAsMap().get(aggName))
-        .map(agg -> ((Histogram) agg).getBuckets())
-        .orElse(Collections.emptyList());
+    datasetObjectNode
+        .putArray("occurrenceCoverage")
+        .addAll(occurrenceCoverageStore.getCoverage(dataset.getKey()));
   }
 }
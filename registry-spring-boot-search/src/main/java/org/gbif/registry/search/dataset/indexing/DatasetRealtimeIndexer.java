@@ -18,174 +18,287 @@ package org.gbif.registry.search.dataset.indexing;
 import org.gbif.api.model.registry.Dataset;
 import org.gbif.api.model.registry.Installation;
 import org.gbif.api.model.registry.Organization;
-import org.gbif.api.util.iterables.Iterables;
+import org.gbif.registry.search.dataset.indexing.es.EsClient;
 import org.gbif.registry.search.dataset.indexing.es.IndexingConstants;
 import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
+import org.gbif.registry.search.dataset.indexing.ws.GbifWsDatasetIndexSource;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
 
-import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
-import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.index.IndexRequest;
-import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.client.RequestOptions;
-import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import lombok.extern.slf4j.Slf4j;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Keeps the dataset index up to date as datasets, organizations and installations change.
+ *
+ * <p>Changes are collected over a time window and indexed together at its end. A dataset changed
+ * several times within the window is indexed once, and the datasets of a changed organization or
+ * installation are resolved once, as keys, when the window ends. The datasets are then read and
+ * sent to Elasticsearch in bulk requests of at most {@code batchSize} documents.
+ *
+ * <p>The datasets are read from the {@link RealtimeDatasetIndexSource} of the application, the
+ * registry database, or from the GBIF API when there is none. With a window of 0 every change is
+ * indexed straight away.
+ */
 @Slf4j
 @Service
 public class DatasetRealtimeIndexer {
 
-  private final RestHighLevelClient restHighLevelClient;
-
+  private final EsClient esClient;
   private final DatasetJsonConverter datasetJsonConverter;
-
   private final GbifWsClient gbifWsClient;
+  private final RealtimeDatasetIndexSource source;
+  private final int batchSize;
+  private final ScheduledExecutorService scheduler;
+
+  private final Object lock = new Object();
+  private Set<UUID> pendingDatasets = new LinkedHashSet<>();
+  private Set<UUID> pendingOrganizations = new LinkedHashSet<>();
+  private Set<UUID> pendingInstallations = new LinkedHashSet<>();
+  private Set<UUID> pendingDeletes = new LinkedHashSet<>();
+  private volatile boolean closed;
 
   @Autowired
   public DatasetRealtimeIndexer(
-      RestHighLevelClient restHighLevelClient,
+      EsClient esClient,
+      DatasetJsonConverter datasetJsonConverter,
+      GbifWsClient gbifWsClient,
+      ObjectProvider<RealtimeDatasetIndexSource> sources,
+      @Value("${indexing.realtime.windowMs:2000}") long windowMs,
+      @Value("${indexing.realtime.batchSize:500}") int batchSize) {
+    this(
+        esClient,
+        datasetJsonConverter,
+        gbifWsClient,
+        sources.getIfAvailable(() -> new GbifWsDatasetIndexSource(gbifWsClient)),
+        windowMs,
+        batchSize);
+  }
+
+  /**
+   * @param source reads the datasets to index and the datasets affected by a change
+   * @param windowMs how long changes are collected before being indexed, 0 to index them straight
+   *     away
+   * @param batchSize maximum number of documents per bulk request
+   */
+  public DatasetRealtimeIndexer(
+      EsClient esClient,
       DatasetJsonConverter datasetJsonConverter,
-      GbifWsClient gbifWsClient) {
-    this.restHighLevelClient = restHighLevelClient;
+      GbifWsClient gbifWsClient,
+      RealtimeDatasetIndexSource source,
+      long windowMs,
+      int batchSize) {
+    checkArgument(windowMs >= 0, "The window can't be negative");
+    checkArgument(batchSize > 0, "The batch size must be positive");
+    this.esClient = esClient;
     this.datasetJsonConverter = datasetJsonConverter;
     this.gbifWsClient = gbifWsClient;
+    this.source = source;
+    this.batchSize = batchSize;
+    if (windowMs > 0) {
+      scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder()
+                  .setNameFormat("dataset-realtime-indexer")
+                  .setDaemon(true)
+                  .build());
+      scheduler.scheduleWithFixedDelay(this::flush, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    } else {
+      scheduler = null;
+    }
   }
 
-  private IndexRequest toIndexRequest(Dataset dataset) {
-    return new IndexRequest()
-        .id(dataset.getKey().toString())
-        .index(IndexingConstants.ALIAS)
-        .type(IndexingConstants.DATASET_RECORD_TYPE)
-        .opType(DocWriteRequest.OpType.INDEX)
-        .source(datasetJsonConverter.convertAsJsonString(dataset), XContentType.JSON);
+  public void index(Dataset dataset) {
+    indexDataset(dataset.getKey());
   }
 
-  public void index(Dataset dataset) {
-    restHighLevelClient.indexAsync(
-        toIndexRequest(dataset),
-        RequestOptions.DEFAULT,
-        new ActionListener<IndexResponse>() {
-          @Override
-          public void onResponse(IndexResponse indexResponse) {
-            log.info("Dataset indexed {}, result {}", dataset.getKey(), indexResponse);
-          }
+  public void indexDataset(UUID datasetKey) {
+    synchronized (lock) {
+      pendingDeletes.remove(datasetKey);
+      pendingDatasets.add(datasetKey);
+    }
+    flushIfNotCollecting();
+  }
 
-          @Override
-          public void onFailure(Exception ex) {
-            log.error("Error indexing dataset {}", dataset, ex);
-          }
-        });
+  /** Indexes again the datasets published or hosted by the organization. */
+  public void index(Organization organization) {
+    gbifWsClient.purge(organization);
+    synchronized (lock) {
+      pendingOrganizations.add(organization.getKey());
+    }
+    flushIfNotCollecting();
   }
 
-  public void index(Iterable<Dataset> datasets) {
-    BulkRequest bulkRequest = new BulkRequest();
-    datasets.forEach(dataset -> bulkRequest.add(toIndexRequest(dataset)));
-    restHighLevelClient.bulkAsync(
-        bulkRequest,
-        RequestOptions.DEFAULT,
-        new ActionListener<BulkResponse>() {
-          @Override
-          public void onResponse(BulkResponse bulkItemResponses) {
-            if (bulkItemResponses.hasFailures()) {
-              log.error(
-                  "Eror indexing datasets indexed {}", bulkItemResponses.buildFailureMessage());
-            } else {
-              log.info("Datasets indexed");
-            }
-          }
+  /** Indexes again the datasets hosted by the installation. */
+  public void index(Installation installation) {
+    gbifWsClient.purge(installation);
+    synchronized (lock) {
+      pendingInstallations.add(installation.getKey());
+    }
+    flushIfNotCollecting();
+  }
 
-          @Override
-          public void onFailure(Exception e) {
-            log.error("Error indexing datasets", e);
-          }
-        });
+  public void delete(Dataset dataset) {
+    synchronized (lock) {
+      pendingDatasets.remove(dataset.getKey());
+      pendingDeletes.add(dataset.getKey());
+    }
+    flushIfNotCollecting();
   }
 
-  public void index(Organization organization) {
-    // first purge cache
-    gbifWsClient.purge(organization);
-    // Update published datasets for the organization
-    try {
-      log.debug("Updating published datasets for organization {}", organization.getKey());
-      Iterable<Dataset> datasets =
-          Iterables.datasetsIterable(
-              page ->
-                  gbifWsClient.getOrganizationPublishedDataset(
-                      organization.getKey().toString(), page));
-      index(datasets);
-    } catch (Exception e) {
-      log.error(
-          "Unable to update published datasets for organization {} - index is now out of sync",
-          organization.getKey(),
-          e);
+  /** Indexes the changes collected so far. */
+  public synchronized void flush() {
+    Set<UUID> datasets;
+    Set<UUID> organizations;
+    Set<UUID> installations;
+    Set<UUID> deletes;
+    synchronized (lock) {
+      datasets = pendingDatasets;
+      organizations = pendingOrganizations;
+      installations = pendingInstallations;
+      deletes = pendingDeletes;
+      pendingDatasets = new LinkedHashSet<>();
+      pendingOrganizations = new LinkedHashSet<>();
+      pendingInstallations = new LinkedHashSet<>();
+      pendingDeletes = new LinkedHashSet<>();
     }
 
-    // Update hosted datasets for the organization
     try {
-      log.debug(
-          "Updating hosted datasets for organization {}: {}",
-          organization.getKey(),
-          organization.getTitle());
-      Iterable<Dataset> datasets =
-          Iterables.datasetsIterable(
-              page ->
-                  gbifWsClient.getOrganizationHostedDatasets(
-                      organization.getKey().toString(), page));
-      index(datasets);
-    } catch (Exception e) {
-      log.error(
-          "Unable to update hosted datasets for organization {} - index is now out of sync",
-          organization.getKey(),
-          e);
+      for (UUID organizationKey : organizations) {
+        addAffected(datasets, "organization", organizationKey, source::getOrganizationDatasetKeys);
+      }
+      for (UUID installationKey : installations) {
+        addAffected(datasets, "installation", installationKey, source::getInstallationDatasetKeys);
+      }
+      datasets.removeAll(deletes);
+
+      for (List<UUID> keys : Iterables.partition(datasets, batchSize)) {
+        indexBatch(keys);
+      }
+      for (List<UUID> keys : Iterables.partition(deletes, batchSize)) {
+        deleteBatch(keys);
+      }
+      if (!datasets.isEmpty() || !deletes.isEmpty()) {
+        log.debug("Indexed {} datasets and deleted {}", datasets.size(), deletes.size());
+      }
+    } catch (RuntimeException e) {
+      // never let the scheduler die
+      log.error("Failed to index the dataset changes - index is now out of sync", e);
     }
   }
 
-  public void index(Installation installation) {
-    // first purge cache
-    gbifWsClient.purge(installation);
+  /** Indexes the pending changes, later changes are indexed straight away. */
+  @PreDestroy
+  public void close() {
+    closed = true;
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+    flush();
+  }
+
+  /** @return the number of datasets, organizations and installations waiting to be indexed */
+  public int getPending() {
+    synchronized (lock) {
+      return pendingDatasets.size()
+          + pendingOrganizations.size()
+          + pendingInstallations.size()
+          + pendingDeletes.size();
+    }
+  }
 
-    // Update hosted datasets for the organization
+  private void flushIfNotCollecting() {
+    if (scheduler == null || closed) {
+      flush();
+    }
+  }
+
+  private void addAffected(
+      Set<UUID> datasets,
+      String entityType,
+      UUID key,
+      Function<UUID, Collection<UUID>> resolver) {
     try {
-      log.debug("Updating hosted datasets for installation {}", installation.getKey());
-      Iterable<Dataset> datasets =
-          Iterables.datasetsIterable(
-              page -> gbifWsClient.getInstallationDatasets(installation.getKey().toString()));
-      index(datasets);
-    } catch (Exception e) {
+      datasets.addAll(resolver.apply(key));
+    } catch (RuntimeException e) {
       log.error(
-          "Unable to update hosted datasets for installation {} - index is now out of sync",
-          installation.getKey(),
-          e);
+          "Unable to update the datasets of {} {} - index is now out of sync", entityType, key, e);
     }
   }
 
-  public void delete(Dataset dataset) {
-    DeleteRequest deleteRequest =
-        new DeleteRequest()
-            .id(dataset.getKey().toString())
-            .index(IndexingConstants.ALIAS)
-            .type(IndexingConstants.DATASET_RECORD_TYPE);
-
-    restHighLevelClient.deleteAsync(
-        deleteRequest,
-        RequestOptions.DEFAULT,
-        new ActionListener<DeleteResponse>() {
-          @Override
-          public void onResponse(DeleteResponse deleteResponse) {
-            log.info("Dataset deleted {}, result {}", dataset.getKey(), deleteResponse);
-          }
+  private void indexBatch(List<UUID> keys) {
+    BulkRequest bulkRequest = new BulkRequest();
+    for (Dataset dataset : source.getDatasets(keys)) {
+      try {
+        bulkRequest.add(
+            new IndexRequest()
+                .id(dataset.getKey().toString())
+                .index(IndexingConstants.ALIAS)
+                .type(IndexingConstants.DATASET_RECORD_TYPE)
+                .opType(DocWriteRequest.OpType.INDEX)
+                .source(
+                    datasetJsonConverter.convert(dataset, source).toString(), XContentType.JSON));
+      } catch (Exception ex) {
+        log.error("Error converting dataset {}", dataset.getKey(), ex);
+      }
+    }
+    send(bulkRequest);
+  }
 
-          @Override
-          public void onFailure(Exception ex) {
-            log.error("Error deleting dataset {}", dataset, ex);
+  private void deleteBatch(List<UUID> keys) {
+    BulkRequest bulkRequest = new BulkRequest();
+    for (UUID key : keys) {
+      bulkRequest.add(
+          new DeleteRequest()
+              .id(key.toString())
+              .index(IndexingConstants.ALIAS)
+              .type(IndexingConstants.DATASET_RECORD_TYPE));
+    }
+    send(bulkRequest);
+  }
+
+  private void send(BulkRequest bulkRequest) {
+    if (bulkRequest.numberOfActions() == 0) {
+      return;
+    }
+    try {
+      BulkResponse bulkResponse = esClient.bulk(bulkRequest);
+      if (bulkResponse.hasFailures()) {
+        for (BulkItemResponse item : bulkResponse.getItems()) {
+          if (item.isFailed()) {
+            log.error("Error indexing dataset {}: {}", item.getId(), item.getFailureMessage());
           }
-        });
+        }
+      }
+    } catch (IOException | RuntimeException ex) {
+      log.error("Error indexing a batch of {} datasets", bulkRequest.numberOfActions(), ex);
+    }
   }
 }
@@ -0,0 +1,373 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import org.gbif.registry.domain.indexing.OccurrenceCoverageEntry;
+import org.gbif.registry.persistence.mapper.indexing.OccurrenceCoverageMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregation;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.TermsValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Store of the occurrence coverage (country, taxon and decade) of the datasets, which saves running
+ * the coverage aggregation on the occurrence index every time a dataset is indexed.
+ *
+ * <p>Each entry carries the version of the occurrences of the dataset it was computed from, i.e.
+ * the number of occurrences and the latest interpretation date in the occurrence index. A {@link
+ * #refresh()} reads the versions of all the datasets with one paged aggregation and only computes
+ * the coverage again for the datasets whose occurrences changed. Datasets not yet in the store are
+ * computed on first use.
+ *
+ * <p>The entries are kept in the dataset_occurrence_coverage table of the registry database, one
+ * row per dataset, through the {@link OccurrenceCoverageMapper}. Nothing is kept in memory.
+ */
+@Slf4j
+@Component
+@Lazy
+public class OccurrenceCoverageStore {
+
+  private static final String DATASET_KEY_FIELD = "datasetKey";
+  private static final String LAST_INTERPRETED_FIELD = "lastInterpreted";
+  // version of the datasets without occurrences
+  private static final String NO_OCCURRENCES = "0";
+  private static final int VERSIONS_PAGE_SIZE = 1000;
+  // entries written per statement
+  private static final int WRITE_BATCH_SIZE = 500;
+
+  private final RestHighLevelClient occurrenceEsClient;
+  private final String occurrenceIndex;
+  private final ObjectMapper mapper;
+  private final OccurrenceCoverageMapper coverageMapper;
+  @Nullable private final ScheduledExecutorService scheduler;
+
+  /**
+   * @param coverageMapper mapper of the dataset_occurrence_coverage table of the registry database
+   * @param refreshIntervalMinutes minutes between scheduled refreshes, none if zero or less
+   */
+  @Autowired
+  public OccurrenceCoverageStore(
+      @Qualifier("occurrenceEsClient") RestHighLevelClient occurrenceEsClient,
+      @Value("${elasticsearch.occurrence.index}") String occurrenceIndex,
+      @Qualifier("apiMapper") ObjectMapper mapper,
+      OccurrenceCoverageMapper coverageMapper,
+      @Value("${indexing.occurrenceCoverage.refreshIntervalMinutes:0}")
+          long refreshIntervalMinutes) {
+    this.occurrenceEsClient = occurrenceEsClient;
+    this.occurrenceIndex = occurrenceIndex;
+    this.mapper = mapper;
+    this.coverageMapper = coverageMapper;
+
+    if (refreshIntervalMinutes > 0) {
+      scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder()
+                  .setNameFormat("occurrence-coverage-refresh")
+                  .setDaemon(true)
+                  .build());
+      scheduler.scheduleWithFixedDelay(
+          this::scheduledRefresh, refreshIntervalMinutes, refreshIntervalMinutes, TimeUnit.MINUTES);
+    } else {
+      scheduler = null;
+    }
+  }
+
+  /** Occurrence coverage of the dataset, computed if the dataset is not in the store yet. */
+  public List<JsonNode> getCoverage(UUID datasetKey) {
+    try {
+      List<JsonNode> coverage = read(datasetKey);
+      if (coverage == null) {
+        Entry entry = compute(datasetKey);
+        write(Collections.singletonMap(datasetKey, entry));
+        coverage = entry.coverage;
+      }
+      return coverage;
+    } catch (IOException | DataAccessException ex) {
+      log.error("Error retrieving occurrence coverage data of dataset {}", datasetKey, ex);
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Computes and stores the coverage of the datasets whose occurrences changed since they were
+   * stored.
+   *
+   * @return the number of datasets whose coverage was computed
+   */
+  public synchronized int refresh() throws IOException {
+    Map<UUID, String> versions = readVersions();
+    Map<UUID, String> stored = readStoredVersions();
+    int computed = 0;
+    for (Map.Entry<UUID, String> version : versions.entrySet()) {
+      if (!version.getValue().equals(stored.get(version.getKey()))) {
+        // written one at a time, so the work done so far is kept if the refresh fails
+        write(Collections.singletonMap(version.getKey(), compute(version.getKey())));
+        computed++;
+      }
+    }
+
+    // the datasets missing in the index no longer have occurrences
+    Map<UUID, Entry> emptied = new HashMap<>();
+    for (Map.Entry<UUID, String> entry : stored.entrySet()) {
+      if (!versions.containsKey(entry.getKey()) && !NO_OCCURRENCES.equals(entry.getValue())) {
+        emptied.put(entry.getKey(), new Entry(NO_OCCURRENCES, Collections.emptyList()));
+      }
+    }
+    write(emptied);
+    computed += emptied.size();
+    log.info("Occurrence coverage refreshed for {} of {} datasets", computed, versions.size());
+    return computed;
+  }
+
+  /** @return the number of datasets in the store */
+  public int size() {
+    return coverageMapper.count();
+  }
+
+  @PreDestroy
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  private void scheduledRefresh() {
+    try {
+      refresh();
+    } catch (Exception ex) {
+      log.error("Error refreshing the occurrence coverage", ex);
+    }
+  }
+
+  /** Reads the version of every dataset of the occurrence index, paging over the dataset keys. */
+  private Map<UUID, String> readVersions() throws IOException {
+    Map<UUID, String> versions = new HashMap<>();
+    Map<String, Object> afterKey = null;
+    do {
+      CompositeAggregationBuilder datasets =
+          AggregationBuilders.composite(
+                  DATASET_KEY_FIELD,
+                  Collections.singletonList(
+                      new TermsValuesSourceBuilder(DATASET_KEY_FIELD).field(DATASET_KEY_FIELD)))
+              .size(VERSIONS_PAGE_SIZE)
+              .subAggregation(
+                  AggregationBuilders.max(LAST_INTERPRETED_FIELD).field(LAST_INTERPRETED_FIELD));
+      if (afterKey != null) {
+        datasets.aggregateAfter(afterKey);
+      }
+
+      SearchResponse searchResponse =
+          search(new SearchSourceBuilder().size(0).aggregation(datasets));
+      CompositeAggregation aggregation =
+          searchResponse.getAggregations().get(DATASET_KEY_FIELD);
+      for (CompositeAggregation.Bucket bucket : aggregation.getBuckets()) {
+        Max lastInterpreted = bucket.getAggregations().get(LAST_INTERPRETED_FIELD);
+        versions.put(
+            UUID.fromString(bucket.getKey().get(DATASET_KEY_FIELD).toString()),
+            version(bucket.getDocCount(), lastInterpreted));
+      }
+      afterKey = aggregation.getBuckets().isEmpty() ? null : aggregation.afterKey();
+    } while (afterKey != null);
+    return versions;
+  }
+
+  /** Runs the coverage aggregation of the dataset, which also gives the version of the entry. */
+  private Entry compute(UUID datasetKey) throws IOException {
+    SearchSourceBuilder searchSourceBuilder =
+        new SearchSourceBuilder()
+            .size(0)
+            .query(
+                QueryBuilders.boolQuery()
+                    .filter(QueryBuilders.termQuery(DATASET_KEY_FIELD, datasetKey.toString())))
+            .aggregation(
+                AggregationBuilders.max(LAST_INTERPRETED_FIELD).field(LAST_INTERPRETED_FIELD))
+            .aggregation(
+                AggregationBuilders.terms("countryCode")
+                    .field("countryCode")
+                    .size(200)
+                    .shardSize(200)
+                    .subAggregation(
+                        AggregationBuilders.terms("taxonKey")
+                            .size(120_000)
+                            .shardSize(120_000)
+                            .field("gbifClassification.taxonKey")
+                            .subAggregation(
+                                AggregationBuilders.dateHistogram("eventDateSingle")
+                                    .field("eventDateSingle")
+                                    .dateHistogramInterval(new DateHistogramInterval("3650d")))));
+
+    SearchResponse searchResponse = search(searchSourceBuilder);
+    long docCount = searchResponse.getHits().getTotalHits();
+    if (docCount == 0) {
+      return new Entry(NO_OCCURRENCES, Collections.emptyList());
+    }
+
+    List<JsonNode> coverages = new ArrayList<>();
+    for (Terms.Bucket countryBucket :
+        getTermsBuckets(searchResponse.getAggregations(), "countryCode")) {
+      List<? extends Terms.Bucket> taxonBuckets =
+          getTermsBuckets(countryBucket.getAggregations(), "taxonKey");
+      if (taxonBuckets.isEmpty()) {
+        ObjectNode atCountryCoverage = mapper.createObjectNode();
+        atCountryCoverage.set("country", toJson(countryBucket));
+        coverages.add(atCountryCoverage);
+        continue;
+      }
+      for (Terms.Bucket taxonKeyBucket : taxonBuckets) {
+        List<? extends Histogram.Bucket> decadesBuckets =
+            getHistogramBuckets(taxonKeyBucket.getAggregations(), "eventDateSingle");
+        if (decadesBuckets.isEmpty()) {
+          ObjectNode atTaxonKeyCoverage = mapper.createObjectNode();
+          atTaxonKeyCoverage.set("country", toJson(countryBucket));
+          atTaxonKeyCoverage.set("taxonKey", toJson(taxonKeyBucket));
+          coverages.add(atTaxonKeyCoverage);
+          continue;
+        }
+        for (Histogram.Bucket decadeBucket : decadesBuckets) {
+          ObjectNode atDecadeCoverage = mapper.createObjectNode();
+          atDecadeCoverage.set("country", toJson(countryBucket));
+          atDecadeCoverage.set("taxonKey", toJson(taxonKeyBucket));
+          atDecadeCoverage.set("decade", toJson(decadeBucket));
+          coverages.add(atDecadeCoverage);
+        }
+      }
+    }
+    Max lastInterpreted = searchResponse.getAggregations().get(LAST_INTERPRETED_FIELD);
+    return new Entry(version(docCount, lastInterpreted), Collections.unmodifiableList(coverages));
+  }
+
+  private SearchResponse search(SearchSourceBuilder searchSourceBuilder) throws IOException {
+    return occurrenceEsClient.search(
+        new SearchRequest().source(searchSourceBuilder).indices(occurrenceIndex),
+        RequestOptions.DEFAULT);
+  }
+
+  private static String version(long docCount, Max lastInterpreted) {
+    return docCount + ":" + (long) lastInterpreted.getValue();
+  }
+
+  /** @return the stored coverage of the dataset, null if it is not in the store */
+  @Nullable
+  private List<JsonNode> read(UUID datasetKey) throws IOException {
+    String stored = coverageMapper.getCoverage(datasetKey);
+    if (stored == null) {
+      return null;
+    }
+    List<JsonNode> coverage = new ArrayList<>();
+    mapper.readTree(stored).forEach(coverage::add);
+    return Collections.unmodifiableList(coverage);
+  }
+
+  /** Reads the version of every stored dataset, streamed without its coverage. */
+  private Map<UUID, String> readStoredVersions() {
+    Map<UUID, String> versions = new HashMap<>();
+    coverageMapper.listVersions(
+        context ->
+            versions.put(
+                context.getResultObject().getDatasetKey(), context.getResultObject().getVersion()));
+    return versions;
+  }
+
+  /** Inserts or replaces the given entries, a few hundred per statement. */
+  private void write(Map<UUID, Entry> entries) throws IOException {
+    List<OccurrenceCoverageEntry> rows = new ArrayList<>(entries.size());
+    for (Map.Entry<UUID, Entry> entry : entries.entrySet()) {
+      rows.add(
+          new OccurrenceCoverageEntry()
+              .setDatasetKey(entry.getKey())
+              .setVersion(entry.getValue().version)
+              .setCoverage(mapper.writeValueAsString(entry.getValue().coverage)));
+    }
+    for (List<OccurrenceCoverageEntry> batch : Lists.partition(rows, WRITE_BATCH_SIZE)) {
+      coverageMapper.upsert(batch);
+    }
+  }
+
+  private ObjectNode toJson(MultiBucketsAggregation.Bucket bucket) {
+    return mapper
+        .createObjectNode()
+        .put("value", bucket.getKeyAsString())
+        .put("count", bucket.getDocCount());
+  }
+
+  private static List<? extends Terms.Bucket> getTermsBuckets(Aggregations aggs, String aggName) {
+    return Optional.ofNullable(aggs)
+        .map(aggregations -> aggregations.getAsMap().get(aggName))
+        .map(agg -> ((Terms) agg).getBuckets())
+        .orElse(Collections.emptyList());
+  }
+
+  private static List<? extends Histogram.Bucket> getHistogramBuckets(
+      Aggregations aggs, String aggName) {
+    return Optional.ofNullable(aggs)
+        .map(aggregations -> aggregations.getAsMap().get(aggName))
+        .map(agg -> ((Histogram) agg).getBuckets())
+        .orElse(Collections.emptyList());
+  }
+
+  private static final class Entry {
+
+    private final String version;
+    private final List<JsonNode> coverage;
+
+    private Entry(String version, List<JsonNode> coverage) {
+      this.version = version;
+      this.coverage = coverage;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import org.gbif.api.model.registry.Dataset;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@link DatasetIndexSource} that also reads single datasets and the datasets affected by a change
+ * of an organization or an installation, as needed to keep the index up to date.
+ */
+public interface RealtimeDatasetIndexSource extends DatasetIndexSource {
+
+  /**
+   * Reads the datasets ready to be converted. The installations and organizations returned by the
+   * lookups afterwards reflect their current state.
+   *
+   * @return the datasets found, deleted datasets and unknown keys are left out
+   */
+  List<Dataset> getDatasets(Collection<UUID> datasetKeys);
+
+  /** @return the keys of the datasets published by the organization or hosted by it */
+  Collection<UUID> getOrganizationDatasetKeys(UUID organizationKey);
+
+  /** @return the keys of the datasets hosted by the installation */
+  Collection<UUID> getInstallationDatasetKeys(UUID installationKey);
+}
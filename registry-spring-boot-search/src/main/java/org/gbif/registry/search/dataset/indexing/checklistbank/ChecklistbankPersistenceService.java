@@ -15,60 +15,112 @@
  */
 package org.gbif.registry.search.dataset.indexing.checklistbank;
 
-import java.sql.Array;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
-import java.util.Objects;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.IntConsumer;
 
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import lombok.extern.slf4j.Slf4j;
 
-/** A builder that will clear and build a new dataset index by paging over the given service. */
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Reads the backbone taxon keys a checklist is matched to from the ChecklistBank database.
+ *
+ * <p>Checklists can have millions of name usages. The keys are read through a server side cursor,
+ * {@code fetchSize} rows at a time, and collected into a primitive array, so neither the whole
+ * result set nor boxed keys are ever held in memory.
+ */
 @Slf4j
 @Component
 public class ChecklistbankPersistenceService {
 
   private static final String SQL =
-      "SELECT array_agg(nub_fk) as keys " + "FROM nub_rel " + "WHERE dataset_key = '%s'";
+      "SELECT nub_fk FROM nub_rel WHERE dataset_key = ? AND nub_fk IS NOT NULL";
+
+  private final DataSource dataSource;
+  private final int fetchSize;
 
   @Autowired
-  @Qualifier("clb_datasource")
-  private DataSource dataSource;
-  /** Pages over all datasets and adds them to SOLR. */
-  public Integer[] getTaxonKeys(String datasetKey) {
+  public ChecklistbankPersistenceService(
+      @Qualifier("clb_datasource") DataSource dataSource,
+      @Value("${indexing.checklistbank.fetchSize:10000}") int fetchSize) {
+    checkArgument(fetchSize > 0, "The fetch size must be positive");
+    this.dataSource = dataSource;
+    this.fetchSize = fetchSize;
+  }
 
-    try (Connection conn = dataSource.getConnection()) {
-      log.info("Updating all checklists for dataset {}", datasetKey);
+  /** @return the distinct backbone taxon keys of the checklist, in ascending order */
+  public int[] getTaxonKeys(String datasetKey) {
+    IntArrayBuilder keys = new IntArrayBuilder();
+    forEachTaxonKey(datasetKey, keys);
+    return keys.toSortedDistinctArray();
+  }
 
-      // use streaming cursor for large result sets
+  /**
+   * Streams the backbone taxon keys of the checklist, a key matched by several usages is given once
+   * per usage.
+   *
+   * @param consumer receives the keys in no particular order
+   */
+  public void forEachTaxonKey(String datasetKey, IntConsumer consumer) {
+    log.debug("Reading the taxon keys of checklist {}", datasetKey);
+    try (Connection conn = dataSource.getConnection()) {
+      // the PostgreSQL driver only uses a cursor within a transaction
+      boolean autoCommit = conn.getAutoCommit();
       conn.setAutoCommit(false);
-      Statement st = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-      st.setFetchSize(2);
-
-      ResultSet rs = st.executeQuery(String.format(SQL, datasetKey));
-      if (rs.next()) {
-        try {
-          Array result = rs.getArray("keys");
-          if (Objects.nonNull(result)) {
-            return (Integer[]) result.getArray();
-          } else {
-            return new Integer[0];
+      try (PreparedStatement st =
+          conn.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+        st.setFetchSize(fetchSize);
+        st.setObject(1, UUID.fromString(datasetKey));
+        try (ResultSet rs = st.executeQuery()) {
+          while (rs.next()) {
+            consumer.accept(rs.getInt(1));
           }
-        } catch (Exception e) {
-          throw new RuntimeException(e);
+        }
+      } finally {
+        conn.rollback();
+        conn.setAutoCommit(autoCommit);
+      }
+    } catch (SQLException e) {
+      log.error("Failed to read the taxon keys of checklist {}", datasetKey, e);
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Growable array of ints. */
+  private static class IntArrayBuilder implements IntConsumer {
+
+    private int[] values = new int[1024];
+    private int size;
+
+    @Override
+    public void accept(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    int[] toSortedDistinctArray() {
+      Arrays.sort(values, 0, size);
+      int distinct = 0;
+      for (int i = 0; i < size; i++) {
+        if (i == 0 || values[i] != values[i - 1]) {
+          values[distinct++] = values[i];
         }
       }
-      rs.close();
-    } catch (Exception e) {
-      log.error("Failed to index taxon keys for dataset {}", datasetKey, e);
-      throw new RuntimeException(e);
+      return Arrays.copyOf(values, distinct);
     }
-    return new Integer[0];
   }
 }
@@ -42,6 +42,9 @@ public interface GbifApiService {
   @GET("dataset")
   Call<PagingResponse<Dataset>> listDatasets(@QueryMap Map<String, String> options);
 
+  @GET("dataset/{datasetKey}")
+  Call<Dataset> getDataset(@Path("datasetKey") String datasetKey);
+
   @Streaming
   @GET("dataset/{datasetKey}/document")
   Call<ResponseBody> getMetadataDocument(@Path("datasetKey") String datasetKey);
@@ -51,7 +54,7 @@ public interface GbifApiService {
 
   @GET("installation/{installationKey}/dataset")
   Call<PagingResponse<Dataset>> getInstallationDatasets(
-      @Path("installationKey") String installationKey);
+      @Path("installationKey") String installationKey, @QueryMap Map<String, String> options);
 
   @GET("organization/{organizationKey}/hostedDataset")
   Call<PagingResponse<Dataset>> getOrganizationHostedDatasets(
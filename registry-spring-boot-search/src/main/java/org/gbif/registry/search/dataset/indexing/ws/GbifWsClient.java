@@ -36,6 +36,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
@@ -48,6 +49,10 @@ import org.springframework.stereotype.Component;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.io.ByteStreams;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.SneakyThrows;
 import okhttp3.OkHttpClient;
 import okhttp3.ResponseBody;
@@ -61,7 +66,7 @@ import static org.gbif.registry.search.dataset.indexing.ws.SearchParameterProvid
 /** Retrofit {@link GbifApiService} client. */
 @Component
 @Lazy
-public class GbifWsClient {
+public class GbifWsClient implements MeterBinder {
 
   // Uses a cache for installations to avoid too many external calls
   Cache<String, Installation> installationCache =
@@ -81,6 +86,12 @@ public class GbifWsClient {
           .loader(this::loadOrganization)
           .build();
 
+  // cache2k statistics are disabled, the loads are the misses
+  private final LongAdder installationGets = new LongAdder();
+  private final LongAdder installationLoads = new LongAdder();
+  private final LongAdder organizationGets = new LongAdder();
+  private final LongAdder organizationLoads = new LongAdder();
+
   private final GbifApiService gbifApiService;
 
   /**
@@ -121,7 +132,7 @@ public class GbifWsClient {
   }
 
   public void purge(Organization organization) {
-    installationCache.remove(organization.getKey().toString());
+    organizationCache.remove(organization.getKey().toString());
   }
 
   public PagingResponse<Dataset> listDatasets(PagingRequest pagingRequest) {
@@ -129,23 +140,35 @@ public class GbifWsClient {
     return syncCallWithResponse(gbifApiService.listDatasets(params)).body();
   }
 
+  /** @return the dataset, or null if it doesn't exist */
+  public Dataset getDataset(String datasetKey) {
+    return syncCallWithResponse(gbifApiService.getDataset(datasetKey)).body();
+  }
+
   public Installation getInstallation(String installationKey) {
+    installationGets.increment();
     return installationCache.get(installationKey);
   }
 
   private Installation loadInstallation(String installationKey) {
+    installationLoads.increment();
     return syncCallWithResponse(gbifApiService.getInstallation(installationKey)).body();
   }
 
-  public PagingResponse<Dataset> getInstallationDatasets(String installationKey) {
-    return syncCallWithResponse(gbifApiService.getInstallationDatasets(installationKey)).body();
+  public PagingResponse<Dataset> getInstallationDatasets(
+      String installationKey, PagingRequest pagingRequest) {
+    Map<String, String> params = toQueryMap(pagingRequest);
+    return syncCallWithResponse(gbifApiService.getInstallationDatasets(installationKey, params))
+        .body();
   }
 
   public Organization getOrganization(String organizationKey) {
+    organizationGets.increment();
     return organizationCache.get(organizationKey);
   }
 
   private Organization loadOrganization(String organizationKey) {
+    organizationLoads.increment();
     return syncCallWithResponse(gbifApiService.getOrganization(organizationKey)).body();
   }
 
@@ -204,6 +227,34 @@ public class GbifWsClient {
         .body();
   }
 
+  /**
+   * Publishes the sizes, hits and misses of the installation and organization caches, with the
+   * names and tags of the Micrometer cache metrics.
+   */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    bindCache(
+        registry, "indexInstallations", installationCache, installationGets, installationLoads);
+    bindCache(
+        registry, "indexOrganizations", organizationCache, organizationGets, organizationLoads);
+  }
+
+  private static void bindCache(
+      MeterRegistry registry, String name, Cache<?, ?> cache, LongAdder gets, LongAdder loads) {
+    Gauge.builder("cache.size", cache, c -> c.asMap().size())
+        .tag("cache", name)
+        .description("The number of entries in this cache")
+        .register(registry);
+    FunctionCounter.builder("cache.gets", gets, g -> g.sum() - loads.sum())
+        .tags("cache", name, "result", "hit")
+        .description("The number of times cache lookup methods have returned a cached value")
+        .register(registry);
+    FunctionCounter.builder("cache.gets", loads, LongAdder::sum)
+        .tags("cache", name, "result", "miss")
+        .description("The number of times cache lookup methods have returned an uncached value")
+        .register(registry);
+  }
+
   /**
    * Performs a synchronous call to {@link Call} instance.
    *
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing.ws;
+
+import org.gbif.api.model.common.paging.PagingRequest;
+import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.api.util.iterables.Iterables;
+import org.gbif.registry.search.dataset.indexing.DatasetIndexSource;
+import org.gbif.registry.search.dataset.indexing.RealtimeDatasetIndexSource;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/** {@link DatasetIndexSource} reading everything from the GBIF API. */
+@Slf4j
+public class GbifWsDatasetIndexSource implements RealtimeDatasetIndexSource {
+
+  private final GbifWsClient gbifWsClient;
+
+  public GbifWsDatasetIndexSource(GbifWsClient gbifWsClient) {
+    this.gbifWsClient = gbifWsClient;
+  }
+
+  /** Pages over all the datasets of the API. */
+  @Override
+  public void forEachBatch(int batchSize, Consumer<List<Dataset>> batchConsumer) {
+    PagingRequest page = new PagingRequest(0, batchSize);
+    PagingResponse<Dataset> response;
+    do {
+      log.debug("Requesting {} datasets starting at offset {}", page.getLimit(), page.getOffset());
+      response = gbifWsClient.listDatasets(page);
+      if (!response.getResults().isEmpty()) {
+        batchConsumer.accept(response.getResults());
+      }
+      page.nextPage();
+    } while (!response.isEndOfRecords());
+  }
+
+  @Override
+  public InputStream getMetadataDocument(Dataset dataset) {
+    return gbifWsClient.getMetadataDocument(dataset.getKey());
+  }
+
+  @Override
+  public Installation getInstallation(UUID installationKey) {
+    return gbifWsClient.getInstallation(installationKey.toString());
+  }
+
+  @Override
+  public Organization getOrganization(UUID organizationKey) {
+    return gbifWsClient.getOrganization(organizationKey.toString());
+  }
+
+  /** Requests the datasets one by one, the API has no lookup of several datasets. */
+  @Override
+  public List<Dataset> getDatasets(Collection<UUID> datasetKeys) {
+    List<Dataset> datasets = new ArrayList<>(datasetKeys.size());
+    for (UUID datasetKey : datasetKeys) {
+      Dataset dataset = gbifWsClient.getDataset(datasetKey.toString());
+      if (dataset != null && dataset.getDeleted() == null) {
+        datasets.add(dataset);
+      }
+    }
+    return datasets;
+  }
+
+  @Override
+  public Collection<UUID> getOrganizationDatasetKeys(UUID organizationKey) {
+    Set<UUID> keys = new LinkedHashSet<>();
+    for (Dataset dataset :
+        Iterables.datasetsIterable(
+            page ->
+                gbifWsClient.getOrganizationPublishedDataset(organizationKey.toString(), page))) {
+      keys.add(dataset.getKey());
+    }
+    for (Dataset dataset :
+        Iterables.datasetsIterable(
+            page -> gbifWsClient.getOrganizationHostedDatasets(organizationKey.toString(), page))) {
+      keys.add(dataset.getKey());
+    }
+    return keys;
+  }
+
+  @Override
+  public Collection<UUID> getInstallationDatasetKeys(UUID installationKey) {
+    Set<UUID> keys = new LinkedHashSet<>();
+    for (Dataset dataset :
+        Iterables.datasetsIterable(
+            page -> gbifWsClient.getInstallationDatasets(installationKey.toString(), page))) {
+      keys.add(dataset.getKey());
+    }
+    return keys;
+  }
+}
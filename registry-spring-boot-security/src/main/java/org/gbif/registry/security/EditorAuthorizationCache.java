@@ -0,0 +1,295 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.security;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.events.CreateEvent;
+import org.gbif.registry.events.DeleteEvent;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.events.UpdateEvent;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.eventbus.Subscribe;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Cache of the decisions taken by the {@link EditorAuthorizationServiceImpl}, keyed by user, entity
+ * key and the kind of check.
+ *
+ * <p>A decision depends on the editor rights of the user and, for datasets, installations and
+ * organizations, on the entities owning them. Decisions of a user are evicted when their editor
+ * rights change, see {@link #invalidateUser(String)}. Decisions following an ownership chain are
+ * evicted when a dataset, installation or organization is moved to another owner, and again once
+ * that change commits. Entries also expire after a while, as a safety net for rights changed
+ * outside of the registry.
+ *
+ * <p>The cached keys are indexed by user, entity and type, so an invalidation only visits the
+ * decisions it evicts rather than the whole cache.
+ */
+@Component
+public class EditorAuthorizationCache implements MeterBinder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EditorAuthorizationCache.class);
+
+  /** The kind of check a decision was taken for. */
+  public enum Type {
+    ENTITY,
+    DATASET,
+    ORGANIZATION,
+    INSTALLATION
+  }
+
+  private final Cache<Key, Boolean> cache;
+
+  // incremented by every invalidation, so decisions taken meanwhile are not kept
+  private final AtomicLong generation = new AtomicLong();
+
+  private final ConcurrentMap<String, Set<Key>> keysByUser = new ConcurrentHashMap<>();
+  private final ConcurrentMap<UUID, Set<Key>> keysByEntity = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Type, Set<Key>> keysByType = new ConcurrentHashMap<>();
+
+  public EditorAuthorizationCache(
+      @Value("${registry.security.authorizationCache.maxSize:100000}") long maxSize,
+      @Value("${registry.security.authorizationCache.expireMinutes:10}") long expireMinutes,
+      EventManager eventManager) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+            .recordStats()
+            .removalListener(this::unindex)
+            .build();
+    eventManager.register(this);
+  }
+
+  /**
+   * Returns the cached decision or takes and caches it.
+   *
+   * @param decision takes the decision when it isn't cached
+   */
+  public boolean get(String name, UUID key, Type type, BooleanSupplier decision) {
+    Key cacheKey = new Key(name, key, type);
+    Boolean cached = cache.getIfPresent(cacheKey);
+    if (cached != null) {
+      return cached;
+    }
+
+    long before = generation.get();
+    boolean allowed = decision.getAsBoolean();
+    index(cacheKey);
+    cache.put(cacheKey, allowed);
+    if (generation.get() != before) {
+      // rights or owners changed while deciding, the decision might be stale
+      cache.invalidate(cacheKey);
+    }
+    return allowed;
+  }
+
+  /** Evicts all the decisions of a user, to be called when their editor rights change. */
+  public void invalidateUser(String name) {
+    generation.incrementAndGet();
+    invalidateAll(keysByUser.get(name));
+  }
+
+  /** Evicts the decisions taken for an entity and the decisions of the given types. */
+  private void invalidate(UUID key, Set<Type> types) {
+    generation.incrementAndGet();
+    invalidateAll(keysByEntity.get(key));
+    for (Type type : types) {
+      invalidateAll(keysByType.get(type));
+    }
+  }
+
+  /**
+   * Evicts the decisions at once and, within a transaction, once more after it commits: until then
+   * the former rights and owners are still read and a decision taken on them could be cached again.
+   */
+  private void invalidateOnCommit(UUID key, Set<Type> types) {
+    invalidate(key, types);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              invalidate(key, types);
+            }
+          });
+    }
+  }
+
+  private void invalidateAll(Set<Key> keys) {
+    if (keys != null) {
+      cache.invalidateAll(keys);
+    }
+  }
+
+  private void index(Key key) {
+    add(keysByUser, key.name, key);
+    if (key.key != null) {
+      add(keysByEntity, key.key, key);
+    }
+    add(keysByType, key.type, key);
+  }
+
+  /** Drops evicted, expired and invalidated decisions from the indexes. */
+  private void unindex(RemovalNotification<Key, Boolean> notification) {
+    Key key = notification.getKey();
+    if (notification.getCause() == RemovalCause.REPLACED || cache.asMap().containsKey(key)) {
+      // cached again meanwhile
+      return;
+    }
+    remove(keysByUser, key.name, key);
+    if (key.key != null) {
+      remove(keysByEntity, key.key, key);
+    }
+    remove(keysByType, key.type, key);
+  }
+
+  private static <K> void add(ConcurrentMap<K, Set<Key>> index, K indexKey, Key key) {
+    index.compute(
+        indexKey,
+        (k, keys) -> {
+          Set<Key> indexed = keys != null ? keys : ConcurrentHashMap.newKeySet();
+          indexed.add(key);
+          return indexed;
+        });
+  }
+
+  private static <K> void remove(ConcurrentMap<K, Set<Key>> index, K indexKey, Key key) {
+    index.computeIfPresent(
+        indexKey, (k, keys) -> keys.remove(key) && keys.isEmpty() ? null : keys);
+  }
+
+  /** @return the number of keys indexed by entity, which follows the size of the cache */
+  long indexedEntityKeys() {
+    return keysByEntity.values().stream().mapToLong(Set::size).sum();
+  }
+
+  /** @return the hit, miss and eviction statistics of the cache */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  /** Publishes the cache statistics as metrics. */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    GuavaCacheMetrics.monitor(registry, cache, "editorAuthorization");
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void created(CreateEvent<T> event) {
+    // denials taken before the entity existed
+    invalidateOnCommit(event.getNewObject().getKey(), EnumSet.noneOf(Type.class));
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void updated(UpdateEvent<T> event) {
+    if (event.getObjectClass().equals(Dataset.class)) {
+      Dataset oldDataset = (Dataset) event.getOldObject();
+      Dataset newDataset = (Dataset) event.getNewObject();
+      if (!Objects.equals(oldDataset.getInstallationKey(), newDataset.getInstallationKey())
+          || !Objects.equals(
+              oldDataset.getPublishingOrganizationKey(),
+              newDataset.getPublishingOrganizationKey())) {
+        LOG.debug("Dataset {} changed owner", newDataset.getKey());
+        invalidateOnCommit(newDataset.getKey(), EnumSet.noneOf(Type.class));
+      }
+    } else if (event.getObjectClass().equals(Installation.class)) {
+      Installation oldInstallation = (Installation) event.getOldObject();
+      Installation newInstallation = (Installation) event.getNewObject();
+      if (!Objects.equals(
+          oldInstallation.getOrganizationKey(), newInstallation.getOrganizationKey())) {
+        LOG.debug("Installation {} changed owner", newInstallation.getKey());
+        // the datasets served by the installation are not known here
+        invalidateOnCommit(newInstallation.getKey(), EnumSet.of(Type.DATASET));
+      }
+    } else if (event.getObjectClass().equals(Organization.class)) {
+      Organization oldOrganization = (Organization) event.getOldObject();
+      Organization newOrganization = (Organization) event.getNewObject();
+      if (!Objects.equals(
+          oldOrganization.getEndorsingNodeKey(), newOrganization.getEndorsingNodeKey())) {
+        LOG.debug("Organization {} changed endorsing node", newOrganization.getKey());
+        invalidateOnCommit(newOrganization.getKey(), EnumSet.of(Type.DATASET, Type.INSTALLATION));
+      }
+    }
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void deleted(DeleteEvent<T> event) {
+    invalidateOnCommit(event.getOldObject().getKey(), EnumSet.noneOf(Type.class));
+  }
+
+  private static final class Key {
+
+    private final String name;
+    private final UUID key;
+    private final Type type;
+
+    private Key(String name, UUID key, Type type) {
+      this.name = name;
+      this.key = key;
+      this.type = type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key other = (Key) o;
+      return type == other.type && name.equals(other.name) && Objects.equals(key, other.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(name, key, type);
+    }
+  }
+}
@@ -22,6 +22,7 @@ import org.gbif.registry.persistence.mapper.DatasetMapper;
 import org.gbif.registry.persistence.mapper.InstallationMapper;
 import org.gbif.registry.persistence.mapper.OrganizationMapper;
 import org.gbif.registry.persistence.mapper.UserRightsMapper;
+import org.gbif.registry.security.EditorAuthorizationCache.Type;
 
 import java.util.UUID;
 
@@ -32,6 +33,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
+/**
+ * Checks the editor rights of users, following the ownership chain of datasets, installations and
+ * organizations. Decisions are cached by the {@link EditorAuthorizationCache}.
+ */
 @Service
 @Primary
 public class EditorAuthorizationServiceImpl implements EditorAuthorizationService {
@@ -42,16 +47,19 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
   private final OrganizationMapper organizationMapper;
   private final DatasetMapper datasetMapper;
   private final InstallationMapper installationMapper;
+  private final EditorAuthorizationCache cache;
 
   public EditorAuthorizationServiceImpl(
       OrganizationMapper organizationMapper,
       DatasetMapper datasetMapper,
       InstallationMapper installationMapper,
-      UserRightsMapper userRightsMapper) {
+      UserRightsMapper userRightsMapper,
+      EditorAuthorizationCache cache) {
     this.organizationMapper = organizationMapper;
     this.datasetMapper = datasetMapper;
     this.installationMapper = installationMapper;
     this.userRightsMapper = userRightsMapper;
+    this.cache = cache;
   }
 
   @Override
@@ -75,9 +83,15 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
     if (name == null) {
       return false;
     }
-    boolean allowed = userRightsMapper.keyExistsForUser(name, key);
-    LOG.debug("User {} {} allowed to edit entity {}", name, allowed ? "is" : "is not", key);
-    return allowed;
+    return cache.get(
+        name,
+        key,
+        Type.ENTITY,
+        () -> {
+          boolean allowed = userRightsMapper.keyExistsForUser(name, key);
+          LOG.debug("User {} {} allowed to edit entity {}", name, allowed ? "is" : "is not", key);
+          return allowed;
+        });
   }
 
   @Override
@@ -85,6 +99,10 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
     if (name == null) {
       return false;
     }
+    return cache.get(name, datasetKey, Type.DATASET, () -> checkDataset(name, datasetKey));
+  }
+
+  private boolean checkDataset(String name, UUID datasetKey) {
     if (allowedToModifyEntity(name, datasetKey)) {
       return true;
     }
@@ -102,6 +120,10 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
     if (name == null) {
       return false;
     }
+    return cache.get(name, orgKey, Type.ORGANIZATION, () -> checkOrganization(name, orgKey));
+  }
+
+  private boolean checkOrganization(String name, UUID orgKey) {
     if (allowedToModifyEntity(name, orgKey)) {
       return true;
     }
@@ -115,6 +137,11 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
     if (name == null) {
       return false;
     }
+    return cache.get(
+        name, installationKey, Type.INSTALLATION, () -> checkInstallation(name, installationKey));
+  }
+
+  private boolean checkInstallation(String name, UUID installationKey) {
     if (allowedToModifyEntity(name, installationKey)) {
       return true;
     }
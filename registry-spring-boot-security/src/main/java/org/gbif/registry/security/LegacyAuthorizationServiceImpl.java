@@ -43,7 +43,12 @@ import org.springframework.stereotype.Service;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 
-/** Class providing temporary authorization for legacy web service requests (GBRDS/IPT). */
+/**
+ * Class providing temporary authorization for legacy web service requests (GBRDS/IPT).
+ *
+ * <p>Only the key and password of the organizations and installations are read, and verified
+ * passwords are kept in the {@link LegacyCredentialCache} for a few minutes.
+ */
 @Service
 public class LegacyAuthorizationServiceImpl implements LegacyAuthorizationService {
 
@@ -53,14 +58,17 @@ public class LegacyAuthorizationServiceImpl implements LegacyAuthorizationServic
   private final OrganizationMapper organizationMapper;
   private final DatasetMapper datasetMapper;
   private final InstallationMapper installationMapper;
+  private final LegacyCredentialCache credentialCache;
 
   public LegacyAuthorizationServiceImpl(
       OrganizationMapper organizationMapper,
       DatasetMapper datasetMapper,
-      InstallationMapper installationMapper) {
+      InstallationMapper installationMapper,
+      LegacyCredentialCache credentialCache) {
     this.organizationMapper = organizationMapper;
     this.datasetMapper = datasetMapper;
     this.installationMapper = installationMapper;
+    this.credentialCache = credentialCache;
   }
 
   /**
@@ -106,10 +114,16 @@ public class LegacyAuthorizationServiceImpl implements LegacyAuthorizationServic
 
   private LegacyRequestAuthorization authenticateInternal(
       UUID user, String password, UUID organizationKey) {
+    if (credentialCache.isVerified(user, password)) {
+      return new LegacyRequestAuthorization(user, organizationKey);
+    }
+    long generation = credentialCache.generation();
+
     // try to validate organization key first
-    Organization org = organizationMapper.get(user);
+    Organization org = organizationMapper.getCredentials(user);
     if (org != null) {
       if (password.equals(org.getPassword())) {
+        credentialCache.verified(user, password, generation);
         return new LegacyRequestAuthorization(user, organizationKey);
       } else {
         throw new WebApplicationException(
@@ -117,10 +131,11 @@ public class LegacyAuthorizationServiceImpl implements LegacyAuthorizationServic
       }
     } else {
       // maybe an installation?
-      Installation installation = installationMapper.get(user);
+      Installation installation = installationMapper.getCredentials(user);
 
       if (installation != null) {
         if (password.equals(installation.getPassword())) {
+          credentialCache.verified(user, password, generation);
           return new LegacyRequestAuthorization(user, organizationKey);
         } else {
           throw new WebApplicationException(
@@ -158,8 +173,8 @@ public class LegacyAuthorizationServiceImpl implements LegacyAuthorizationServic
       LOG.error("Organization key is null");
       return false;
     }
-    // validate installation key belongs to an existing installation
-    Organization org = organizationMapper.get(organizationKey);
+    // validate organization key belongs to an existing organization
+    Organization org = organizationMapper.getCredentials(organizationKey);
 
     if (org == null) {
       LOG.error("Organization with key={} does not exist", organizationKey);
@@ -229,7 +244,7 @@ public class LegacyAuthorizationServiceImpl implements LegacyAuthorizationServic
       return false;
     }
     // validate installation key belongs to an existing installation
-    Installation installation = installationMapper.get(installationKey);
+    Installation installation = installationMapper.getCredentials(installationKey);
 
     if (installation == null) {
       LOG.error("Installation with key={} does not exist", installationKey);
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.security;
+
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.events.DeleteEvent;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.events.UpdateEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Short lived cache of the organization and installation credentials verified by the {@link
+ * LegacyAuthorizationServiceImpl}, so bursts of IPT requests don't read the password every time.
+ *
+ * <p>Only successful verifications are cached, keyed by the entity key and the SHA-256 digest of
+ * the password so the passwords themselves are not kept in memory. Entries of an organization or
+ * installation are evicted when it is updated or deleted, a rotated password is checked against
+ * the database at once. Changes made within a transaction evict them again once it commits, as a
+ * request verified meanwhile still reads the former password.
+ */
+@Component
+public class LegacyCredentialCache implements MeterBinder {
+
+  private final Cache<Key, Boolean> cache;
+
+  // incremented by every invalidation, so credentials read meanwhile are not kept
+  private final AtomicLong generation = new AtomicLong();
+
+  public LegacyCredentialCache(
+      @Value("${registry.security.legacyCredentialCache.maxSize:10000}") long maxSize,
+      @Value("${registry.security.legacyCredentialCache.expireSeconds:300}") long expireSeconds,
+      EventManager eventManager) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+    eventManager.register(this);
+  }
+
+  /** @return true if the password was verified for the organization or installation lately */
+  public boolean isVerified(UUID key, String password) {
+    return cache.getIfPresent(new Key(key, password)) != null;
+  }
+
+  /** @return the current generation, to be passed to {@link #verified(UUID, String, long)} */
+  public long generation() {
+    return generation.get();
+  }
+
+  /**
+   * Caches a verified password.
+   *
+   * @param generation the generation before the password was read, it isn't cached if the
+   *     credentials were invalidated since
+   */
+  public void verified(UUID key, String password, long generation) {
+    Key cacheKey = new Key(key, password);
+    cache.put(cacheKey, Boolean.TRUE);
+    if (this.generation.get() != generation) {
+      // the entity changed while being read, the password might be stale
+      cache.invalidate(cacheKey);
+    }
+  }
+
+  /** Evicts the verified passwords of an organization or installation. */
+  public void invalidate(UUID key) {
+    generation.incrementAndGet();
+    cache.asMap().keySet().removeIf(k -> k.key.equals(key));
+  }
+
+  /** @return the hit, miss and eviction statistics of the cache */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  /** Publishes the cache statistics as metrics. */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    GuavaCacheMetrics.monitor(registry, cache, "legacyCredential");
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void updated(UpdateEvent<T> event) {
+    if (hasCredentials(event.getObjectClass())) {
+      invalidateOnCommit(event.getOldObject().getKey());
+    }
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void deleted(DeleteEvent<T> event) {
+    if (hasCredentials(event.getObjectClass())) {
+      invalidateOnCommit(event.getOldObject().getKey());
+    }
+  }
+
+  /**
+   * Evicts the verified passwords at once and, within a transaction, once more after it commits:
+   * until then the former password is still read and could be cached again.
+   */
+  private void invalidateOnCommit(UUID key) {
+    invalidate(key);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              invalidate(key);
+            }
+          });
+    }
+  }
+
+  private static boolean hasCredentials(Class<?> objectClass) {
+    return Organization.class.equals(objectClass) || Installation.class.equals(objectClass);
+  }
+
+  private static final class Key {
+
+    private final UUID key;
+    private final HashCode digest;
+
+    private Key(UUID key, String password) {
+      this.key = key;
+      this.digest = Hashing.sha256().hashString(password, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key other = (Key) o;
+      return key.equals(other.key) && digest.equals(other.digest);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(key, digest);
+    }
+  }
+}
@@ -42,7 +42,11 @@ public class JwtAuthenticateService {
   }
 
   public GbifUser authenticate(String token) throws GbifJwtException {
-    // validate and parse the token
+    return getUser(validate(token));
+  }
+
+  /** Validates the signature, issuer and expiration of the token and parses its claims. */
+  public Claims validate(String token) throws GbifJwtException {
     Claims claims;
     try {
       claims =
@@ -60,7 +64,11 @@ public class JwtAuthenticateService {
     if (claims == null) {
       throw new GbifJwtException(GbifJwtException.JwtErrorCode.INVALID_TOKEN);
     }
+    return claims;
+  }
 
+  /** Looks up the user of validated claims. */
+  public GbifUser getUser(Claims claims) throws GbifJwtException {
     String username =
         Optional.ofNullable(claims.get("userName", String.class))
             .filter(v -> !v.isEmpty())
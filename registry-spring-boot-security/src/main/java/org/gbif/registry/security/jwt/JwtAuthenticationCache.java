@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.security.jwt;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Short lived cache of the JWT tokens verified by the {@link JwtRequestFilter}, keyed by the token
+ * itself and holding the authenticated user.
+ *
+ * <p>Only tokens whose signature was verified are cached, a token is never served after its own
+ * expiration. The users are evicted when their roles or password change or when they are deleted,
+ * see {@link #invalidateUser(String)}, so the next request looks them up again and is rejected if
+ * they don't exist anymore.
+ */
+@Component
+public class JwtAuthenticationCache implements MeterBinder {
+
+  private final Cache<String, VerifiedToken> cache;
+
+  // incremented by every invalidation, so users looked up meanwhile are not kept
+  private final AtomicLong generation = new AtomicLong();
+
+  public JwtAuthenticationCache(
+      @Value("${registry.security.jwtCache.maxSize:10000}") long maxSize,
+      @Value("${registry.security.jwtCache.expireSeconds:60}") long expireSeconds) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+  }
+
+  /** @return the cached token, null if it isn't cached or has expired */
+  public VerifiedToken get(String token) {
+    VerifiedToken verified = cache.getIfPresent(token);
+    if (verified != null && verified.isExpired()) {
+      cache.invalidate(token);
+      return null;
+    }
+    return verified;
+  }
+
+  /** @return the current generation, to be passed to {@link #put(String, VerifiedToken, long)} */
+  public long generation() {
+    return generation.get();
+  }
+
+  /**
+   * Caches a verified token.
+   *
+   * @param generation the generation before the user was looked up, the token isn't cached if the
+   *     users were invalidated since
+   */
+  public void put(String token, VerifiedToken verified, long generation) {
+    cache.put(token, verified);
+    if (this.generation.get() != generation) {
+      // the user changed while being looked up, it might be stale
+      cache.invalidate(token);
+    }
+  }
+
+  /** Evicts all the tokens of a user, to be called when their roles or password change. */
+  public void invalidateUser(String username) {
+    generation.incrementAndGet();
+    cache.asMap().values().removeIf(v -> v.getUserDetails().getUsername().equals(username));
+  }
+
+  /** @return the hit, miss and eviction statistics of the cache */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  /** Publishes the cache statistics as metrics. */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    GuavaCacheMetrics.monitor(registry, cache, "jwtAuthentication");
+  }
+
+  /** The user authenticated by a token and the expiration of the token. */
+  public static class VerifiedToken {
+
+    private final UserDetails userDetails;
+    private final long expiresAt;
+
+    public VerifiedToken(UserDetails userDetails, long expiresAt) {
+      this.userDetails = userDetails;
+      this.expiresAt = expiresAt;
+    }
+
+    public UserDetails getUserDetails() {
+      return userDetails;
+    }
+
+    /** @return the expiration of the token in milliseconds since the epoch */
+    public long getExpiresAt() {
+      return expiresAt;
+    }
+
+    public boolean isExpired() {
+      return System.currentTimeMillis() >= expiresAt;
+    }
+  }
+}
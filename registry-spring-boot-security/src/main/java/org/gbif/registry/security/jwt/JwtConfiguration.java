@@ -27,6 +27,8 @@ public class JwtConfiguration {
   @NotNull private long expiryTimeInMs;
   @NotNull private String issuer;
   @NotNull private String signingKey;
+  // tokens expiring sooner are reissued on use
+  private long reissueBeforeExpiryMs = 600000;
 
   public long getExpiryTimeInMs() {
     return expiryTimeInMs;
@@ -51,4 +53,12 @@ public class JwtConfiguration {
   public void setSigningKey(String signingKey) {
     this.signingKey = signingKey;
   }
+
+  public long getReissueBeforeExpiryMs() {
+    return reissueBeforeExpiryMs;
+  }
+
+  public void setReissueBeforeExpiryMs(long reissueBeforeExpiryMs) {
+    this.reissueBeforeExpiryMs = reissueBeforeExpiryMs;
+  }
 }
@@ -16,10 +16,13 @@
 package org.gbif.registry.security.jwt;
 
 import org.gbif.api.model.common.GbifUser;
+import org.gbif.registry.security.jwt.JwtAuthenticationCache.VerifiedToken;
 import org.gbif.ws.security.GbifAuthentication;
 import org.gbif.ws.security.GbifAuthenticationToken;
+import org.gbif.ws.security.GbifUserPrincipal;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.Optional;
 import java.util.regex.Pattern;
 
@@ -30,21 +33,24 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import io.jsonwebtoken.Claims;
+
 import static org.gbif.ws.util.SecurityConstants.HEADER_TOKEN;
 
 /**
  * Filter to validate the JWT tokens.
  *
- * <p>If the token is not present this validation is skipped.
+ * <p>If the token is not present this validation is skipped. Verified tokens are kept in the
+ * {@link JwtAuthenticationCache} for a short while, so clients repeating requests with the same
+ * token don't cost a user lookup each. A new token is only issued when the current one is about to
+ * expire, see {@link JwtConfiguration#getReissueBeforeExpiryMs()}.
  */
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
@@ -54,17 +60,20 @@ public class JwtRequestFilter extends OncePerRequestFilter {
   // Patterns that catches case insensitive versions of word 'bearer'
   private static final Pattern BEARER_PATTERN = Pattern.compile("(?i)bearer");
 
-  private final UserDetailsService userDetailsService;
   private final JwtAuthenticateService jwtAuthenticateService;
   private final JwtIssuanceService jwtIssuanceService;
+  private final JwtAuthenticationCache jwtAuthenticationCache;
+  private final long reissueBeforeExpiryMs;
 
   public JwtRequestFilter(
-      @Qualifier("registryUserDetailsService") UserDetailsService userDetailsService,
       JwtAuthenticateService jwtAuthenticateService,
-      JwtIssuanceService jwtIssuanceService) {
-    this.userDetailsService = userDetailsService;
+      JwtIssuanceService jwtIssuanceService,
+      JwtAuthenticationCache jwtAuthenticationCache,
+      JwtConfiguration jwtConfiguration) {
     this.jwtAuthenticateService = jwtAuthenticateService;
     this.jwtIssuanceService = jwtIssuanceService;
+    this.jwtAuthenticationCache = jwtAuthenticationCache;
+    this.reissueBeforeExpiryMs = jwtConfiguration.getReissueBeforeExpiryMs();
   }
 
   @Override
@@ -78,20 +87,20 @@ public class JwtRequestFilter extends OncePerRequestFilter {
       LOG.debug("No JWT token present.");
     } else {
       try {
-        final GbifUser gbifUser = jwtAuthenticateService.authenticate(token.get());
-
-        LOG.debug("JWT successfully validated for user {}", gbifUser.getUserName());
+        final VerifiedToken verifiedToken = verify(token.get());
+        final UserDetails userDetails = verifiedToken.getUserDetails();
 
-        final UserDetails userDetails =
-            userDetailsService.loadUserByUsername(gbifUser.getUserName());
+        LOG.debug("JWT successfully validated for user {}", userDetails.getUsername());
 
         final GbifAuthentication gbifAuthentication =
             new GbifAuthenticationToken(userDetails, userDetails.getAuthorities());
         SecurityContextHolder.getContext().setAuthentication(gbifAuthentication);
 
-        // refresh the token and add it to the headers
-        final String newToken = jwtIssuanceService.generateJwt(gbifUser.getUserName());
-        response.addHeader(HEADER_TOKEN, newToken);
+        // refresh the token when it expires soon and add it to the headers
+        if (verifiedToken.getExpiresAt() - System.currentTimeMillis() < reissueBeforeExpiryMs) {
+          final String newToken = jwtIssuanceService.generateJwt(userDetails.getUsername());
+          response.addHeader(HEADER_TOKEN, newToken);
+        }
       } catch (GbifJwtException e) {
         LOG.warn("JWT validation failed: {}", e.getErrorCode());
         response.setStatus(HttpStatus.UNAUTHORIZED.value());
@@ -101,6 +110,25 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     filterChain.doFilter(request, response);
   }
 
+  /** Takes the token from the cache, or validates it and looks its user up. */
+  private VerifiedToken verify(String token) throws GbifJwtException {
+    VerifiedToken cached = jwtAuthenticationCache.get(token);
+    if (cached != null) {
+      return cached;
+    }
+
+    long generation = jwtAuthenticationCache.generation();
+    Claims claims = jwtAuthenticateService.validate(token);
+    GbifUser gbifUser = jwtAuthenticateService.getUser(claims);
+    Date expiration = claims.getExpiration();
+    VerifiedToken verifiedToken =
+        new VerifiedToken(
+            new GbifUserPrincipal(gbifUser),
+            expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+    jwtAuthenticationCache.put(token, verifiedToken, generation);
+    return verifiedToken;
+  }
+
   /** Tries to find the token in the {@link HttpHeaders#AUTHORIZATION} header. */
   public Optional<String> findTokenInRequest(HttpServletRequest request) {
     // check header first
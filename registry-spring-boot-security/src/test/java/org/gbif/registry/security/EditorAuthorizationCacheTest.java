@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.security;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.registry.events.CreateEvent;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.security.EditorAuthorizationCache.Type;
+
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EditorAuthorizationCacheTest {
+
+  private static final String USERNAME = "user";
+
+  @Mock private EventManager mockEventManager;
+
+  private EditorAuthorizationCache cache;
+  private SimpleMeterRegistry registry;
+
+  @Before
+  public void setup() {
+    cache = new EditorAuthorizationCache(100, 10, mockEventManager);
+    registry = new SimpleMeterRegistry();
+    cache.bindTo(registry);
+  }
+
+  @Test
+  public void testMetricsAreUpdated() {
+    // GIVEN
+    UUID key = UUID.randomUUID();
+
+    // WHEN
+    assertTrue(cache.get(USERNAME, key, Type.DATASET, () -> true));
+    assertTrue(cache.get(USERNAME, key, Type.DATASET, () -> false));
+    assertTrue(cache.get(USERNAME, key, Type.DATASET, () -> false));
+
+    // THEN
+    assertEquals(2, gets("hit"), 0);
+    assertEquals(1, gets("miss"), 0);
+    assertEquals(1, size(), 0);
+
+    // WHEN
+    cache.invalidateUser(USERNAME);
+
+    // THEN
+    assertEquals(0, size(), 0);
+  }
+
+  @Test
+  public void testInvalidationEvictsOnlyTheEntity() {
+    // GIVEN
+    UUID created = UUID.randomUUID();
+    UUID other = UUID.randomUUID();
+    cache.get(USERNAME, created, Type.DATASET, () -> false);
+    cache.get("other", created, Type.ENTITY, () -> false);
+    cache.get(USERNAME, other, Type.DATASET, () -> true);
+    Dataset dataset = new Dataset();
+    dataset.setKey(created);
+
+    // WHEN
+    cache.created(CreateEvent.newInstance(dataset, Dataset.class));
+
+    // THEN the denials of the new entity are gone, the other decision is kept
+    assertEquals(1, cache.size());
+    assertTrue(cache.get(USERNAME, created, Type.DATASET, () -> true));
+    assertTrue(cache.get(USERNAME, other, Type.DATASET, () -> false));
+  }
+
+  @Test
+  public void testIndexFollowsEvictions() {
+    // WHEN more decisions are taken than the cache holds
+    for (int i = 0; i < 250; i++) {
+      assertFalse(cache.get(USERNAME, UUID.randomUUID(), Type.DATASET, () -> false));
+    }
+
+    // THEN the evicted ones are not indexed anymore
+    assertTrue(cache.size() <= 100);
+    assertEquals(cache.size(), cache.indexedEntityKeys());
+
+    // WHEN
+    cache.invalidateUser(USERNAME);
+
+    // THEN
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.indexedEntityKeys());
+  }
+
+  private double size() {
+    return registry.get("cache.size").tag("cache", "editorAuthorization").gauge().value();
+  }
+
+  private double gets(String result) {
+    return registry
+        .get("cache.gets")
+        .tag("cache", "editorAuthorization")
+        .tag("result", result)
+        .functionCounter()
+        .count();
+  }
+}
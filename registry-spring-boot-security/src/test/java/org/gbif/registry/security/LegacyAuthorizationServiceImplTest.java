@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.security;
+
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.events.DeleteEvent;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.events.UpdateEvent;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.InstallationMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.ws.WebApplicationException;
+import org.gbif.ws.security.LegacyRequestAuthorization;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LegacyAuthorizationServiceImplTest {
+
+  private static final UUID ORGANIZATION_KEY = UUID.randomUUID();
+  private static final UUID INSTALLATION_KEY = UUID.randomUUID();
+
+  @Mock private OrganizationMapper mockOrganizationMapper;
+  @Mock private DatasetMapper mockDatasetMapper;
+  @Mock private InstallationMapper mockInstallationMapper;
+  @Mock private EventManager mockEventManager;
+
+  private LegacyCredentialCache cache;
+  private LegacyAuthorizationServiceImpl service;
+
+  @Before
+  public void setup() {
+    cache = new LegacyCredentialCache(100, 300, mockEventManager);
+    service =
+        new LegacyAuthorizationServiceImpl(
+            mockOrganizationMapper, mockDatasetMapper, mockInstallationMapper, cache);
+  }
+
+  @Test
+  public void testVerifiedCredentialsAreCached() {
+    // GIVEN
+    when(mockOrganizationMapper.getCredentials(ORGANIZATION_KEY))
+        .thenReturn(organization("password"));
+
+    // WHEN
+    for (int i = 0; i < 3; i++) {
+      LegacyRequestAuthorization authorization = authenticate(ORGANIZATION_KEY, "password");
+
+      // THEN
+      assertEquals(ORGANIZATION_KEY, authorization.getUserKey());
+    }
+    verify(mockOrganizationMapper, times(1)).getCredentials(ORGANIZATION_KEY);
+    assertEquals(2, cache.stats().hitCount());
+  }
+
+  @Test
+  public void testWrongPasswordIsNotCached() {
+    // GIVEN
+    when(mockOrganizationMapper.getCredentials(ORGANIZATION_KEY))
+        .thenReturn(organization("password"));
+
+    // WHEN
+    assertTrue(rejected(ORGANIZATION_KEY, "wrong"));
+    assertTrue(rejected(ORGANIZATION_KEY, "wrong"));
+
+    // THEN
+    verify(mockOrganizationMapper, times(2)).getCredentials(ORGANIZATION_KEY);
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testOrganizationPasswordRotation() {
+    // GIVEN
+    Organization before = organization("old");
+    when(mockOrganizationMapper.getCredentials(ORGANIZATION_KEY)).thenReturn(before);
+    authenticate(ORGANIZATION_KEY, "old");
+
+    // WHEN
+    Organization after = organization("new");
+    when(mockOrganizationMapper.getCredentials(ORGANIZATION_KEY)).thenReturn(after);
+    cache.updated(UpdateEvent.newInstance(after, before, Organization.class));
+
+    // THEN
+    assertTrue(rejected(ORGANIZATION_KEY, "old"));
+    assertFalse(rejected(ORGANIZATION_KEY, "new"));
+    assertFalse(rejected(ORGANIZATION_KEY, "new"));
+    verify(mockOrganizationMapper, times(3)).getCredentials(ORGANIZATION_KEY);
+  }
+
+  @Test
+  public void testPasswordChangeRacingVerification() throws Exception {
+    // GIVEN a password changed within a transaction, not committed yet
+    Organization before = organization("old");
+    Organization after = organization("new");
+    when(mockOrganizationMapper.getCredentials(ORGANIZATION_KEY)).thenReturn(before);
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      cache.updated(UpdateEvent.newInstance(after, before, Organization.class));
+
+      // WHEN a concurrent request verifies the former password meanwhile
+      CompletableFuture.runAsync(() -> authenticate(ORGANIZATION_KEY, "old")).get();
+      assertEquals(1, cache.size());
+
+      // AND the transaction commits
+      when(mockOrganizationMapper.getCredentials(ORGANIZATION_KEY)).thenReturn(after);
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(TransactionSynchronization::afterCommit);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    // THEN the former password is not accepted from the cache
+    assertEquals(0, cache.size());
+    assertTrue(rejected(ORGANIZATION_KEY, "old"));
+    assertFalse(rejected(ORGANIZATION_KEY, "new"));
+  }
+
+  @Test
+  public void testDeletedInstallationIsRejected() {
+    // GIVEN
+    Installation installation = new Installation();
+    installation.setKey(INSTALLATION_KEY);
+    installation.setPassword("password");
+    when(mockInstallationMapper.getCredentials(INSTALLATION_KEY)).thenReturn(installation);
+    authenticate(INSTALLATION_KEY, "password");
+
+    // WHEN
+    when(mockInstallationMapper.getCredentials(INSTALLATION_KEY)).thenReturn(null);
+    cache.deleted(DeleteEvent.newInstance(installation, Installation.class));
+
+    // THEN
+    assertTrue(rejected(INSTALLATION_KEY, "password"));
+  }
+
+  private boolean rejected(UUID key, String password) {
+    try {
+      authenticate(key, password);
+      return false;
+    } catch (WebApplicationException e) {
+      return true;
+    }
+  }
+
+  private LegacyRequestAuthorization authenticate(UUID key, String password) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    String credentials = key + ":" + password;
+    request.addHeader(
+        HttpHeaders.AUTHORIZATION,
+        "Basic "
+            + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+    return service.authenticate(request);
+  }
+
+  private static Organization organization(String password) {
+    Organization organization = new Organization();
+    organization.setKey(ORGANIZATION_KEY);
+    organization.setPassword(password);
+    return organization;
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.security.jwt;
+
+import org.gbif.api.model.common.GbifUser;
+import org.gbif.api.vocabulary.UserRole;
+import org.gbif.registry.identity.service.IdentityService;
+import org.gbif.ws.security.GbifUserPrincipal;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import static org.gbif.ws.util.SecurityConstants.BEARER_SCHEME_PREFIX;
+import static org.gbif.ws.util.SecurityConstants.HEADER_TOKEN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JwtRequestFilterTest {
+
+  private static final String USERNAME = "user";
+  private static final String ISSUER = "GBIF-REGISTRY";
+  private static final String SIGNING_KEY = "03bee45dc7ecfb7f3bdd1f7171add974";
+
+  @Mock private IdentityService mockIdentityService;
+
+  private JwtAuthenticationCache cache;
+  private JwtRequestFilter filter;
+  private GbifUser user;
+
+  @Before
+  public void setup() {
+    JwtConfiguration configuration = configuration(1800000);
+    cache = new JwtAuthenticationCache(100, 60);
+    filter =
+        new JwtRequestFilter(
+            new JwtAuthenticateService(configuration, mockIdentityService),
+            new JwtIssuanceServiceImpl(configuration),
+            cache,
+            configuration);
+
+    user = new GbifUser();
+    user.setUserName(USERNAME);
+    user.setEmail("user@gbif.org");
+    user.setRoles(EnumSet.of(UserRole.USER));
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void testRepeatedRequestsLookUpOnce() throws Exception {
+    // GIVEN
+    when(mockIdentityService.get(USERNAME)).thenReturn(user);
+    String token = token(1800000);
+
+    // WHEN
+    for (int i = 0; i < 3; i++) {
+      MockHttpServletResponse response = filter(token);
+
+      // THEN
+      assertEquals(HttpStatus.OK.value(), response.getStatus());
+      assertEquals(USERNAME, authentication().getName());
+      // far from its expiration, the token is kept
+      assertNull(response.getHeader(HEADER_TOKEN));
+    }
+    verify(mockIdentityService, times(1)).get(USERNAME);
+    assertEquals(2, cache.stats().hitCount());
+  }
+
+  @Test
+  public void testTokenNearExpiryIsReissued() throws Exception {
+    // GIVEN
+    when(mockIdentityService.get(USERNAME)).thenReturn(user);
+    String token = token(300000);
+
+    // WHEN
+    MockHttpServletResponse response = filter(token);
+
+    // THEN
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertNotNull(response.getHeader(HEADER_TOKEN));
+    assertNotEquals(token, response.getHeader(HEADER_TOKEN));
+  }
+
+  @Test
+  public void testDeletedUserIsRejected() throws Exception {
+    // GIVEN
+    when(mockIdentityService.get(USERNAME)).thenReturn(user);
+    String token = token(1800000);
+    assertEquals(HttpStatus.OK.value(), filter(token).getStatus());
+
+    // WHEN
+    when(mockIdentityService.get(USERNAME)).thenReturn(null);
+    cache.invalidateUser(USERNAME);
+    MockHttpServletResponse response = filter(token);
+
+    // THEN
+    assertEquals(HttpStatus.UNAUTHORIZED.value(), response.getStatus());
+    assertNull(authentication());
+    verify(mockIdentityService, times(2)).get(USERNAME);
+  }
+
+  @Test
+  public void testRoleChangeIsApplied() throws Exception {
+    // GIVEN
+    when(mockIdentityService.get(USERNAME)).thenReturn(user);
+    String token = token(1800000);
+    filter(token);
+    assertEquals(authorities(new GbifUserPrincipal(user)), authorities(authentication()));
+
+    // WHEN
+    GbifUser admin = new GbifUser();
+    admin.setUserName(USERNAME);
+    admin.setEmail("user@gbif.org");
+    admin.setRoles(EnumSet.of(UserRole.USER, UserRole.REGISTRY_ADMIN));
+    when(mockIdentityService.get(USERNAME)).thenReturn(admin);
+    cache.invalidateUser(USERNAME);
+    SecurityContextHolder.clearContext();
+    filter(token);
+
+    // THEN
+    assertEquals(authorities(new GbifUserPrincipal(admin)), authorities(authentication()));
+    verify(mockIdentityService, times(2)).get(USERNAME);
+  }
+
+  @Test
+  public void testExpiredTokenIsRejected() throws Exception {
+    // GIVEN
+    when(mockIdentityService.get(USERNAME)).thenReturn(user);
+    String token = token(1000);
+    assertEquals(HttpStatus.OK.value(), filter(token).getStatus());
+
+    // WHEN the token expires while cached
+    Thread.sleep(2000);
+    SecurityContextHolder.clearContext();
+    MockHttpServletResponse response = filter(token);
+
+    // THEN
+    assertEquals(HttpStatus.UNAUTHORIZED.value(), response.getStatus());
+    assertNull(authentication());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testInvalidTokenIsNotCached() throws Exception {
+    // GIVEN
+    JwtConfiguration wrongKey = configuration(1800000);
+    wrongKey.setSigningKey("fake");
+    String token = new JwtIssuanceServiceImpl(wrongKey).generateJwt(USERNAME);
+
+    // WHEN
+    MockHttpServletResponse response = filter(token);
+
+    // THEN
+    assertEquals(HttpStatus.UNAUTHORIZED.value(), response.getStatus());
+    assertEquals(0, cache.size());
+  }
+
+  private MockHttpServletResponse filter(String token) throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader(HttpHeaders.AUTHORIZATION, BEARER_SCHEME_PREFIX + token);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request, response, new MockFilterChain());
+    return response;
+  }
+
+  private String token(long expiryTimeInMs) {
+    return new JwtIssuanceServiceImpl(configuration(expiryTimeInMs)).generateJwt(USERNAME);
+  }
+
+  private static Set<String> authorities(UserDetails userDetails) {
+    return AuthorityUtils.authorityListToSet(userDetails.getAuthorities());
+  }
+
+  private static Set<String> authorities(Authentication authentication) {
+    return AuthorityUtils.authorityListToSet(authentication.getAuthorities());
+  }
+
+  private static Authentication authentication() {
+    return SecurityContextHolder.getContext().getAuthentication();
+  }
+
+  private static JwtConfiguration configuration(long expiryTimeInMs) {
+    JwtConfiguration configuration = new JwtConfiguration();
+    configuration.setExpiryTimeInMs(expiryTimeInMs);
+    configuration.setIssuer(ISSUER);
+    configuration.setSigningKey(SIGNING_KEY);
+    configuration.setReissueBeforeExpiryMs(600000);
+    return configuration;
+  }
+}
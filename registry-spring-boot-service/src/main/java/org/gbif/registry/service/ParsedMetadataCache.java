@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service;
+
+import org.gbif.api.model.registry.Citation;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Metadata;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.registry.events.ChangedComponentEvent;
+import org.gbif.registry.events.DeleteEvent;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.events.UpdateEvent;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.eventbus.Subscribe;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Cache of the datasets parsed from stored metadata documents, which saves parsing the preferred
+ * document again on every dataset read.
+ *
+ * <p>Entries are keyed by the metadata key and its created timestamp. Stored documents are never
+ * modified, a new document gets a new key, so an entry can't become stale as long as callers look
+ * up the current preferred document first. Entries of a dataset are also evicted when the dataset
+ * or its metadata change, to release the memory early.
+ *
+ * <p>The cache is bounded by the total size of the parsed documents. Cached instances are never
+ * handed out, callers always get a copy they are free to modify.
+ */
+@SuppressWarnings("UnstableApiUsage")
+@Service
+public class ParsedMetadataCache implements MeterBinder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParsedMetadataCache.class);
+
+  private final Cache<Key, ParsedDocument> cache;
+
+  public ParsedMetadataCache(
+      @Value("${registry.metadata.cache.maxDocumentBytes:52428800}") long maxDocumentBytes,
+      EventManager eventManager) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxDocumentBytes)
+            .weigher((Key key, ParsedDocument value) -> value.documentSize)
+            .recordStats()
+            .build();
+    eventManager.register(this);
+  }
+
+  /** @return a copy of the dataset parsed from the given metadata, or null if not cached */
+  @Nullable
+  public Dataset get(Metadata metadata) {
+    ParsedDocument parsed = cache.getIfPresent(Key.of(metadata));
+    return parsed != null ? copy(parsed.dataset) : null;
+  }
+
+  /**
+   * Caches the dataset parsed from the given metadata document.
+   *
+   * @param documentSize size of the document in bytes, used to bound the cache
+   * @return a copy of the cached dataset
+   */
+  public Dataset put(Metadata metadata, Dataset dataset, int documentSize) {
+    cache.put(Key.of(metadata), new ParsedDocument(dataset, documentSize));
+    return copy(dataset);
+  }
+
+  /** Evicts all the entries of the given dataset. */
+  public void invalidate(UUID datasetKey) {
+    cache.asMap().keySet().removeIf(k -> k.datasetKey.equals(datasetKey));
+  }
+
+  /** @return the hit, miss and eviction statistics of the cache */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  /** Publishes the size, hits and misses, e.g. to see whether the cache is large enough. */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    GuavaCacheMetrics.monitor(registry, cache, "parsedMetadata");
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void updated(UpdateEvent<T> event) {
+    if (event.getObjectClass().equals(Dataset.class)) {
+      invalidate(event.getNewObject().getKey());
+    }
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void deleted(DeleteEvent<T> event) {
+    if (event.getObjectClass().equals(Dataset.class)) {
+      invalidate(event.getOldObject().getKey());
+    }
+  }
+
+  @Subscribe
+  public final void updatedComponent(ChangedComponentEvent event) {
+    if (event.getTargetClass().equals(Dataset.class)
+        && event.getComponentClass().equals(Metadata.class)) {
+      LOG.debug("Metadata of dataset {} changed", event.getTargetEntityKey());
+      invalidate(event.getTargetEntityKey());
+    }
+  }
+
+  /**
+   * Shallow copy of the dataset, with new instances of the parts that are modified when a parsed
+   * dataset is merged with the persisted one.
+   */
+  private static Dataset copy(Dataset source) {
+    Dataset target = new Dataset();
+    BeanUtils.copyProperties(source, target);
+    target.setContacts(copyOf(source.getContacts()));
+    target.setEndpoints(copyOf(source.getEndpoints()));
+    target.setIdentifiers(copyOf(source.getIdentifiers()));
+    target.setMachineTags(copyOf(source.getMachineTags()));
+    target.setTags(copyOf(source.getTags()));
+    target.setComments(copyOf(source.getComments()));
+    if (source.getCitation() != null) {
+      Citation citation = new Citation();
+      citation.setText(source.getCitation().getText());
+      citation.setIdentifier(source.getCitation().getIdentifier());
+      target.setCitation(citation);
+    }
+    return target;
+  }
+
+  private static <T> List<T> copyOf(@Nullable List<T> list) {
+    return list != null ? new ArrayList<>(list) : new ArrayList<>();
+  }
+
+  private static final class ParsedDocument {
+
+    private final Dataset dataset;
+    private final int documentSize;
+
+    private ParsedDocument(Dataset dataset, int documentSize) {
+      this.dataset = dataset;
+      this.documentSize = documentSize;
+    }
+  }
+
+  private static final class Key {
+
+    private final UUID datasetKey;
+    private final int metadataKey;
+    private final Date created;
+
+    private Key(UUID datasetKey, int metadataKey, Date created) {
+      this.datasetKey = datasetKey;
+      this.metadataKey = metadataKey;
+      this.created = created;
+    }
+
+    private static Key of(Metadata metadata) {
+      return new Key(metadata.getDatasetKey(), metadata.getKey(), metadata.getCreated());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return metadataKey == key.metadataKey
+          && Objects.equals(datasetKey, key.datasetKey)
+          && Objects.equals(created, key.created);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(datasetKey, metadataKey, created);
+    }
+  }
+}
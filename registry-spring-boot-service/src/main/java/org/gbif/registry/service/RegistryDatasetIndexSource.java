@@ -0,0 +1,212 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service;
+
+import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.metadata.EMLWriter;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.InstallationMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.persistence.service.DatasetBatchLoader;
+import org.gbif.registry.search.dataset.indexing.DatasetIndexSource;
+import org.gbif.registry.search.dataset.indexing.RealtimeDatasetIndexSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * {@link DatasetIndexSource} reading straight from the registry database, so a full reindex
+ * doesn't go through the public API.
+ *
+ * <p>The datasets are streamed with a server side cursor and completed batch by batch with their
+ * sub resources and the preferred metadata document. The metadata document given to the index is
+ * the EML generated from the complete dataset, as served by the API. Installations and
+ * organizations are read once per run, keeping up to {@code indexing.source.cacheMaxSize} of each.
+ *
+ * <p>As a {@link RealtimeDatasetIndexSource} the datasets affected by a change are resolved with
+ * queries returning their keys only, and the changed datasets are read a batch at a time.
+ */
+@Service
+public class RegistryDatasetIndexSource implements RealtimeDatasetIndexSource {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RegistryDatasetIndexSource.class);
+
+  private static final EMLWriter EML_WRITER = EMLWriter.newInstance();
+
+  private final DatasetMapper datasetMapper;
+  private final DatasetBatchLoader datasetBatchLoader;
+  private final RegistryDatasetService registryDatasetService;
+  private final LoadingCache<UUID, Optional<Installation>> installations;
+  private final LoadingCache<UUID, Optional<Organization>> organizations;
+
+  public RegistryDatasetIndexSource(
+      DatasetMapper datasetMapper,
+      DatasetBatchLoader datasetBatchLoader,
+      RegistryDatasetService registryDatasetService,
+      InstallationMapper installationMapper,
+      OrganizationMapper organizationMapper,
+      @Value("${indexing.source.cacheMaxSize:10000}") long cacheMaxSize) {
+    this.datasetMapper = datasetMapper;
+    this.datasetBatchLoader = datasetBatchLoader;
+    this.registryDatasetService = registryDatasetService;
+    this.installations =
+        CacheBuilder.newBuilder()
+            .maximumSize(cacheMaxSize)
+            .build(
+                new CacheLoader<UUID, Optional<Installation>>() {
+                  @Override
+                  public Optional<Installation> load(UUID key) {
+                    return Optional.ofNullable(installationMapper.get(key));
+                  }
+                });
+    this.organizations =
+        CacheBuilder.newBuilder()
+            .maximumSize(cacheMaxSize)
+            .build(
+                new CacheLoader<UUID, Optional<Organization>>() {
+                  @Override
+                  public Optional<Organization> load(UUID key) {
+                    return Optional.ofNullable(organizationMapper.get(key));
+                  }
+                });
+  }
+
+  /**
+   * Streams all the datasets within a read only transaction, which keeps a database connection for
+   * as long as the consumer takes to process all the batches.
+   */
+  @Transactional(readOnly = true)
+  @Override
+  public void forEachBatch(int batchSize, Consumer<List<Dataset>> batchConsumer) {
+    // a new run reads the current installations and organizations
+    installations.invalidateAll();
+    organizations.invalidateAll();
+
+    try (Cursor<Dataset> cursor = datasetMapper.cursorShallow()) {
+      List<Dataset> batch = new ArrayList<>(batchSize);
+      for (Dataset dataset : cursor) {
+        batch.add(dataset);
+        if (batch.size() == batchSize) {
+          batchConsumer.accept(complete(batch));
+          batch = new ArrayList<>(batchSize);
+        }
+      }
+      if (!batch.isEmpty()) {
+        batchConsumer.accept(complete(batch));
+      }
+      LOG.info("Read {} datasets from the database", cursor.getCurrentIndex() + 1);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Reads the datasets and their sub resources in a few queries. The installations and
+   * organizations of these datasets are read again afterwards, as one of them might be the change
+   * being indexed. The other cached entries are left alone, as a rebuild might be using them.
+   */
+  @Override
+  public List<Dataset> getDatasets(Collection<UUID> datasetKeys) {
+    if (datasetKeys.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<Dataset> datasets = complete(datasetMapper.listShallowByKeys(datasetKeys));
+    Set<UUID> installationKeys = new HashSet<>();
+    for (Dataset dataset : datasets) {
+      if (dataset.getInstallationKey() != null) {
+        installationKeys.add(dataset.getInstallationKey());
+      }
+      if (dataset.getPublishingOrganizationKey() != null) {
+        organizations.invalidate(dataset.getPublishingOrganizationKey());
+      }
+    }
+    for (UUID installationKey : installationKeys) {
+      installations.invalidate(installationKey);
+      // the hosting organization, read with the current installation
+      installations
+          .getUnchecked(installationKey)
+          .map(Installation::getOrganizationKey)
+          .ifPresent(organizations::invalidate);
+    }
+    return datasets;
+  }
+
+  @Override
+  public Collection<UUID> getOrganizationDatasetKeys(UUID organizationKey) {
+    return datasetMapper.listKeysByOrganization(organizationKey);
+  }
+
+  @Override
+  public Collection<UUID> getInstallationDatasetKeys(UUID installationKey) {
+    return datasetMapper.listKeysByInstallation(installationKey);
+  }
+
+  @Override
+  public InputStream getMetadataDocument(Dataset dataset) {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      EML_WRITER.writeTo(dataset, out);
+      return new ByteArrayInputStream(out.toByteArray());
+    } catch (IOException | RuntimeException e) {
+      LOG.error("Unable to write the metadata document of dataset {}", dataset.getKey(), e);
+      return null;
+    }
+  }
+
+  @Override
+  public Installation getInstallation(UUID installationKey) {
+    return installations.getUnchecked(installationKey).orElse(null);
+  }
+
+  @Override
+  public Organization getOrganization(UUID organizationKey) {
+    return organizations.getUnchecked(organizationKey).orElse(null);
+  }
+
+  /** Adds the sub resources and merges the preferred metadata document into the datasets. */
+  private List<Dataset> complete(List<Dataset> batch) {
+    datasetBatchLoader.loadSubResources(batch);
+    return registryDatasetService
+        .augmentWithMetadata(new PagingResponse<>(0L, batch.size(), null, batch))
+        .getResults();
+  }
+}
@@ -54,8 +54,12 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
 @Service
-public class RegistryDatasetServiceImpl implements RegistryDatasetService {
+public class RegistryDatasetServiceImpl implements RegistryDatasetService, MeterBinder {
 
   private static final Logger LOG = LoggerFactory.getLogger(RegistryDatasetServiceImpl.class);
 
@@ -73,15 +77,22 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
   private final DatasetMapper datasetMapper;
   private final MetadataMapper metadataMapper;
   private final LoadingCache<UUID, Organization> organizationCache;
+  private final ParsedMetadataCache parsedMetadataCache;
+  private final TitleCache titleCache;
 
   public RegistryDatasetServiceImpl(
       MetadataMapper metadataMapper,
       OrganizationMapper organizationMapper,
-      DatasetMapper datasetMapper) {
+      DatasetMapper datasetMapper,
+      ParsedMetadataCache parsedMetadataCache,
+      TitleCache titleCache) {
     this.metadataMapper = metadataMapper;
+    this.parsedMetadataCache = parsedMetadataCache;
+    this.titleCache = titleCache;
     this.organizationCache =
         CacheBuilder.newBuilder()
             .expireAfterWrite(5, TimeUnit.MINUTES)
+            .recordStats()
             .build(
                 new CacheLoader<UUID, Organization>() {
                   @Override
@@ -95,7 +106,7 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
   @NullToNotFound
   @Override
   public Dataset get(UUID key) {
-    Dataset dataset = merge(getPreferredMetadataDataset(key), datasetMapper.get(key));
+    Dataset dataset = merge(getCachedPreferredMetadataDataset(key), datasetMapper.get(key));
     if (dataset == null) {
       return null;
     }
@@ -125,7 +136,7 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
   public PagingResponse<Dataset> augmentWithMetadata(PagingResponse<Dataset> resp) {
     List<Dataset> augmented = Lists.newArrayList();
     for (Dataset d : resp.getResults()) {
-      augmented.add(merge(getPreferredMetadataDataset(d.getKey()), d));
+      augmented.add(merge(getCachedPreferredMetadataDataset(d.getKey()), d));
     }
     resp.setResults(augmented);
     return resp;
@@ -228,7 +239,8 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
       Citation citation = dataset.getCitation() == null ? new Citation() : dataset.getCitation();
       citation.setText(
           CitationGenerator.generateCitation(
-              dataset, organizationCache.getUnchecked(dataset.getPublishingOrganizationKey())));
+              dataset,
+              titleCache.getTitle(Organization.class, dataset.getPublishingOrganizationKey())));
       dataset.setCitation(citation);
     }
   }
@@ -255,6 +267,39 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
     return null;
   }
 
+  /**
+   * Same as {@link #getPreferredMetadataDataset(UUID)} but reusing the parsed document from the
+   * {@link ParsedMetadataCache} when possible. The preferred document is always looked up, so a
+   * newly inserted document is parsed straight away.
+   */
+  @Nullable
+  private Dataset getCachedPreferredMetadataDataset(UUID key) {
+    List<Metadata> docs = listMetadata(key, null);
+    if (docs.isEmpty()) {
+      return null;
+    }
+
+    // the list is sorted by priority already, just pick the first!
+    Metadata preferred = docs.get(0);
+    Dataset cached = parsedMetadataCache.get(preferred);
+    if (cached != null) {
+      return cached;
+    }
+
+    ByteArrayWrapper document = metadataMapper.getDocument(preferred.getKey());
+    if (document == null) {
+      return null;
+    }
+    try (InputStream stream = new ByteArrayInputStream(document.getData())) {
+      return parsedMetadataCache.put(
+          preferred, DatasetParser.build(stream), document.getData().length);
+    } catch (IOException | IllegalArgumentException e) {
+      // Not sure if we should not propagate an Exception to return a 500 instead
+      LOG.error("Stored metadata document {} cannot be read", preferred.getKey(), e);
+    }
+    return null;
+  }
+
   @Override
   public List<Metadata> listMetadata(UUID datasetKey, @Nullable MetadataType type) {
     return metadataMapper.list(datasetKey, type);
@@ -270,6 +315,11 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
     return new ByteArrayInputStream(document.getData());
   }
 
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    GuavaCacheMetrics.monitor(registry, organizationCache, "datasetOrganizations");
+  }
+
   @Override
   public List<UUID> owningEntityKeys(@NotNull Dataset entity) {
     List<UUID> keys = new ArrayList<>();
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service;
+
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.registry.events.DeleteEvent;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.events.UpdateEvent;
+import org.gbif.registry.persistence.service.EntityTitleResolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.eventbus.Subscribe;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Cache of the titles of network entities in front of the {@link EntityTitleResolver}. The titles
+ * missing from the cache are resolved with a single query per call.
+ *
+ * <p>Entries are evicted when the entity is updated or deleted, again once the change commits, and
+ * expire after a while for changes made outside of this application. Keys of entities that don't exist are not cached.
+ */
+@Service
+public class TitleCache implements MeterBinder {
+
+  private final EntityTitleResolver entityTitleResolver;
+  private final Cache<Key, String> cache;
+
+  // incremented by every invalidation, so titles read meanwhile are not kept
+  private final AtomicLong generation = new AtomicLong();
+
+  public TitleCache(
+      EntityTitleResolver entityTitleResolver,
+      @Value("${registry.titles.cache.maxSize:100000}") long maxSize,
+      @Value("${registry.titles.cache.expireMinutes:60}") long expireMinutes,
+      EventManager eventManager) {
+    this.entityTitleResolver = entityTitleResolver;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+    eventManager.register(this);
+  }
+
+  /** @return the title of the entity or null if it doesn't exist */
+  @Nullable
+  public String getTitle(Class<? extends NetworkEntity> type, UUID key) {
+    return getTitles(type, Collections.singleton(key)).get(key);
+  }
+
+  /**
+   * Gets the titles of the given entities, deleted entities included.
+   *
+   * @param type type of the entities
+   * @param keys keys of the entities
+   * @return the titles by key, entities that don't exist are left out
+   */
+  public Map<UUID, String> getTitles(Class<? extends NetworkEntity> type, Collection<UUID> keys) {
+    Map<UUID, String> titles = new HashMap<>();
+    List<UUID> missing = new ArrayList<>();
+    for (UUID key : keys) {
+      if (key == null || titles.containsKey(key)) {
+        continue;
+      }
+      String title = cache.getIfPresent(new Key(type, key));
+      if (title != null) {
+        titles.put(key, title);
+      } else {
+        missing.add(key);
+      }
+    }
+    if (missing.isEmpty()) {
+      return titles;
+    }
+
+    long before = generation.get();
+    Map<UUID, String> resolved = entityTitleResolver.resolve(type, missing);
+    for (Map.Entry<UUID, String> title : resolved.entrySet()) {
+      if (title.getValue() != null) {
+        cache.put(new Key(type, title.getKey()), title.getValue());
+      }
+    }
+    if (generation.get() != before) {
+      // entities changed while resolving, the titles read might be stale
+      for (UUID key : resolved.keySet()) {
+        cache.invalidate(new Key(type, key));
+      }
+    }
+    titles.putAll(resolved);
+    return titles;
+  }
+
+  /** @return the hit, miss and eviction statistics of the cache */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  /** Publishes the statistics above, tagged as the {@code entityTitles} cache. */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    GuavaCacheMetrics.monitor(registry, cache, "entityTitles");
+  }
+
+  private void invalidate(Class<? extends NetworkEntity> type, UUID key) {
+    generation.incrementAndGet();
+    cache.invalidate(new Key(type, key));
+  }
+
+  /**
+   * Evicts the title at once and, within a transaction, once more after it commits: until then
+   * the former title is still read and could be cached again.
+   */
+  private void invalidateOnCommit(Class<? extends NetworkEntity> type, UUID key) {
+    invalidate(type, key);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              invalidate(type, key);
+            }
+          });
+    }
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void updated(UpdateEvent<T> event) {
+    if (entityTitleResolver.supports(event.getObjectClass())) {
+      invalidateOnCommit(event.getObjectClass(), event.getNewObject().getKey());
+    }
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void deleted(DeleteEvent<T> event) {
+    if (entityTitleResolver.supports(event.getObjectClass())) {
+      invalidateOnCommit(event.getObjectClass(), event.getOldObject().getKey());
+    }
+  }
+
+  private static final class Key {
+
+    private final Class<? extends NetworkEntity> type;
+    private final UUID key;
+
+    private Key(Class<? extends NetworkEntity> type, UUID key) {
+      this.type = type;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key other = (Key) o;
+      return type.equals(other.type) && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(type, key);
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import com.google.common.base.Preconditions;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * MyBatis plugin timing every mapper statement and recording the number of rows it returned or
+ * changed.
+ *
+ * <p>Meters are tagged with the statement, like {@code DatasetMapper.get}, and its SQL command.
+ * Statements failing with an exception are timed separately, tagged with the exception class.
+ * Nested selects run by a result map are part of the time of the statement using them. Cursors
+ * are timed until they are opened, their rows are fetched and counted by the caller.
+ */
+@Intercepts({
+  @Signature(
+      type = Executor.class,
+      method = "update",
+      args = {MappedStatement.class, Object.class}),
+  @Signature(
+      type = Executor.class,
+      method = "query",
+      args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+  @Signature(
+      type = Executor.class,
+      method = "query",
+      args = {
+        MappedStatement.class,
+        Object.class,
+        RowBounds.class,
+        ResultHandler.class,
+        CacheKey.class,
+        BoundSql.class
+      }),
+  @Signature(
+      type = Executor.class,
+      method = "queryCursor",
+      args = {MappedStatement.class, Object.class, RowBounds.class})
+})
+public class MapperMetricsInterceptor implements Interceptor {
+
+  public static final String STATEMENT_TIMER = "registry.mapper.statement";
+  public static final String ROWS_SUMMARY = "registry.mapper.rows";
+
+  private static final String NO_EXCEPTION = "none";
+
+  private final MeterRegistry registry;
+  // the meters of the successful executions, looked up once per statement
+  private final ConcurrentMap<String, StatementMeters> meters = new ConcurrentHashMap<>();
+
+  public MapperMetricsInterceptor(MeterRegistry registry) {
+    this.registry = Preconditions.checkNotNull(registry, "MeterRegistry can't be null");
+  }
+
+  @Override
+  public Object intercept(Invocation invocation) throws Throwable {
+    MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+    long start = monotonicTime();
+    Object result;
+    try {
+      result = invocation.proceed();
+    } catch (Throwable e) {
+      timer(statement, e.getClass().getSimpleName())
+          .record(monotonicTime() - start, TimeUnit.NANOSECONDS);
+      throw e;
+    }
+
+    StatementMeters statementMeters =
+        meters.computeIfAbsent(statement.getId(), id -> new StatementMeters(statement));
+    statementMeters.timer.record(monotonicTime() - start, TimeUnit.NANOSECONDS);
+    long rows = rows(result);
+    if (rows >= 0) {
+      statementMeters.rows.record(rows);
+    }
+    return result;
+  }
+
+  @Override
+  public Object plugin(Object target) {
+    return Plugin.wrap(target, this);
+  }
+
+  @Override
+  public void setProperties(Properties properties) {
+    // nothing to configure
+  }
+
+  private long monotonicTime() {
+    return registry.config().clock().monotonicTime();
+  }
+
+  private Timer timer(MappedStatement statement, String exception) {
+    return Timer.builder(STATEMENT_TIMER)
+        .description("Execution time of the MyBatis mapper statements")
+        .tag("statement", statementName(statement.getId()))
+        .tag("command", command(statement))
+        .tag("exception", exception)
+        .register(registry);
+  }
+
+  /** @return the rows selected or changed, -1 when the result doesn't tell */
+  private static long rows(Object result) {
+    if (result instanceof Collection) {
+      return ((Collection<?>) result).size();
+    }
+    if (result instanceof Integer) {
+      return (Integer) result;
+    }
+    return -1;
+  }
+
+  /** Drops the package of the mapper namespace, keeping the mapper and the statement names. */
+  static String statementName(String id) {
+    int method = id.lastIndexOf('.');
+    int mapper = method > 0 ? id.lastIndexOf('.', method - 1) : -1;
+    return id.substring(mapper + 1);
+  }
+
+  private static String command(MappedStatement statement) {
+    return statement.getSqlCommandType().name().toLowerCase(Locale.ENGLISH);
+  }
+
+  private class StatementMeters {
+
+    private final Timer timer;
+    private final DistributionSummary rows;
+
+    private StatementMeters(MappedStatement statement) {
+      timer = timer(statement, NO_EXCEPTION);
+      rows =
+          DistributionSummary.builder(ROWS_SUMMARY)
+              .description("Rows returned or changed by the MyBatis mapper statements")
+              .baseUnit("rows")
+              .tag("statement", statementName(statement.getId()))
+              .tag("command", command(statement))
+              .register(registry);
+    }
+  }
+}
@@ -25,6 +25,8 @@ import org.gbif.api.model.registry.MachineTag;
 import org.gbif.api.model.registry.NetworkEntity;
 import org.gbif.api.model.registry.Tag;
 import org.gbif.api.vocabulary.IdentifierType;
+import org.gbif.registry.domain.ws.KeysetPagingResponse;
+import org.gbif.registry.persistence.mapper.BaseNetworkEntityMapper;
 import org.gbif.registry.persistence.mapper.CommentMapper;
 import org.gbif.registry.persistence.mapper.CommentableMapper;
 import org.gbif.registry.persistence.mapper.ContactMapper;
@@ -38,8 +40,13 @@ import org.gbif.registry.persistence.mapper.MachineTaggableMapper;
 import org.gbif.registry.persistence.mapper.NetworkEntityMapper;
 import org.gbif.registry.persistence.mapper.TagMapper;
 import org.gbif.registry.persistence.mapper.TaggableMapper;
+import org.gbif.registry.persistence.mapper.paging.KeysetCursor;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
 
@@ -120,6 +127,107 @@ public class WithMyBatis {
         page.getOffset(), page.getLimit(), total, mapper.listByIdentifier(type, identifier, page));
   }
 
+  /**
+   * Keyset paging variant of {@link #list(NetworkEntityMapper, Pageable)}. Each page costs the same
+   * regardless of its depth, which makes it the cheapest way to harvest all the entities.
+   *
+   * @param mapper To use for the listing
+   * @param cursor The {@link KeysetPagingResponse#getNext()} token of the previous page, {@code
+   *     null} for the first page
+   * @param limit The maximum number of entities in the page
+   * @param count Whether to count the total number of entities, which is an extra query
+   * @return A keyset paging response
+   */
+  public <T extends NetworkEntity> KeysetPagingResponse<T> list(
+      NetworkEntityMapper<T> mapper, @Nullable String cursor, int limit, boolean count) {
+    return keysetPage(
+        mapper, cursor, limit, count ? () -> (long) mapper.count() : null, mapper::listAfter);
+  }
+
+  /**
+   * Keyset paging variant of {@link #search(NetworkEntityMapper, String, Pageable)}. The results
+   * are ordered by creation date instead of relevance.
+   */
+  public <T extends NetworkEntity> KeysetPagingResponse<T> search(
+      NetworkEntityMapper<T> mapper,
+      @Nullable String query,
+      @Nullable String cursor,
+      int limit,
+      boolean count) {
+    return keysetPage(
+        mapper,
+        cursor,
+        limit,
+        count ? () -> (long) mapper.count(query) : null,
+        (after, size) -> mapper.searchAfter(query, after, size));
+  }
+
+  /**
+   * Keyset paging variant of {@link #listByIdentifier(NetworkEntityMapper, IdentifierType, String,
+   * Pageable)}.
+   */
+  public <T extends NetworkEntity> KeysetPagingResponse<T> listByIdentifier(
+      NetworkEntityMapper<T> mapper,
+      @Nullable IdentifierType type,
+      String identifier,
+      @Nullable String cursor,
+      int limit,
+      boolean count) {
+    checkNotNull(identifier, "To list by identifier you must supply an identifier");
+    return keysetPage(
+        mapper,
+        cursor,
+        limit,
+        count ? () -> mapper.countByIdentifier(type, identifier) : null,
+        (after, size) -> mapper.listByIdentifierAfter(type, identifier, after, size));
+  }
+
+  /**
+   * Keyset paging variant of {@link #listByMachineTag(MachineTaggableMapper, String, String,
+   * String, Pageable)}.
+   */
+  public <T extends NetworkEntity> KeysetPagingResponse<T> listByMachineTag(
+      BaseNetworkEntityMapper<T> mapper,
+      String namespace,
+      @Nullable String name,
+      @Nullable String value,
+      @Nullable String cursor,
+      int limit,
+      boolean count) {
+    checkNotNull(namespace, "To list by machine tag you must supply a namespace");
+    return keysetPage(
+        mapper,
+        cursor,
+        limit,
+        count ? () -> mapper.countByMachineTag(namespace, name, value) : null,
+        (after, size) -> mapper.listByMachineTagAfter(namespace, name, value, after, size));
+  }
+
+  /**
+   * Fetches one row more than the limit to know whether there is a next page without counting.
+   *
+   * @param counter Supplier of the total count, or {@code null} to skip counting
+   */
+  private static <T extends NetworkEntity> KeysetPagingResponse<T> keysetPage(
+      NetworkEntityMapper<T> mapper,
+      @Nullable String cursor,
+      int limit,
+      @Nullable Supplier<Long> counter,
+      BiFunction<KeysetCursor, Integer, List<T>> fetcher) {
+    checkArgument(limit > 0, "The limit must be positive");
+    KeysetCursor after = cursor != null ? KeysetCursor.fromToken(cursor) : null;
+
+    List<T> results = fetcher.apply(after, limit + 1);
+    String next = null;
+    if (results.size() > limit) {
+      results = new ArrayList<>(results.subList(0, limit));
+      next = KeysetCursor.after(mapper, results.get(limit - 1)).toToken();
+    }
+
+    Long total = counter != null ? counter.get() : null;
+    return new KeysetPagingResponse<>(limit, cursor, next, total, results);
+  }
+
   @Transactional
   public int addComment(
       CommentMapper commentMapper,
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.config;
+
+import org.gbif.registry.persistence.MapperMetricsInterceptor;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Metrics of the registry published by the actuator. The caches, the event manager and the Varnish
+ * ban aggregator are meter binders of their own, this adds the timing of the mapper statements.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+  @Bean
+  public MapperMetricsInterceptor mapperMetricsInterceptor(MeterRegistry meterRegistry) {
+    return new MapperMetricsInterceptor(meterRegistry);
+  }
+}
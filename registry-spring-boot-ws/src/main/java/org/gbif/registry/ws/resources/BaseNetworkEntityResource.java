@@ -32,6 +32,7 @@ import org.gbif.api.service.registry.NetworkEntityService;
 import org.gbif.api.vocabulary.IdentifierType;
 import org.gbif.api.vocabulary.TagName;
 import org.gbif.api.vocabulary.TagNamespace;
+import org.gbif.registry.domain.ws.KeysetPagingResponse;
 import org.gbif.registry.events.ChangedComponentEvent;
 import org.gbif.registry.events.CreateEvent;
 import org.gbif.registry.events.DeleteEvent;
@@ -49,6 +50,7 @@ import org.gbif.registry.persistence.service.MapperServiceLocator;
 import org.gbif.registry.security.EditorAuthorizationService;
 import org.gbif.registry.security.SecurityContextCheck;
 import org.gbif.registry.security.UserRoles;
+import org.gbif.registry.service.TitleCache;
 import org.gbif.ws.WebApplicationException;
 
 import java.text.MessageFormat;
@@ -112,6 +114,9 @@ public class BaseNetworkEntityResource<T extends NetworkEntity> implements Netwo
 
   private static final Logger LOG = LoggerFactory.getLogger(BaseNetworkEntityResource.class);
 
+  // same maximum as the offset paging
+  private static final int MAX_CURSOR_LIMIT = 1000;
+
   private final BaseNetworkEntityMapper<T> mapper;
   private final CommentMapper commentMapper;
   private final MachineTagMapper machineTagMapper;
@@ -122,6 +127,7 @@ public class BaseNetworkEntityResource<T extends NetworkEntity> implements Netwo
   private final EventManager eventManager;
   private final EditorAuthorizationService userAuthService;
   private final WithMyBatis withMyBatis;
+  private final TitleCache titleCache;
   private final Class<T> objectClass;
 
   protected BaseNetworkEntityResource(
@@ -130,7 +136,8 @@ public class BaseNetworkEntityResource<T extends NetworkEntity> implements Netwo
       Class<T> objectClass,
       EventManager eventManager,
       EditorAuthorizationService userAuthService,
-      WithMyBatis withMyBatis) {
+      WithMyBatis withMyBatis,
+      TitleCache titleCache) {
     this.mapper = mapper;
     this.commentMapper = mapperServiceLocator.getCommentMapper();
     this.machineTagMapper = mapperServiceLocator.getMachineTagMapper();
@@ -142,6 +149,7 @@ public class BaseNetworkEntityResource<T extends NetworkEntity> implements Netwo
     this.eventManager = eventManager;
     this.userAuthService = userAuthService;
     this.withMyBatis = withMyBatis;
+    this.titleCache = titleCache;
   }
 
   /**
@@ -233,9 +241,11 @@ public class BaseNetworkEntityResource<T extends NetworkEntity> implements Netwo
   @PostMapping(value = "titles", consumes = MediaType.APPLICATION_JSON_VALUE)
   @Override
   public Map<UUID, String> getTitles(@RequestBody @NotNull Collection<UUID> keys) {
+    Map<UUID, String> found = titleCache.getTitles(objectClass, keys);
+    // keys not found are kept with a null title
     Map<UUID, String> titles = Maps.newHashMap();
     for (UUID key : keys) {
-      titles.put(key, mapper.title(key));
+      titles.put(key, found.get(key));
     }
     return titles;
   }
@@ -265,6 +275,53 @@ public class BaseNetworkEntityResource<T extends NetworkEntity> implements Netwo
     return listByIdentifier(null, identifier, page);
   }
 
+  /**
+   * Lists the entities using keyset (cursor) paging, which costs the same for every page unlike
+   * offset paging, and is meant for full harvests. Pages are chained with the {@code next} token of
+   * the response, and the total count is only calculated if requested.
+   *
+   * <p>Supports the same filters as the offset paged listing. Search results are ordered by
+   * creation date instead of relevance, and identifier and machine tag listings are ordered by key.
+   */
+  @GetMapping("cursor")
+  public KeysetPagingResponse<T> listWithCursor(
+      @Nullable @RequestParam(value = "q", required = false) String query,
+      @Nullable @RequestParam(value = "identifierType", required = false)
+          IdentifierType identifierType,
+      @Nullable @RequestParam(value = "identifier", required = false) String identifier,
+      @Nullable @RequestParam(value = "machineTagNamespace", required = false) String namespace,
+      @Nullable @RequestParam(value = "machineTagName", required = false) String name,
+      @Nullable @RequestParam(value = "machineTagValue", required = false) String value,
+      @Nullable @RequestParam(value = "cursor", required = false) String cursor,
+      @RequestParam(value = "limit", defaultValue = "20") int limit,
+      @RequestParam(value = "count", defaultValue = "false") boolean count) {
+    limit = Math.min(limit, MAX_CURSOR_LIMIT);
+    KeysetPagingResponse<T> response;
+    if (identifier != null) {
+      response =
+          withMyBatis.listByIdentifier(mapper, identifierType, identifier, cursor, limit, count);
+    } else if (namespace != null) {
+      response =
+          withMyBatis.listByMachineTag(mapper, namespace, name, value, cursor, limit, count);
+    } else {
+      // trim and handle null from given input
+      String q = query != null ? Strings.emptyToNull(CharMatcher.WHITESPACE.trimFrom(query)) : null;
+      response =
+          q == null
+              ? withMyBatis.list(mapper, cursor, limit, count)
+              : withMyBatis.search(mapper, q, cursor, limit, count);
+    }
+    return decorateResponse(response);
+  }
+
+  /**
+   * Hook to augment the entities of a keyset paging response the same way as the offset paged
+   * ones.
+   */
+  protected KeysetPagingResponse<T> decorateResponse(KeysetPagingResponse<T> response) {
+    return response;
+  }
+
   /**
    * This method ensures that the path variable for the key matches the entity's key, ensures that
    * the caller is authorized to perform the action and then adds the server controlled field
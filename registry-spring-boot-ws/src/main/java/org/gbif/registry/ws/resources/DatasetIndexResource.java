@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.resources;
+
+import org.gbif.registry.search.dataset.indexing.DatasetBulkIndexer;
+import org.gbif.registry.service.RegistryDatasetIndexSource;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static org.gbif.registry.security.UserRoles.ADMIN_ROLE;
+
+/**
+ * Administration of the dataset search index. This is a REST only (e.g. not part of the Java API)
+ * resource.
+ */
+@RestController
+@RequestMapping("dataset/index")
+public class DatasetIndexResource {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DatasetIndexResource.class);
+
+  private final DatasetBulkIndexer datasetBulkIndexer;
+  private final RegistryDatasetIndexSource datasetIndexSource;
+  private final AtomicBoolean running = new AtomicBoolean();
+  // a rebuild takes long and blocks on the database and Elasticsearch, not for the common pool
+  private final ExecutorService executor =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("dataset-index-rebuild")
+              .setDaemon(true)
+              .build());
+
+  public DatasetIndexResource(
+      DatasetBulkIndexer datasetBulkIndexer, RegistryDatasetIndexSource datasetIndexSource) {
+    this.datasetBulkIndexer = datasetBulkIndexer;
+    this.datasetIndexSource = datasetIndexSource;
+  }
+
+  /**
+   * Rebuilds the dataset index from the database in the background and points the alias to the new
+   * index once complete. Only one rebuild runs at a time.
+   */
+  @PostMapping("rebuild")
+  @Secured(ADMIN_ROLE)
+  public ResponseEntity<Void> rebuild() {
+    if (!running.compareAndSet(false, true)) {
+      return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+    CompletableFuture.runAsync(() -> datasetBulkIndexer.rebuild(datasetIndexSource), executor)
+        .whenComplete(
+            (result, error) -> {
+              running.set(false);
+              if (error != null) {
+                LOG.error("Dataset index rebuild failed", error);
+              }
+            });
+    return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+  }
+
+  @PreDestroy
+  public void close() {
+    executor.shutdownNow();
+  }
+}
@@ -41,6 +41,7 @@ import org.gbif.api.model.registry.search.DatasetSuggestResult;
 import org.gbif.api.service.registry.DatasetProcessStatusService;
 import org.gbif.api.service.registry.DatasetSearchService;
 import org.gbif.api.service.registry.DatasetService;
+import org.gbif.api.vocabulary.ContactType;
 import org.gbif.api.vocabulary.Country;
 import org.gbif.api.vocabulary.DatasetType;
 import org.gbif.api.vocabulary.IdentifierType;
@@ -52,8 +53,11 @@ import org.gbif.common.messaging.api.messages.StartCrawlMessage;
 import org.gbif.registry.doi.generator.DoiGenerator;
 import org.gbif.registry.doi.handler.DataCiteDoiHandlerStrategy;
 import org.gbif.registry.domain.ws.DatasetRequestSearchParams;
+import org.gbif.registry.domain.ws.KeysetPagingResponse;
+import org.gbif.registry.events.ChangedComponentEvent;
 import org.gbif.registry.events.EventManager;
 import org.gbif.registry.metadata.EMLWriter;
+import org.gbif.registry.metadata.MetadataDigest;
 import org.gbif.registry.metadata.parse.DatasetParser;
 import org.gbif.registry.persistence.WithMyBatis;
 import org.gbif.registry.persistence.mapper.ContactMapper;
@@ -63,34 +67,41 @@ import org.gbif.registry.persistence.mapper.IdentifierMapper;
 import org.gbif.registry.persistence.mapper.MetadataMapper;
 import org.gbif.registry.persistence.mapper.NetworkMapper;
 import org.gbif.registry.persistence.mapper.TagMapper;
+import org.gbif.registry.persistence.mapper.handler.ByteArrayWrapper;
+import org.gbif.registry.persistence.service.DatasetBatchLoader;
 import org.gbif.registry.persistence.service.MapperServiceLocator;
 import org.gbif.registry.security.EditorAuthorizationService;
 import org.gbif.registry.service.RegistryDatasetService;
+import org.gbif.registry.service.TitleCache;
 import org.gbif.ws.NotFoundException;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.StringWriter;
+import java.io.OutputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.validation.groups.Default;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.MediaType;
@@ -109,10 +120,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.google.common.base.Charsets;
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Strings;
 import com.google.common.io.ByteStreams;
-import com.google.common.io.CharStreams;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -127,6 +137,12 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
   private static final Logger LOG = LoggerFactory.getLogger(DatasetResource.class);
 
   private static final int ALL_DATASETS_LIMIT = 200;
+  private static final EMLWriter EML_WRITER = EMLWriter.newInstance();
+  // left out when checking if an update changes a dataset
+  private static final String[] NON_CORE_PROPERTIES = {
+    "contacts", "identifiers", "tags", "machineTags", "endpoints", "comments", "modified",
+    "modifiedBy"
+  };
 
   private final RegistryDatasetService registryDatasetService;
   private final DatasetSearchService searchService;
@@ -140,6 +156,8 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
   private final DoiGenerator doiGenerator;
   private final DataCiteDoiHandlerStrategy doiHandlerStrategy;
   private final WithMyBatis withMyBatis;
+  private final DatasetBatchLoader datasetBatchLoader;
+  private final EventManager eventManager;
 
   // The messagePublisher can be optional
   private final MessagePublisher messagePublisher;
@@ -153,6 +171,8 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
       DoiGenerator doiGenerator,
       DataCiteDoiHandlerStrategy doiHandlingStrategy,
       WithMyBatis withMyBatis,
+      TitleCache titleCache,
+      DatasetBatchLoader datasetBatchLoader,
       @Autowired(required = false) MessagePublisher messagePublisher) {
     super(
         mapperServiceLocator.getDatasetMapper(),
@@ -160,7 +180,8 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
         Dataset.class,
         eventManager,
         userAuthService,
-        withMyBatis);
+        withMyBatis,
+        titleCache);
     this.registryDatasetService = registryDatasetService;
     this.searchService = searchService;
     this.metadataMapper = mapperServiceLocator.getMetadataMapper();
@@ -174,6 +195,8 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
     this.doiHandlerStrategy = doiHandlingStrategy;
     this.messagePublisher = messagePublisher;
     this.withMyBatis = withMyBatis;
+    this.datasetBatchLoader = datasetBatchLoader;
+    this.eventManager = eventManager;
   }
 
   @GetMapping("search")
@@ -227,46 +250,109 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
   @Override
   public PagingResponse<Dataset> listByCountry(Country country, DatasetType type, Pageable page) {
     long total = datasetMapper.countWithFilter(country, type);
-    return pagingResponse(page, total, datasetMapper.listWithFilter(country, type, page));
+    return pagingResponse(
+        page, total, datasetBatchLoader.listWithFilter(country, type, null, null, null, page));
   }
 
   @Override
   public PagingResponse<Dataset> listByType(DatasetType type, Pageable page) {
     long total = datasetMapper.countWithFilter(null, type);
-    return pagingResponse(page, total, datasetMapper.listWithFilter(null, type, page));
+    return pagingResponse(
+        page, total, datasetBatchLoader.listWithFilter(null, type, null, null, null, page));
   }
 
+  /**
+   * Datasets are loaded through the {@link DatasetBatchLoader} to avoid running the nested selects
+   * of the sub resources for every dataset of the page.
+   */
   @Override
   public PagingResponse<Dataset> search(String query, Pageable page) {
-    return registryDatasetService.augmentWithMetadata(super.search(query, page));
+    page = page == null ? new PagingRequest() : page;
+    // trim and handle null from given input
+    String q = query != null ? Strings.emptyToNull(CharMatcher.WHITESPACE.trimFrom(query)) : query;
+    long total = datasetMapper.count(q);
+    return registryDatasetService.augmentWithMetadata(
+        pagingResponse(page, total, datasetBatchLoader.search(q, page)));
   }
 
   @Override
   public PagingResponse<Dataset> list(Pageable page) {
-    return registryDatasetService.augmentWithMetadata(super.list(page));
+    page = page == null ? new PagingRequest() : page;
+    long total = datasetMapper.count();
+    return registryDatasetService.augmentWithMetadata(
+        pagingResponse(page, total, datasetBatchLoader.list(page)));
   }
 
-  @GetMapping(value = "{key}/document", produces = MediaType.APPLICATION_XML_VALUE)
   @Override
-  public InputStream getMetadataDocument(@PathVariable("key") UUID datasetKey) {
+  protected KeysetPagingResponse<Dataset> decorateResponse(
+      KeysetPagingResponse<Dataset> response) {
+    PagingResponse<Dataset> augmented =
+        registryDatasetService.augmentWithMetadata(
+            new PagingResponse<>(0, response.getLimit(), null, response.getResults()));
+    response.setResults(augmented.getResults());
+    return response;
+  }
+
+  /**
+   * Java API variant of {@link #streamMetadataDocument(UUID, HttpServletResponse)}, which buffers
+   * the EML document as the caller reads it after this returns.
+   */
+  @Override
+  public InputStream getMetadataDocument(UUID datasetKey) {
     // the fully augmented dataset
     Dataset dataset = get(datasetKey);
-    if (dataset != null) {
-      // generate new EML
-      try {
-        StringWriter eml = new StringWriter();
-        EMLWriter.write(dataset, eml);
-        return new ByteArrayInputStream(eml.toString().getBytes(StandardCharsets.UTF_8));
+    if (dataset == null) {
+      return null;
+    }
+    ByteArrayOutputStream eml = new ByteArrayOutputStream();
+    try {
+      writeMetadataDocument(dataset, eml);
+    } catch (Exception e) {
+      throw new ServiceUnavailableException("Failed to serialize dataset " + datasetKey, e);
+    }
+    return new ByteArrayInputStream(eml.toByteArray());
+  }
 
-      } catch (Exception e) {
+  /**
+   * Writes the EML document generated from the dataset straight to the response instead of
+   * buffering it in memory first.
+   *
+   * <p>Once part of the document has been sent the status can't be changed any more, so a failure
+   * is logged and the response aborted: the exception then reaches the servlet container, which
+   * closes the connection without ending the body, and the client sees a failed transfer rather
+   * than a truncated document.
+   */
+  @GetMapping(value = "{key}/document", produces = MediaType.APPLICATION_XML_VALUE)
+  public void streamMetadataDocument(
+      @PathVariable("key") UUID datasetKey, HttpServletResponse response) {
+    // the fully augmented dataset
+    Dataset dataset = get(datasetKey);
+    if (dataset == null) {
+      return;
+    }
+    response.setContentType(MediaType.APPLICATION_XML_VALUE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    try {
+      writeMetadataDocument(dataset, response.getOutputStream());
+    } catch (Exception e) {
+      if (!response.isCommitted()) {
+        // nothing was sent yet, drop the buffered part and headers and answer with an error
+        response.reset();
         throw new ServiceUnavailableException("Failed to serialize dataset " + datasetKey, e);
       }
+      LOG.error("Failed to serialize dataset {}, aborting the partly sent response", datasetKey, e);
+      throw new IllegalStateException("Aborted the metadata document of dataset " + datasetKey, e);
     }
-    return null;
+  }
+
+  /** Generates the EML document of the dataset, shared by both ways of serving it. */
+  private static void writeMetadataDocument(Dataset dataset, OutputStream out) throws IOException {
+    EML_WRITER.writeTo(dataset, out);
   }
 
   @PostMapping(value = "{key}/document", consumes = MediaType.APPLICATION_XML_VALUE)
   @Secured({ADMIN_ROLE, EDITOR_ROLE})
+  @Transactional
   public Metadata insertMetadata(@PathVariable("key") UUID datasetKey, HttpServletRequest request) {
     final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
     try {
@@ -295,6 +381,17 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
       throw new IllegalArgumentException("Unreadable document", e);
     }
 
+    // first, determine if this document is already stored, returning it with no action
+    // we do this, because updating metadata when nothing has changed, results in registry change
+    // events being propagated which can trigger crawlers which will run an update etc.
+    // Documents are compared by their digest, ignoring whitespace only changes
+    String contentHash = MetadataDigest.sha256(data);
+    Metadata unchanged = findMetadata(datasetKey, contentHash);
+    if (unchanged != null) {
+      LOG.debug("This metadata document already exists - returning existing");
+      return unchanged;
+    }
+
     // now detect type and create a new metadata record
     MetadataType type;
     try (InputStream in = new ByteArrayInputStream(data)) {
@@ -303,25 +400,7 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
     } catch (IOException e) {
       throw new IllegalArgumentException("Unreadable document", e);
     }
-
-    // first, determine if this document is already stored, returning it with no action
-    // we do this, because updating metadata when nothing has changed, results in registry change
-    // events being
-    // propagated which can trigger crawlers which will run an update etc.
     List<Metadata> existingDocs = listMetadata(datasetKey, type);
-    for (Metadata existing : existingDocs) {
-      try (InputStream in = getMetadataDocument(existing.getKey())) {
-        String existingContent = CharStreams.toString(new InputStreamReader(in, Charsets.UTF_8));
-        if (existingContent != null) {
-          if (existingContent.equals(new String(data))) {
-            LOG.debug("This metadata document already exists - returning existing");
-            return existing;
-          }
-        }
-      } catch (Exception e) {
-        // swallow - we'll delete it anyway
-      }
-    }
 
     // persist metadata & data, which we know is not already stored
     // first remove all existing metadata of the same type (so we end up storing only one document
@@ -332,10 +411,13 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
     metadata.setCreatedBy(user);
     metadata.setModifiedBy(user);
     for (Metadata existing : existingDocs) {
-      deleteMetadata(existing.getKey());
+      // a single change event is posted for the whole replacement below
+      metadataMapper.delete(existing.getKey());
     }
-    int metaKey = metadataMapper.create(metadata, data);
+    int metaKey = metadataMapper.create(metadata, data, contentHash);
     metadata.setKey(metaKey);
+    eventManager.post(
+        ChangedComponentEvent.newInstance(datasetKey, Dataset.class, Metadata.class));
 
     // check if we should update our registered base information
     if (dataset.isLockedForAutoUpdate()) {
@@ -347,6 +429,7 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
       // we retrieve the preferred document and only update if this new metadata is the preferred
       // one
       // e.g. we could put a DC document while an EML document exists that takes preference
+      // this call skips the proxy, it joins the transaction of the public insertMetadata methods
       updateFromPreferredMetadata(datasetKey, user);
       LOG.info(
           "Dataset {} updated with base information from metadata document {}",
@@ -357,6 +440,31 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
     return metadata;
   }
 
+  /**
+   * Finds the metadata document of the dataset with the given digest. Documents stored without a
+   * digest get it on the way, so they are only read once.
+   */
+  @Nullable
+  private Metadata findMetadata(UUID datasetKey, String contentHash) {
+    Metadata metadata = metadataMapper.getByContentHash(datasetKey, contentHash);
+    if (metadata != null) {
+      return metadata;
+    }
+
+    Integer found = null;
+    for (Integer key : metadataMapper.listKeysWithoutContentHash(datasetKey)) {
+      ByteArrayWrapper document = metadataMapper.getDocument(key);
+      if (document != null && document.getData() != null) {
+        String hash = MetadataDigest.sha256(document.getData());
+        metadataMapper.updateContentHash(key, hash);
+        if (found == null && hash.equals(contentHash)) {
+          found = key;
+        }
+      }
+    }
+    return found != null ? metadataMapper.get(found) : null;
+  }
+
   /**
    * When we get a new Metadata document, this method is responsible to preserve the GBIF properties
    * on the dataset object to make sure they are not overwritten.
@@ -394,11 +502,14 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
   }
 
   /**
-   * Updates dataset by reinterpreting its preferred metadata document, if it exists.
+   * Updates dataset by reinterpreting its preferred metadata document, if it exists. Only the
+   * differences with the stored dataset are written, so reinterpreting an unchanged document
+   * doesn't write anything.
    *
    * @param uuid the dataset to update
    * @param user the modifier
    */
+  @Transactional
   public void updateFromPreferredMetadata(UUID uuid, String user) {
     Dataset dataset = super.get(uuid);
     if (dataset == null) {
@@ -417,13 +528,10 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
         updDataset.setDoi(dataset.getDoi());
       }
 
-      updDataset.setModifiedBy(user);
-      updDataset.setModified(new Date());
-
-      // persist contacts, overwriting any existing ones
-      replaceContacts(uuid, updDataset.getContacts(), user);
-      addIdentifiers(uuid, updDataset.getIdentifiers(), user);
-      addTags(uuid, updDataset.getTags(), user);
+      // persist the changed contacts, identifiers and tags only
+      boolean componentsChanged = syncContacts(uuid, updDataset.getContacts(), user);
+      componentsChanged |= addIdentifiers(uuid, updDataset.getIdentifiers(), user);
+      componentsChanged |= addTags(uuid, updDataset.getTags(), user);
 
       // now update the core dataset only, remove associated data to avoid confusion and potential
       // validation problems
@@ -432,12 +540,38 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
       updDataset.getTags().clear();
       updDataset.getMachineTags().clear();
 
+      // the update event of the dataset also covers the changed components
+      if (!componentsChanged && isUnchanged(dataset, updDataset)) {
+        LOG.debug("Dataset [key={}] is unchanged by its preferred metadata document", uuid);
+        return;
+      }
+
+      updDataset.setModifiedBy(user);
+      updDataset.setModified(new Date());
       update(updDataset);
     } else {
       LOG.debug("Dataset [key={}] has no preferred metadata document, skipping update!", uuid);
     }
   }
 
+  /**
+   * Checks if updating the core properties of the dataset would change nothing but its modified
+   * timestamp. Datasets without a DOI are never unchanged, as the update assigns them one.
+   */
+  private boolean isUnchanged(Dataset existing, Dataset updated) {
+    if (updated.getDoi() == null) {
+      return false;
+    }
+    return coreProperties(existing).equals(coreProperties(updated));
+  }
+
+  /** @return a copy of the dataset without its components and modification, to compare it */
+  private static Dataset coreProperties(Dataset dataset) {
+    Dataset copy = new Dataset();
+    BeanUtils.copyProperties(dataset, copy, NON_CORE_PROPERTIES);
+    return copy;
+  }
+
   private <T extends LenientEquals> boolean containedIn(T id, Collection<T> ids) {
     for (T id2 : ids) {
       if (id.lenientEquals(id2)) {
@@ -447,9 +581,14 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
     return false;
   }
 
-  /** Add all not yet existing identifiers to the db! */
-  private void addIdentifiers(UUID datasetKey, List<Identifier> newIdentifiers, String user) {
+  /**
+   * Add all not yet existing identifiers to the db!
+   *
+   * @return true if any identifier was added
+   */
+  private boolean addIdentifiers(UUID datasetKey, List<Identifier> newIdentifiers, String user) {
     List<Identifier> existing = datasetMapper.listIdentifiers(datasetKey);
+    boolean added = false;
     for (Identifier id : newIdentifiers) {
       if (IdentifierType.UNKNOWN != id.getType() && !containedIn(id, existing)) {
         // insert into db
@@ -458,13 +597,20 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
         withMyBatis.addIdentifier(identifierMapper, datasetMapper, datasetKey, id);
         // keep it in list for subsequent tests
         existing.add(id);
+        added = true;
       }
     }
+    return added;
   }
 
-  /** Add all not yet existing identifiers to the db! */
-  private void addTags(UUID datasetKey, List<Tag> newTags, String user) {
+  /**
+   * Add all not yet existing tags to the db!
+   *
+   * @return true if any tag was added
+   */
+  private boolean addTags(UUID datasetKey, List<Tag> newTags, String user) {
     List<Tag> existing = datasetMapper.listTags(datasetKey);
+    boolean added = false;
     for (Tag tag : newTags) {
       if (!containedIn(tag, existing)) {
         // insert into db
@@ -473,19 +619,81 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
         withMyBatis.addTag(tagMapper, datasetMapper, datasetKey, tag);
         // keep it in list for subsequent tests
         existing.add(tag);
+        added = true;
       }
     }
+    return added;
   }
 
-  private void replaceContacts(UUID datasetKey, List<Contact> contacts, String user) {
-    // persist contacts, overwriting any existing ones
-    datasetMapper.deleteContacts(datasetKey);
-    for (Contact c : contacts) {
-      c.setCreatedBy(user);
-      c.setCreated(new Date());
-      c.setModifiedBy(user);
-      c.setModified(new Date());
-      withMyBatis.addContact(contactMapper, datasetMapper, datasetKey, c);
+  /**
+   * Synchronizes the contacts of the dataset with the given ones, preserving their order. The
+   * stored contacts are compared with the given ones position by position and the differing ones
+   * are updated in place. Only the extra given contacts are inserted, in a single statement, and
+   * only the extra stored ones are deleted, in a single statement too.
+   *
+   * @return true if any contact was updated, deleted or added
+   */
+  private boolean syncContacts(UUID datasetKey, List<Contact> contacts, String user) {
+    normalizePrimaryContacts(contacts);
+    List<Contact> existing = datasetMapper.listContacts(datasetKey);
+    int common = Math.min(existing.size(), contacts.size());
+
+    if (common < existing.size()) {
+      List<Integer> deleted = new ArrayList<>(existing.size() - common);
+      for (Contact c : existing.subList(common, existing.size())) {
+        deleted.add(c.getKey());
+      }
+      contactMapper.deleteContactsByKey(deleted);
+    }
+
+    // the primary flags are cleared before being set, as a single primary contact per type is
+    // allowed at any time
+    List<Contact> relinked = new ArrayList<>();
+    boolean updated = false;
+    for (int i = 0; i < common; i++) {
+      Contact c = contacts.get(i);
+      Contact stored = existing.get(i);
+      c.setKey(stored.getKey());
+      if (!c.lenientEquals(stored)) {
+        c.setModifiedBy(user);
+        contactMapper.updateContact(c);
+        updated = true;
+      }
+      if (c.getType() != stored.getType() || c.isPrimary() != stored.isPrimary()) {
+        datasetMapper.updateContact(datasetKey, c.getKey(), c.getType(), false);
+        relinked.add(c);
+      }
+    }
+    for (Contact c : relinked) {
+      if (c.isPrimary()) {
+        datasetMapper.updateContact(datasetKey, c.getKey(), c.getType(), true);
+      }
+    }
+
+    if (common < contacts.size()) {
+      List<Contact> added = contacts.subList(common, contacts.size());
+      for (Contact c : added) {
+        c.setCreatedBy(user);
+        c.setModifiedBy(user);
+      }
+      contactMapper.createContacts(added);
+      datasetMapper.addContacts(datasetKey, added);
+    }
+    return updated || !relinked.isEmpty() || existing.size() != contacts.size();
+  }
+
+  /**
+   * Only the last primary contact of each type remains primary once stored, see {@link
+   * WithMyBatis#addContact}. The given contacts are aligned with that, so they can be compared with
+   * the stored ones.
+   */
+  private static void normalizePrimaryContacts(List<Contact> contacts) {
+    Set<ContactType> primaryTypes = EnumSet.noneOf(ContactType.class);
+    for (int i = contacts.size() - 1; i >= 0; i--) {
+      Contact c = contacts.get(i);
+      if (c.isPrimary() && c.getType() != null && !primaryTypes.add(c.getType())) {
+        c.setPrimary(false);
+      }
     }
   }
 
@@ -664,6 +872,7 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
    * more parameters.
    */
   @Override
+  @Transactional
   public Metadata insertMetadata(@PathVariable("key") UUID datasetKey, InputStream document) {
     // this method should never be called but from tests
     return insertMetadata(datasetKey, document, "UNKNOWN USER");
@@ -715,7 +924,13 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
   @DeleteMapping("metadata/{key}")
   @Override
   public void deleteMetadata(@PathVariable("key") int metadataKey) {
+    Metadata metadata = metadataMapper.get(metadataKey);
     metadataMapper.delete(metadataKey);
+    if (metadata != null) {
+      eventManager.post(
+          ChangedComponentEvent.newInstance(
+              metadata.getDatasetKey(), Dataset.class, Metadata.class));
+    }
   }
 
   @GetMapping("deleted")
@@ -38,6 +38,7 @@ import org.gbif.registry.persistence.mapper.MetaSyncHistoryMapper;
 import org.gbif.registry.persistence.mapper.OrganizationMapper;
 import org.gbif.registry.persistence.service.MapperServiceLocator;
 import org.gbif.registry.security.EditorAuthorizationService;
+import org.gbif.registry.service.TitleCache;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -95,6 +96,7 @@ public class InstallationResource extends BaseNetworkEntityResource<Installation
       EventManager eventManager,
       EditorAuthorizationService userAuthService,
       WithMyBatis withMyBatis,
+      TitleCache titleCache,
       @Autowired(required = false) MessagePublisher messagePublisher) {
     super(
         mapperServiceLocator.getInstallationMapper(),
@@ -102,7 +104,8 @@ public class InstallationResource extends BaseNetworkEntityResource<Installation
         Installation.class,
         eventManager,
         userAuthService,
-        withMyBatis);
+        withMyBatis,
+        titleCache);
     this.datasetMapper = mapperServiceLocator.getDatasetMapper();
     this.installationMapper = mapperServiceLocator.getInstallationMapper();
     this.organizationMapper = mapperServiceLocator.getOrganizationMapper();
@@ -28,6 +28,7 @@ import org.gbif.registry.persistence.mapper.DatasetMapper;
 import org.gbif.registry.persistence.mapper.NetworkMapper;
 import org.gbif.registry.persistence.service.MapperServiceLocator;
 import org.gbif.registry.security.EditorAuthorizationService;
+import org.gbif.registry.service.TitleCache;
 
 import java.util.UUID;
 
@@ -58,14 +59,16 @@ public class NetworkResource extends BaseNetworkEntityResource<Network> implemen
       MapperServiceLocator mapperServiceLocator,
       EventManager eventManager,
       EditorAuthorizationService userAuthService,
-      WithMyBatis withMyBatis) {
+      WithMyBatis withMyBatis,
+      TitleCache titleCache) {
     super(
         mapperServiceLocator.getNetworkMapper(),
         mapperServiceLocator,
         Network.class,
         eventManager,
         userAuthService,
-        withMyBatis);
+        withMyBatis,
+        titleCache);
     this.datasetMapper = mapperServiceLocator.getDatasetMapper();
     this.networkMapper = mapperServiceLocator.getNetworkMapper();
   }
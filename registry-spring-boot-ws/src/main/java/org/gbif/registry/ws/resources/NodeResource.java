@@ -29,6 +29,7 @@ import org.gbif.api.service.registry.NodeService;
 import org.gbif.api.vocabulary.Country;
 import org.gbif.api.vocabulary.IdentifierType;
 import org.gbif.registry.directory.Augmenter;
+import org.gbif.registry.domain.ws.KeysetPagingResponse;
 import org.gbif.registry.domain.ws.NodeRequestSearchParams;
 import org.gbif.registry.events.EventManager;
 import org.gbif.registry.persistence.WithMyBatis;
@@ -38,6 +39,7 @@ import org.gbif.registry.persistence.mapper.NodeMapper;
 import org.gbif.registry.persistence.mapper.OrganizationMapper;
 import org.gbif.registry.persistence.service.MapperServiceLocator;
 import org.gbif.registry.security.EditorAuthorizationService;
+import org.gbif.registry.service.TitleCache;
 
 import java.util.List;
 import java.util.UUID;
@@ -74,14 +76,16 @@ public class NodeResource extends BaseNetworkEntityResource<Node> implements Nod
       EventManager eventManager,
       Augmenter nodeAugmenter,
       EditorAuthorizationService userAuthService,
-      WithMyBatis withMyBatis) {
+      WithMyBatis withMyBatis,
+      TitleCache titleCache) {
     super(
         mapperServiceLocator.getNodeMapper(),
         mapperServiceLocator,
         Node.class,
         eventManager,
         userAuthService,
-        withMyBatis);
+        withMyBatis,
+        titleCache);
     this.nodeMapper = mapperServiceLocator.getNodeMapper();
     this.organizationMapper = mapperServiceLocator.getOrganizationMapper();
     this.nodeAugmenter = nodeAugmenter;
@@ -129,6 +133,14 @@ public class NodeResource extends BaseNetworkEntityResource<Node> implements Nod
     return response;
   }
 
+  @Override
+  protected KeysetPagingResponse<Node> decorateResponse(KeysetPagingResponse<Node> response) {
+    for (Node n : response.getResults()) {
+      nodeAugmenter.augment(n);
+    }
+    return response;
+  }
+
   @Override
   public PagingResponse<Node> search(String query, Pageable page) {
     return decorateResponse(super.search(query, page));
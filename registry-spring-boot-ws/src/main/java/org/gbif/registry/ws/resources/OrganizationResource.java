@@ -38,6 +38,7 @@ import org.gbif.registry.persistence.mapper.OrganizationMapper;
 import org.gbif.registry.persistence.service.MapperServiceLocator;
 import org.gbif.registry.security.EditorAuthorizationService;
 import org.gbif.registry.security.SecurityContextCheck;
+import org.gbif.registry.service.TitleCache;
 import org.gbif.registry.ws.surety.OrganizationEndorsementService;
 import org.gbif.ws.WebApplicationException;
 
@@ -104,14 +105,16 @@ public class OrganizationResource extends BaseNetworkEntityResource<Organization
       OrganizationEndorsementService<UUID> organizationEndorsementService,
       EventManager eventManager,
       EditorAuthorizationService userAuthService,
-      WithMyBatis withMyBatis) {
+      WithMyBatis withMyBatis,
+      TitleCache titleCache) {
     super(
         mapperServiceLocator.getOrganizationMapper(),
         mapperServiceLocator,
         Organization.class,
         eventManager,
         userAuthService,
-        withMyBatis);
+        withMyBatis,
+        titleCache);
     this.datasetMapper = mapperServiceLocator.getDatasetMapper();
     this.organizationMapper = mapperServiceLocator.getOrganizationMapper();
     this.installationMapper = mapperServiceLocator.getInstallationMapper();
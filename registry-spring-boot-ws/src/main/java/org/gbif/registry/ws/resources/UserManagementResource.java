@@ -28,8 +28,10 @@ import org.gbif.registry.domain.ws.UserUpdate;
 import org.gbif.registry.identity.model.LoggedUser;
 import org.gbif.registry.identity.model.UserModelMutationResult;
 import org.gbif.registry.identity.service.IdentityService;
+import org.gbif.registry.security.EditorAuthorizationCache;
 import org.gbif.registry.security.SecurityContextCheck;
 import org.gbif.registry.security.UserUpdateRulesManager;
+import org.gbif.registry.security.jwt.JwtAuthenticationCache;
 import org.gbif.registry.ws.UpdatePasswordException;
 import org.gbif.utils.AnnotationUtils;
 import org.gbif.ws.security.AppkeysConfigurationProperties;
@@ -103,12 +105,19 @@ public class UserManagementResource {
           .collect(Collectors.toList());
 
   private final IdentityService identityService;
+  private final EditorAuthorizationCache editorAuthorizationCache;
+  private final JwtAuthenticationCache jwtAuthenticationCache;
   private final List<String> appKeyWhitelist;
 
   /** {@link UserManagementResource} main constructor. */
   public UserManagementResource(
-      IdentityService identityService, AppkeysConfigurationProperties appkeysConfiguration) {
+      IdentityService identityService,
+      EditorAuthorizationCache editorAuthorizationCache,
+      JwtAuthenticationCache jwtAuthenticationCache,
+      AppkeysConfigurationProperties appkeysConfiguration) {
     this.identityService = identityService;
+    this.editorAuthorizationCache = editorAuthorizationCache;
+    this.jwtAuthenticationCache = jwtAuthenticationCache;
     appKeyWhitelist = appkeysConfiguration.getWhitelist();
   }
 
@@ -205,6 +214,9 @@ public class UserManagementResource {
 
       if (result.containsError()) {
         response = ResponseEntity.unprocessableEntity().body(result);
+      } else {
+        // the roles might have changed
+        jwtAuthenticationCache.invalidateUser(currentUser.getUserName());
       }
     }
     return response;
@@ -246,7 +258,12 @@ public class UserManagementResource {
   @Secured(ADMIN_ROLE)
   @DeleteMapping(value = "/{userKey}", consumes = MediaType.ALL_VALUE)
   public ResponseEntity<Void> delete(@PathVariable int userKey) {
+    GbifUser user = identityService.getByKey(userKey);
     identityService.delete(userKey);
+    if (user != null) {
+      editorAuthorizationCache.invalidateUser(user.getUserName());
+      jwtAuthenticationCache.invalidateUser(user.getUserName());
+    }
     return ResponseEntity.noContent().build();
   }
 
@@ -312,6 +329,7 @@ public class UserManagementResource {
     if (updatePasswordMutationResult.containsError()) {
       throw new UpdatePasswordException(updatePasswordMutationResult);
     } else {
+      jwtAuthenticationCache.invalidateUser(user.getUserName());
       identityService.updateLastLogin(user.getKey());
       return ResponseEntity.ok(LoggedUser.from(user));
     }
@@ -386,6 +404,7 @@ public class UserManagementResource {
       return ResponseEntity.status(HttpStatus.CONFLICT).build();
     } else {
       identityService.addEditorRight(username, key);
+      editorAuthorizationCache.invalidateUser(username);
       return ResponseEntity.ok(key);
     }
   }
@@ -406,6 +425,7 @@ public class UserManagementResource {
       return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
     } else {
       identityService.deleteEditorRight(username, key);
+      editorAuthorizationCache.invalidateUser(username);
       return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
   }
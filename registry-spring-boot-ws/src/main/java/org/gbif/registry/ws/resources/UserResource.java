@@ -21,6 +21,7 @@ import org.gbif.registry.identity.model.LoggedUser;
 import org.gbif.registry.identity.model.LoggedUserWithToken;
 import org.gbif.registry.identity.model.UserModelMutationResult;
 import org.gbif.registry.identity.service.IdentityService;
+import org.gbif.registry.security.jwt.JwtAuthenticationCache;
 import org.gbif.registry.security.jwt.JwtIssuanceService;
 
 import javax.validation.constraints.NotNull;
@@ -48,10 +49,15 @@ public class UserResource {
 
   private final IdentityService identityService;
   private final JwtIssuanceService jwtIssuanceService;
+  private final JwtAuthenticationCache jwtAuthenticationCache;
 
-  public UserResource(IdentityService identityService, JwtIssuanceService jwtIssuanceService) {
+  public UserResource(
+      IdentityService identityService,
+      JwtIssuanceService jwtIssuanceService,
+      JwtAuthenticationCache jwtAuthenticationCache) {
     this.identityService = identityService;
     this.jwtIssuanceService = jwtIssuanceService;
+    this.jwtAuthenticationCache = jwtAuthenticationCache;
   }
 
   /**
@@ -125,6 +131,7 @@ public class UserResource {
       if (updatePasswordMutationResult.containsError()) {
         return ResponseEntity.unprocessableEntity().body(updatePasswordMutationResult);
       }
+      jwtAuthenticationCache.invalidateUser(user.getUserName());
     }
     return ResponseEntity.noContent().build();
   }
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MapperMetricsInterceptorTest {
+
+  private static final String NAMESPACE = "org.gbif.registry.persistence.mapper.DatasetMapper";
+
+  @Mock private Executor mockExecutor;
+  @Mock private Cursor<Object> mockCursor;
+
+  private SimpleMeterRegistry registry;
+  private MapperMetricsInterceptor interceptor;
+  private Configuration configuration;
+
+  @Before
+  public void setup() {
+    registry = new SimpleMeterRegistry();
+    interceptor = new MapperMetricsInterceptor(registry);
+    configuration = new Configuration();
+  }
+
+  @Test
+  public void testQueryIsTimed() throws Throwable {
+    // GIVEN
+    MappedStatement statement = statement("list", SqlCommandType.SELECT);
+    when(mockExecutor.query(eq(statement), any(), any(RowBounds.class), any()))
+        .thenReturn(Arrays.asList("a", "b", "c"));
+
+    // WHEN
+    interceptor.intercept(query(statement));
+    interceptor.intercept(query(statement));
+
+    // THEN
+    Timer timer =
+        registry
+            .get(MapperMetricsInterceptor.STATEMENT_TIMER)
+            .tag("statement", "DatasetMapper.list")
+            .tag("command", "select")
+            .tag("exception", "none")
+            .timer();
+    assertEquals(2, timer.count());
+    DistributionSummary rows =
+        registry
+            .get(MapperMetricsInterceptor.ROWS_SUMMARY)
+            .tag("statement", "DatasetMapper.list")
+            .summary();
+    assertEquals(2, rows.count());
+    assertEquals(6, rows.totalAmount(), 0);
+  }
+
+  @Test
+  public void testUpdateRowsAreRecorded() throws Throwable {
+    // GIVEN
+    MappedStatement statement = statement("delete", SqlCommandType.DELETE);
+    when(mockExecutor.update(statement, null)).thenReturn(4);
+
+    // WHEN
+    interceptor.intercept(update(statement));
+
+    // THEN
+    assertEquals(
+        1,
+        registry
+            .get(MapperMetricsInterceptor.STATEMENT_TIMER)
+            .tag("statement", "DatasetMapper.delete")
+            .tag("command", "delete")
+            .timer()
+            .count());
+    assertEquals(
+        4,
+        registry
+            .get(MapperMetricsInterceptor.ROWS_SUMMARY)
+            .tag("statement", "DatasetMapper.delete")
+            .summary()
+            .totalAmount(),
+        0);
+  }
+
+  @Test
+  public void testCursorIsTimed() throws Throwable {
+    // GIVEN
+    MappedStatement statement = statement("cursorShallow", SqlCommandType.SELECT);
+    when(mockExecutor.<Object>queryCursor(statement, null, RowBounds.DEFAULT))
+        .thenReturn(mockCursor);
+    Executor executor = (Executor) interceptor.plugin(mockExecutor);
+
+    // WHEN
+    Cursor<Object> cursor = executor.queryCursor(statement, null, RowBounds.DEFAULT);
+
+    // THEN the cursor is timed, its rows are not known yet
+    assertSame(mockCursor, cursor);
+    assertEquals(
+        1,
+        registry
+            .get(MapperMetricsInterceptor.STATEMENT_TIMER)
+            .tag("statement", "DatasetMapper.cursorShallow")
+            .tag("command", "select")
+            .timer()
+            .count());
+    assertEquals(
+        0,
+        registry
+            .get(MapperMetricsInterceptor.ROWS_SUMMARY)
+            .tag("statement", "DatasetMapper.cursorShallow")
+            .summary()
+            .count());
+  }
+
+  @Test
+  public void testFailuresAreTimedSeparately() throws Throwable {
+    // GIVEN
+    MappedStatement statement = statement("update", SqlCommandType.UPDATE);
+    when(mockExecutor.update(statement, null)).thenThrow(new IllegalStateException("failed"));
+
+    // WHEN
+    try {
+      interceptor.intercept(update(statement));
+      fail("The failure must be rethrown");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    // THEN
+    assertEquals(
+        1,
+        registry
+            .get(MapperMetricsInterceptor.STATEMENT_TIMER)
+            .tag("statement", "DatasetMapper.update")
+            .tag("exception", "IllegalStateException")
+            .timer()
+            .count());
+    assertNull(registry.find(MapperMetricsInterceptor.ROWS_SUMMARY).summary());
+  }
+
+  @Test
+  public void testStatementName() {
+    assertEquals("DatasetMapper.get", MapperMetricsInterceptor.statementName(NAMESPACE + ".get"));
+    assertEquals("Mapper.get", MapperMetricsInterceptor.statementName("Mapper.get"));
+    assertEquals("get", MapperMetricsInterceptor.statementName("get"));
+  }
+
+  private MappedStatement statement(String id, SqlCommandType type) {
+    return new MappedStatement.Builder(
+            configuration,
+            NAMESPACE + "." + id,
+            new StaticSqlSource(configuration, "SELECT 1", Collections.emptyList()),
+            type)
+        .build();
+  }
+
+  private Invocation query(MappedStatement statement) throws NoSuchMethodException {
+    Method query =
+        Executor.class.getMethod(
+            "query", MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class);
+    return new Invocation(
+        mockExecutor,
+        query,
+        new Object[] {statement, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER});
+  }
+
+  private Invocation update(MappedStatement statement) throws NoSuchMethodException {
+    Method update = Executor.class.getMethod("update", MappedStatement.class, Object.class);
+    return new Invocation(mockExecutor, update, new Object[] {statement, null});
+  }
+}